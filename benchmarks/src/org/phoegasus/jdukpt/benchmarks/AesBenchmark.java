@@ -0,0 +1,94 @@
+package org.phoegasus.jdukpt.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.phoegasus.jdukpt.core.AESKeyType;
+import org.phoegasus.jdukpt.core.AESKeyUsage;
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.core.JDukptAes;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+/**
+ * JMH benchmarks of AES DUKPT PIN decryption with <code>JDukptAes</code>, against TripleDES DUKPT PIN decryption with <code>JDukpt</code>.
+ * </br>Both KSNs have 3 counter bits set, so both paths walk the same number of intermediate keys. With <code>intermediateKeys</code>, <code>JDukptAes</code> retains the intermediate derivation keys of the device and the repeated KSN walks none of them.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AesBenchmark {
+	
+	private static final String AES_BDK = "FEDCBA9876543210F1F1F1F1F1F1F1F1FEDCBA9876543210F1F1F1F1F1F1F1F1";
+	
+	private static final String AES_KSN = "123456789012345600000007";
+	
+	private static final String TDES_BDK = "A1A1A1A1A1A1A1A1B2B2B2B2B2B2B2B2";
+	
+	private static final String TDES_KSN = "FFFF9876543210E00007";
+	
+	@Param({"AES128", "AES256"})
+	private AESKeyType type;
+	
+	@Param({"false", "true"})
+	private boolean intermediateKeys;
+	
+	private JDukptAes aes;
+	
+	private JDukpt tdes;
+	
+	private byte[] aesBdk;
+	
+	private byte[] aesKsn;
+	
+	private byte[] aesPinBlock;
+	
+	private byte[] tdesBdk;
+	
+	private byte[] tdesKsn;
+	
+	private byte[] tdesPinBlock;
+	
+	@Setup
+	public void setup() throws Exception {
+		aes = intermediateKeys ? new JDukptAes(1) : new JDukptAes();
+		tdes = new JDukpt();
+		aesBdk = HexUtils.hexToBytes(AES_BDK.substring(0, type.getLength() * 2));
+		aesKsn = HexUtils.hexToBytes(AES_KSN);
+		aesPinBlock = aes.encryptPIN(aesBdk, aesKsn, HexUtils.hexToBytes("441234AAAAAAAAAA2CB0A1CF2F3D6C83"), type);
+		tdesBdk = HexUtils.hexToBytes(TDES_BDK);
+		tdesKsn = HexUtils.hexToBytes(TDES_KSN);
+		tdesPinBlock = tdes.encryptPIN(tdesBdk, tdesKsn, HexUtils.hexToBytes("041226CBA987EDCB"));
+	}
+	
+	@Benchmark
+	public byte[] decryptPINAes() throws Exception {
+		return aes.decryptPIN(aesBdk, aesKsn, aesPinBlock, type);
+	}
+	
+	@Benchmark
+	public byte[][] deriveWorkingKeysAes() throws Exception {
+		return aes.deriveWorkingKeys(aesBdk, aesKsn, type, AESKeyUsage.PIN, AESKeyUsage.MAC, AESKeyUsage.Data);
+	}
+	
+	@Benchmark
+	public byte[] decryptPINTdes() throws Exception {
+		return tdes.decryptPIN(tdesBdk, tdesKsn, tdesPinBlock);
+	}
+}
@@ -0,0 +1,91 @@
+package org.phoegasus.jdukpt.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.phoegasus.jdukpt.core.BatchRecord;
+import org.phoegasus.jdukpt.core.BatchStatistics;
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.core.TableBlockCipher;
+
+/**
+ * JMH benchmark of batch decryption on the caller thread (<code>threads</code> 0) and on fork/join pools, reported in records per second.
+ * </br>Run with <code>-p threads=0,1,2,4</code> up to the number of available processors to compare the speedups.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchBenchmark {
+
+	private static final int DEVICES = 2000;
+
+	private static final int TRANSACTIONS_PER_DEVICE = 10;
+
+	private static final int RECORDS = DEVICES * TRANSACTIONS_PER_DEVICE;
+
+	private static final int LENGTH = 64;
+
+	private static final byte[] BDK = {(byte) 0xA1, (byte) 0xA1, (byte) 0xA1, (byte) 0xA1, (byte) 0xA1, (byte) 0xA1, (byte) 0xA1, (byte) 0xA1,
+			(byte) 0xB2, (byte) 0xB2, (byte) 0xB2, (byte) 0xB2, (byte) 0xB2, (byte) 0xB2, (byte) 0xB2, (byte) 0xB2};
+
+	/**
+	 * Threads of the fork/join pool, 0 to decrypt on the caller thread
+	 */
+	@Param({"0", "1", "2", "4"})
+	private int threads;
+
+	private final JDukpt jdukpt = new JDukpt(new TableBlockCipher());
+
+	private BatchRecord[] records;
+
+	private ForkJoinPool pool;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(1);
+		records = new BatchRecord[RECORDS];
+		for(int i = 0; i < records.length; i++) {
+			int device = random.nextInt(DEVICES);
+			int counter = 1 + random.nextInt(0xFFFF);
+			byte[] ksn = {(byte) 0xFF, (byte) 0xFF, (byte) 0x98, (byte) 0x76, (byte) (device >> 8), (byte) device, (byte) 0xE0, 0, (byte) (counter >> 8), (byte) counter};
+			byte[] data = new byte[LENGTH];
+			random.nextBytes(data);
+			records[i] = new BatchRecord(ksn, data, new byte[LENGTH]);
+		}
+		pool = threads == 0 ? null : new ForkJoinPool(threads);
+	}
+
+	@TearDown
+	public void tearDown() {
+		if(pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(RECORDS)
+	public BatchStatistics decryptData() throws Exception {
+		return pool == null ? jdukpt.decryptData(BDK, records) : jdukpt.decryptData(BDK, records, pool);
+	}
+}
@@ -0,0 +1,82 @@
+package org.phoegasus.jdukpt.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.phoegasus.jdukpt.core.IpekCache;
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.core.TableBlockCipher;
+import org.phoegasus.jdukpt.utils.BlockUtils;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+/**
+ * JMH benchmark of a single <code>JDukpt</code> shared by several threads decrypting PIN blocks of many devices, with an IPEK cache using one stripe or one stripe per thread.
+ * </br>Run with <code>-t 1</code>, <code>-t 2</code>, <code>-t 4</code>... and compare the total throughput.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class ContentionBenchmark {
+	
+	private static final int DEVICES = 1024;
+	
+	@Param({"1", "16"})
+	private int concurrencyLevel;
+	
+	private JDukpt jdukpt;
+	
+	private byte[] bdk;
+	
+	private byte[][] ksns;
+	
+	private byte[][] pinBlocks;
+	
+	@Setup
+	public void setup() throws Exception {
+		jdukpt = JDukpt.builder().cipher(new TableBlockCipher()).ipekCache(new IpekCache(DEVICES * 2, 0, true, concurrencyLevel)).build();
+		bdk = HexUtils.hexToBytes("A1A1A1A1A1A1A1A1B2B2B2B2B2B2B2B2");
+		ksns = new byte[DEVICES][];
+		pinBlocks = new byte[DEVICES][];
+		for (int i = 0; i < DEVICES; i++) {
+			ksns[i] = HexUtils.hexToBytes("FFFF9876543210E00007");
+			BlockUtils.putLong(BlockUtils.getLong(ksns[i], 0) + ((long) i << 21 >>> 16), ksns[i], 0);
+			pinBlocks[i] = jdukpt.encryptPIN(bdk, ksns[i], HexUtils.hexToBytes("041226CBA987EDCB"));
+		}
+	}
+	
+	@State(Scope.Thread)
+	public static class Cursor {
+		
+		int next;
+		
+		@Setup
+		public void setup() {
+			next = (int) Thread.currentThread().getId() * 31;
+		}
+	}
+	
+	@Benchmark
+	public byte[] decryptPIN(Cursor cursor) throws Exception {
+		int device = cursor.next++ & DEVICES - 1;
+		return jdukpt.decryptPIN(bdk, ksns[device], pinBlocks[device]);
+	}
+}
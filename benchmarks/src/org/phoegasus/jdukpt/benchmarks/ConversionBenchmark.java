@@ -0,0 +1,61 @@
+package org.phoegasus.jdukpt.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.phoegasus.jdukpt.utils.HexUtils;
+import org.phoegasus.jdukpt.utils.StringPadder;
+
+/**
+ * JMH benchmarks of the hexadecimal and padding conversions made around every String and byte[] call.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConversionBenchmark {
+	
+	private static final String HEX = "FFFF9876543210E00002";
+	
+	private byte[] bytes;
+	
+	@Setup
+	public void setup() {
+		bytes = HexUtils.hexToBytes(HEX);
+	}
+	
+	@Benchmark
+	public String bytesToHex() {
+		return HexUtils.bytesToHex(bytes);
+	}
+	
+	@Benchmark
+	public byte[] hexToBytes() {
+		return HexUtils.hexToBytes(HEX);
+	}
+	
+	@Benchmark
+	public String zeroLeftPadToMultipleOf16() {
+		return StringPadder.zeroLeftPadToMultipleOf16("41226cba987edcb");
+	}
+	
+	@Benchmark
+	public String lPad() {
+		return StringPadder.lPad("e00002", '0', 20);
+	}
+}
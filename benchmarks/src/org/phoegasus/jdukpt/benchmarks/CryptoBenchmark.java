@@ -0,0 +1,56 @@
+package org.phoegasus.jdukpt.benchmarks;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.phoegasus.jdukpt.core.DefaultCrypto;
+
+/**
+ * JMH benchmarks of the TripleDES operations of <code>DefaultCrypto</code> on a single block.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CryptoBenchmark {
+	
+	private static final BigInteger KEY = new BigInteger("A1A1A1A1A1A1A1A1B2B2B2B2B2B2B2B2", 16);
+	
+	private static final BigInteger DATA = new BigInteger("041226CBA987EDCB", 16);
+	
+	private DefaultCrypto crypto;
+	
+	private BigInteger encrypted;
+	
+	@Setup
+	public void setup() throws Exception {
+		crypto = new DefaultCrypto();
+		encrypted = crypto.encryptTDES(KEY, DATA);
+	}
+	
+	@Benchmark
+	public BigInteger encryptTDES() throws Exception {
+		return crypto.encryptTDES(KEY, DATA);
+	}
+	
+	@Benchmark
+	public BigInteger decryptTDES() throws Exception {
+		return crypto.decryptTDES(KEY, encrypted);
+	}
+}
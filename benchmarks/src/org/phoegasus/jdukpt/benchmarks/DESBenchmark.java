@@ -0,0 +1,107 @@
+package org.phoegasus.jdukpt.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.phoegasus.jdukpt.core.BlockCipher;
+import org.phoegasus.jdukpt.core.DefaultBlockCipher;
+import org.phoegasus.jdukpt.core.TableBlockCipher;
+
+/**
+ * JMH benchmarks of single block TripleDES before and after caching the JCE ciphers per thread, and with the table driven DES.
+ * </br>The "legacy" benchmarks reproduce the original <code>DES.process</code>, which looked up and initialized a new <code>Cipher</code> for every call. The "newKey" benchmarks derive the key of each block from the previous block, so that no cipher can be reused.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DESBenchmark {
+
+	private static final long KEY_HI = 0xA1A1A1A1A1A1A1A1L;
+
+	private static final long KEY_LO = 0xB2B2B2B2B2B2B2B2L;
+
+	private final BlockCipher cipher = new DefaultBlockCipher();
+
+	private final BlockCipher table = new TableBlockCipher();
+
+	private final byte[] key = toBytes(KEY_HI, KEY_LO);
+
+	/**
+	 * Chained from call to call, so that each call depends on the previous one
+	 */
+	private long block = 0x041226CBA987EDCBL;
+
+	@Benchmark
+	public long legacySameKey() throws Exception {
+		return block = toLong(legacyEncrypt(key, toBytes(block)));
+	}
+
+	@Benchmark
+	public long legacyNewKey() throws Exception {
+		return block = toLong(legacyEncrypt(toBytes(block, ~block), toBytes(block)));
+	}
+
+	@Benchmark
+	public long cachedSameKey() throws Exception {
+		return block = cipher.encryptTDES(KEY_HI, KEY_LO, block);
+	}
+
+	@Benchmark
+	public long cachedNewKey() throws Exception {
+		return block = cipher.encryptTDES(block, ~block, block);
+	}
+
+	@Benchmark
+	public long tableSameKey() throws Exception {
+		return block = table.encryptTDES(KEY_HI, KEY_LO, block);
+	}
+
+	@Benchmark
+	public long tableNewKey() throws Exception {
+		return block = table.encryptTDES(block, ~block, block);
+	}
+
+	private static byte[] legacyEncrypt(byte[] key, byte[] data) throws Exception {
+		if(key.length == 16) {
+			ByteBuffer bb = ByteBuffer.wrap(new byte[24]);
+			bb.put(key, 0, 16);
+			bb.put(key, 0, 8);
+			key = bb.array();
+		}
+		Cipher cipher = Cipher.getInstance(key.length == 8 ? "DES/CBC/NoPadding" : "DESede/CBC/NoPadding");
+		cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, key.length == 8 ? "DES" : "DESede"), new IvParameterSpec(new byte[8]));
+		return cipher.doFinal(data);
+	}
+
+	private static byte[] toBytes(long... blocks) {
+		ByteBuffer bb = ByteBuffer.allocate(blocks.length * 8);
+		for(long block : blocks) {
+			bb.putLong(block);
+		}
+		return bb.array();
+	}
+
+	private static long toLong(byte[] bytes) {
+		return ByteBuffer.wrap(bytes).getLong();
+	}
+}
@@ -0,0 +1,79 @@
+package org.phoegasus.jdukpt.benchmarks;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+/**
+ * JMH benchmarks of end-to-end <code>JDukpt.decryptPIN</code> calls with the String, byte[] and BigInteger overloads.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecryptPINBenchmark {
+	
+	private static final String BDK = "A1A1A1A1A1A1A1A1B2B2B2B2B2B2B2B2";
+	
+	private static final String KSN = "FFFF9876543210E00002";
+	
+	private static final String ENCRYPTED_PIN = "51B0229A9278CECC";
+	
+	private JDukpt jdukpt;
+	
+	private byte[] bdkBytes;
+	
+	private byte[] ksnBytes;
+	
+	private byte[] encryptedBytes;
+	
+	private BigInteger bdkBigInteger;
+	
+	private BigInteger ksnBigInteger;
+	
+	private BigInteger encryptedBigInteger;
+	
+	@Setup
+	public void setup() {
+		jdukpt = new JDukpt();
+		bdkBytes = HexUtils.hexToBytes(BDK);
+		ksnBytes = HexUtils.hexToBytes(KSN);
+		encryptedBytes = HexUtils.hexToBytes(ENCRYPTED_PIN);
+		bdkBigInteger = new BigInteger(BDK, 16);
+		ksnBigInteger = new BigInteger(KSN, 16);
+		encryptedBigInteger = new BigInteger(ENCRYPTED_PIN, 16);
+	}
+	
+	@Benchmark
+	public String decryptPINString() throws Exception {
+		return jdukpt.decryptPIN(BDK, KSN, ENCRYPTED_PIN);
+	}
+	
+	@Benchmark
+	public byte[] decryptPINBytes() throws Exception {
+		return jdukpt.decryptPIN(bdkBytes, ksnBytes, encryptedBytes);
+	}
+	
+	@Benchmark
+	public BigInteger decryptPINBigInteger() throws Exception {
+		return jdukpt.decryptPIN(bdkBigInteger, ksnBigInteger, encryptedBigInteger);
+	}
+}
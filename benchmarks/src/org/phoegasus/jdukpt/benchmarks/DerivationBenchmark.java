@@ -0,0 +1,78 @@
+package org.phoegasus.jdukpt.benchmarks;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.phoegasus.jdukpt.core.DUKPTEngine;
+import org.phoegasus.jdukpt.core.DefaultBlockCipher;
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.core.TableBlockCipher;
+
+/**
+ * JMH benchmark of PIN encryptions for each engine and block cipher, each encryption deriving its session key from the BDK.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DerivationBenchmark {
+
+	private static final int COUNTERS = 20_000;
+
+	private static final BigInteger BDK = new BigInteger("A1A1A1A1A1A1A1A1B2B2B2B2B2B2B2B2", 16);
+
+	private static final BigInteger KSN = new BigInteger("FFFF9876543210E00000", 16);
+
+	private static final BigInteger PIN_BLOCK = new BigInteger("041226CBA987EDCB", 16);
+
+	/**
+	 * BigInteger engine with the JCE, Primitive engine with the JCE, or Primitive engine with the table driven DES
+	 */
+	@Param({"BigInteger", "Primitive", "Table"})
+	private String engine;
+
+	private JDukpt jdukpt;
+
+	private BigInteger[] ksns;
+
+	private int next;
+
+	@Setup
+	public void setup() {
+		if (engine.equals("BigInteger")) {
+			jdukpt = new JDukpt(DUKPTEngine.BigInteger);
+		} else if (engine.equals("Primitive")) {
+			jdukpt = new JDukpt(new DefaultBlockCipher());
+		} else {
+			jdukpt = new JDukpt(new TableBlockCipher());
+		}
+		ksns = new BigInteger[COUNTERS];
+		for (int counter = 1; counter <= COUNTERS; counter++) {
+			ksns[counter - 1] = KSN.add(BigInteger.valueOf(counter));
+		}
+	}
+
+	@Benchmark
+	public BigInteger encryptPIN() throws Exception {
+		BigInteger ksn = ksns[next];
+		next = next + 1 == COUNTERS ? 0 : next + 1;
+		return jdukpt.encryptPIN(BDK, ksn, PIN_BLOCK);
+	}
+}
@@ -0,0 +1,118 @@
+package org.phoegasus.jdukpt.benchmarks;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.phoegasus.jdukpt.core.BlockCipher;
+import org.phoegasus.jdukpt.core.IpekCache;
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.core.TableBlockCipher;
+
+/**
+ * JMH benchmark of transactions on a stream of increasing counters, with an IPEK cache only and with retained future keys.
+ * </br>Transactions of several devices are interleaved, and counters with more than 10 one bits are skipped like an originating device does. The <code>desOperations</code> counter is reported next to the transactions, their ratio being the number of DES operations per transaction.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FutureKeyBenchmark {
+
+	private static final int DEVICES = 8;
+
+	private static final BigInteger BDK = new BigInteger("A1A1A1A1A1A1A1A1B2B2B2B2B2B2B2B2", 16);
+
+	private static final BigInteger PIN_BLOCK = new BigInteger("041226CBA987EDCB", 16);
+
+	@Param({"false", "true"})
+	private boolean futureKeys;
+
+	private CountingBlockCipher cipher;
+
+	private JDukpt jdukpt;
+
+	private final int[] counters = new int[DEVICES];
+
+	private int device;
+
+	@Setup
+	public void setup() {
+		cipher = new CountingBlockCipher(new TableBlockCipher());
+		jdukpt = new JDukpt(cipher, new IpekCache(DEVICES, 0, futureKeys));
+	}
+
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Operations {
+
+		public long desOperations;
+	}
+
+	@Benchmark
+	public BigInteger encryptPIN(Operations operations) throws Exception {
+		device = device + 1 == DEVICES ? 0 : device + 1;
+		int counter = counters[device];
+		do {
+			counter = counter == 0x1FFFFF ? 1 : counter + 1;
+		} while (Integer.bitCount(counter) > 10);
+		counters[device] = counter;
+		BigInteger ksn = BigInteger.valueOf(0xFFFF98765432L + device).shiftLeft(32).or(BigInteger.valueOf(counter));
+		long before = cipher.operations;
+		BigInteger encrypted = jdukpt.encryptPIN(BDK, ksn, PIN_BLOCK);
+		operations.desOperations += cipher.operations - before;
+		return encrypted;
+	}
+
+	private static final class CountingBlockCipher implements BlockCipher {
+
+		private final BlockCipher cipher;
+
+		private long operations;
+
+		CountingBlockCipher(BlockCipher cipher) {
+			this.cipher = cipher;
+		}
+
+		@Override
+		public long encryptDES(long key, long data) throws Exception {
+			operations++;
+			return cipher.encryptDES(key, data);
+		}
+
+		@Override
+		public long decryptDES(long key, long data) throws Exception {
+			operations++;
+			return cipher.decryptDES(key, data);
+		}
+
+		@Override
+		public long encryptTDES(long keyHi, long keyLo, long data) throws Exception {
+			operations++;
+			return cipher.encryptTDES(keyHi, keyLo, data);
+		}
+
+		@Override
+		public long decryptTDES(long keyHi, long keyLo, long data) throws Exception {
+			operations++;
+			return cipher.decryptTDES(keyHi, keyLo, data);
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package org.phoegasus.jdukpt.benchmarks;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.phoegasus.jdukpt.core.DefaultBlockCipher;
+import org.phoegasus.jdukpt.core.IpekIndex;
+import org.phoegasus.jdukpt.core.IpekIndexWriter;
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.utils.BlockUtils;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+/**
+ * JMH benchmarks of a node serving random devices out of a million with the JCE backed <code>DefaultBlockCipher</code>, deriving each IPEK or looking it up in a clear or encrypted index, and of the time to open the index.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IpekIndexBenchmark {
+
+	private static final int DEVICES = 1000000;
+
+	private static final byte[] BDK = HexUtils.hexToBytes("0123456789ABCDEFFEDCBA9876543210");
+
+	private static final byte[] KEK = HexUtils.hexToBytes("C1D0F8FB4958670DBA40AB1F3752EF0D");
+
+	private static final byte[] PIN_BLOCK = HexUtils.hexToBytes("041226CBA987EDCB");
+
+	/**
+	 * IPEKs derived from the BDK, looked up in a clear index, or looked up in an index encrypted under a KEK
+	 */
+	@Param({"derivation", "index", "encryptedIndex"})
+	private String source;
+
+	private long[] ksnHis;
+
+	private Path file;
+
+	private JDukpt jdukpt;
+
+	@Setup
+	public void setup() throws Exception {
+		ksnHis = new long[DEVICES];
+		for(int i = 0; i < DEVICES; i++) {
+			ksnHis[i] = 0xFFFF000000000000L | (long) i << 8;
+		}
+		JDukpt.Builder builder = JDukpt.builder().cipher(new DefaultBlockCipher());
+		file = Files.createTempFile("ipek", ".idx");
+		if(source.equals("encryptedIndex")) {
+			new IpekIndexWriter().write(file, BDK, ksnHis.clone(), KEK);
+			builder.ipekIndex(IpekIndex.open(file, KEK));
+		} else {
+			new IpekIndexWriter().write(file, BDK, ksnHis.clone(), null);
+			if(source.equals("index")) {
+				builder.ipekIndex(IpekIndex.open(file));
+			}
+		}
+		jdukpt = builder.build();
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(file);
+	}
+
+	@State(Scope.Thread)
+	public static class Transaction {
+
+		final Random random = new Random(42);
+
+		final byte[] ksn = new byte[10];
+	}
+
+	@Benchmark
+	public byte[] decryptPIN(Transaction transaction) throws Exception {
+		BlockUtils.putLong(ksnHis[transaction.random.nextInt(DEVICES)], transaction.ksn, 0);
+		transaction.ksn[9] = (byte) (1 + transaction.random.nextInt(255));
+		return jdukpt.decryptPIN(BDK, transaction.ksn, PIN_BLOCK);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public IpekIndex open() throws Exception {
+		return source.equals("encryptedIndex") ? IpekIndex.open(file, KEK) : IpekIndex.open(file);
+	}
+}
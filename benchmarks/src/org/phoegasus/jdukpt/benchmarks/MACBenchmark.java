@@ -0,0 +1,72 @@
+package org.phoegasus.jdukpt.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+/**
+ * JMH benchmarks of PIN decryption with the verification of the retail MAC of the message, as two calls deriving the key of the KSN twice, and as a single <code>JDukpt.decryptPINVerifyMAC</code> call.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MACBenchmark {
+	
+	@Param({"64", "4096"})
+	private int messageLength;
+	
+	private JDukpt jdukpt;
+	
+	private byte[] bdk;
+	
+	private byte[] ksn;
+	
+	private byte[] pinBlock;
+	
+	private byte[] message;
+	
+	private byte[] mac;
+	
+	@Setup
+	public void setup() throws Exception {
+		jdukpt = new JDukpt();
+		bdk = HexUtils.hexToBytes("A1A1A1A1A1A1A1A1B2B2B2B2B2B2B2B2");
+		ksn = HexUtils.hexToBytes("FFFF9876543210E00007");
+		pinBlock = jdukpt.encryptPIN(bdk, ksn, HexUtils.hexToBytes("041226CBA987EDCB"));
+		message = new byte[messageLength];
+		for (int i = 0; i < message.length; i++) {
+			message[i] = (byte) i;
+		}
+		mac = jdukpt.generateRequestMAC(bdk, ksn, message);
+	}
+	
+	@Benchmark
+	public byte[] decryptPINThenVerifyMAC() throws Exception {
+		byte[] pin = jdukpt.decryptPIN(bdk, ksn, pinBlock);
+		return jdukpt.verifyRequestMAC(bdk, ksn, message, mac) ? pin : null;
+	}
+	
+	@Benchmark
+	public byte[] decryptPINVerifyMAC() throws Exception {
+		return jdukpt.decryptPINVerifyMAC(bdk, ksn, pinBlock, message, mac);
+	}
+}
@@ -0,0 +1,62 @@
+package org.phoegasus.jdukpt.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.phoegasus.jdukpt.core.IpekCache;
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.core.TableBlockCipher;
+import org.phoegasus.jdukpt.metrics.JmxMetrics;
+import org.phoegasus.jdukpt.metrics.NoOpMetrics;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+/**
+ * JMH benchmark of PIN decryption with an IPEK cache, without metrics and with <code>JmxMetrics</code>, to measure the cost of the instrumentation.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+	
+	@Param({"none", "jmx"})
+	private String metrics;
+	
+	private JDukpt jdukpt;
+	
+	private byte[] bdk;
+	
+	private byte[] ksn;
+	
+	private byte[] pinBlock;
+	
+	@Setup
+	public void setup() throws Exception {
+		jdukpt = JDukpt.builder().cipher(new TableBlockCipher()).ipekCache(new IpekCache(16, 0))
+				.metrics(metrics.equals("jmx") ? new JmxMetrics() : NoOpMetrics.INSTANCE).build();
+		bdk = HexUtils.hexToBytes("A1A1A1A1A1A1A1A1B2B2B2B2B2B2B2B2");
+		ksn = HexUtils.hexToBytes("FFFF9876543210E00007");
+		pinBlock = jdukpt.encryptPIN(bdk, ksn, HexUtils.hexToBytes("041226CBA987EDCB"));
+	}
+	
+	@Benchmark
+	public byte[] decryptPIN() throws Exception {
+		return jdukpt.decryptPIN(bdk, ksn, pinBlock);
+	}
+}
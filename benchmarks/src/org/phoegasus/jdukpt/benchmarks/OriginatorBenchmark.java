@@ -0,0 +1,56 @@
+package org.phoegasus.jdukpt.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.phoegasus.jdukpt.core.DukptOriginator;
+import org.phoegasus.jdukpt.core.TableBlockCipher;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+/**
+ * JMH benchmark of PIN block encryption by a <code>DukptOriginator</code>, as done by a terminal simulator, a new originator being loaded when the counter is exhausted.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OriginatorBenchmark {
+	
+	private static final byte[] IPEK = HexUtils.hexToBytes("6AC292FAA1315B4D858AB3A3D7D5933A");
+	
+	private static final byte[] KSN = HexUtils.hexToBytes("FFFF9876543210E00000");
+	
+	private static final byte[] PIN_BLOCK = HexUtils.hexToBytes("041226CBA987EDCB");
+	
+	private final TableBlockCipher cipher = new TableBlockCipher();
+	
+	private DukptOriginator originator;
+	
+	@Setup
+	public void setup() throws Exception {
+		originator = new DukptOriginator(IPEK, KSN, cipher);
+	}
+	
+	@Benchmark
+	public byte[] encryptPIN() throws Exception {
+		if (originator.isExhausted()) {
+			originator = new DukptOriginator(IPEK, KSN, cipher);
+		}
+		return originator.encryptPIN(PIN_BLOCK);
+	}
+}
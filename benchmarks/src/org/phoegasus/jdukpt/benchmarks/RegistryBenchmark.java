@@ -0,0 +1,58 @@
+package org.phoegasus.jdukpt.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.phoegasus.jdukpt.core.BdkRegistry;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+/**
+ * JMH benchmark of the lookup of the key set of a KSN in a <code>BdkRegistry</code> of 500 BDKs.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistryBenchmark {
+	
+	private static final int KEY_SETS = 500;
+	
+	private BdkRegistry registry;
+	
+	private byte[][] ksns;
+	
+	private int next;
+	
+	@Setup
+	public void setup() {
+		registry = new BdkRegistry();
+		ksns = new byte[KEY_SETS][];
+		byte[] bdk = HexUtils.hexToBytes("0123456789ABCDEFFEDCBA9876543210");
+		for (int i = 0; i < KEY_SETS; i++) {
+			ksns[i] = HexUtils.hexToBytes(String.format("FFFF%06X3210E00001", i * 20011));
+			registry.put(ksns[i], bdk);
+		}
+	}
+	
+	@Benchmark
+	public boolean lookup() {
+		int i = next;
+		next = i + 1 == KEY_SETS ? 0 : i + 1;
+		return registry.contains(ksns[i]);
+	}
+}
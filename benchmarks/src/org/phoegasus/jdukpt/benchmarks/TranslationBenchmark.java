@@ -0,0 +1,87 @@
+package org.phoegasus.jdukpt.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.core.PinBlockFormat;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+/**
+ * JMH benchmarks of the translation of a format 0 PIN block from DUKPT to a zone PIN key, as a String decryption followed by a JCE encryption with a new <code>Cipher</code>, and as a single <code>JDukpt.translatePIN</code> call.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TranslationBenchmark {
+	
+	private static final String BDK = "0123456789ABCDEFFEDCBA9876543210";
+	
+	private static final String KSN = "FFFF9876543210E00001";
+	
+	private static final String ZONE_KEY = "C1D0F8FB4958670DBA40AB1F3752EF0D";
+	
+	private JDukpt jdukpt;
+	
+	private byte[] bdk;
+	
+	private byte[] ksn;
+	
+	private byte[] zoneKey;
+	
+	private byte[] pan;
+	
+	private byte[] pinBlock;
+	
+	private String encryptedPinBlock;
+	
+	private byte[] output;
+	
+	@Setup
+	public void setup() throws Exception {
+		jdukpt = new JDukpt();
+		bdk = HexUtils.hexToBytes(BDK);
+		ksn = HexUtils.hexToBytes(KSN);
+		zoneKey = HexUtils.hexToBytes(ZONE_KEY);
+		pan = "4111111111111111".getBytes();
+		pinBlock = jdukpt.encryptPIN(bdk, ksn, HexUtils.hexToBytes("041225EEEEEEEEEE"));
+		encryptedPinBlock = HexUtils.bytesToHex(pinBlock);
+		output = new byte[8];
+	}
+	
+	@Benchmark
+	public byte[] decryptThenEncrypt() throws Exception {
+		String clear = jdukpt.decryptPIN(BDK, KSN, encryptedPinBlock);
+		byte[] key = new byte[24];
+		System.arraycopy(zoneKey, 0, key, 0, 16);
+		System.arraycopy(zoneKey, 0, key, 16, 8);
+		Cipher cipher = Cipher.getInstance("DESede/ECB/NoPadding");
+		cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "DESede"));
+		return cipher.doFinal(HexUtils.hexToBytes(clear));
+	}
+	
+	@Benchmark
+	public byte[] translatePIN() throws Exception {
+		jdukpt.translatePIN(bdk, ksn, pinBlock, 0, PinBlockFormat.ISO0, pan, 0, pan.length, zoneKey, PinBlockFormat.ISO0, output, 0);
+		return output;
+	}
+}
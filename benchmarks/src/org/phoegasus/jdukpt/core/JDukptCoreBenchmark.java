@@ -0,0 +1,124 @@
+package org.phoegasus.jdukpt.core;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of the key derivation steps of both engines.
+ * </br>The counter parameter selects a light KSN (1 counter bit set, 1 key generation) or a heavy KSN (10 counter bits set, the maximum an originating device uses).
+ * </br>Lives in the <code>core</code> package to reach the package-private core classes.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JDukptCoreBenchmark {
+	
+	private static final BigInteger BDK = new BigInteger("A1A1A1A1A1A1A1A1B2B2B2B2B2B2B2B2", 16);
+	
+	@Param({"light", "heavy"})
+	public String counter;
+	
+	private JDukptCore core;
+	
+	private JDukptPrimitiveCore primitiveCore;
+	
+	private BigInteger ksn;
+	
+	private BigInteger ipek;
+	
+	private long bdkHi;
+	
+	private long bdkLo;
+	
+	private long ksnHi;
+	
+	private short ksnLo;
+	
+	private long ipekHi;
+	
+	private long ipekLo;
+	
+	private final long[] key = new long[2];
+	
+	@Setup
+	public void setup() throws Exception {
+		core = new JDukptCore();
+		primitiveCore = new JDukptPrimitiveCore();
+		ksn = new BigInteger("light".equals(counter) ? "FFFF9876543210E00001" : "FFFF9876543210FFF800", 16);
+		ipek = core.createIpek(ksn, BDK);
+		bdkHi = BDK.shiftRight(64).longValue();
+		bdkLo = BDK.longValue();
+		ksnHi = ksn.shiftRight(16).longValue();
+		ksnLo = ksn.shortValue();
+		ipekHi = ipek.shiftRight(64).longValue();
+		ipekLo = ipek.longValue();
+	}
+	
+	@Benchmark
+	public BigInteger createIpek() throws Exception {
+		return core.createIpek(ksn, BDK);
+	}
+	
+	@Benchmark
+	public BigInteger deriveKey() throws Exception {
+		return core.deriveKey(ipek, ksn);
+	}
+	
+	@Benchmark
+	public BigInteger createSessionKeyPEK() throws Exception {
+		return core.createSessionKeyPEK(ipek, ksn);
+	}
+	
+	@Benchmark
+	public BigInteger createSessionKeyDEK() throws Exception {
+		return core.createSessionKeyDEK(ipek, ksn);
+	}
+	
+	@Benchmark
+	public long[] primitiveCreateIpek() throws Exception {
+		primitiveCore.createIpek(bdkHi, bdkLo, ksnHi, key);
+		return key;
+	}
+	
+	@Benchmark
+	public long[] primitiveDeriveKey() throws Exception {
+		key[0] = ipekHi;
+		key[1] = ipekLo;
+		primitiveCore.deriveKey(key, ksnHi, ksnLo);
+		return key;
+	}
+	
+	@Benchmark
+	public long[] primitiveCreateSessionKeyPEK() throws Exception {
+		key[0] = ipekHi;
+		key[1] = ipekLo;
+		primitiveCore.createSessionKeyPEK(key, ksnHi, ksnLo);
+		return key;
+	}
+	
+	@Benchmark
+	public long[] primitiveCreateSessionKeyDEK() throws Exception {
+		key[0] = ipekHi;
+		key[1] = ipekLo;
+		primitiveCore.createSessionKeyDEK(key, ksnHi, ksnLo);
+		return key;
+	}
+}
@@ -0,0 +1,113 @@
+package org.phoegasus.jdukpt.core;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * AES implementation used by <code>JDukptAes</code>, backed by the JCE provider, which uses the AES instructions of the processor when they are available.
+ * </br>The ciphers are cached per thread, one per chaining mode. A cipher is only initialized again when the key or the operation mode differs from the previous call. The copy of the key compared by this cache is overwritten with zeroes by <code>clear</code>, which the callers invoke once an operation is complete.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+final class AES {
+	
+	static final int BLOCK_LENGTH = 16;
+	
+	private static final String[] TRANSFORMATIONS = {"AES/ECB/NoPadding", "AES/CBC/NoPadding"};
+	
+	private static final ThreadLocal<AES> CONTEXT = new ThreadLocal<AES>() {
+		@Override
+		protected AES initialValue() {
+			return new AES();
+		}
+	};
+	
+	private final Cipher[] ciphers = new Cipher[2];
+	
+	private final byte[][] keys = new byte[2][];
+	
+	private final int[] modes = new int[2];
+	
+	private AES() {
+	}
+	
+	/**
+	 * @return Context of the current thread
+	 */
+	static AES get() {
+		return CONTEXT.get();
+	}
+	
+	/**
+	 * Encrypts a single block
+	 * @param key 16, 24, or 32 bytes long key
+	 * @param input Block to encrypt
+	 * @param inputOffset Offset of the block
+	 * @param output Receives the encrypted block
+	 * @param outputOffset Offset of the encrypted block
+	 * @throws GeneralSecurityException thrown by the JCE provider
+	 */
+	void encryptBlock(byte[] key, byte[] input, int inputOffset, byte[] output, int outputOffset) throws GeneralSecurityException {
+		cipher(key, Cipher.ENCRYPT_MODE, null).doFinal(input, inputOffset, BLOCK_LENGTH, output, outputOffset);
+	}
+	
+	/**
+	 * Encrypts or decrypts whole blocks
+	 * @param key 16, 24, or 32 bytes long key
+	 * @param data Data to process, its length should be a multiple of 16
+	 * @param mode <code>Cipher.ENCRYPT_MODE</code> or <code>Cipher.DECRYPT_MODE</code>
+	 * @param iv 16 bytes long IV for CBC, null for ECB
+	 * @return Processed data
+	 * @throws GeneralSecurityException thrown by the JCE provider
+	 */
+	byte[] process(byte[] key, byte[] data, int mode, byte[] iv) throws GeneralSecurityException {
+		if(data.length % BLOCK_LENGTH != 0) {
+			throw new IllegalArgumentException("data length should be a multiple of 16");
+		}
+		return cipher(key, mode, iv).doFinal(data);
+	}
+	
+	/**
+	 * Overwrites the keys kept by the cache of the current thread with zeroes, the next call initializes its cipher again
+	 */
+	void clear() {
+		for(int slot = 0; slot < keys.length; slot++) {
+			if(keys[slot] != null) {
+				Arrays.fill(keys[slot], (byte) 0);
+			}
+			modes[slot] = 0;
+		}
+	}
+	
+	private Cipher cipher(byte[] key, int mode, byte[] iv) throws GeneralSecurityException {
+		int slot = iv == null ? 0 : 1;
+		Cipher cipher = ciphers[slot];
+		if(cipher == null) {
+			cipher = Cipher.getInstance(TRANSFORMATIONS[slot]);
+			ciphers[slot] = cipher;
+		}
+		if(iv != null || modes[slot] != mode || !Arrays.equals(keys[slot], key)) {
+			modes[slot] = 0;
+			if(keys[slot] == null || keys[slot].length != key.length) {
+				if(keys[slot] != null) {
+					Arrays.fill(keys[slot], (byte) 0);
+				}
+				keys[slot] = new byte[key.length];
+			}
+			System.arraycopy(key, 0, keys[slot], 0, key.length);
+			SecretKeySpec spec = new SecretKeySpec(key, "AES");
+			if(iv == null) {
+				cipher.init(mode, spec);
+			} else {
+				cipher.init(mode, spec, new IvParameterSpec(iv));
+			}
+			modes[slot] = mode;
+		}
+		return cipher;
+	}
+}
@@ -0,0 +1,59 @@
+package org.phoegasus.jdukpt.core;
+
+/**
+ * Enumeration containing the AES key types supported by <code>JDukptAes</code>, for Base Derivation Keys, derivation keys and working keys.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public enum AESKeyType {
+	/**
+	 * AES with a 16 bytes long key
+	 */
+	AES128(16, 0x0002),
+	/**
+	 * AES with a 24 bytes long key
+	 */
+	AES192(24, 0x0003),
+	/**
+	 * AES with a 32 bytes long key
+	 */
+	AES256(32, 0x0004);
+	
+	private final int length;
+	
+	private final int algorithm;
+	
+	private AESKeyType(int length, int algorithm) {
+		this.length = length;
+		this.algorithm = algorithm;
+	}
+	
+	/**
+	 * @return Length of the key in bytes
+	 */
+	public int getLength() {
+		return length;
+	}
+	
+	/**
+	 * @return Algorithm indicator of the derivation data
+	 */
+	int getAlgorithm() {
+		return algorithm;
+	}
+	
+	/**
+	 * Finds the key type of a key
+	 * @param length Length of the key in bytes
+	 * @return Key type
+	 */
+	static AESKeyType of(int length) {
+		for(AESKeyType type : values()) {
+			if(type.length == length) {
+				return type;
+			}
+		}
+		throw new IllegalArgumentException("key should be 16, 24, or 32 bytes long");
+	}
+}
@@ -0,0 +1,66 @@
+package org.phoegasus.jdukpt.core;
+
+/**
+ * Enumeration containing the working key usages of AES DUKPT (ANSI X9.24-3).
+ * </br>Each usage gives a different working key for the same transaction counter.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public enum AESKeyUsage {
+	/**
+	 * Key encryption key
+	 */
+	KeyEncryption(0x0002),
+	/**
+	 * PIN block encryption
+	 */
+	PIN(0x1000),
+	/**
+	 * MAC generation
+	 */
+	MACGeneration(0x2000),
+	/**
+	 * MAC verification
+	 */
+	MACVerification(0x2001),
+	/**
+	 * MAC generation and verification
+	 */
+	MAC(0x2002),
+	/**
+	 * Data encryption
+	 */
+	DataEncryption(0x3000),
+	/**
+	 * Data decryption
+	 */
+	DataDecryption(0x3001),
+	/**
+	 * Data encryption and decryption
+	 */
+	Data(0x3002);
+	
+	/**
+	 * Usage indicator of the intermediate derivation keys
+	 */
+	static final int KEY_DERIVATION = 0x8000;
+	
+	/**
+	 * Usage indicator of the initial key
+	 */
+	static final int INITIAL_KEY = 0x8001;
+	
+	private final int indicator;
+	
+	private AESKeyUsage(int indicator) {
+		this.indicator = indicator;
+	}
+	
+	/**
+	 * @return Key usage indicator of the derivation data
+	 */
+	int getIndicator() {
+		return indicator;
+	}
+}
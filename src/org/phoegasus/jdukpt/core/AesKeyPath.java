@@ -0,0 +1,101 @@
+package org.phoegasus.jdukpt.core;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Intermediate derivation keys of the last counter walk made from the initial key of an AES DUKPT device.
+ * </br>The intermediate derivation key reached after walking the set counter bits above a given bit only depends on the initial key and on those bits, so a new counter can resume from the key recorded for the longest prefix of counter bits it shares with the previous counter, instead of starting from the initial key.
+ * </br>Callers synchronize on the path while they use it.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+final class AesKeyPath {
+
+	/**
+	 * Keys indexed by walk depth, depth 0 being the initial key and depth <i>n</i> the key reached after the <i>n</i>th set counter bit
+	 */
+	private final byte[][] keys = new byte[17][];
+
+	private int counter;
+
+	private boolean complete;
+
+	private boolean cleared;
+
+	AesKeyPath(byte[] initialKey) {
+		for (int depth = 0; depth < keys.length; depth++) {
+			keys[depth] = new byte[initialKey.length];
+		}
+		System.arraycopy(initialKey, 0, keys[0], 0, initialKey.length);
+	}
+
+	/**
+	 * @param initialKey Initial key of a device
+	 * @return true if the path starts at the initial key, compared in constant time
+	 */
+	boolean startsWith(byte[] initialKey) {
+		return !cleared && MessageDigest.isEqual(keys[0], initialKey);
+	}
+
+	/**
+	 * Finds the deepest recorded key shared with a counter
+	 * @param counter 32 bit counter to walk
+	 * @param key Receives the deepest shared key
+	 * @return Highest counter bit still to walk, -1 if the key is already the intermediate derivation key of the counter
+	 */
+	int resume(int counter, byte[] key) {
+		int bit;
+		int depth;
+		if (!complete) {
+			bit = 31;
+			depth = 0;
+		} else if (this.counter == counter) {
+			bit = -1;
+			depth = Integer.bitCount(counter);
+		} else {
+			bit = 31 - Integer.numberOfLeadingZeros(this.counter ^ counter);
+			depth = Integer.bitCount(counter & ~((2 << bit) - 1));
+		}
+		System.arraycopy(keys[depth], 0, key, 0, key.length);
+		complete = false;
+		return bit;
+	}
+
+	/**
+	 * Records the key reached at a depth of the walk
+	 * @param depth Number of set counter bits walked
+	 * @param key Key reached
+	 */
+	void record(int depth, byte[] key) {
+		System.arraycopy(key, 0, keys[depth], 0, key.length);
+	}
+
+	/**
+	 * Marks the walk of a counter as complete, making its keys reusable
+	 * @param counter Counter walked
+	 */
+	void complete(int counter) {
+		this.counter = counter;
+		this.complete = true;
+	}
+
+	/**
+	 * Overwrites every key with zeroes
+	 */
+	void clear() {
+		for (byte[] key : keys) {
+			Arrays.fill(key, (byte) 0);
+		}
+		complete = false;
+		cleared = true;
+	}
+
+	/**
+	 * @return true if the path was evicted and its keys overwritten
+	 */
+	boolean isCleared() {
+		return cleared;
+	}
+}
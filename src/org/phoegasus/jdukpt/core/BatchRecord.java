@@ -0,0 +1,85 @@
+package org.phoegasus.jdukpt.core;
+
+/**
+ * Record of a batch operation: a KSN, the data to process, and the buffer receiving the result.
+ * </br>The data length should be a multiple of 8. The output may be the input buffer itself, at the same offset.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public class BatchRecord {
+	
+	private final byte[] ksn;
+	
+	private final byte[] input;
+	
+	private final int inputOffset;
+	
+	private final int length;
+	
+	private final byte[] output;
+	
+	private final int outputOffset;
+	
+	/**
+	 * @param ksn 10 bytes long Key Serial Number
+	 * @param input Data to process
+	 * @param output Receives the result at offset 0
+	 */
+	public BatchRecord(byte[] ksn, byte[] input, byte[] output) {
+		this(ksn, input, 0, input.length, output, 0);
+	}
+	
+	/**
+	 * @param ksn 10 bytes long Key Serial Number
+	 * @param input Buffer containing the data to process
+	 * @param inputOffset Offset of the data in the input buffer
+	 * @param length Length of the data
+	 * @param output Buffer receiving the result
+	 * @param outputOffset Offset of the result in the output buffer
+	 */
+	public BatchRecord(byte[] ksn, byte[] input, int inputOffset, int length, byte[] output, int outputOffset) {
+		if (ksn == null || ksn.length != 10){
+			throw new IllegalArgumentException("ksn should be 10 bytes long");
+		}
+		if (length % 8 != 0){
+			throw new IllegalArgumentException("length should be a multiple of 8");
+		}
+		if (inputOffset < 0 || inputOffset + length > input.length){
+			throw new IllegalArgumentException("input is too short");
+		}
+		if (outputOffset < 0 || outputOffset + length > output.length){
+			throw new IllegalArgumentException("output is too short");
+		}
+		this.ksn = ksn;
+		this.input = input;
+		this.inputOffset = inputOffset;
+		this.length = length;
+		this.output = output;
+		this.outputOffset = outputOffset;
+	}
+
+	public byte[] getKsn() {
+		return ksn;
+	}
+
+	public byte[] getInput() {
+		return input;
+	}
+
+	public int getInputOffset() {
+		return inputOffset;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public byte[] getOutput() {
+		return output;
+	}
+
+	public int getOutputOffset() {
+		return outputOffset;
+	}
+}
@@ -0,0 +1,62 @@
+package org.phoegasus.jdukpt.core;
+
+/**
+ * Statistics of a batch operation.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public class BatchStatistics {
+	
+	long records;
+	
+	long devices;
+	
+	long sessionKeys;
+	
+	long blocks;
+	
+	/**
+	 * Adds the statistics of another batch to these statistics
+	 * @param other Statistics to add
+	 */
+	void add(BatchStatistics other) {
+		records += other.records;
+		devices += other.devices;
+		sessionKeys += other.sessionKeys;
+		blocks += other.blocks;
+	}
+	
+	/**
+	 * @return Number of records processed
+	 */
+	public long getRecords() {
+		return records;
+	}
+	
+	/**
+	 * @return Number of distinct devices (initial KSNs), each of which needed one IPEK
+	 */
+	public long getDevices() {
+		return devices;
+	}
+	
+	/**
+	 * @return Number of distinct KSNs, each of which needed one session key derivation
+	 */
+	public long getSessionKeys() {
+		return sessionKeys;
+	}
+	
+	/**
+	 * @return Number of 8 byte blocks processed
+	 */
+	public long getBlocks() {
+		return blocks;
+	}
+	
+	@Override
+	public String toString() {
+		return "BatchStatistics [records=" + records + ", devices=" + devices + ", sessionKeys=" + sessionKeys + ", blocks=" + blocks + "]";
+	}
+}
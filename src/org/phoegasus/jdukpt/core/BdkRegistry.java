@@ -0,0 +1,222 @@
+package org.phoegasus.jdukpt.core;
+
+import org.phoegasus.jdukpt.utils.BlockUtils;
+
+/**
+ * Registry of Base Derivation Keys, keyed by the Key Set Identifier held in the leftmost bytes of the KSN.
+ * </br>Configured with <code>JDukpt.builder().bdkRegistry(...)</code>, it lets the operations taking only a KSN find the BDK of the KSN themselves.
+ * </br>Keys are held in an open addressing table of <code>long</code> values, looked up without allocating or boxing. Changes build a new table which is then published as a whole, so that lookups never take a lock and never see a partially applied change, while changes are serialized.
+ * </br>Tables replaced by a change are not overwritten, since lookups may still be reading them, their keys are released to the garbage collector.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public class BdkRegistry {
+	
+	private final int ksiLength;
+	
+	private volatile Table table = new Table(0);
+	
+	/**
+	 * Registry of 5 bytes long Key Set Identifiers, as in the KSN layout of ANSI X9.24-1
+	 */
+	public BdkRegistry() {
+		this(5);
+	}
+	
+	/**
+	 * @param ksiLength Length of the Key Set Identifier in bytes, from 1 to 8, taken from the leftmost bytes of the KSN
+	 */
+	public BdkRegistry(int ksiLength) {
+		if (ksiLength < 1 || ksiLength > 8){
+			throw new IllegalArgumentException("ksiLength should be between 1 and 8");
+		}
+		this.ksiLength = ksiLength;
+	}
+	
+	/**
+	 * Registers the BDK of a key set, replacing its previous BDK
+	 * @param ksi Key Set Identifier, <code>ksiLength</code> bytes long, or a KSN whose leftmost bytes are the Key Set Identifier
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 */
+	public synchronized void put(byte[] ksi, byte[] bdk) {
+		if (bdk == null || bdk.length != 16){
+			throw new IllegalArgumentException("bdk should be 16 bytes long");
+		}
+		long key = ksi(ksi);
+		Table current = table;
+		Table next = new Table(current.size + 1);
+		next.copy(current, key);
+		next.insert(key, BlockUtils.getLong(bdk, 0), BlockUtils.getLong(bdk, 8));
+		table = next;
+	}
+	
+	/**
+	 * Unregisters the BDK of a key set
+	 * @param ksi Key Set Identifier, <code>ksiLength</code> bytes long, or a KSN whose leftmost bytes are the Key Set Identifier
+	 * @return true if a BDK was registered
+	 */
+	public synchronized boolean remove(byte[] ksi) {
+		long key = ksi(ksi);
+		Table current = table;
+		if (current.find(key) < 0) {
+			return false;
+		}
+		Table next = new Table(current.size - 1);
+		next.copy(current, key);
+		table = next;
+		return true;
+	}
+	
+	/**
+	 * Replaces every registered BDK at once, for example to apply a BDK rotation
+	 * @param ksis Key Set Identifiers, <code>ksiLength</code> bytes long, or KSNs whose leftmost bytes are the Key Set Identifiers
+	 * @param bdks Base Derivation Keys, 16 bytes long, in the order of the Key Set Identifiers
+	 */
+	public synchronized void replaceAll(byte[][] ksis, byte[][] bdks) {
+		if (ksis == null || bdks == null || ksis.length != bdks.length){
+			throw new IllegalArgumentException("ksis and bdks should have the same length");
+		}
+		Table next = new Table(ksis.length);
+		for (int i = 0; i < ksis.length; i++) {
+			if (bdks[i] == null || bdks[i].length != 16){
+				throw new IllegalArgumentException("bdk should be 16 bytes long");
+			}
+			next.insert(ksi(ksis[i]), BlockUtils.getLong(bdks[i], 0), BlockUtils.getLong(bdks[i], 8));
+		}
+		table = next;
+	}
+	
+	/**
+	 * Unregisters every BDK
+	 */
+	public synchronized void clear() {
+		table = new Table(0);
+	}
+	
+	/**
+	 * @return Number of registered BDKs
+	 */
+	public int size() {
+		return table.size;
+	}
+	
+	/**
+	 * @param ksn Key Serial Number, 10 bytes long
+	 * @return true if a BDK is registered for the key set of the KSN
+	 */
+	public boolean contains(byte[] ksn) {
+		if (ksn == null || ksn.length != 10){
+			throw new IllegalArgumentException("ksn should be 10 bytes long");
+		}
+		return table.find(BlockUtils.getLong(ksn, 0) >>> 64 - ksiLength * 8) >= 0;
+	}
+	
+	/**
+	 * @return Length of the Key Set Identifier in bytes
+	 */
+	public int getKsiLength() {
+		return ksiLength;
+	}
+	
+	/**
+	 * Looks up the BDK of a KSN
+	 * @param ksnHi Leftmost 8 bytes of the Key Serial Number
+	 * @param bdk Receives the Base Derivation Key
+	 * @return true if a BDK is registered for the key set of the KSN
+	 */
+	boolean get(long ksnHi, long[] bdk) {
+		Table current = table;
+		int slot = current.find(ksnHi >>> 64 - ksiLength * 8);
+		if (slot < 0) {
+			return false;
+		}
+		bdk[0] = current.entries[slot * 3 + 1];
+		bdk[1] = current.entries[slot * 3 + 2];
+		return true;
+	}
+	
+	private long ksi(byte[] ksi) {
+		if (ksi == null || ksi.length != ksiLength && ksi.length != 10){
+			throw new IllegalArgumentException("ksi should be " + ksiLength + " bytes long, or a 10 bytes long KSN");
+		}
+		return BlockUtils.getLong(ksi, 0, ksiLength);
+	}
+	
+	//----------------------------------------------------------------------//
+	
+	/**
+	 * Open addressing table with linear probing, at most half full, never modified once published
+	 */
+	private static final class Table {
+		
+		/**
+		 * Key Set Identifier, BDK leftmost 8 bytes, BDK rightmost 8 bytes of each slot
+		 */
+		private final long[] entries;
+		
+		private final boolean[] used;
+		
+		private final int mask;
+		
+		private int size;
+		
+		Table(int expectedSize) {
+			int capacity = Integer.highestOneBit(Math.max(1, expectedSize) * 4 - 1);
+			this.entries = new long[capacity * 3];
+			this.used = new boolean[capacity];
+			this.mask = capacity - 1;
+		}
+		
+		/**
+		 * @return Slot of the key, or -1 if it is not in the table
+		 */
+		int find(long key) {
+			for (int slot = hash(key) & mask; used[slot]; slot = slot + 1 & mask) {
+				if (entries[slot * 3] == key) {
+					return slot;
+				}
+			}
+			return -1;
+		}
+		
+		void insert(long key, long bdkHi, long bdkLo) {
+			int slot = hash(key) & mask;
+			while (used[slot] && entries[slot * 3] != key) {
+				slot = slot + 1 & mask;
+			}
+			if (!used[slot]) {
+				used[slot] = true;
+				size++;
+			}
+			entries[slot * 3] = key;
+			entries[slot * 3 + 1] = bdkHi;
+			entries[slot * 3 + 2] = bdkLo;
+		}
+		
+		/**
+		 * Inserts the entries of another table
+		 * @param source Table to copy
+		 * @param skipped Key not copied
+		 */
+		void copy(Table source, long skipped) {
+			for (int slot = 0; slot < source.used.length; slot++) {
+				if (source.used[slot] && source.entries[slot * 3] != skipped) {
+					insert(source.entries[slot * 3], source.entries[slot * 3 + 1], source.entries[slot * 3 + 2]);
+				}
+			}
+		}
+		
+	}
+	
+	/**
+	 * Spreads a Key Set Identifier over the bits of an int, for the open addressing tables of Key Set Identifiers
+	 * @param key Key Set Identifier
+	 * @return Hash
+	 */
+	static int hash(long key) {
+		key = (key ^ key >>> 33) * 0xFF51AFD7ED558CCDL;
+		key = (key ^ key >>> 33) * 0xC4CEB9FE1A85EC53L;
+		return (int) (key ^ key >>> 32);
+	}
+}
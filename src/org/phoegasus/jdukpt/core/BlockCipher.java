@@ -0,0 +1,53 @@
+package org.phoegasus.jdukpt.core;
+
+/**
+ * Adapter interface for the client's DES and TripleDES implementations working on single 8 byte blocks held in <code>long</code> values.</br>
+ * Used by the <code>DUKPTEngine.Primitive</code> engine, which calls it without any conversion of the keys and data.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ * @implNote 
+ * Blocks are big-endian, the leftmost byte of the block being the most significant byte of the <code>long</code>.</br>
+ * <code>BlockUtils.getLong(bytes, offset)</code> and <code>BlockUtils.putLong(value, bytes, offset)</code> convert between blocks and byte arrays.</br>
+ * Double length keys are passed as two halves, <i>keyHi</i> being the leftmost 8 bytes of the key.
+ */
+public interface BlockCipher {
+	
+	/**
+	 * Client implementation of DES encryption of a single block
+	 * @param key Encryption Key
+	 * @param data Block to encrypt
+	 * @return Encrypted block
+	 * @throws Exception
+	 */
+	public long encryptDES(long key, long data) throws Exception;
+	
+	/**
+	 * Client implementation of DES decryption of a single block
+	 * @param key Decryption Key
+	 * @param data Block to decrypt
+	 * @return Decrypted block
+	 * @throws Exception
+	 */
+	public long decryptDES(long key, long data) throws Exception;
+	
+	/**
+	 * Client implementation of TripleDES encryption of a single block using a double length key
+	 * @param keyHi Leftmost 8 bytes of the Encryption Key
+	 * @param keyLo Rightmost 8 bytes of the Encryption Key
+	 * @param data Block to encrypt
+	 * @return Encrypted block
+	 * @throws Exception
+	 */
+	public long encryptTDES(long keyHi, long keyLo, long data) throws Exception;
+
+	/**
+	 * Client implementation of TripleDES decryption of a single block using a double length key
+	 * @param keyHi Leftmost 8 bytes of the Decryption Key
+	 * @param keyLo Rightmost 8 bytes of the Decryption Key
+	 * @param data Block to decrypt
+	 * @return Decrypted block
+	 * @throws Exception
+	 */
+	public long decryptTDES(long keyHi, long keyLo, long data) throws Exception;
+}
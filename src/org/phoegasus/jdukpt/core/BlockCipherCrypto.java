@@ -0,0 +1,65 @@
+package org.phoegasus.jdukpt.core;
+
+import static org.phoegasus.jdukpt.utils.BlockUtils.toBigInteger;
+import static org.phoegasus.jdukpt.utils.BlockUtils.toBlocks;
+
+import java.math.BigInteger;
+
+/**
+ * Adapts a client <code>BlockCipher</code> implementation to the <code>Crypto</code> interface.
+ * </br>Data longer than one block is processed in CBC mode with a zero IV, like <code>DefaultCrypto</code> does.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+class BlockCipherCrypto implements Crypto {
+	
+	private final BlockCipher cipher;
+	
+	BlockCipherCrypto(BlockCipher cipher) {
+		this.cipher = cipher;
+	}
+
+	@Override
+	public BigInteger encryptDES(BigInteger key, BigInteger data) throws Exception {
+		return encryptTDES(key, data);
+	}
+
+	@Override
+	public BigInteger decryptDES(BigInteger key, BigInteger data) throws Exception {
+		return decryptTDES(key, data);
+	}
+
+	@Override
+	public BigInteger encryptTDES(BigInteger key, BigInteger data) throws Exception {
+		long[] keyBlocks = toKeyBlocks(key);
+		long[] blocks = toBlocks(data);
+		long chain = 0;
+		for(int i = 0; i < blocks.length; i++) {
+			chain = keyBlocks.length == 1 ? cipher.encryptDES(keyBlocks[0], blocks[i] ^ chain) : cipher.encryptTDES(keyBlocks[0], keyBlocks[1], blocks[i] ^ chain);
+			blocks[i] = chain;
+		}
+		return toBigInteger(blocks);
+	}
+
+	@Override
+	public BigInteger decryptTDES(BigInteger key, BigInteger data) throws Exception {
+		long[] keyBlocks = toKeyBlocks(key);
+		long[] blocks = toBlocks(data);
+		long chain = 0;
+		for(int i = 0; i < blocks.length; i++) {
+			long block = blocks[i];
+			blocks[i] = (keyBlocks.length == 1 ? cipher.decryptDES(keyBlocks[0], block) : cipher.decryptTDES(keyBlocks[0], keyBlocks[1], block)) ^ chain;
+			chain = block;
+		}
+		return toBigInteger(blocks);
+	}
+	
+	private static long[] toKeyBlocks(BigInteger key) {
+		long[] keyBlocks = toBlocks(key);
+		if(keyBlocks.length > 2) {
+			throw new IllegalArgumentException("Key should be 8 or 16 bytes long");
+		}
+		return keyBlocks;
+	}
+}
@@ -0,0 +1,208 @@
+package org.phoegasus.jdukpt.core;
+
+import static org.phoegasus.jdukpt.utils.BlockUtils.getLong;
+import static org.phoegasus.jdukpt.utils.BlockUtils.putLong;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Per thread cache of the JCE <code>Cipher</code> instances used by <code>DES</code>.
+ * </br>One instance is kept per algorithm and chaining mode. A cipher is only initialized again when the key or the operation mode differs from the previous call, single blocks use ECB which is equivalent to CBC with a zero IV.
+ * </br>Single block TripleDES decryption has its own instance, so that an operation decrypting under a session key and encrypting under a long lived key, such as PIN translation, keeps the latter initialized.
+ * </br>Each slot keeps the expanded key its cipher was initialized with, to compare it with the key of the next call, for as long as the cipher holds the key schedule. The buffers receiving the keys and blocks of a call are overwritten with zeroes once the call returns.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+final class CipherContext {
+	
+	private static final String[] TRANSFORMATIONS = {"DES/ECB/NoPadding", "DESede/ECB/NoPadding", "DES/CBC/NoPadding", "DESede/CBC/NoPadding", "DESede/ECB/NoPadding"};
+	
+	/**
+	 * Slot of the single block TripleDES decryption cipher
+	 */
+	private static final int TDES_DECRYPT_SLOT = 4;
+	
+	private static final IvParameterSpec IV = new IvParameterSpec(new byte[8]);
+	
+	private static final ThreadLocal<CipherContext> CONTEXT = new ThreadLocal<CipherContext>() {
+		@Override
+		protected CipherContext initialValue() {
+			return new CipherContext();
+		}
+	};
+	
+	private final Cipher[] ciphers = new Cipher[5];
+	
+	private final byte[][] keys = {new byte[8], new byte[24], new byte[8], new byte[24], new byte[24]};
+	
+	private final Object[] preparedKeys = new Object[5];
+	
+	private final int[] modes = new int[5];
+	
+	private final byte[] keyBuffer = new byte[16];
+	
+	private final byte[] input = new byte[8];
+	
+	private final byte[] output = new byte[8];
+	
+	private CipherContext() {
+	}
+	
+	/**
+	 * @return Context of the current thread
+	 */
+	static CipherContext get() {
+		return CONTEXT.get();
+	}
+	
+	/**
+	 * Returns a cipher initialized with the key and mode
+	 * @param key 8, 16, or 24 bytes long key
+	 * @param mode <code>Cipher.ENCRYPT_MODE</code> or <code>Cipher.DECRYPT_MODE</code>
+	 * @param chained CBC with a zero IV if true, ECB otherwise
+	 * @return Initialized cipher
+	 * @throws GeneralSecurityException thrown by the JCE provider
+	 */
+	Cipher cipher(byte[] key, int mode, boolean chained) throws GeneralSecurityException {
+		int slot = slot(key.length == 8, chained);
+		byte[] current = keys[slot];
+		if(modes[slot] == mode && matches(current, key)) {
+			return ciphers[slot];
+		}
+		DESKey.expand(key, current);
+		preparedKeys[slot] = null;
+		return init(slot, new SecretKeySpec(current, key.length == 8 ? "DES" : "DESede"), mode);
+	}
+	
+	/**
+	 * Returns a cipher initialized with the prepared key and mode
+	 * @param key Prepared key
+	 * @param mode <code>Cipher.ENCRYPT_MODE</code> or <code>Cipher.DECRYPT_MODE</code>
+	 * @param chained CBC with a zero IV if true, ECB otherwise
+	 * @return Initialized cipher
+	 * @throws GeneralSecurityException thrown by the JCE provider
+	 */
+	Cipher cipher(DESKey key, int mode, boolean chained) throws GeneralSecurityException {
+		int slot = slot(key.isSingleLength(), chained);
+		if(modes[slot] == mode && (preparedKeys[slot] == key || matches(keys[slot], key.getMaterial()))) {
+			preparedKeys[slot] = key;
+			return ciphers[slot];
+		}
+		System.arraycopy(key.getMaterial(), 0, keys[slot], 0, keys[slot].length);
+		preparedKeys[slot] = key;
+		return init(slot, key.getSecretKey(), mode);
+	}
+	
+	/**
+	 * Processes a single block with a single length key
+	 * @param key Key
+	 * @param block Block to process
+	 * @param mode <code>Cipher.ENCRYPT_MODE</code> or <code>Cipher.DECRYPT_MODE</code>
+	 * @return Processed block
+	 * @throws GeneralSecurityException thrown by the JCE provider
+	 */
+	long process(long key, long block, int mode) throws GeneralSecurityException {
+		byte[] keyBytes = keys[0];
+		if(modes[0] != mode || getLong(keyBytes, 0) != key) {
+			putLong(key, keyBytes, 0);
+			preparedKeys[0] = null;
+			init(0, new SecretKeySpec(keyBytes, "DES"), mode);
+		}
+		return process(ciphers[0], block);
+	}
+	
+	/**
+	 * Processes a single block with a double length key
+	 * @param keyHi Leftmost 8 bytes of the key
+	 * @param keyLo Rightmost 8 bytes of the key
+	 * @param block Block to process
+	 * @param mode <code>Cipher.ENCRYPT_MODE</code> or <code>Cipher.DECRYPT_MODE</code>
+	 * @return Processed block
+	 * @throws GeneralSecurityException thrown by the JCE provider
+	 */
+	long process(long keyHi, long keyLo, long block, int mode) throws GeneralSecurityException {
+		putLong(keyHi, keyBuffer, 0);
+		putLong(keyLo, keyBuffer, 8);
+		try {
+			if(mode != Cipher.DECRYPT_MODE) {
+				return process(cipher(keyBuffer, mode, false), block);
+			}
+			byte[] current = keys[TDES_DECRYPT_SLOT];
+			if(modes[TDES_DECRYPT_SLOT] != mode || !matches(current, keyBuffer)) {
+				DESKey.expand(keyBuffer, current);
+				init(TDES_DECRYPT_SLOT, new SecretKeySpec(current, "DESede"), mode);
+			}
+			return process(ciphers[TDES_DECRYPT_SLOT], block);
+		} finally {
+			putLong(0, keyBuffer, 0);
+			putLong(0, keyBuffer, 8);
+		}
+	}
+	
+	/**
+	 * Forgets a prepared key, overwriting the copies kept by the slots initialized with it with zeroes
+	 * @param key Prepared key
+	 */
+	void evict(DESKey key) {
+		for(int slot = 0; slot < preparedKeys.length; slot++) {
+			if(preparedKeys[slot] == key) {
+				Arrays.fill(keys[slot], (byte) 0);
+				preparedKeys[slot] = null;
+				modes[slot] = 0;
+			}
+		}
+	}
+	
+	private long process(Cipher cipher, long block) throws GeneralSecurityException {
+		putLong(block, input, 0);
+		try {
+			cipher.doFinal(input, 0, 8, output, 0);
+			return getLong(output, 0);
+		} finally {
+			putLong(0, input, 0);
+			putLong(0, output, 0);
+		}
+	}
+	
+	private Cipher init(int slot, SecretKey key, int mode) throws GeneralSecurityException {
+		Cipher cipher = ciphers[slot];
+		if(cipher == null) {
+			cipher = Cipher.getInstance(TRANSFORMATIONS[slot]);
+			ciphers[slot] = cipher;
+		}
+		modes[slot] = 0;
+		if(slot == 2 || slot == 3) {
+			cipher.init(mode, key, IV);
+		} else {
+			cipher.init(mode, key);
+		}
+		modes[slot] = mode;
+		return cipher;
+	}
+	
+	private static int slot(boolean singleLength, boolean chained) {
+		return (singleLength ? 0 : 1) + (chained ? 2 : 0);
+	}
+	
+	/**
+	 * Compares an expanded key with a raw key
+	 * @param expanded 8 or 24 bytes long expanded key
+	 * @param key 8, 16, or 24 bytes long raw key
+	 * @return true if expanding the raw key gives the expanded key
+	 */
+	private static boolean matches(byte[] expanded, byte[] key) {
+		for(int i = 0; i < expanded.length; i++) {
+			if(expanded[i] != key[i % key.length]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
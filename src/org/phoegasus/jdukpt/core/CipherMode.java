@@ -0,0 +1,18 @@
+package org.phoegasus.jdukpt.core;
+
+/**
+ * Enumeration containing the block cipher modes available to <code>DataCipher</code>.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public enum CipherMode {
+	/**
+	 * Cipher Block Chaining, each block is chained with the previous ciphertext block, the first one with the IV
+	 */
+	CBC,
+	/**
+	 * Electronic Codebook, each block is processed independently
+	 */
+	ECB
+}
@@ -0,0 +1,47 @@
+package org.phoegasus.jdukpt.core;
+
+import static org.phoegasus.jdukpt.utils.BlockUtils.toBigInteger;
+
+/**
+ * Adapts a client <code>Crypto</code> implementation to the <code>BlockCipher</code> interface.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+class CryptoBlockCipher implements BlockCipher {
+	
+	private final Crypto crypto;
+	
+	CryptoBlockCipher(Crypto crypto) {
+		this.crypto = crypto;
+	}
+
+	@Override
+	public long encryptDES(long key, long data) throws Exception {
+		return crypto.encryptDES(toBigInteger(key), toBigInteger(data)).longValue();
+	}
+
+	@Override
+	public long decryptDES(long key, long data) throws Exception {
+		return crypto.decryptDES(toBigInteger(key), toBigInteger(data)).longValue();
+	}
+
+	@Override
+	public long encryptTDES(long keyHi, long keyLo, long data) throws Exception {
+		return crypto.encryptTDES(toBigInteger(keyHi, keyLo), toBigInteger(data)).longValue();
+	}
+
+	@Override
+	public long decryptTDES(long keyHi, long keyLo, long data) throws Exception {
+		return crypto.decryptTDES(toBigInteger(keyHi, keyLo), toBigInteger(data)).longValue();
+	}
+	
+	/**
+	 * Adapts the <code>Crypto</code> implementation, the default implementation is replaced by <code>DefaultBlockCipher</code>
+	 * @param crypto Crypto implementation
+	 * @return Block cipher
+	 */
+	static BlockCipher of(Crypto crypto) {
+		return crypto.getClass() == DefaultCrypto.class ? new DefaultBlockCipher() : new CryptoBlockCipher(crypto);
+	}
+}
@@ -0,0 +1,62 @@
+package org.phoegasus.jdukpt.core;
+
+import java.util.Arrays;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * DES or TripleDES key prepared once and reused for several operations.
+ * </br>Double length keys are expanded to the 24 bytes long K1K2K1 form expected by the JCE. The JCE key is created when a cipher is initialized, so that the material of this object is the only copy it keeps.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+final class DESKey {
+	
+	private final byte[] material;
+	
+	DESKey(byte[] key) {
+		if(key.length != 8 && key.length != 16 && key.length != 24) {
+			throw new IllegalArgumentException("Key should be 8, 16, or 24 bytes long");
+		}
+		this.material = new byte[key.length == 8 ? 8 : 24];
+		expand(key, material);
+	}
+	
+	boolean isSingleLength() {
+		return material.length == 8;
+	}
+	
+	byte[] getMaterial() {
+		return material;
+	}
+	
+	/**
+	 * @return New JCE key holding a copy of the material
+	 */
+	SecretKey getSecretKey() {
+		return new SecretKeySpec(material, isSingleLength() ? "DES" : "DESede");
+	}
+	
+	/**
+	 * Overwrites the key material held by this object, and the copy cached by the current thread, with zeroes
+	 * </br>The JCE key schedule of a cipher initialized with this key is only replaced when the cipher is initialized with another key, and other threads keep their cached copy until then.
+	 */
+	void clear() {
+		Arrays.fill(material, (byte) 0);
+		CipherContext.get().evict(this);
+	}
+	
+	/**
+	 * Expands a key to the form expected by the JCE
+	 * @param key 8, 16, or 24 bytes long key
+	 * @param expanded Receives the key, 8 bytes long for single length keys and 24 bytes long otherwise
+	 */
+	static void expand(byte[] key, byte[] expanded) {
+		System.arraycopy(key, 0, expanded, 0, key.length);
+		if(key.length == 16) {
+			System.arraycopy(key, 0, expanded, 16, 8);
+		}
+	}
+}
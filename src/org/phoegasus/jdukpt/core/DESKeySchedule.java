@@ -0,0 +1,87 @@
+package org.phoegasus.jdukpt.core;
+
+import java.util.Arrays;
+
+/**
+ * Precomputed key schedule of a single length DES key, used with the table driven DES implementation.
+ * </br>An instance can be reused for several keys through <code>setKey</code>, which does not allocate.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public final class DESKeySchedule {
+	
+	private final int[] subkeys = new int[TableDES.SCHEDULE_LENGTH];
+	
+	private long key;
+	
+	private boolean set;
+	
+	public DESKeySchedule() {
+	}
+	
+	public DESKeySchedule(long key) {
+		setKey(key);
+	}
+	
+	/**
+	 * Computes the schedule of a key, unless it is already the key of this schedule
+	 * @param key Single length DES key
+	 */
+	public void setKey(long key) {
+		if(!set || this.key != key) {
+			TableDES.schedule(key, subkeys);
+			this.key = key;
+			this.set = true;
+		}
+	}
+	
+	/**
+	 * DES encryption of a single block
+	 * @param data Block to encrypt
+	 * @return Encrypted block
+	 */
+	public long encrypt(long data) {
+		return TableDES.encrypt(subkeys, data);
+	}
+	
+	/**
+	 * DES decryption of a single block
+	 * @param data Block to decrypt
+	 * @return Decrypted block
+	 */
+	public long decrypt(long data) {
+		return TableDES.decrypt(subkeys, data);
+	}
+	
+	/**
+	 * TripleDES encryption of a single block using a double length key
+	 * @param k1 Schedule of the leftmost 8 bytes of the key
+	 * @param k2 Schedule of the rightmost 8 bytes of the key
+	 * @param data Block to encrypt
+	 * @return Encrypted block
+	 */
+	public static long encrypt(DESKeySchedule k1, DESKeySchedule k2, long data) {
+		return TableDES.encrypt(k1.subkeys, k2.subkeys, k1.subkeys, data);
+	}
+	
+	/**
+	 * TripleDES decryption of a single block using a double length key
+	 * @param k1 Schedule of the leftmost 8 bytes of the key
+	 * @param k2 Schedule of the rightmost 8 bytes of the key
+	 * @param data Block to decrypt
+	 * @return Decrypted block
+	 */
+	public static long decrypt(DESKeySchedule k1, DESKeySchedule k2, long data) {
+		return TableDES.decrypt(k1.subkeys, k2.subkeys, k1.subkeys, data);
+	}
+	
+	/**
+	 * Overwrites the key and its schedule with zeroes
+	 */
+	public void clear() {
+		Arrays.fill(subkeys, 0);
+		key = 0;
+		set = false;
+	}
+}
@@ -0,0 +1,18 @@
+package org.phoegasus.jdukpt.core;
+
+/**
+ * Enumeration containing the DUKPT key derivation engines available to <code>JDukpt</code>.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public enum DUKPTEngine {
+	/**
+	 * Original engine, performs every operation on <code>BigInteger</code> values
+	 */
+	BigInteger,
+	/**
+	 * Engine keeping keys and KSNs in primitive <code>long</code> values, does not allocate during key derivation
+	 */
+	Primitive
+}
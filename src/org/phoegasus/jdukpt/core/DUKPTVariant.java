@@ -6,7 +6,7 @@ package org.phoegasus.jdukpt.core;
  * @since 1.0.0
  * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
  */
-enum DUKPTVariant {
+public enum DUKPTVariant {
 	/**
 	 * PIN block encryption
 	 */
@@ -14,5 +14,13 @@ enum DUKPTVariant {
 	/**
 	 * Data encryption
 	 */
-	Data
+	Data,
+	/**
+	 * MAC of the request messages, sent by the device
+	 */
+	MACRequest,
+	/**
+	 * MAC of the response messages, sent by the host
+	 */
+	MACResponse
 }
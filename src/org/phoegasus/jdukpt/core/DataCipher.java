@@ -0,0 +1,263 @@
+package org.phoegasus.jdukpt.core;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import org.phoegasus.jdukpt.utils.BlockUtils;
+
+/**
+ * Encrypts or decrypts a payload of any length with a Data variant session key, in the manner of <code>javax.crypto.Cipher</code>.
+ * </br>The session key is derived once when the object is created by <code>JDukpt</code>. The payload is provided in chunks with <code>update</code>, the last chunk with <code>doFinal</code>, after which the object can process another payload with the same key and IV.
+ * </br>On decryption with a removable padding, the last decrypted block is held back until <code>doFinal</code>. Instances are not thread-safe, <code>destroy</code> overwrites the session key with zeroes.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public class DataCipher {
+	
+	private static final int CHUNK_SIZE = 4096;
+	
+	private final BlockCipher cipher;
+	
+	private final boolean encrypt;
+	
+	private final CipherMode mode;
+	
+	private final Padding padding;
+	
+	private long keyHi;
+	
+	private long keyLo;
+	
+	private final long iv;
+	
+	private long chain;
+	
+	private final byte[] partial = new byte[8];
+	
+	private int partialLength;
+	
+	private boolean pending;
+	
+	private long pendingBlock;
+	
+	private boolean destroyed;
+	
+	DataCipher(BlockCipher cipher, long[] key, boolean encrypt, CipherMode mode, Padding padding, long iv) {
+		this.cipher = cipher;
+		this.keyHi = key[0];
+		this.keyLo = key[1];
+		this.encrypt = encrypt;
+		this.mode = mode;
+		this.padding = padding;
+		this.iv = iv;
+		this.chain = iv;
+	}
+	
+	/**
+	 * Processes a chunk of the payload, complete blocks are written to the output buffer and the remaining bytes are kept for the next chunk
+	 * @param in Chunk of the payload, read up to its limit
+	 * @param out Receives the processed blocks
+	 * @return Number of bytes written
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	public int update(ByteBuffer in, ByteBuffer out) throws Exception {
+		if (destroyed){
+			throw new IllegalStateException("DataCipher is destroyed");
+		}
+		int written = 0;
+		while (in.hasRemaining()) {
+			long block;
+			if (partialLength == 0 && in.remaining() >= 8) {
+				block = in.getLong();
+				if (in.order() != ByteOrder.BIG_ENDIAN) {
+					block = Long.reverseBytes(block);
+				}
+			} else {
+				int length = Math.min(8 - partialLength, in.remaining());
+				in.get(partial, partialLength, length);
+				partialLength += length;
+				if (partialLength < 8) {
+					break;
+				}
+				block = BlockUtils.getLong(partial, 0);
+				partialLength = 0;
+			}
+			written += process(block, out);
+		}
+		return written;
+	}
+	
+	/**
+	 * Processes the last chunk of the payload and completes the payload, adding or removing the padding
+	 * @param in Last chunk of the payload, read up to its limit
+	 * @param out Receives the processed blocks
+	 * @return Number of bytes written
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	public int doFinal(ByteBuffer in, ByteBuffer out) throws Exception {
+		try {
+			int written = update(in, out);
+			if (encrypt) {
+				if (padding == Padding.None || padding == Padding.Zero && partialLength == 0) {
+					if (partialLength != 0){
+						throw new IllegalArgumentException("data length should be a multiple of 8");
+					}
+					return written;
+				}
+				byte fill = padding == Padding.PKCS5 ? (byte) (8 - partialLength) : 0;
+				Arrays.fill(partial, partialLength, 8, fill);
+				if (padding == Padding.ISO9797Method2) {
+					partial[partialLength] = (byte) 0x80;
+				}
+				return written + process(BlockUtils.getLong(partial, 0), out);
+			}
+			if (partialLength != 0){
+				throw new IllegalArgumentException("data length should be a multiple of 8");
+			}
+			if (removesPadding()) {
+				if (!pending){
+					throw new IllegalArgumentException("data is missing its padding");
+				}
+				BlockUtils.putLong(pendingBlock, partial, 0);
+				int length = unpaddedLength();
+				out.put(partial, 0, length);
+				written += length;
+			}
+			return written;
+		} finally {
+			reset();
+		}
+	}
+	
+	/**
+	 * Processes a whole payload
+	 * @param data Payload
+	 * @return Processed payload
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	public byte[] doFinal(byte[] data) throws Exception {
+		ByteBuffer out = ByteBuffer.allocate(getOutputSize(data.length));
+		doFinal(ByteBuffer.wrap(data), out);
+		return out.position() == out.capacity() ? out.array() : Arrays.copyOf(out.array(), out.position());
+	}
+	
+	/**
+	 * Processes a whole payload read from a stream in chunks, the streams are not closed
+	 * @param in Stream providing the payload
+	 * @param out Stream receiving the processed payload
+	 * @return Number of bytes written
+	 * @throws Exception thrown by the streams or the BlockCipher implementation
+	 */
+	public long doFinal(InputStream in, OutputStream out) throws Exception {
+		byte[] input = new byte[CHUNK_SIZE];
+		byte[] output = new byte[CHUNK_SIZE + 16];
+		ByteBuffer outBuffer = ByteBuffer.wrap(output);
+		long written = 0;
+		try {
+			for (int length = in.read(input); length >= 0; length = in.read(input)) {
+				outBuffer.clear();
+				update(ByteBuffer.wrap(input, 0, length), outBuffer);
+				out.write(output, 0, outBuffer.position());
+				written += outBuffer.position();
+			}
+			outBuffer.clear();
+			doFinal(ByteBuffer.wrap(input, 0, 0), outBuffer);
+			out.write(output, 0, outBuffer.position());
+			return written + outBuffer.position();
+		} finally {
+			reset();
+			Arrays.fill(input, (byte) 0);
+			Arrays.fill(output, (byte) 0);
+		}
+	}
+	
+	/**
+	 * @param inputLength Length of the next chunk
+	 * @return Maximum number of bytes written by <code>doFinal</code> for that chunk
+	 */
+	public int getOutputSize(int inputLength) {
+		int length = partialLength + (pending ? 8 : 0) + inputLength;
+		if (encrypt && (padding == Padding.PKCS5 || padding == Padding.ISO9797Method2)) {
+			return (length / 8 + 1) * 8;
+		}
+		return (length + 7) / 8 * 8;
+	}
+	
+	/**
+	 * Overwrites the session key and the buffered data with zeroes, the object can no longer be used
+	 */
+	public void destroy() {
+		keyHi = 0;
+		keyLo = 0;
+		reset();
+		destroyed = true;
+	}
+	
+	private int process(long block, ByteBuffer out) throws Exception {
+		long result;
+		if (encrypt) {
+			result = cipher.encryptTDES(keyHi, keyLo, mode == CipherMode.CBC ? block ^ chain : block);
+			chain = result;
+		} else {
+			result = cipher.decryptTDES(keyHi, keyLo, block);
+			if (mode == CipherMode.CBC) {
+				result ^= chain;
+				chain = block;
+			}
+		}
+		if (!encrypt && removesPadding()) {
+			boolean held = pending;
+			long previous = pendingBlock;
+			pendingBlock = result;
+			pending = true;
+			if (!held) {
+				return 0;
+			}
+			result = previous;
+		}
+		out.putLong(out.order() == ByteOrder.BIG_ENDIAN ? result : Long.reverseBytes(result));
+		return 8;
+	}
+	
+	private boolean removesPadding() {
+		return padding == Padding.PKCS5 || padding == Padding.ISO9797Method2;
+	}
+	
+	/**
+	 * @return Length of the last block held in <code>partial</code> once its padding is removed
+	 */
+	private int unpaddedLength() {
+		if (padding == Padding.PKCS5) {
+			int length = partial[7];
+			if (length < 1 || length > 8){
+				throw new IllegalArgumentException("invalid padding");
+			}
+			for (int i = 8 - length; i < 8; i++) {
+				if (partial[i] != length){
+					throw new IllegalArgumentException("invalid padding");
+				}
+			}
+			return 8 - length;
+		}
+		int i = 7;
+		while (i >= 0 && partial[i] == 0) {
+			i--;
+		}
+		if (i < 0 || partial[i] != (byte) 0x80){
+			throw new IllegalArgumentException("invalid padding");
+		}
+		return i;
+	}
+	
+	private void reset() {
+		chain = iv;
+		Arrays.fill(partial, (byte) 0);
+		partialLength = 0;
+		pending = false;
+		pendingBlock = 0;
+	}
+}
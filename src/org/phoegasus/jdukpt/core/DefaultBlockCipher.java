@@ -0,0 +1,31 @@
+package org.phoegasus.jdukpt.core;
+
+/**
+ * Default implementation of the <code>BlockCipher</code> interface.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public class DefaultBlockCipher implements BlockCipher {
+
+	@Override
+	public long encryptDES(long key, long data) throws Exception {
+		return DES.encrypt(key, data);
+	}
+
+	@Override
+	public long decryptDES(long key, long data) throws Exception {
+		return DES.decrypt(key, data);
+	}
+
+	@Override
+	public long encryptTDES(long keyHi, long keyLo, long data) throws Exception {
+		return DES.encrypt(keyHi, keyLo, data);
+	}
+
+	@Override
+	public long decryptTDES(long keyHi, long keyLo, long data) throws Exception {
+		return DES.decrypt(keyHi, keyLo, data);
+	}
+	
+}
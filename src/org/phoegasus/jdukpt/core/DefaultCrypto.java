@@ -2,8 +2,7 @@ package org.phoegasus.jdukpt.core;
 
 import java.math.BigInteger;
 
-import org.phoegasus.jdukpt.utils.HexUtils;
-import org.phoegasus.jdukpt.utils.StringPadder;
+import org.phoegasus.jdukpt.utils.BlockUtils;
 
 /**
  * Default implementation of the <code>Crypto</code> interface.
@@ -25,12 +24,12 @@ public class DefaultCrypto implements Crypto {
 
 	@Override
 	public BigInteger encryptTDES(BigInteger key, BigInteger data) throws Exception {
-		return new BigInteger(1, DES.encrypt(HexUtils.hexToBytes(StringPadder.zeroLeftPadToMultipleOf16(key.toString(16))), HexUtils.hexToBytes(StringPadder.zeroLeftPadToMultipleOf16(data.toString(16)))));
+		return new BigInteger(1, DES.encrypt(BlockUtils.toBlockBytes(key), BlockUtils.toBlockBytes(data)));
 	}
 
 	@Override
 	public BigInteger decryptTDES(BigInteger key, BigInteger data) throws Exception {
-		return new BigInteger(1, DES.decrypt(HexUtils.hexToBytes(StringPadder.zeroLeftPadToMultipleOf16(key.toString(16))), HexUtils.hexToBytes(StringPadder.zeroLeftPadToMultipleOf16(data.toString(16)))));
+		return new BigInteger(1, DES.decrypt(BlockUtils.toBlockBytes(key), BlockUtils.toBlockBytes(data)));
 	}
 	
 }
@@ -0,0 +1,313 @@
+package org.phoegasus.jdukpt.core;
+
+import java.util.Arrays;
+
+import org.phoegasus.jdukpt.utils.BlockUtils;
+
+/**
+ * Originating side of DUKPT (ANSI X9.24-1), as run by a PIN entry device: holds the 21 future key registers and the KSN register, and gives a new key for each transaction.
+ * </br>The originator is loaded with the IPEK and the initial KSN. The IPEK is only used to fill the future key registers, then forgotten. Each transaction uses the future key of the rightmost set counter bit, after which the registers below that bit are filled from it and the counter is incremented. Counters with more than 10 set bits are skipped: when the counter has 10 set bits, its rightmost set bit is added to it instead. A transaction therefore costs one key generation on average, and the keys match the keys derived by the host from the BDK.
+ * </br>The state can be saved with <code>toBytes</code> and restored with <code>fromBytes</code>, in a compact binary form holding the KSN and the valid future keys only.
+ * </br>Instances are not thread-safe, <code>destroy</code> overwrites the future keys with zeroes.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public class DukptOriginator {
+	
+	private static final int REGISTERS = 21;
+	
+	private static final int MAXIMUM_BITS = 10;
+	
+	private static final byte VERSION = 1;
+	
+	private static final int HEADER_LENGTH = 1 + 10 + 3;
+	
+	private final JDukptPrimitiveCore core;
+	
+	/**
+	 * Leftmost 8 bytes of the initial KSN, with the counter bits cleared
+	 */
+	private final long ksnHi;
+	
+	/**
+	 * Future key registers, register <i>n</i> holding the key of counter bit <i>n</i> in indexes 2<i>n</i> and 2<i>n</i> + 1
+	 */
+	private final long[] registers = new long[REGISTERS * 2];
+	
+	/**
+	 * Bit <i>n</i> set if register <i>n</i> holds a key
+	 */
+	private int valid;
+	
+	private int counter;
+	
+	/**
+	 * @param ipek Initial PIN Encryption Key, 16 bytes long
+	 * @param ksn Initial Key Serial Number, 10 bytes long, its counter is ignored
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	public DukptOriginator(byte[] ipek, byte[] ksn) throws Exception {
+		this(ipek, ksn, new DefaultBlockCipher());
+	}
+	
+	/**
+	 * @param ipek Initial PIN Encryption Key, 16 bytes long
+	 * @param ksn Initial Key Serial Number, 10 bytes long, its counter is ignored
+	 * @param cipher DES and TripleDES implementation
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	public DukptOriginator(byte[] ipek, byte[] ksn, BlockCipher cipher) throws Exception {
+		this(cipher, ksn);
+		if (ipek == null || ipek.length != 16){
+			throw new IllegalArgumentException("ipek should be 16 bytes long");
+		}
+		long[] key = new long[2];
+		for (int bit = REGISTERS - 1; bit >= 0; bit--) {
+			key[0] = BlockUtils.getLong(ipek, 0);
+			key[1] = BlockUtils.getLong(ipek, 8);
+			core.generateKey(key, register(1 << bit));
+			store(bit, key);
+		}
+		key[0] = 0;
+		key[1] = 0;
+		counter = 1;
+	}
+	
+	private DukptOriginator(BlockCipher cipher, byte[] ksn) {
+		if (cipher == null){
+			throw new IllegalArgumentException("cipher is null");
+		}
+		if (ksn == null || ksn.length != 10){
+			throw new IllegalArgumentException("ksn should be 10 bytes long");
+		}
+		this.core = new JDukptPrimitiveCore(cipher);
+		this.ksnHi = BlockUtils.getLong(ksn, 0) & Mask.KSN_HI_MASK;
+	}
+	
+	/**
+	 * Restores an originator saved with <code>toBytes</code>
+	 * @param state Saved state
+	 * @return Originator
+	 */
+	public static DukptOriginator fromBytes(byte[] state) {
+		return fromBytes(state, new DefaultBlockCipher());
+	}
+	
+	/**
+	 * Restores an originator saved with <code>toBytes</code>
+	 * @param state Saved state
+	 * @param cipher DES and TripleDES implementation
+	 * @return Originator
+	 */
+	public static DukptOriginator fromBytes(byte[] state, BlockCipher cipher) {
+		if (state == null || state.length < HEADER_LENGTH || state[0] != VERSION){
+			throw new IllegalArgumentException("state is not a saved originator");
+		}
+		DukptOriginator originator = new DukptOriginator(cipher, Arrays.copyOfRange(state, 1, 11));
+		int valid = (state[11] & 0xFF) << 16 | (state[12] & 0xFF) << 8 | state[13] & 0xFF;
+		if (valid >>> REGISTERS != 0 || state.length != HEADER_LENGTH + Integer.bitCount(valid) * 16){
+			throw new IllegalArgumentException("state is not a saved originator");
+		}
+		originator.counter = (int) (BlockUtils.getLong(state, 3) & Mask.REG3_MASK);
+		int offset = HEADER_LENGTH;
+		long[] key = new long[2];
+		for (int bits = valid; bits != 0; bits &= bits - 1) {
+			key[0] = BlockUtils.getLong(state, offset);
+			key[1] = BlockUtils.getLong(state, offset + 8);
+			originator.store(Integer.numberOfTrailingZeros(bits), key);
+			offset += 16;
+		}
+		key[0] = 0;
+		key[1] = 0;
+		return originator;
+	}
+	
+	/**
+	 * Saves the state of the originator: version, KSN, valid registers, then the key of each valid register
+	 * @return Saved state, holding key material
+	 */
+	public byte[] toBytes() {
+		byte[] state = new byte[HEADER_LENGTH + Integer.bitCount(valid) * 16];
+		state[0] = VERSION;
+		System.arraycopy(ksn(Math.min(counter, Mask.REG3_MASK)), 0, state, 1, 10);
+		state[11] = (byte) (valid >>> 16);
+		state[12] = (byte) (valid >>> 8);
+		state[13] = (byte) valid;
+		int offset = HEADER_LENGTH;
+		for (int bits = valid; bits != 0; bits &= bits - 1) {
+			int bit = Integer.numberOfTrailingZeros(bits);
+			BlockUtils.putLong(registers[bit * 2], state, offset);
+			BlockUtils.putLong(registers[bit * 2 + 1], state, offset + 8);
+			offset += 16;
+		}
+		return state;
+	}
+	
+	/**
+	 * @return Key Serial Number of the next transaction, 10 bytes long
+	 * @throws IllegalStateException if every counter value was used, the counter no longer fitting in the KSN
+	 */
+	public byte[] getKsn() {
+		if (counter > Mask.REG3_MASK){
+			throw new IllegalStateException("originator is exhausted");
+		}
+		return ksn(counter);
+	}
+	
+	private byte[] ksn(int counter) {
+		byte[] ksn = new byte[10];
+		BlockUtils.putLong(ksnHi | counter >>> 16, ksn, 0);
+		ksn[8] = (byte) (counter >>> 8);
+		ksn[9] = (byte) counter;
+		return ksn;
+	}
+	
+	/**
+	 * @return Counter of the next transaction
+	 */
+	public int getCounter() {
+		return counter;
+	}
+	
+	/**
+	 * @return true if every counter value was used, no further key can be given
+	 */
+	public boolean isExhausted() {
+		return counter > Mask.REG3_MASK || valid == 0;
+	}
+	
+	/**
+	 * Encrypt a PIN block with the PIN variant session key of the next transaction, then advance the counter
+	 * </br>The KSN to send with the PIN block is the one returned by <code>getKsn</code> before the call.
+	 * @param pinBlock PIN block, its length should be a multiple of 8
+	 * @return Encrypted PIN block
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	public byte[] encryptPIN(byte[] pinBlock) throws Exception {
+		return encrypt(pinBlock, DUKPTVariant.PIN);
+	}
+	
+	/**
+	 * Encrypt data with TDES CBC, a zero IV and the Data variant session key of the next transaction, then advance the counter
+	 * </br>The KSN to send with the data is the one returned by <code>getKsn</code> before the call.
+	 * @param data Data, its length should be a multiple of 8
+	 * @return Encrypted data
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	public byte[] encryptData(byte[] data) throws Exception {
+		return encrypt(data, DUKPTVariant.Data);
+	}
+	
+	/**
+	 * Get the session keys of several variants for the next transaction, then advance the counter
+	 * @param variants DUKPT variants
+	 * @return Session keys of the variants
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	public SessionKeys nextSessionKeys(DUKPTVariant... variants) throws Exception {
+		if (variants == null || variants.length == 0){
+			throw new IllegalArgumentException("variants is empty");
+		}
+		long[] key = new long[2];
+		SessionKeys sessionKeys = new SessionKeys();
+		try {
+			for (DUKPTVariant variant : variants) {
+				if (variant == null){
+					throw new IllegalArgumentException("variant is null");
+				}
+				currentKey(key);
+				core.variant(key, variant);
+				sessionKeys.set(variant, key);
+			}
+		} finally {
+			key[0] = 0;
+			key[1] = 0;
+		}
+		advance();
+		return sessionKeys;
+	}
+	
+	/**
+	 * Overwrites the future keys with zeroes, the originator is then exhausted
+	 */
+	public void destroy() {
+		Arrays.fill(registers, 0);
+		valid = 0;
+	}
+	
+	private byte[] encrypt(byte[] data, DUKPTVariant variant) throws Exception {
+		if (data == null || data.length == 0 || data.length % 8 != 0){
+			throw new IllegalArgumentException("data length should be a positive multiple of 8");
+		}
+		long[] key = new long[2];
+		currentKey(key);
+		core.variant(key, variant);
+		long[] blocks = new long[data.length / 8];
+		for (int i = 0; i < blocks.length; i++) {
+			blocks[i] = BlockUtils.getLong(data, i * 8);
+		}
+		BlockCipher cipher = core.cipher();
+		long chain = 0;
+		for (int i = 0; i < blocks.length; i++) {
+			chain = cipher.encryptTDES(key[0], key[1], blocks[i] ^ chain);
+			blocks[i] = chain;
+		}
+		key[0] = 0;
+		key[1] = 0;
+		advance();
+		return BlockUtils.toBytes(blocks);
+	}
+	
+	/**
+	 * Reads the future key of the rightmost set counter bit, which is the key of the current counter
+	 */
+	private void currentKey(long[] key) {
+		if (isExhausted()){
+			throw new IllegalStateException("originator is exhausted");
+		}
+		int bit = Integer.numberOfTrailingZeros(counter);
+		if ((valid & 1 << bit) == 0){
+			throw new IllegalStateException("future key register " + bit + " is not valid");
+		}
+		key[0] = registers[bit * 2];
+		key[1] = registers[bit * 2 + 1];
+	}
+	
+	/**
+	 * Fills the registers below the rightmost set counter bit from its key unless the counter has 10 set bits, erases its key, and moves to the next counter having at most 10 set bits
+	 */
+	private void advance() throws Exception {
+		int bit = Integer.numberOfTrailingZeros(counter);
+		if (Integer.bitCount(counter) < MAXIMUM_BITS) {
+			long[] key = new long[2];
+			for (int next = bit - 1; next >= 0; next--) {
+				key[0] = registers[bit * 2];
+				key[1] = registers[bit * 2 + 1];
+				core.generateKey(key, register(counter | 1 << next));
+				store(next, key);
+			}
+			key[0] = 0;
+			key[1] = 0;
+			counter++;
+		} else {
+			counter += 1 << bit;
+		}
+		registers[bit * 2] = 0;
+		registers[bit * 2 + 1] = 0;
+		valid &= ~(1 << bit);
+	}
+	
+	private void store(int bit, long[] key) {
+		registers[bit * 2] = key[0];
+		registers[bit * 2 + 1] = key[1];
+		valid |= 1 << bit;
+	}
+	
+	/**
+	 * @return Rightmost 8 bytes of the KSN register for a counter
+	 */
+	private long register(int counter) {
+		return ksnHi << 16 & Mask.REG8_MASK | counter;
+	}
+}
@@ -0,0 +1,87 @@
+package org.phoegasus.jdukpt.core;
+
+import java.util.Arrays;
+
+/**
+ * Intermediate keys of the last counter walk made from the IPEK of a device.
+ * </br>The key reached after walking the set counter bits above a given bit only depends on those bits, so a new counter can resume from the key recorded for the longest prefix of counter bits it shares with the previous counter, instead of starting from the IPEK.
+ * </br>Callers synchronize on the path while they use it.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+final class FutureKeyPath {
+	
+	/**
+	 * Keys indexed by walk depth, depth 0 being the IPEK and depth <i>n</i> the key reached after the <i>n</i>th set counter bit
+	 */
+	private final long[] keys = new long[2 * 22];
+	
+	private int counter = -1;
+	
+	private boolean cleared;
+	
+	FutureKeyPath(long ipekHi, long ipekLo) {
+		keys[0] = ipekHi;
+		keys[1] = ipekLo;
+	}
+	
+	/**
+	 * Finds the deepest recorded key shared with a counter
+	 * @param counter 21 bit counter to walk
+	 * @param key Receives the deepest shared key
+	 * @return Highest counter bit still to walk, -1 if the key is already the future key of the counter
+	 */
+	int resume(int counter, long[] key) {
+		int bit;
+		int depth;
+		if(this.counter < 0) {
+			bit = 20;
+			depth = 0;
+		} else if(this.counter == counter) {
+			bit = -1;
+			depth = Integer.bitCount(counter);
+		} else {
+			bit = 31 - Integer.numberOfLeadingZeros(this.counter ^ counter);
+			depth = Integer.bitCount(counter >>> bit + 1);
+		}
+		key[0] = keys[depth * 2];
+		key[1] = keys[depth * 2 + 1];
+		this.counter = -1;
+		return bit;
+	}
+	
+	/**
+	 * Records the key reached at a depth of the walk
+	 * @param depth Number of set counter bits walked
+	 * @param key Key reached
+	 */
+	void record(int depth, long[] key) {
+		keys[depth * 2] = key[0];
+		keys[depth * 2 + 1] = key[1];
+	}
+	
+	/**
+	 * Marks the walk of a counter as complete, making its keys reusable
+	 * @param counter Counter walked
+	 */
+	void complete(int counter) {
+		this.counter = counter;
+	}
+	
+	/**
+	 * Overwrites every key with zeroes
+	 */
+	void clear() {
+		Arrays.fill(keys, 0);
+		counter = -1;
+		cleared = true;
+	}
+	
+	/**
+	 * @return true if the path was evicted from its cache and its keys overwritten
+	 */
+	boolean isCleared() {
+		return cleared;
+	}
+}
@@ -0,0 +1,350 @@
+package org.phoegasus.jdukpt.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Bounded cache of Initial PIN Encryption Keys, keyed by BDK and initial KSN (KSN with the counter masked by <code>Mask.KsnMask</code>).
+ * </br>Entries are evicted in least recently used order once the maximum size is reached, and after the configured time to live. The key material of evicted entries is overwritten with zeroes.
+ * </br>The cache can also retain, for each device, the intermediate keys of the last counter walk made by the <code>DUKPTEngine.Primitive</code> engine. Consecutive counters of a device then resume the walk from the keys they share instead of starting from the IPEK.
+ * </br>An instance can be shared by several <code>JDukpt</code> objects and threads. Devices are split into stripes, each with its own lock, its own least recently used order and its own share of the maximum size, so that threads looking up different devices rarely wait for each other. A single stripe is used unless a concurrency level is given.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public class IpekCache {
+
+	private final boolean retainFutureKeys;
+
+	private final Segment[] segments;
+
+	/**
+	 * @param maximumSize Maximum number of IPEKs kept
+	 * @param timeToLiveMillis Time after which an IPEK is evicted, 0 to keep IPEKs until they are evicted by size
+	 */
+	public IpekCache(int maximumSize, long timeToLiveMillis) {
+		this(maximumSize, timeToLiveMillis, false);
+	}
+
+	/**
+	 * @param maximumSize Maximum number of devices kept
+	 * @param timeToLiveMillis Time after which a device is evicted, 0 to keep devices until they are evicted by size
+	 * @param retainFutureKeys Retain the intermediate keys of the last counter walk of each device
+	 */
+	public IpekCache(int maximumSize, long timeToLiveMillis, boolean retainFutureKeys) {
+		this(maximumSize, timeToLiveMillis, retainFutureKeys, 1);
+	}
+
+	/**
+	 * @param maximumSize Maximum number of devices kept
+	 * @param timeToLiveMillis Time after which a device is evicted, 0 to keep devices until they are evicted by size
+	 * @param retainFutureKeys Retain the intermediate keys of the last counter walk of each device
+	 * @param concurrencyLevel Number of threads expected to use the cache at the same time, rounded up to a power of two, the devices being split into as many stripes with their own lock and their own share of the maximum size
+	 */
+	public IpekCache(int maximumSize, long timeToLiveMillis, boolean retainFutureKeys, int concurrencyLevel) {
+		if(maximumSize <= 0) {
+			throw new IllegalArgumentException("maximumSize should be positive");
+		}
+		if(timeToLiveMillis < 0) {
+			throw new IllegalArgumentException("timeToLiveMillis should not be negative");
+		}
+		if(concurrencyLevel <= 0) {
+			throw new IllegalArgumentException("concurrencyLevel should be positive");
+		}
+		int stripes = Math.min(Integer.highestOneBit(Math.min(concurrencyLevel, 1 << 16) * 2 - 1), Integer.highestOneBit(maximumSize));
+		this.retainFutureKeys = retainFutureKeys;
+		this.segments = new Segment[stripes];
+		for(int i = 0; i < stripes; i++) {
+			segments[i] = new Segment(maximumSize / stripes + (i < maximumSize % stripes ? 1 : 0), timeToLiveMillis * 1000000L);
+		}
+	}
+
+	/**
+	 * Looks up an IPEK
+	 * @param bdkHi Leftmost 8 bytes of the Base Derivation Key
+	 * @param bdkLo Rightmost 8 bytes of the Base Derivation Key
+	 * @param ksnHi Leftmost 8 bytes of the Key Serial Number
+	 * @param ipek Receives the IPEK if it is cached
+	 * @return true if the IPEK was cached
+	 */
+	boolean get(long bdkHi, long bdkLo, long ksnHi, long[] ipek) {
+		Key key = new Key(bdkHi, bdkLo, ksnHi & Mask.KSN_HI_MASK);
+		Segment segment = segment(key);
+		synchronized(segment) {
+			Entry entry = segment.lookup(key);
+			if(entry == null) {
+				return false;
+			}
+			ipek[0] = entry.ipekHi;
+			ipek[1] = entry.ipekLo;
+			return true;
+		}
+	}
+
+	/**
+	 * Caches an IPEK
+	 * @param bdkHi Leftmost 8 bytes of the Base Derivation Key
+	 * @param bdkLo Rightmost 8 bytes of the Base Derivation Key
+	 * @param ksnHi Leftmost 8 bytes of the Key Serial Number
+	 * @param ipek IPEK
+	 */
+	void put(long bdkHi, long bdkLo, long ksnHi, long[] ipek) {
+		Key key = new Key(bdkHi, bdkLo, ksnHi & Mask.KSN_HI_MASK);
+		Segment segment = segment(key);
+		synchronized(segment) {
+			segment.insert(key, ipek, null);
+		}
+	}
+
+	/**
+	 * Looks up the future key path of a device, only available when future keys are retained
+	 * @param bdkHi Leftmost 8 bytes of the Base Derivation Key
+	 * @param bdkLo Rightmost 8 bytes of the Base Derivation Key
+	 * @param ksnHi Leftmost 8 bytes of the Key Serial Number
+	 * @return Future key path, or null if the device is not cached
+	 */
+	FutureKeyPath getPath(long bdkHi, long bdkLo, long ksnHi) {
+		Key key = new Key(bdkHi, bdkLo, ksnHi & Mask.KSN_HI_MASK);
+		Segment segment = segment(key);
+		synchronized(segment) {
+			Entry entry = segment.lookup(key);
+			return entry == null ? null : entry.path;
+		}
+	}
+
+	/**
+	 * Caches the IPEK of a device and creates its future key path, only available when future keys are retained
+	 * @param bdkHi Leftmost 8 bytes of the Base Derivation Key
+	 * @param bdkLo Rightmost 8 bytes of the Base Derivation Key
+	 * @param ksnHi Leftmost 8 bytes of the Key Serial Number
+	 * @param ipek IPEK
+	 * @return Future key path starting at the IPEK
+	 */
+	FutureKeyPath putPath(long bdkHi, long bdkLo, long ksnHi, long[] ipek) {
+		Key key = new Key(bdkHi, bdkLo, ksnHi & Mask.KSN_HI_MASK);
+		Segment segment = segment(key);
+		synchronized(segment) {
+			return segment.insert(key, ipek, retainFutureKeys ? new FutureKeyPath(ipek[0], ipek[1]) : null).path;
+		}
+	}
+
+	/**
+	 * @return true if the intermediate keys of the counter walks are retained
+	 */
+	public boolean isRetainingFutureKeys() {
+		return retainFutureKeys;
+	}
+
+	/**
+	 * Evicts every IPEK
+	 */
+	public void clear() {
+		for(Segment segment : segments) {
+			synchronized(segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * @return Number of IPEKs currently cached
+	 */
+	public int size() {
+		int size = 0;
+		for(Segment segment : segments) {
+			synchronized(segment) {
+				size += segment.entries.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return Number of lookups which found the IPEK
+	 */
+	public long getHitCount() {
+		long count = 0;
+		for(Segment segment : segments) {
+			synchronized(segment) {
+				count += segment.hitCount;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return Number of lookups which did not find the IPEK
+	 */
+	public long getMissCount() {
+		long count = 0;
+		for(Segment segment : segments) {
+			synchronized(segment) {
+				count += segment.missCount;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return Number of IPEKs evicted by size or time to live
+	 */
+	public long getEvictionCount() {
+		long count = 0;
+		for(Segment segment : segments) {
+			synchronized(segment) {
+				count += segment.evictionCount;
+			}
+		}
+		return count;
+	}
+
+	private Segment segment(Key key) {
+		return segments[key.hash >>> 16 & segments.length - 1];
+	}
+
+	//----------------------------------------------------------------------//
+
+	/**
+	 * Stripe of the cache, in least recently used order, guarded by its own lock
+	 */
+	private static final class Segment {
+
+		private final int maximumSize;
+
+		private final long timeToLiveNanos;
+
+		private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+		private long hitCount;
+
+		private long missCount;
+
+		private long evictionCount;
+
+		Segment(int maximumSize, long timeToLiveNanos) {
+			this.maximumSize = maximumSize;
+			this.timeToLiveNanos = timeToLiveNanos;
+		}
+
+		Entry lookup(Key key) {
+			Entry entry = entries.get(key);
+			if(entry != null && timeToLiveNanos > 0 && System.nanoTime() - entry.created > timeToLiveNanos) {
+				entries.remove(key);
+				evict(entry);
+				entry = null;
+			}
+			key.clear();
+			if(entry == null) {
+				missCount++;
+			} else {
+				hitCount++;
+			}
+			return entry;
+		}
+
+		Entry insert(Key key, long[] ipek, FutureKeyPath path) {
+			Entry previous = entries.remove(key);
+			if(previous != null) {
+				previous.clear();
+			}
+			Entry entry = new Entry(key, ipek[0], ipek[1], path, System.nanoTime());
+			entries.put(key, entry);
+			if(entries.size() > maximumSize) {
+				Iterator<Entry> eldest = entries.values().iterator();
+				Entry evicted = eldest.next();
+				eldest.remove();
+				evict(evicted);
+			}
+			return entry;
+		}
+
+		void clear() {
+			for(Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext();) {
+				Entry entry = iterator.next();
+				iterator.remove();
+				evict(entry);
+			}
+		}
+
+		private void evict(Entry entry) {
+			entry.clear();
+			evictionCount++;
+		}
+	}
+
+	//----------------------------------------------------------------------//
+
+	private static final class Key {
+
+		private long bdkHi;
+
+		private long bdkLo;
+
+		private long ksn;
+
+		private final int hash;
+
+		Key(long bdkHi, long bdkLo, long ksn) {
+			this.bdkHi = bdkHi;
+			this.bdkLo = bdkLo;
+			this.ksn = ksn;
+			long h = bdkHi * 31 + bdkLo;
+			h = h * 31 + ksn;
+			h = (h ^ h >>> 33) * 0xFF51AFD7ED558CCDL;
+			h = (h ^ h >>> 33) * 0xC4CEB9FE1A85EC53L;
+			this.hash = (int) (h ^ h >>> 32);
+		}
+
+		void clear() {
+			bdkHi = 0;
+			bdkLo = 0;
+			ksn = 0;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return bdkHi == other.bdkHi && bdkLo == other.bdkLo && ksn == other.ksn;
+		}
+	}
+
+	private static final class Entry {
+
+		private final Key key;
+
+		private long ipekHi;
+
+		private long ipekLo;
+
+		private final FutureKeyPath path;
+
+		private final long created;
+
+		Entry(Key key, long ipekHi, long ipekLo, FutureKeyPath path, long created) {
+			this.key = key;
+			this.ipekHi = ipekHi;
+			this.ipekLo = ipekLo;
+			this.path = path;
+			this.created = created;
+		}
+
+		void clear() {
+			key.clear();
+			ipekHi = 0;
+			ipekLo = 0;
+			if(path != null) {
+				synchronized(path) {
+					path.clear();
+				}
+			}
+		}
+	}
+}
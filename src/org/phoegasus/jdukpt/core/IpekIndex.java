@@ -0,0 +1,318 @@
+package org.phoegasus.jdukpt.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.phoegasus.jdukpt.utils.BlockUtils;
+
+/**
+ * Read-only index of precomputed Initial PIN Encryption Keys, memory-mapped from a file written by <code>IpekIndexWriter</code>.
+ * </br>The file holds the IPEKs of the devices of a single BDK, as fixed length records sorted by initial KSN (the leftmost 8 bytes of the KSN with the counter masked by <code>Mask.KsnMask</code>). Lookups binary search the mapped file, so that an index of millions of devices is available as soon as it is opened, without loading it into the Java heap.
+ * </br>The IPEKs can be stored encrypted under a Key Encryption Key, in which case they are only decrypted when they are looked up.
+ * </br>An index is configured with <code>JDukpt.builder().ipekIndex(...)</code>, and consulted before deriving an IPEK from the BDK. Devices missing from the index, and BDKs other than the one of the index, fall back to the derivation.
+ * </br>An instance can be shared by several threads. The mapping is released when the index is garbage collected. Lookups remember the last BDKs they compared with the BDK of the index, on the Java heap: closing the index overwrites them with zeroes, together with the key schedules of the KEK.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public final class IpekIndex implements Closeable {
+	
+	/**
+	 * "JDIK"
+	 */
+	static final int MAGIC = 0x4A44494B;
+	
+	/**
+	 * Version 2 replaces the 3 byte check values of version 1 by 8 byte fingerprints
+	 */
+	static final short VERSION = 2;
+	
+	static final short FLAG_ENCRYPTED = 1;
+	
+	/**
+	 * Magic, version, flags, record count, BDK fingerprint and KEK fingerprint
+	 */
+	static final int HEADER_LENGTH = 32;
+	
+	/**
+	 * Initial KSN, IPEK
+	 */
+	static final int RECORD_LENGTH = 24;
+	
+	static final int MAXIMUM_SIZE = (Integer.MAX_VALUE - HEADER_LENGTH) / RECORD_LENGTH;
+	
+	/**
+	 * Number of BDKs other than the BDK of the index remembered as such
+	 */
+	private static final int MISMATCH_CACHE_SIZE = 16;
+	
+	private final ByteBuffer buffer;
+	
+	private final int size;
+	
+	private final long bdkFingerprint;
+	
+	private final boolean encrypted;
+	
+	/**
+	 * Key schedules of the KEK, computed once, only read by lookups
+	 */
+	private final DESKeySchedule kekHi;
+	
+	private final DESKeySchedule kekLo;
+	
+	/**
+	 * First BDK found to match the BDK fingerprint of the index, avoids computing the fingerprint of the BDK on each lookup
+	 */
+	private volatile long[] matchedBdk;
+	
+	/**
+	 * Last BDKs found not to match the BDK fingerprint of the index, as pairs of longs, replaced when the array is full
+	 */
+	private volatile long[] mismatchedBdks = new long[0];
+	
+	private volatile boolean closed;
+	
+	private IpekIndex(ByteBuffer buffer, int size, long bdkFingerprint, boolean encrypted, long kekHi, long kekLo) {
+		this.buffer = buffer;
+		this.size = size;
+		this.bdkFingerprint = bdkFingerprint;
+		this.encrypted = encrypted;
+		this.kekHi = encrypted ? new DESKeySchedule(kekHi) : null;
+		this.kekLo = encrypted ? new DESKeySchedule(kekLo) : null;
+	}
+	
+	/**
+	 * Opens an index whose IPEKs are not encrypted
+	 * @param file Index file
+	 * @return Index
+	 * @throws Exception thrown if the file cannot be read, is not a valid index, or is encrypted
+	 */
+	public static IpekIndex open(Path file) throws Exception {
+		return open(file, null);
+	}
+	
+	/**
+	 * Opens an index
+	 * @param file Index file
+	 * @param kek Key Encryption Key, 16 bytes long, null if the IPEKs are not encrypted
+	 * @return Index
+	 * @throws Exception thrown if the file cannot be read, is not a valid index, or if the KEK does not match the index
+	 */
+	public static IpekIndex open(Path file, byte[] kek) throws Exception {
+		if (file == null){
+			throw new IllegalArgumentException("file is null");
+		}
+		if (kek != null && kek.length != 16){
+			throw new IllegalArgumentException("kek should be 16 bytes long");
+		}
+		ByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long length = channel.size();
+			if (length < HEADER_LENGTH || length > Integer.MAX_VALUE) {
+				throw new IOException("invalid IPEK index length " + length);
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+		}
+		if (buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION) {
+			throw new IOException("not an IPEK index");
+		}
+		long size = buffer.getLong(8);
+		if (size < 0 || size > MAXIMUM_SIZE || HEADER_LENGTH + size * RECORD_LENGTH != buffer.capacity()) {
+			throw new IOException("truncated IPEK index");
+		}
+		boolean encrypted = (buffer.getShort(6) & FLAG_ENCRYPTED) != 0;
+		long kekHi = 0;
+		long kekLo = 0;
+		if (encrypted) {
+			if (kek == null){
+				throw new IllegalArgumentException("kek is required by an encrypted IPEK index");
+			}
+			kekHi = BlockUtils.getLong(kek, 0);
+			kekLo = BlockUtils.getLong(kek, 8);
+			if (fingerprint(kekHi, kekLo) != buffer.getLong(24)){
+				throw new IllegalArgumentException("kek does not match the IPEK index");
+			}
+		} else if (kek != null){
+			throw new IllegalArgumentException("IPEK index is not encrypted");
+		}
+		return new IpekIndex(buffer, (int) size, buffer.getLong(16), encrypted, kekHi, kekLo);
+	}
+	
+	/**
+	 * Looks up the IPEK of a device
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param ksn Key Serial Number, 10 bytes long, any counter
+	 * @return IPEK, or null if the device is not in the index or the BDK is not the BDK of the index
+	 * @throws Exception thrown by the decryption of the IPEK
+	 */
+	public byte[] getIpek(byte[] bdk, byte[] ksn) throws Exception {
+		if (bdk == null || bdk.length != 16){
+			throw new IllegalArgumentException("bdk should be 16 bytes long");
+		}
+		if (ksn == null || ksn.length != 10){
+			throw new IllegalArgumentException("ksn should be 10 bytes long");
+		}
+		long[] ipek = new long[2];
+		if (!get(BlockUtils.getLong(bdk, 0), BlockUtils.getLong(bdk, 8), BlockUtils.getLong(ksn, 0), ipek)) {
+			return null;
+		}
+		byte[] result = BlockUtils.toBytes(ipek);
+		ipek[0] = 0;
+		ipek[1] = 0;
+		return result;
+	}
+	
+	/**
+	 * @return Number of devices in the index
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @return true if the IPEKs are encrypted under a KEK
+	 */
+	public boolean isEncrypted() {
+		return encrypted;
+	}
+	
+	/**
+	 * Looks up an IPEK
+	 * @param bdkHi Leftmost 8 bytes of the Base Derivation Key
+	 * @param bdkLo Rightmost 8 bytes of the Base Derivation Key
+	 * @param ksnHi Leftmost 8 bytes of the Key Serial Number
+	 * @param ipek Receives the IPEK if it is in the index
+	 * @return true if the BDK is the BDK of the index and the device is in the index
+	 * @throws Exception thrown by the decryption of the IPEK
+	 */
+	boolean get(long bdkHi, long bdkLo, long ksnHi, long[] ipek) throws Exception {
+		if (closed){
+			throw new IllegalStateException("IPEK index is closed");
+		}
+		if (!matches(bdkHi, bdkLo)) {
+			return false;
+		}
+		int record = search(ksnHi & Mask.KSN_HI_MASK);
+		if (record < 0) {
+			return false;
+		}
+		int offset = HEADER_LENGTH + record * RECORD_LENGTH;
+		long hi = buffer.getLong(offset + 8);
+		long lo = buffer.getLong(offset + 16);
+		if (encrypted) {
+			hi = DESKeySchedule.decrypt(kekHi, kekLo, hi);
+			lo = DESKeySchedule.decrypt(kekHi, kekLo, lo);
+		}
+		if (closed){
+			// The remembered BDKs or the KEK may have been cleared during the lookup
+			throw new IllegalStateException("IPEK index is closed");
+		}
+		ipek[0] = hi;
+		ipek[1] = lo;
+		return true;
+	}
+	
+	/**
+	 * @return Record of the initial KSN, or -1 if it is not in the index
+	 */
+	private int search(long ksn) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int comparison = Long.compareUnsigned(buffer.getLong(HEADER_LENGTH + mid * RECORD_LENGTH), ksn);
+			if (comparison < 0) {
+				low = mid + 1;
+			} else if (comparison > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+	
+	private boolean matches(long bdkHi, long bdkLo) throws Exception {
+		long[] matched = matchedBdk;
+		if (matched != null && matched[0] == bdkHi && matched[1] == bdkLo) {
+			return true;
+		}
+		long[] mismatched = mismatchedBdks;
+		for (int i = 0; i < mismatched.length; i += 2) {
+			if (mismatched[i] == bdkHi && mismatched[i + 1] == bdkLo) {
+				return false;
+			}
+		}
+		if (fingerprint(bdkHi, bdkLo) == bdkFingerprint) {
+			if (matched == null) {
+				matchedBdk = new long[] {bdkHi, bdkLo};
+			}
+			if (closed) {
+				clearBdks();
+			}
+			return true;
+		}
+		long[] updated;
+		if (mismatched.length < MISMATCH_CACHE_SIZE * 2) {
+			updated = Arrays.copyOf(mismatched, mismatched.length + 2);
+		} else {
+			updated = new long[mismatched.length];
+			System.arraycopy(mismatched, 2, updated, 0, mismatched.length - 2);
+		}
+		updated[updated.length - 2] = bdkHi;
+		updated[updated.length - 1] = bdkLo;
+		mismatchedBdks = updated;
+		Arrays.fill(mismatched, 0);
+		if (closed) {
+			clearBdks();
+		}
+		return false;
+	}
+	
+	/**
+	 * Overwrites the BDKs remembered by the lookups and the key schedules of the KEK with zeroes, lookups then throw an <code>IllegalStateException</code>
+	 * </br>The index should be closed once it is no longer used, a lookup running meanwhile fails rather than returning an IPEK decrypted with a cleared KEK.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		clearBdks();
+		if (encrypted) {
+			kekHi.clear();
+			kekLo.clear();
+		}
+	}
+	
+	/**
+	 * Overwrites the remembered BDKs with zeroes
+	 * </br>A lookup reading an array being overwritten can only miss the cache, or fail on the closed index.
+	 */
+	private void clearBdks() {
+		long[] matched = matchedBdk;
+		matchedBdk = null;
+		if (matched != null) {
+			Arrays.fill(matched, 0);
+		}
+		long[] mismatched = mismatchedBdks;
+		mismatchedBdks = new long[0];
+		Arrays.fill(mismatched, 0);
+	}
+	
+	/**
+	 * Computes the fingerprint of a key, the whole encryption of a zero block
+	 * </br>Unlike a 3 byte check value, 8 bytes leave no practical chance of another key being taken for the key of the index.
+	 * @param keyHi Leftmost 8 bytes of the key
+	 * @param keyLo Rightmost 8 bytes of the key
+	 * @return Fingerprint
+	 * @throws Exception thrown by the DES implementation
+	 */
+	static long fingerprint(long keyHi, long keyLo) throws Exception {
+		return DES.encrypt(keyHi, keyLo, 0);
+	}
+}
@@ -0,0 +1,173 @@
+package org.phoegasus.jdukpt.core;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.phoegasus.jdukpt.utils.BlockUtils;
+
+/**
+ * Precomputes the Initial PIN Encryption Keys of a fleet of devices into an index file read by <code>IpekIndex</code>.
+ * </br>The file is written next to its destination and moved into place once complete, so that a node never opens a partially written index. The partially written file is deleted if the index cannot be written.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public class IpekIndexWriter {
+	
+	private static final int RECORDS_PER_WRITE = 4096;
+	
+	private final JDukptPrimitiveCore core;
+	
+	/**
+	 * Writer deriving the IPEKs with <code>TableBlockCipher</code>
+	 */
+	public IpekIndexWriter() {
+		this(new TableBlockCipher());
+	}
+	
+	/**
+	 * @param cipher BlockCipher implementation deriving the IPEKs
+	 */
+	public IpekIndexWriter(BlockCipher cipher) {
+		if (cipher == null){
+			throw new IllegalArgumentException("cipher is null");
+		}
+		this.core = new JDukptPrimitiveCore(cipher);
+	}
+	
+	/**
+	 * Writes the index of the devices of a BDK
+	 * @param file Index file, replaced if it exists
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param ksns Key Serial Numbers of the devices, 10 bytes long, any counter
+	 * @param kek Key Encryption Key under which the IPEKs are encrypted, 16 bytes long, null to store them in clear
+	 * @return Number of devices written, devices given several times being written once
+	 * @throws Exception thrown by the file system or the BlockCipher implementation
+	 */
+	public int write(Path file, byte[] bdk, Collection<byte[]> ksns, byte[] kek) throws Exception {
+		if (ksns == null){
+			throw new IllegalArgumentException("ksns is null");
+		}
+		long[] ksnHis = new long[ksns.size()];
+		int i = 0;
+		for (byte[] ksn : ksns) {
+			if (ksn == null || ksn.length != 10){
+				throw new IllegalArgumentException("ksn should be 10 bytes long");
+			}
+			ksnHis[i++] = BlockUtils.getLong(ksn, 0);
+		}
+		return write(file, bdk, ksnHis, kek);
+	}
+	
+	/**
+	 * Writes the index of the devices of a BDK
+	 * @param file Index file, replaced if it exists
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param ksnHis Leftmost 8 bytes of the Key Serial Numbers of the devices, any counter, reordered by this method
+	 * @param kek Key Encryption Key under which the IPEKs are encrypted, 16 bytes long, null to store them in clear
+	 * @return Number of devices written, devices given several times being written once
+	 * @throws Exception thrown by the file system or the BlockCipher implementation
+	 */
+	public int write(Path file, byte[] bdk, long[] ksnHis, byte[] kek) throws Exception {
+		if (file == null){
+			throw new IllegalArgumentException("file is null");
+		}
+		if (bdk == null || bdk.length != 16){
+			throw new IllegalArgumentException("bdk should be 16 bytes long");
+		}
+		if (ksnHis == null){
+			throw new IllegalArgumentException("ksnHis is null");
+		}
+		if (kek != null && kek.length != 16){
+			throw new IllegalArgumentException("kek should be 16 bytes long");
+		}
+		int size = sortUnique(ksnHis);
+		if (size > IpekIndex.MAXIMUM_SIZE){
+			throw new IllegalArgumentException("an IPEK index holds at most " + IpekIndex.MAXIMUM_SIZE + " devices");
+		}
+		long bdkHi = BlockUtils.getLong(bdk, 0);
+		long bdkLo = BlockUtils.getLong(bdk, 8);
+		long kekHi = kek == null ? 0 : BlockUtils.getLong(kek, 0);
+		long kekLo = kek == null ? 0 : BlockUtils.getLong(kek, 8);
+		BlockCipher cipher = core.cipher();
+		
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		long[] ipek = new long[2];
+		ByteBuffer buffer = ByteBuffer.allocateDirect(RECORDS_PER_WRITE * IpekIndex.RECORD_LENGTH);
+		boolean written = false;
+		try {
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				buffer.putInt(IpekIndex.MAGIC);
+				buffer.putShort(IpekIndex.VERSION);
+				buffer.putShort(kek == null ? 0 : IpekIndex.FLAG_ENCRYPTED);
+				buffer.putLong(size);
+				buffer.putLong(IpekIndex.fingerprint(bdkHi, bdkLo));
+				buffer.putLong(kek == null ? 0 : IpekIndex.fingerprint(kekHi, kekLo));
+				for (int i = 0; i < size; i++) {
+					if (buffer.remaining() < IpekIndex.RECORD_LENGTH) {
+						flush(channel, buffer);
+					}
+					core.createIpek(bdkHi, bdkLo, ksnHis[i], ipek);
+					if (kek != null) {
+						ipek[0] = cipher.encryptTDES(kekHi, kekLo, ipek[0]);
+						ipek[1] = cipher.encryptTDES(kekHi, kekLo, ipek[1]);
+					}
+					buffer.putLong(ksnHis[i]);
+					buffer.putLong(ipek[0]);
+					buffer.putLong(ipek[1]);
+				}
+				flush(channel, buffer);
+				channel.force(true);
+			} finally {
+				ipek[0] = 0;
+				ipek[1] = 0;
+				buffer.clear();
+				while (buffer.hasRemaining()) {
+					buffer.put((byte) 0);
+				}
+			}
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			written = true;
+		} finally {
+			if (!written) {
+				Files.deleteIfExists(temporary);
+			}
+		}
+		return size;
+	}
+	
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws Exception {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+	
+	/**
+	 * Masks the counter of the KSNs, sorts them in unsigned order and removes the duplicates
+	 * @return Number of distinct KSNs, at the start of the array
+	 */
+	private static int sortUnique(long[] ksnHis) {
+		for (int i = 0; i < ksnHis.length; i++) {
+			ksnHis[i] = (ksnHis[i] & Mask.KSN_HI_MASK) ^ Long.MIN_VALUE;
+		}
+		Arrays.sort(ksnHis);
+		int size = 0;
+		for (int i = 0; i < ksnHis.length; i++) {
+			if (size == 0 || ksnHis[i] != ksnHis[size - 1]) {
+				ksnHis[size++] = ksnHis[i];
+			}
+		}
+		for (int i = 0; i < ksnHis.length; i++) {
+			ksnHis[i] ^= Long.MIN_VALUE;
+		}
+		return size;
+	}
+}
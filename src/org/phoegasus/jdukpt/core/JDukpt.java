@@ -1,27 +1,94 @@
 package org.phoegasus.jdukpt.core;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 
+import org.phoegasus.jdukpt.metrics.DukptMetrics;
+import org.phoegasus.jdukpt.metrics.NoOpMetrics;
+import org.phoegasus.jdukpt.utils.BlockUtils;
 import org.phoegasus.jdukpt.utils.HexUtils;
-import org.phoegasus.jdukpt.utils.StringPadder;
 
 /**
  * Provides methods for DUKPT cryptographic operations. 
  * </br>The client can provide their own implementation of the Crypto interface to the constructor, otherwise the default implementation class <code>DefaultCrypto</code> is used.
+ * </br>The key derivation engine can be chosen with <code>DUKPTEngine</code>, <code>DUKPTEngine.BigInteger</code> is used by default.
+ * </br>An implementation of the BlockCipher interface can be provided instead of a Crypto implementation, in which case <code>DUKPTEngine.Primitive</code> is used by default.
+ * </br>An <code>IpekCache</code> can be provided to avoid deriving the IPEK of a device again for each transaction, and an <code>IpekIndex</code> of precomputed IPEKs to avoid deriving them at all.
+ * </br>Request and response messages can be authenticated with the ANSI X9.19 retail MAC of the MAC variants, and a PIN block can be decrypted together with the verification of the MAC of its message from a single key derivation.
+ * </br>The session keys of several variants of a KSN can be derived together by <code>deriveSessionKeys</code>, which walks the counter once.
+ * </br>PIN blocks of ISO 9564-1 formats 0, 1 and 3 can be translated from their DUKPT session key to a zone PIN key by <code>translatePIN</code>, changing their format on the way.
+ * </br>With a <code>BdkRegistry</code>, encryption and decryption can be called with the KSN only, the BDK being found from the Key Set Identifier of the KSN.
+ * </br>Base Derivation Keys can be held outside of the Java heap by an <code>OffHeapKeyStore</code>, and referenced by their <code>KeyHandle</code>. Only the Base Derivation Keys are held off heap, the IPEKs of an <code>IpekCache</code> stay on the heap.
+ * </br>Batches of <code>BatchRecord</code> can be decrypted at once, each session key being derived once for all the records sharing its KSN. Large batches can be split across the threads of an <code>Executor</code>.
+ * </br>Payloads of any length can be encrypted and decrypted with the Data variant as byte buffers or streams, with an explicit <code>CipherMode</code>, <code>Padding</code> and IV.
+ * </br>Key derivations, cipher operations and IPEK cache lookups can be reported to a <code>DukptMetrics</code> implementation configured with <code>JDukpt.builder()</code>, such as <code>JmxMetrics</code>.
+ * </br>Instances are immutable and can be shared by any number of threads. The provided Crypto and BlockCipher implementations keep their cipher state per thread, so the only locks taken are those of the <code>IpekCache</code>, which can be striped. Client implementations are shared as given, stateful ones can be configured as factories with <code>JDukpt.builder()</code> to get one instance per thread.
  * @author Phoegasus
  * @since 1.0.0
  * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
  */
 public class JDukpt {
 	
-	private JDukptCore core;
+	private final JDukptCore core;
+	
+	private final BdkRegistry bdkRegistry;
 	
 	public JDukpt() {
-		this.core = new JDukptCore();
+		this(new JDukptCore(), null);
 	}
 	
 	public JDukpt(Crypto crypto) {
-		this.core = new JDukptCore(crypto);
+		this(new JDukptCore(crypto), null);
+	}
+	
+	public JDukpt(DUKPTEngine engine) {
+		this(new DefaultCrypto(), engine);
+	}
+	
+	public JDukpt(Crypto crypto, DUKPTEngine engine) {
+		this(crypto, engine, null);
+	}
+	
+	public JDukpt(Crypto crypto, DUKPTEngine engine, IpekCache ipekCache) {
+		this(engine == DUKPTEngine.Primitive ? new JDukptPrimitiveCore(crypto, ipekCache) : new JDukptCore(crypto, ipekCache), null);
+	}
+	
+	public JDukpt(BlockCipher cipher) {
+		this(cipher, DUKPTEngine.Primitive);
+	}
+	
+	public JDukpt(BlockCipher cipher, DUKPTEngine engine) {
+		this(engine == DUKPTEngine.Primitive ? new JDukptPrimitiveCore(cipher) : new JDukptCore(new BlockCipherCrypto(cipher)), null);
+	}
+	
+	public JDukpt(BlockCipher cipher, IpekCache ipekCache) {
+		this(new JDukptPrimitiveCore(cipher, ipekCache), null);
+	}
+	
+	private JDukpt(JDukptCore core, BdkRegistry bdkRegistry) {
+		this.core = core;
+		this.bdkRegistry = bdkRegistry;
+	}
+	
+	/**
+	 * @return Registry of the BDKs used by the operations taking only a KSN, null if none is configured
+	 */
+	public BdkRegistry getBdkRegistry() {
+		return bdkRegistry;
+	}
+	
+	/**
+	 * @return Builder of a <code>JDukpt</code> configuration
+	 */
+	public static Builder builder() {
+		return new Builder();
 	}
 	
 	/**
@@ -33,7 +100,7 @@ public class JDukpt {
 	 * @throws Exception thrown by the Crypto implementation
 	 */
 	public String encryptPIN(String bdk, String ksn, String data) throws Exception {
-		return StringPadder.zeroLeftPadToMultipleOf16(encryptPIN(new BigInteger(bdk, 16), new BigInteger(ksn, 16), new BigInteger(data, 16)).toString(16));
+		return process(bdk, ksn, data, DUKPTVariant.PIN, true);
 	}
 	
 	/**
@@ -45,7 +112,7 @@ public class JDukpt {
 	 * @throws Exception thrown by the Crypto implementation
 	 */
 	public String encryptData(String bdk, String ksn, String data) throws Exception {
-		return StringPadder.zeroLeftPadToMultipleOf16(encryptData(new BigInteger(bdk, 16), new BigInteger(ksn, 16), new BigInteger(data, 16)).toString(16));
+		return process(bdk, ksn, data, DUKPTVariant.Data, true);
 	}
 	
 	/**
@@ -57,7 +124,7 @@ public class JDukpt {
 	 * @throws Exception thrown by the Crypto implementation
 	 */
 	public String decryptPIN(String bdk, String ksn, String data) throws Exception {
-		return StringPadder.zeroLeftPadToMultipleOf16(decryptPIN(new BigInteger(bdk, 16), new BigInteger(ksn, 16), new BigInteger(data, 16)).toString(16));
+		return process(bdk, ksn, data, DUKPTVariant.PIN, false);
 	}
 	
 	/**
@@ -69,7 +136,7 @@ public class JDukpt {
 	 * @throws Exception thrown by the Crypto implementation
 	 */
 	public String decryptData(String bdk, String ksn, String data) throws Exception {
-		return StringPadder.zeroLeftPadToMultipleOf16(decryptData(new BigInteger(bdk, 16), new BigInteger(ksn, 16), new BigInteger(data, 16)).toString(16));
+		return process(bdk, ksn, data, DUKPTVariant.Data, false);
 	}
 	
 	/**
@@ -81,7 +148,7 @@ public class JDukpt {
 	 * @throws Exception thrown by the Crypto implementation
 	 */
 	public byte[] encryptPIN(byte[] bdk, byte[] ksn, byte[] data) throws Exception {
-		return HexUtils.hexToBytes(encryptPIN(HexUtils.bytesToHex(bdk), HexUtils.bytesToHex(ksn), HexUtils.bytesToHex(data)));
+		return process(bdk, ksn, data, DUKPTVariant.PIN, true);
 	}
 	
 	/**
@@ -93,7 +160,7 @@ public class JDukpt {
 	 * @throws Exception thrown by the Crypto implementation
 	 */
 	public byte[] encryptData(byte[] bdk, byte[] ksn, byte[] data) throws Exception {
-		return HexUtils.hexToBytes(encryptData(HexUtils.bytesToHex(bdk), HexUtils.bytesToHex(ksn), HexUtils.bytesToHex(data)));
+		return process(bdk, ksn, data, DUKPTVariant.Data, true);
 	}
 	
 	/**
@@ -105,7 +172,7 @@ public class JDukpt {
 	 * @throws Exception thrown by the Crypto implementation
 	 */
 	public byte[] decryptPIN(byte[] bdk, byte[] ksn, byte[] data) throws Exception {
-		return HexUtils.hexToBytes(decryptPIN(HexUtils.bytesToHex(bdk), HexUtils.bytesToHex(ksn), HexUtils.bytesToHex(data)));
+		return process(bdk, ksn, data, DUKPTVariant.PIN, false);
 	}
 	
 	/**
@@ -117,7 +184,179 @@ public class JDukpt {
 	 * @throws Exception thrown by the Crypto implementation
 	 */
 	public byte[] decryptData(byte[] bdk, byte[] ksn, byte[] data) throws Exception {
-		return HexUtils.hexToBytes(decryptData(HexUtils.bytesToHex(bdk), HexUtils.bytesToHex(ksn), HexUtils.bytesToHex(data)));
+		return process(bdk, ksn, data, DUKPTVariant.Data, false);
+	}
+	
+	/**
+	 * Encrypt using PIN variant, with the BDK registered for the key set of the KSN in the <code>BdkRegistry</code>, with the Primitive engine whatever the engine of this instance
+	 * @param ksn Key Serial Number, 10 bytes long
+	 * @param data Data to encrypt
+	 * @return Encrypted data
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public byte[] encryptPIN(byte[] ksn, byte[] data) throws Exception {
+		return process(ksn, data, DUKPTVariant.PIN, true);
+	}
+	
+	/**
+	 * Encrypt using DATA variant, with the BDK registered for the key set of the KSN in the <code>BdkRegistry</code>, with the Primitive engine whatever the engine of this instance
+	 * @param ksn Key Serial Number, 10 bytes long
+	 * @param data Data to encrypt
+	 * @return Encrypted data
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public byte[] encryptData(byte[] ksn, byte[] data) throws Exception {
+		return process(ksn, data, DUKPTVariant.Data, true);
+	}
+	
+	/**
+	 * Decrypt using PIN variant, with the BDK registered for the key set of the KSN in the <code>BdkRegistry</code>, with the Primitive engine whatever the engine of this instance
+	 * @param ksn Key Serial Number, 10 bytes long
+	 * @param data Data to decrypt
+	 * @return Decrypted data
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public byte[] decryptPIN(byte[] ksn, byte[] data) throws Exception {
+		return process(ksn, data, DUKPTVariant.PIN, false);
+	}
+	
+	/**
+	 * Decrypt using DATA variant, with the BDK registered for the key set of the KSN in the <code>BdkRegistry</code>, with the Primitive engine whatever the engine of this instance
+	 * @param ksn Key Serial Number, 10 bytes long
+	 * @param data Data to decrypt
+	 * @return Decrypted data
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public byte[] decryptData(byte[] ksn, byte[] data) throws Exception {
+		return process(ksn, data, DUKPTVariant.Data, false);
+	}
+	
+	/**
+	 * Encrypt or decrypt hexadecimal data with the engine of the core
+	 * </br>The Primitive engine keeps every block of the data including leading zero blocks. The BigInteger engine gives the data to the Crypto implementation as one value, as in 1.1.0, the result being left padded with zero blocks to the length of the data.
+	 * @param bdk Hexadecimal string representation of the Base Derivation Key, up to 32 digits
+	 * @param ksn Hexadecimal string representation of the Key Serial Number, up to 20 digits
+	 * @param data Hexadecimal string representation of the data, left padded with zeroes to a multiple of 16 digits
+	 * @param variant DUKPT variant
+	 * @param encrypt true to encrypt, false to decrypt
+	 * @return Lower case hexadecimal string representation of the result
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	private String process(String bdk, String ksn, String data, DUKPTVariant variant, boolean encrypt) throws Exception {
+		if (bdk == null || bdk.length() > 32){
+			throw new IllegalArgumentException("bdk should be at most 32 hexadecimal digits");
+		}
+		if (ksn == null || ksn.length() > 20){
+			throw new IllegalArgumentException("ksn should be at most 20 hexadecimal digits");
+		}
+		if (data == null || data.isEmpty()){
+			throw new IllegalArgumentException("data is empty");
+		}
+		int bdkLength = bdk.length();
+		int ksnLength = ksn.length();
+		long[] blocks = new long[(data.length() + 15) / 16];
+		for (int i = blocks.length - 1, end = data.length(); i >= 0; i--, end -= 16) {
+			blocks[i] = HexUtils.decodeLong(data, Math.max(0, end - 16), end - Math.max(0, end - 16));
+		}
+		process(HexUtils.decodeLong(bdk, 0, Math.max(0, bdkLength - 16)), HexUtils.decodeLong(bdk, Math.max(0, bdkLength - 16), Math.min(16, bdkLength)),
+				HexUtils.decodeLong(ksn, 0, Math.max(0, ksnLength - 4)), (short) HexUtils.decodeLong(ksn, Math.max(0, ksnLength - 4), Math.min(4, ksnLength)),
+				blocks, variant, encrypt, core);
+		char[] result = new char[blocks.length * 16];
+		for (int i = 0; i < blocks.length; i++) {
+			HexUtils.encode(blocks[i], result, i * 16, false);
+			blocks[i] = 0;
+		}
+		return new String(result);
+	}
+	
+	/**
+	 * Encrypt or decrypt data with the engine of the core
+	 * </br>The Primitive engine keeps every block of the data including leading zero blocks. The BigInteger engine gives the data to the Crypto implementation as one value, as in 1.1.0, the result being left padded with zero blocks to the length of the data.
+	 * @param bdk Base Derivation Key, up to 16 bytes long
+	 * @param ksn Key Serial Number, up to 10 bytes long
+	 * @param data Data, left padded with zeroes to a multiple of 8 bytes
+	 * @param variant DUKPT variant
+	 * @param encrypt true to encrypt, false to decrypt
+	 * @return Result
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	private byte[] process(byte[] bdk, byte[] ksn, byte[] data, DUKPTVariant variant, boolean encrypt) throws Exception {
+		if (bdk == null || bdk.length > 16){
+			throw new IllegalArgumentException("bdk should be at most 16 bytes long");
+		}
+		return process(BlockUtils.getLong(bdk, 0, Math.max(0, bdk.length - 8)), BlockUtils.getLong(bdk, Math.max(0, bdk.length - 8), Math.min(8, bdk.length)), ksn, data, variant, encrypt, core);
+	}
+	
+	private byte[] process(byte[] ksn, byte[] data, DUKPTVariant variant, boolean encrypt) throws Exception {
+		if (bdkRegistry == null){
+			throw new IllegalStateException("no BdkRegistry is configured");
+		}
+		if (ksn == null || ksn.length != 10){
+			throw new IllegalArgumentException("ksn should be 10 bytes long");
+		}
+		long[] key = new long[2];
+		if (!bdkRegistry.get(BlockUtils.getLong(ksn, 0), key)){
+			throw new IllegalArgumentException("no BDK is registered for the key set of ksn");
+		}
+		try {
+			return process(key[0], key[1], ksn, data, variant, encrypt, core.primitive());
+		} finally {
+			key[0] = 0;
+			key[1] = 0;
+		}
+	}
+	
+	private byte[] process(KeyHandle bdk, byte[] ksn, byte[] data, DUKPTVariant variant, boolean encrypt) throws Exception {
+		if (bdk == null){
+			throw new IllegalArgumentException("bdk is null");
+		}
+		long[] key = new long[2];
+		bdk.store.get(bdk, key);
+		try {
+			return process(key[0], key[1], ksn, data, variant, encrypt, core.primitive());
+		} finally {
+			key[0] = 0;
+			key[1] = 0;
+		}
+	}
+	
+	/**
+	 * Encrypt or decrypt data with the given core
+	 * </br>Base Derivation Keys read from a <code>BdkRegistry</code> or an <code>OffHeapKeyStore</code> are always given to the Primitive engine, which keeps them in primitive values, the BigInteger engine copying them into BigInteger objects that cannot be wiped.
+	 * @param bdkHi High 8 bytes of the Base Derivation Key
+	 * @param bdkLo Low 8 bytes of the Base Derivation Key
+	 * @param ksn Key Serial Number, up to 10 bytes long
+	 * @param data Data, left padded with zeroes to a multiple of 8 bytes
+	 * @param variant DUKPT variant
+	 * @param encrypt true to encrypt, false to decrypt
+	 * @param engine Core of the engine, <code>core</code> or <code>core.primitive()</code>
+	 * @return Result
+	 * @throws Exception thrown by the Crypto or BlockCipher implementation
+	 */
+	private byte[] process(long bdkHi, long bdkLo, byte[] ksn, byte[] data, DUKPTVariant variant, boolean encrypt, JDukptCore engine) throws Exception {
+		if (ksn == null || ksn.length > 10){
+			throw new IllegalArgumentException("ksn should be at most 10 bytes long");
+		}
+		if (data == null || data.length == 0){
+			throw new IllegalArgumentException("data is empty");
+		}
+		long[] blocks = new long[(data.length + 7) / 8];
+		for (int i = blocks.length - 1, end = data.length; i >= 0; i--, end -= 8) {
+			blocks[i] = BlockUtils.getLong(data, Math.max(0, end - 8), end - Math.max(0, end - 8));
+		}
+		process(bdkHi, bdkLo, BlockUtils.getLong(ksn, 0, Math.max(0, ksn.length - 2)), (short) BlockUtils.getLong(ksn, Math.max(0, ksn.length - 2), Math.min(2, ksn.length)),
+				blocks, variant, encrypt, engine);
+		byte[] result = BlockUtils.toBytes(blocks);
+		Arrays.fill(blocks, 0);
+		return result;
+	}
+	
+	private void process(long bdkHi, long bdkLo, long ksnHi, short ksnLo, long[] blocks, DUKPTVariant variant, boolean encrypt, JDukptCore engine) throws Exception {
+		if (encrypt) {
+			engine.encrypt(bdkHi, bdkLo, ksnHi, ksnLo, blocks, variant);
+		} else {
+			engine.decrypt(bdkHi, bdkLo, ksnHi, ksnLo, blocks, variant);
+		}
 	}
 	
 	/**
@@ -168,6 +407,54 @@ public class JDukpt {
 		return core.decrypt(bdk, ksn, data, DUKPTVariant.Data);
 	}
 	
+	/**
+	 * Encrypt using PIN variant with a Base Derivation Key held by an <code>OffHeapKeyStore</code>, with the Primitive engine whatever the engine of this instance
+	 * @param bdk Handle of the Base Derivation Key
+	 * @param ksn Key Serial Number
+	 * @param data Data to encrypt
+	 * @return Encrypted data
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public byte[] encryptPIN(KeyHandle bdk, byte[] ksn, byte[] data) throws Exception {
+		return process(bdk, ksn, data, DUKPTVariant.PIN, true);
+	}
+	
+	/**
+	 * Encrypt using DATA variant with a Base Derivation Key held by an <code>OffHeapKeyStore</code>, with the Primitive engine whatever the engine of this instance
+	 * @param bdk Handle of the Base Derivation Key
+	 * @param ksn Key Serial Number
+	 * @param data Data to encrypt
+	 * @return Encrypted data
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public byte[] encryptData(KeyHandle bdk, byte[] ksn, byte[] data) throws Exception {
+		return process(bdk, ksn, data, DUKPTVariant.Data, true);
+	}
+	
+	/**
+	 * Decrypt using PIN variant with a Base Derivation Key held by an <code>OffHeapKeyStore</code>, with the Primitive engine whatever the engine of this instance
+	 * @param bdk Handle of the Base Derivation Key
+	 * @param ksn Key Serial Number
+	 * @param data Data to decrypt
+	 * @return Decrypted data
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public byte[] decryptPIN(KeyHandle bdk, byte[] ksn, byte[] data) throws Exception {
+		return process(bdk, ksn, data, DUKPTVariant.PIN, false);
+	}
+	
+	/**
+	 * Decrypt using DATA variant with a Base Derivation Key held by an <code>OffHeapKeyStore</code>, with the Primitive engine whatever the engine of this instance
+	 * @param bdk Handle of the Base Derivation Key
+	 * @param ksn Key Serial Number
+	 * @param data Data to decrypt
+	 * @return Decrypted data
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public byte[] decryptData(KeyHandle bdk, byte[] ksn, byte[] data) throws Exception {
+		return process(bdk, ksn, data, DUKPTVariant.Data, false);
+	}
+	
 	/**
 	 * Generate the IPEK from the BDK and KSN
 	 * @param bdk Base Derivation Key
@@ -200,4 +487,715 @@ public class JDukpt {
 	public BigInteger deriveDataEncryptionKey(BigInteger bdk, BigInteger ksn) throws Exception {
 		return core.createSessionKey(ksn, bdk, DUKPTVariant.Data);
 	}
+	
+	/**
+	 * Derive the session keys of several variants from the BDK and KSN, walking the counter once
+	 * @param bdk Base Derivation Key
+	 * @param ksn Key Serial Number
+	 * @param variants DUKPT variants
+	 * @return Session keys of the variants
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public SessionKeys deriveSessionKeys(BigInteger bdk, BigInteger ksn, DUKPTVariant... variants) throws Exception {
+		if (bdk == null){
+			throw new IllegalArgumentException("bdk is null");
+		}
+		if (ksn == null){
+			throw new IllegalArgumentException("ksn is null");
+		}
+		return deriveSessionKeys(bdk.shiftRight(64).longValue(), bdk.longValue(), ksn.shiftRight(16).longValue(), ksn.shortValue(), variants);
+	}
+	
+	/**
+	 * Derive the session keys of several variants from the BDK and KSN, walking the counter once
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param ksn Key Serial Number, 10 bytes long
+	 * @param variants DUKPT variants
+	 * @return Session keys of the variants
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public SessionKeys deriveSessionKeys(byte[] bdk, byte[] ksn, DUKPTVariant... variants) throws Exception {
+		validateKeys(bdk, ksn);
+		return deriveSessionKeys(BlockUtils.getLong(bdk, 0), BlockUtils.getLong(bdk, 8), BlockUtils.getLong(ksn, 0), ksnLo(ksn), variants);
+	}
+	
+	private SessionKeys deriveSessionKeys(long bdkHi, long bdkLo, long ksnHi, short ksnLo, DUKPTVariant[] variants) throws Exception {
+		if (variants == null || variants.length == 0){
+			throw new IllegalArgumentException("variants is empty");
+		}
+		for (DUKPTVariant variant : variants) {
+			if (variant == null){
+				throw new IllegalArgumentException("variant is null");
+			}
+		}
+		return core.primitive().createSessionKeys(bdkHi, bdkLo, ksnHi, ksnLo, variants);
+	}
+	
+	/**
+	 * Decrypt a batch using PIN variant
+	 * </br>Each record is decrypted with TDES CBC and a zero IV into its output buffer. Records sharing a KSN are decrypted with a single session key derivation, records of the same device with a single IPEK.
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param records Records to decrypt
+	 * @return Statistics of the batch
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public BatchStatistics decryptPIN(byte[] bdk, BatchRecord[] records) throws Exception {
+		return decrypt(bdk, records, DUKPTVariant.PIN);
+	}
+	
+	/**
+	 * Decrypt a batch using PIN variant
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param records Records to decrypt
+	 * @return Statistics of the batch
+	 * @throws Exception thrown by the Crypto implementation
+	 * @see #decryptPIN(byte[], BatchRecord[])
+	 */
+	public BatchStatistics decryptPIN(byte[] bdk, Collection<BatchRecord> records) throws Exception {
+		return decrypt(bdk, records.toArray(new BatchRecord[records.size()]), DUKPTVariant.PIN);
+	}
+	
+	/**
+	 * Decrypt a batch using DATA variant
+	 * </br>Each record is decrypted with TDES CBC and a zero IV into its output buffer. Records sharing a KSN are decrypted with a single session key derivation, records of the same device with a single IPEK.
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param records Records to decrypt
+	 * @return Statistics of the batch
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public BatchStatistics decryptData(byte[] bdk, BatchRecord[] records) throws Exception {
+		return decrypt(bdk, records, DUKPTVariant.Data);
+	}
+	
+	/**
+	 * Decrypt a batch using DATA variant
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param records Records to decrypt
+	 * @return Statistics of the batch
+	 * @throws Exception thrown by the Crypto implementation
+	 * @see #decryptData(byte[], BatchRecord[])
+	 */
+	public BatchStatistics decryptData(byte[] bdk, Collection<BatchRecord> records) throws Exception {
+		return decrypt(bdk, records.toArray(new BatchRecord[records.size()]), DUKPTVariant.Data);
+	}
+	
+	/**
+	 * Decrypt a batch using PIN variant, splitting it across the threads of an executor
+	 * </br>The batch is split into ranges of whole devices decrypted concurrently, for example by <code>ForkJoinPool.commonPool()</code> or by an executor starting a virtual thread per task. Each record is written to its own output buffer, so results keep the input order.
+	 * </br>The BlockCipher or Crypto implementation is called from several threads: <code>DefaultCrypto</code>, <code>DefaultBlockCipher</code> and <code>TableBlockCipher</code> keep their cipher state per thread.
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param records Records to decrypt
+	 * @param executor Executor running the decryption tasks
+	 * @return Statistics of the batch
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public BatchStatistics decryptPIN(byte[] bdk, BatchRecord[] records, Executor executor) throws Exception {
+		return decrypt(bdk, records, DUKPTVariant.PIN, executor);
+	}
+	
+	/**
+	 * Decrypt a batch using DATA variant, splitting it across the threads of an executor
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param records Records to decrypt
+	 * @param executor Executor running the decryption tasks
+	 * @return Statistics of the batch
+	 * @throws Exception thrown by the Crypto implementation
+	 * @see #decryptPIN(byte[], BatchRecord[], Executor)
+	 */
+	public BatchStatistics decryptData(byte[] bdk, BatchRecord[] records, Executor executor) throws Exception {
+		return decrypt(bdk, records, DUKPTVariant.Data, executor);
+	}
+	
+	/**
+	 * Decrypt a batch using PIN variant, with the BDK registered for the key set of each record in the <code>BdkRegistry</code>, with the Primitive engine whatever the engine of this instance
+	 * </br>Records are grouped by key set in a single pass over the batch, each group being decrypted as one batch. Nothing is decrypted if a key set is not registered.
+	 * @param records Records to decrypt
+	 * @return Statistics of the batch
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public BatchStatistics decryptPIN(BatchRecord[] records) throws Exception {
+		return decrypt(records, DUKPTVariant.PIN);
+	}
+	
+	/**
+	 * Decrypt a batch using DATA variant, with the BDK registered for the key set of each record in the <code>BdkRegistry</code>, with the Primitive engine whatever the engine of this instance
+	 * @param records Records to decrypt
+	 * @return Statistics of the batch
+	 * @throws Exception thrown by the Crypto implementation
+	 * @see #decryptPIN(BatchRecord[])
+	 */
+	public BatchStatistics decryptData(BatchRecord[] records) throws Exception {
+		return decrypt(records, DUKPTVariant.Data);
+	}
+	
+	/**
+	 * Create a cipher encrypting payloads using DATA variant
+	 * </br>The session key is derived once, the payload can then be provided in chunks of any size.
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param ksn Key Serial Number, 10 bytes long
+	 * @param mode Block cipher mode
+	 * @param padding Padding added to the payload
+	 * @param iv Initialization vector, 8 bytes long, null for a zero IV, should be null in ECB mode
+	 * @return Payload cipher
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public DataCipher createDataEncryptor(byte[] bdk, byte[] ksn, CipherMode mode, Padding padding, byte[] iv) throws Exception {
+		return createDataCipher(bdk, ksn, true, mode, padding, iv);
+	}
+	
+	/**
+	 * Create a cipher decrypting payloads using DATA variant
+	 * </br>The session key is derived once, the payload can then be provided in chunks of any size.
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param ksn Key Serial Number, 10 bytes long
+	 * @param mode Block cipher mode
+	 * @param padding Padding removed from the payload
+	 * @param iv Initialization vector, 8 bytes long, null for a zero IV, should be null in ECB mode
+	 * @return Payload cipher
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public DataCipher createDataDecryptor(byte[] bdk, byte[] ksn, CipherMode mode, Padding padding, byte[] iv) throws Exception {
+		return createDataCipher(bdk, ksn, false, mode, padding, iv);
+	}
+	
+	/**
+	 * Encrypt a payload using DATA variant
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param ksn Key Serial Number, 10 bytes long
+	 * @param in Payload to encrypt, read up to its limit
+	 * @param out Receives the encrypted payload
+	 * @param mode Block cipher mode
+	 * @param padding Padding added to the payload
+	 * @param iv Initialization vector, 8 bytes long, null for a zero IV, should be null in ECB mode
+	 * @return Number of bytes written
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public int encryptData(byte[] bdk, byte[] ksn, ByteBuffer in, ByteBuffer out, CipherMode mode, Padding padding, byte[] iv) throws Exception {
+		DataCipher cipher = createDataEncryptor(bdk, ksn, mode, padding, iv);
+		try {
+			return cipher.doFinal(in, out);
+		} finally {
+			cipher.destroy();
+		}
+	}
+	
+	/**
+	 * Decrypt a payload using DATA variant
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param ksn Key Serial Number, 10 bytes long
+	 * @param in Payload to decrypt, read up to its limit
+	 * @param out Receives the decrypted payload
+	 * @param mode Block cipher mode
+	 * @param padding Padding removed from the payload
+	 * @param iv Initialization vector, 8 bytes long, null for a zero IV, should be null in ECB mode
+	 * @return Number of bytes written
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public int decryptData(byte[] bdk, byte[] ksn, ByteBuffer in, ByteBuffer out, CipherMode mode, Padding padding, byte[] iv) throws Exception {
+		DataCipher cipher = createDataDecryptor(bdk, ksn, mode, padding, iv);
+		try {
+			return cipher.doFinal(in, out);
+		} finally {
+			cipher.destroy();
+		}
+	}
+	
+	/**
+	 * Encrypt a payload read from a stream using DATA variant, the streams are not closed
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param ksn Key Serial Number, 10 bytes long
+	 * @param in Stream providing the payload to encrypt
+	 * @param out Stream receiving the encrypted payload
+	 * @param mode Block cipher mode
+	 * @param padding Padding added to the payload
+	 * @param iv Initialization vector, 8 bytes long, null for a zero IV, should be null in ECB mode
+	 * @return Number of bytes written
+	 * @throws Exception thrown by the streams or the Crypto implementation
+	 */
+	public long encryptData(byte[] bdk, byte[] ksn, InputStream in, OutputStream out, CipherMode mode, Padding padding, byte[] iv) throws Exception {
+		DataCipher cipher = createDataEncryptor(bdk, ksn, mode, padding, iv);
+		try {
+			return cipher.doFinal(in, out);
+		} finally {
+			cipher.destroy();
+		}
+	}
+	
+	/**
+	 * Decrypt a payload read from a stream using DATA variant, the streams are not closed
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param ksn Key Serial Number, 10 bytes long
+	 * @param in Stream providing the payload to decrypt
+	 * @param out Stream receiving the decrypted payload
+	 * @param mode Block cipher mode
+	 * @param padding Padding removed from the payload
+	 * @param iv Initialization vector, 8 bytes long, null for a zero IV, should be null in ECB mode
+	 * @return Number of bytes written
+	 * @throws Exception thrown by the streams or the Crypto implementation
+	 */
+	public long decryptData(byte[] bdk, byte[] ksn, InputStream in, OutputStream out, CipherMode mode, Padding padding, byte[] iv) throws Exception {
+		DataCipher cipher = createDataDecryptor(bdk, ksn, mode, padding, iv);
+		try {
+			return cipher.doFinal(in, out);
+		} finally {
+			cipher.destroy();
+		}
+	}
+	
+	/**
+	 * Create a retail MAC of request messages, sent by the device, using the MAC request variant
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param ksn Key Serial Number, 10 bytes long
+	 * @return Retail MAC, to which the message is provided in chunks
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public RetailMAC createRequestMAC(byte[] bdk, byte[] ksn) throws Exception {
+		return createMAC(bdk, ksn, DUKPTVariant.MACRequest);
+	}
+	
+	/**
+	 * Create a retail MAC of response messages, sent by the host, using the MAC response variant
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param ksn Key Serial Number, 10 bytes long
+	 * @return Retail MAC, to which the message is provided in chunks
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public RetailMAC createResponseMAC(byte[] bdk, byte[] ksn) throws Exception {
+		return createMAC(bdk, ksn, DUKPTVariant.MACResponse);
+	}
+	
+	/**
+	 * Generate the retail MAC of a request message using the MAC request variant
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param ksn Key Serial Number, 10 bytes long
+	 * @param message Request message
+	 * @return 8 bytes long MAC
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public byte[] generateRequestMAC(byte[] bdk, byte[] ksn, byte[] message) throws Exception {
+		return generateMAC(bdk, ksn, message, DUKPTVariant.MACRequest);
+	}
+	
+	/**
+	 * Generate the retail MAC of a response message using the MAC response variant
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param ksn Key Serial Number, 10 bytes long
+	 * @param message Response message
+	 * @return 8 bytes long MAC
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public byte[] generateResponseMAC(byte[] bdk, byte[] ksn, byte[] message) throws Exception {
+		return generateMAC(bdk, ksn, message, DUKPTVariant.MACResponse);
+	}
+	
+	/**
+	 * Verify the retail MAC of a request message using the MAC request variant
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param ksn Key Serial Number, 10 bytes long
+	 * @param message Request message
+	 * @param mac Received MAC, from 4 to 8 bytes long
+	 * @return true if the MAC is valid
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public boolean verifyRequestMAC(byte[] bdk, byte[] ksn, byte[] message, byte[] mac) throws Exception {
+		return verifyMAC(bdk, ksn, message, mac, DUKPTVariant.MACRequest);
+	}
+	
+	/**
+	 * Verify the retail MAC of a response message using the MAC response variant
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param ksn Key Serial Number, 10 bytes long
+	 * @param message Response message
+	 * @param mac Received MAC, from 4 to 8 bytes long
+	 * @return true if the MAC is valid
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public boolean verifyResponseMAC(byte[] bdk, byte[] ksn, byte[] message, byte[] mac) throws Exception {
+		return verifyMAC(bdk, ksn, message, mac, DUKPTVariant.MACResponse);
+	}
+	
+	/**
+	 * Verify the retail MAC of a request message and decrypt the PIN block it carries, deriving the key of the KSN once for both session keys
+	 * </br>The PIN block is only decrypted if the MAC is valid.
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param ksn Key Serial Number, 10 bytes long
+	 * @param pinBlock Encrypted PIN block, its length should be a multiple of 8
+	 * @param message Request message
+	 * @param mac Received MAC, from 4 to 8 bytes long
+	 * @return Decrypted PIN block, or null if the MAC is invalid
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public byte[] decryptPINVerifyMAC(byte[] bdk, byte[] ksn, byte[] pinBlock, byte[] message, byte[] mac) throws Exception {
+		validateKeys(bdk, ksn);
+		if (pinBlock == null || pinBlock.length == 0 || pinBlock.length % 8 != 0){
+			throw new IllegalArgumentException("pinBlock length should be a positive multiple of 8");
+		}
+		if (message == null){
+			throw new IllegalArgumentException("message is null");
+		}
+		if (mac == null || mac.length < 4 || mac.length > 8){
+			throw new IllegalArgumentException("mac should be between 4 and 8 bytes long");
+		}
+		long[] blocks = new long[pinBlock.length / 8];
+		for (int i = 0; i < blocks.length; i++) {
+			blocks[i] = BlockUtils.getLong(pinBlock, i * 8);
+		}
+		if (!core.primitive().decryptPINVerifyMAC(BlockUtils.getLong(bdk, 0), BlockUtils.getLong(bdk, 8), BlockUtils.getLong(ksn, 0), ksnLo(ksn),
+				blocks, message, 0, message.length, mac)) {
+			return null;
+		}
+		byte[] result = BlockUtils.toBytes(blocks);
+		Arrays.fill(blocks, 0);
+		return result;
+	}
+	
+	/**
+	 * Translate a PIN block encrypted under the PIN session key of a KSN to a zone PIN key, for example to forward it to the next hop
+	 * </br>The PIN block is decrypted, checked against its format and the PAN, converted to the destination format and encrypted under the zone key, without leaving the clear PIN block in memory. The same exception is thrown whatever the check that failed.
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param ksn Key Serial Number, 10 bytes long
+	 * @param pinBlock Encrypted PIN block, 8 bytes long
+	 * @param format Format of the PIN block
+	 * @param pan PAN as ASCII digits, from 8 to 19 digits long, can be null if both formats are <code>PinBlockFormat.ISO1</code>
+	 * @param zoneKey Zone PIN key, 16 bytes long
+	 * @param zoneFormat Format of the translated PIN block
+	 * @return PIN block encrypted under the zone PIN key
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public byte[] translatePIN(byte[] bdk, byte[] ksn, byte[] pinBlock, PinBlockFormat format, byte[] pan, byte[] zoneKey, PinBlockFormat zoneFormat) throws Exception {
+		if (pinBlock == null || pinBlock.length != 8){
+			throw new IllegalArgumentException("pinBlock should be 8 bytes long");
+		}
+		byte[] result = new byte[8];
+		translatePIN(bdk, ksn, pinBlock, 0, format, pan, 0, pan == null ? 0 : pan.length, zoneKey, zoneFormat, result, 0);
+		return result;
+	}
+	
+	/**
+	 * Translate a PIN block encrypted under the PIN session key of a KSN to a zone PIN key, reading and writing caller owned buffers
+	 * </br>The PIN block is decrypted, checked against its format and the PAN, converted to the destination format and encrypted under the zone key, without leaving the clear PIN block in memory. The same exception is thrown whatever the check that failed.
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param ksn Key Serial Number, 10 bytes long
+	 * @param in Holds the 8 bytes long encrypted PIN block
+	 * @param inOffset Offset of the encrypted PIN block
+	 * @param format Format of the PIN block
+	 * @param pan Holds the PAN as ASCII digits, can be null if both formats are <code>PinBlockFormat.ISO1</code>
+	 * @param panOffset Offset of the first digit of the PAN
+	 * @param panLength Number of digits of the PAN, from 8 to 19
+	 * @param zoneKey Zone PIN key, 16 bytes long
+	 * @param zoneFormat Format of the translated PIN block
+	 * @param out Receives the PIN block encrypted under the zone PIN key, can be the input buffer
+	 * @param outOffset Offset of the translated PIN block
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	public void translatePIN(byte[] bdk, byte[] ksn, byte[] in, int inOffset, PinBlockFormat format, byte[] pan, int panOffset, int panLength,
+			byte[] zoneKey, PinBlockFormat zoneFormat, byte[] out, int outOffset) throws Exception {
+		validateKeys(bdk, ksn);
+		if (in == null || inOffset < 0 || inOffset + 8 > in.length){
+			throw new IllegalArgumentException("in should hold 8 bytes at inOffset");
+		}
+		if (out == null || outOffset < 0 || outOffset + 8 > out.length){
+			throw new IllegalArgumentException("out should hold 8 bytes at outOffset");
+		}
+		if (format == null || zoneFormat == null){
+			throw new IllegalArgumentException("format is null");
+		}
+		if (zoneKey == null || zoneKey.length != 16){
+			throw new IllegalArgumentException("zoneKey should be 16 bytes long");
+		}
+		long panField = 0;
+		if (format != PinBlockFormat.ISO1 || zoneFormat != PinBlockFormat.ISO1) {
+			if (pan == null || panOffset < 0 || panLength < 0 || panOffset + panLength > pan.length){
+				throw new IllegalArgumentException("pan should hold panLength digits at panOffset");
+			}
+			panField = PinBlock.panField(pan, panOffset, panLength);
+		}
+		BlockUtils.putLong(core.primitive().translatePIN(BlockUtils.getLong(bdk, 0), BlockUtils.getLong(bdk, 8), BlockUtils.getLong(ksn, 0), ksnLo(ksn),
+				BlockUtils.getLong(in, inOffset), format, panField, BlockUtils.getLong(zoneKey, 0), BlockUtils.getLong(zoneKey, 8), zoneFormat), out, outOffset);
+	}
+	
+	private RetailMAC createMAC(byte[] bdk, byte[] ksn, DUKPTVariant variant) throws Exception {
+		validateKeys(bdk, ksn);
+		return core.primitive().createMAC(BlockUtils.getLong(bdk, 0), BlockUtils.getLong(bdk, 8), BlockUtils.getLong(ksn, 0), ksnLo(ksn), variant);
+	}
+	
+	private byte[] generateMAC(byte[] bdk, byte[] ksn, byte[] message, DUKPTVariant variant) throws Exception {
+		RetailMAC mac = createMAC(bdk, ksn, variant);
+		try {
+			mac.update(message);
+			return mac.doFinal();
+		} finally {
+			mac.destroy();
+		}
+	}
+	
+	private boolean verifyMAC(byte[] bdk, byte[] ksn, byte[] message, byte[] mac, DUKPTVariant variant) throws Exception {
+		RetailMAC retailMAC = createMAC(bdk, ksn, variant);
+		try {
+			retailMAC.update(message);
+			return retailMAC.verify(mac);
+		} finally {
+			retailMAC.destroy();
+		}
+	}
+	
+	private static void validateKeys(byte[] bdk, byte[] ksn) {
+		if (bdk == null || bdk.length != 16){
+			throw new IllegalArgumentException("bdk should be 16 bytes long");
+		}
+		if (ksn == null || ksn.length != 10){
+			throw new IllegalArgumentException("ksn should be 10 bytes long");
+		}
+	}
+	
+	private static short ksnLo(byte[] ksn) {
+		return (short) ((ksn[8] & 0xFF) << 8 | ksn[9] & 0xFF);
+	}
+	
+	private DataCipher createDataCipher(byte[] bdk, byte[] ksn, boolean encrypt, CipherMode mode, Padding padding, byte[] iv) throws Exception {
+		validateKeys(bdk, ksn);
+		if (mode == null){
+			throw new IllegalArgumentException("mode is null");
+		}
+		if (padding == null){
+			throw new IllegalArgumentException("padding is null");
+		}
+		if (iv != null && (iv.length != 8 || mode == CipherMode.ECB)){
+			throw new IllegalArgumentException("iv should be 8 bytes long, and null in ECB mode");
+		}
+		return core.primitive().createDataCipher(BlockUtils.getLong(bdk, 0), BlockUtils.getLong(bdk, 8), BlockUtils.getLong(ksn, 0), ksnLo(ksn),
+				encrypt, mode, padding, iv == null ? 0 : BlockUtils.getLong(iv, 0));
+	}
+	
+	private BatchStatistics decrypt(byte[] bdk, BatchRecord[] records, DUKPTVariant variant) throws Exception {
+		if (bdk == null || bdk.length != 16){
+			throw new IllegalArgumentException("bdk should be 16 bytes long");
+		}
+		if (records == null){
+			throw new IllegalArgumentException("records is null");
+		}
+		return core.primitive().decrypt(BlockUtils.getLong(bdk, 0), BlockUtils.getLong(bdk, 8), records, variant);
+	}
+	
+	private BatchStatistics decrypt(BatchRecord[] records, DUKPTVariant variant) throws Exception {
+		if (bdkRegistry == null){
+			throw new IllegalStateException("no BdkRegistry is configured");
+		}
+		if (records == null){
+			throw new IllegalArgumentException("records is null");
+		}
+		int count = records.length;
+		int shift = 64 - bdkRegistry.getKsiLength() * 8;
+		// Key sets are numbered in order of first appearance in a single pass, through an open addressing table of the key sets seen
+		int capacity = Integer.highestOneBit(Math.max(1, count) * 4 - 1);
+		int mask = capacity - 1;
+		long[] slotKeySets = new long[capacity];
+		int[] slotGroups = new int[capacity];
+		int[] groupOf = new int[count];
+		int[] firsts = new int[count];
+		int[] offsets = new int[count + 1];
+		int groups = 0;
+		for (int i = 0; i < count; i++) {
+			if (records[i] == null){
+				throw new IllegalArgumentException("record is null");
+			}
+			long ksi = BlockUtils.getLong(records[i].getKsn(), 0) >>> shift;
+			int slot = BdkRegistry.hash(ksi) & mask;
+			while (slotGroups[slot] != 0 && slotKeySets[slot] != ksi) {
+				slot = slot + 1 & mask;
+			}
+			if (slotGroups[slot] == 0) {
+				slotKeySets[slot] = ksi;
+				slotGroups[slot] = groups + 1;
+				firsts[groups++] = i;
+			}
+			groupOf[i] = slotGroups[slot] - 1;
+			offsets[groupOf[i] + 1]++;
+		}
+		for (int g = 0; g < groups; g++) {
+			offsets[g + 1] += offsets[g];
+		}
+		BatchRecord[] grouped = records;
+		if (groups > 1) {
+			grouped = new BatchRecord[count];
+			int[] next = Arrays.copyOf(offsets, groups);
+			for (int i = 0; i < count; i++) {
+				grouped[next[groupOf[i]]++] = records[i];
+			}
+		}
+		long[] bdks = new long[groups * 2];
+		long[] key = new long[2];
+		try {
+			for (int g = 0; g < groups; g++) {
+				if (!bdkRegistry.get(BlockUtils.getLong(records[firsts[g]].getKsn(), 0), key)){
+					throw new IllegalArgumentException("no BDK is registered for the key set of record " + firsts[g]);
+				}
+				bdks[g * 2] = key[0];
+				bdks[g * 2 + 1] = key[1];
+			}
+			BatchStatistics statistics = new BatchStatistics();
+			for (int g = 0; g < groups; g++) {
+				statistics.add(core.primitive().decrypt(bdks[g * 2], bdks[g * 2 + 1], groups == 1 ? records : Arrays.copyOfRange(grouped, offsets[g], offsets[g + 1]), variant));
+			}
+			return statistics;
+		} finally {
+			Arrays.fill(bdks, 0);
+			key[0] = 0;
+			key[1] = 0;
+		}
+	}
+	
+	private BatchStatistics decrypt(byte[] bdk, BatchRecord[] records, DUKPTVariant variant, Executor executor) throws Exception {
+		if (bdk == null || bdk.length != 16){
+			throw new IllegalArgumentException("bdk should be 16 bytes long");
+		}
+		if (records == null){
+			throw new IllegalArgumentException("records is null");
+		}
+		if (executor == null){
+			throw new IllegalArgumentException("executor is null");
+		}
+		int parallelism = executor instanceof ForkJoinPool ? ((ForkJoinPool) executor).getParallelism() : Runtime.getRuntime().availableProcessors();
+		return core.primitive().decrypt(BlockUtils.getLong(bdk, 0), BlockUtils.getLong(bdk, 8), records, variant, executor, parallelism);
+	}
+	
+	//----------------------------------------------------------------------//
+	
+	/**
+	 * Builder of a <code>JDukpt</code> configuration.
+	 * </br>Stateful client implementations can be given as factories, in which case each thread calling the built <code>JDukpt</code> gets its own instance. When a BlockCipher is configured, <code>DUKPTEngine.Primitive</code> is used by default, otherwise <code>DUKPTEngine.BigInteger</code> with <code>DefaultCrypto</code>, as with the constructors.
+	 * </br>A builder can build several <code>JDukpt</code> objects, which do not change when the builder is modified afterwards.
+	 * @author Phoegasus
+	 * @since 1.2.0
+	 * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+	 */
+	public static class Builder {
+		
+		private Crypto crypto;
+		
+		private BlockCipher cipher;
+		
+		private DUKPTEngine engine;
+		
+		private IpekCache ipekCache;
+		
+		private DukptMetrics metrics = NoOpMetrics.INSTANCE;
+		
+		private IpekIndex ipekIndex;
+		
+		private BdkRegistry bdkRegistry;
+		
+		private Builder() {
+		}
+		
+		/**
+		 * @param crypto Crypto implementation shared by every thread, which should be thread-safe
+		 * @return This builder
+		 */
+		public Builder crypto(Crypto crypto) {
+			if (crypto == null){
+				throw new IllegalArgumentException("crypto is null");
+			}
+			this.crypto = crypto;
+			return this;
+		}
+		
+		/**
+		 * @param factory Factory creating one Crypto implementation per thread
+		 * @return This builder
+		 */
+		public Builder cryptoFactory(Supplier<? extends Crypto> factory) {
+			if (factory == null){
+				throw new IllegalArgumentException("factory is null");
+			}
+			return crypto(new ThreadLocalCrypto(factory));
+		}
+		
+		/**
+		 * @param cipher BlockCipher implementation shared by every thread, which should be thread-safe
+		 * @return This builder
+		 */
+		public Builder cipher(BlockCipher cipher) {
+			if (cipher == null){
+				throw new IllegalArgumentException("cipher is null");
+			}
+			this.cipher = cipher;
+			return this;
+		}
+		
+		/**
+		 * @param factory Factory creating one BlockCipher implementation per thread
+		 * @return This builder
+		 */
+		public Builder cipherFactory(Supplier<? extends BlockCipher> factory) {
+			if (factory == null){
+				throw new IllegalArgumentException("factory is null");
+			}
+			return cipher(new ThreadLocalBlockCipher(factory));
+		}
+		
+		/**
+		 * @param engine Key derivation engine
+		 * @return This builder
+		 */
+		public Builder engine(DUKPTEngine engine) {
+			this.engine = engine;
+			return this;
+		}
+		
+		/**
+		 * @param ipekCache IPEK cache, which can be striped for concurrent use
+		 * @return This builder
+		 */
+		public Builder ipekCache(IpekCache ipekCache) {
+			this.ipekCache = ipekCache;
+			return this;
+		}
+		
+		/**
+		 * @param ipekIndex Index of precomputed IPEKs consulted before deriving an IPEK from the BDK
+		 * @return This builder
+		 */
+		public Builder ipekIndex(IpekIndex ipekIndex) {
+			this.ipekIndex = ipekIndex;
+			return this;
+		}
+		
+		/**
+		 * @param bdkRegistry Registry of the BDKs used by the operations taking only a KSN
+		 * @return This builder
+		 */
+		public Builder bdkRegistry(BdkRegistry bdkRegistry) {
+			this.bdkRegistry = bdkRegistry;
+			return this;
+		}
+		
+		/**
+		 * @param metrics Metrics receiving the IPEK derivations, counter walks, cipher operations, IPEK cache lookups and cipher failures, <code>NoOpMetrics.INSTANCE</code> by default
+		 * @return This builder
+		 */
+		public Builder metrics(DukptMetrics metrics) {
+			if (metrics == null){
+				throw new IllegalArgumentException("metrics is null");
+			}
+			this.metrics = metrics;
+			return this;
+		}
+		
+		/**
+		 * @return JDukpt using this configuration
+		 */
+		public JDukpt build() {
+			if (crypto != null && cipher != null){
+				throw new IllegalStateException("crypto and cipher cannot both be configured");
+			}
+			if (cipher != null) {
+				return new JDukpt(engine == DUKPTEngine.BigInteger ? new JDukptCore(new BlockCipherCrypto(cipher), ipekCache, metrics, ipekIndex)
+						: new JDukptPrimitiveCore(cipher, ipekCache, metrics, ipekIndex), bdkRegistry);
+			}
+			Crypto value = crypto == null ? new DefaultCrypto() : crypto;
+			return new JDukpt(engine == DUKPTEngine.Primitive ? new JDukptPrimitiveCore(value, ipekCache, metrics, ipekIndex)
+					: new JDukptCore(value, ipekCache, metrics, ipekIndex), bdkRegistry);
+		}
+	}
 }
@@ -0,0 +1,514 @@
+package org.phoegasus.jdukpt.core;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import javax.crypto.Cipher;
+
+import org.phoegasus.jdukpt.utils.BlockUtils;
+
+/**
+ * AES DUKPT implementation (ANSI X9.24-3), alongside the TripleDES implementation of <code>JDukpt</code>.
+ * </br>The Key Serial Number is 12 bytes long: the 8 bytes long initial key ID, made of the BDK ID and the derivation ID, followed by a 32 bit transaction counter with at most 16 bits set.
+ * </br>Keys are derived with AES in the counter mode key derivation function of NIST SP 800-108. The initial key is derived from the BDK, then one intermediate derivation key per set counter bit, from the leftmost one, then the working key of the requested usage and type. The working key cannot be stronger than the BDK.
+ * </br>Several working keys of the same transaction, for example the PIN and MAC keys, can be derived with a single walk of the counter by <code>deriveWorkingKeys</code>. Hosts which keep the initial keys of their devices can skip the first derivation with the methods taking an initial key.
+ * </br>An instance created with a maximum number of devices retains, for each initial key ID, the intermediate derivation keys of the last counter walk. Consecutive counters of a device then resume the walk from the keys they share instead of starting from the initial key. The retained keys stay on the Java heap until their device is evicted in least recently used order or <code>clearIntermediateKeys</code> is called, which overwrite them with zeroes.
+ * </br>The AES ciphers of the JCE provider are cached per thread. Intermediate keys which are not retained are overwritten with zeroes once the working key is derived, and the copies of the keys kept by the cache once each operation is complete.
+ * </br>Instances can be shared by any number of threads.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public class JDukptAes {
+	
+	private static final int KSN_LENGTH = 12;
+	
+	private static final int INITIAL_KEY_ID_LENGTH = 8;
+	
+	private static final byte[] ZERO_IV = new byte[AES.BLOCK_LENGTH];
+	
+	private final int maximumDevices;
+	
+	/**
+	 * Intermediate derivation keys of the last counter walk of each initial key ID, in least recently used order, null if they are not retained
+	 */
+	private final LinkedHashMap<Long, AesKeyPath> paths;
+	
+	/**
+	 * Creates an instance which does not retain intermediate derivation keys
+	 */
+	public JDukptAes() {
+		this.maximumDevices = 0;
+		this.paths = null;
+	}
+	
+	/**
+	 * @param maximumDevices Maximum number of devices whose intermediate derivation keys are retained
+	 */
+	public JDukptAes(int maximumDevices) {
+		if (maximumDevices <= 0){
+			throw new IllegalArgumentException("maximumDevices should be positive");
+		}
+		this.maximumDevices = maximumDevices;
+		this.paths = new LinkedHashMap<Long, AesKeyPath>(16, 0.75f, true);
+	}
+	
+	/**
+	 * Encrypt a PIN block using the PIN working key, in ECB mode
+	 * @param bdk Base Derivation Key
+	 * @param ksn Key Serial Number
+	 * @param pinBlock PIN block, its length should be a multiple of 16
+	 * @param type Type of the working key
+	 * @return Encrypted PIN block
+	 * @throws Exception thrown by the JCE provider
+	 */
+	public byte[] encryptPIN(byte[] bdk, byte[] ksn, byte[] pinBlock, AESKeyType type) throws Exception {
+		return process(bdk, ksn, pinBlock, AESKeyUsage.PIN, type, Cipher.ENCRYPT_MODE, null);
+	}
+	
+	/**
+	 * Decrypt a PIN block using the PIN working key, in ECB mode
+	 * @param bdk Base Derivation Key
+	 * @param ksn Key Serial Number
+	 * @param pinBlock Encrypted PIN block, its length should be a multiple of 16
+	 * @param type Type of the working key
+	 * @return Decrypted PIN block
+	 * @throws Exception thrown by the JCE provider
+	 */
+	public byte[] decryptPIN(byte[] bdk, byte[] ksn, byte[] pinBlock, AESKeyType type) throws Exception {
+		return process(bdk, ksn, pinBlock, AESKeyUsage.PIN, type, Cipher.DECRYPT_MODE, null);
+	}
+	
+	/**
+	 * Encrypt data using the data working key, in CBC mode with a zero IV
+	 * @param bdk Base Derivation Key
+	 * @param ksn Key Serial Number
+	 * @param data Data to encrypt, its length should be a multiple of 16
+	 * @param type Type of the working key
+	 * @return Encrypted data
+	 * @throws Exception thrown by the JCE provider
+	 */
+	public byte[] encryptData(byte[] bdk, byte[] ksn, byte[] data, AESKeyType type) throws Exception {
+		return process(bdk, ksn, data, AESKeyUsage.Data, type, Cipher.ENCRYPT_MODE, ZERO_IV);
+	}
+	
+	/**
+	 * Decrypt data using the data working key, in CBC mode with a zero IV
+	 * @param bdk Base Derivation Key
+	 * @param ksn Key Serial Number
+	 * @param data Data to decrypt, its length should be a multiple of 16
+	 * @param type Type of the working key
+	 * @return Decrypted data
+	 * @throws Exception thrown by the JCE provider
+	 */
+	public byte[] decryptData(byte[] bdk, byte[] ksn, byte[] data, AESKeyType type) throws Exception {
+		return process(bdk, ksn, data, AESKeyUsage.Data, type, Cipher.DECRYPT_MODE, ZERO_IV);
+	}
+	
+	/**
+	 * Generate the AES-CMAC of a message using the MAC working key
+	 * @param bdk Base Derivation Key
+	 * @param ksn Key Serial Number
+	 * @param message Message to authenticate
+	 * @param type Type of the working key
+	 * @return 16 bytes long MAC, which can be truncated by the caller
+	 * @throws Exception thrown by the JCE provider
+	 */
+	public byte[] generateMAC(byte[] bdk, byte[] ksn, byte[] message, AESKeyType type) throws Exception {
+		if (message == null){
+			throw new IllegalArgumentException("message is null");
+		}
+		byte[] key = deriveWorkingKey(bdk, ksn, AESKeyUsage.MAC, type);
+		try {
+			return cmac(key, message);
+		} finally {
+			Arrays.fill(key, (byte) 0);
+		}
+	}
+	
+	/**
+	 * Generate the AES-CMAC of a message with a working key already derived
+	 * @param key MAC working key, 16, 24, or 32 bytes long
+	 * @param message Message to authenticate
+	 * @return 16 bytes long MAC, which can be truncated by the caller
+	 * @throws Exception thrown by the JCE provider
+	 */
+	public byte[] generateMAC(byte[] key, byte[] message) throws Exception {
+		if (key == null){
+			throw new IllegalArgumentException("key is null");
+		}
+		if (message == null){
+			throw new IllegalArgumentException("message is null");
+		}
+		AESKeyType.of(key.length);
+		return cmac(key, message);
+	}
+	
+	/**
+	 * Verify the AES-CMAC of a message using the MAC working key
+	 * @param bdk Base Derivation Key
+	 * @param ksn Key Serial Number
+	 * @param message Authenticated message
+	 * @param mac MAC to verify, from 4 to 16 bytes long, truncated MACs are compared with the leftmost bytes of the AES-CMAC
+	 * @param type Type of the working key
+	 * @return true if the MAC is valid
+	 * @throws Exception thrown by the JCE provider
+	 */
+	public boolean verifyMAC(byte[] bdk, byte[] ksn, byte[] message, byte[] mac, AESKeyType type) throws Exception {
+		if (mac == null || mac.length < 4 || mac.length > AES.BLOCK_LENGTH){
+			throw new IllegalArgumentException("mac should be between 4 and 16 bytes long");
+		}
+		byte[] expected = generateMAC(bdk, ksn, message, type);
+		return MessageDigest.isEqual(Arrays.copyOf(expected, mac.length), mac);
+	}
+	
+	/**
+	 * Derive the initial key of a device from the BDK
+	 * @param bdk Base Derivation Key, 16, 24, or 32 bytes long
+	 * @param initialKeyId Initial key ID, the leftmost 8 bytes of the Key Serial Number
+	 * @return Initial key, of the type of the BDK
+	 * @throws Exception thrown by the JCE provider
+	 */
+	public byte[] deriveInitialKey(byte[] bdk, byte[] initialKeyId) throws Exception {
+		if (bdk == null){
+			throw new IllegalArgumentException("bdk is null");
+		}
+		if (initialKeyId == null || initialKeyId.length < INITIAL_KEY_ID_LENGTH){
+			throw new IllegalArgumentException("initialKeyId should be 8 bytes long");
+		}
+		AESKeyType bdkType = AESKeyType.of(bdk.length);
+		byte[] derivationData = new byte[AES.BLOCK_LENGTH];
+		byte[] initialKey = new byte[bdkType.getLength()];
+		derivationData(derivationData, AESKeyUsage.INITIAL_KEY, bdkType, initialKeyId, 0);
+		deriveKey(bdk, bdkType, derivationData, initialKey);
+		return initialKey;
+	}
+	
+	/**
+	 * Derive the working key of a transaction from the BDK
+	 * @param bdk Base Derivation Key, 16, 24, or 32 bytes long
+	 * @param ksn Key Serial Number, 12 bytes long
+	 * @param usage Usage of the working key
+	 * @param type Type of the working key
+	 * @return Working key
+	 * @throws Exception thrown by the JCE provider
+	 */
+	public byte[] deriveWorkingKey(byte[] bdk, byte[] ksn, AESKeyUsage usage, AESKeyType type) throws Exception {
+		return deriveWorkingKeys(bdk, ksn, type, usage)[0];
+	}
+	
+	/**
+	 * Derive several working keys of a transaction from the BDK, walking the counter once
+	 * @param bdk Base Derivation Key, 16, 24, or 32 bytes long
+	 * @param ksn Key Serial Number, 12 bytes long
+	 * @param type Type of the working keys
+	 * @param usages Usages of the working keys
+	 * @return Working keys, in the order of the usages
+	 * @throws Exception thrown by the JCE provider
+	 */
+	public byte[][] deriveWorkingKeys(byte[] bdk, byte[] ksn, AESKeyType type, AESKeyUsage... usages) throws Exception {
+		validateKsn(ksn);
+		byte[] initialKey = deriveInitialKey(bdk, ksn);
+		try {
+			return deriveWorkingKeysFromInitialKey(initialKey, ksn, type, usages);
+		} finally {
+			Arrays.fill(initialKey, (byte) 0);
+		}
+	}
+	
+	/**
+	 * Derive the working key of a transaction from the initial key of the device
+	 * @param initialKey Initial key, 16, 24, or 32 bytes long
+	 * @param ksn Key Serial Number, 12 bytes long
+	 * @param usage Usage of the working key
+	 * @param type Type of the working key
+	 * @return Working key
+	 * @throws Exception thrown by the JCE provider
+	 */
+	public byte[] deriveWorkingKeyFromInitialKey(byte[] initialKey, byte[] ksn, AESKeyUsage usage, AESKeyType type) throws Exception {
+		return deriveWorkingKeysFromInitialKey(initialKey, ksn, type, usage)[0];
+	}
+	
+	/**
+	 * Derive several working keys of a transaction from the initial key of the device, walking the counter once
+	 * @param initialKey Initial key, 16, 24, or 32 bytes long
+	 * @param ksn Key Serial Number, 12 bytes long
+	 * @param type Type of the working keys
+	 * @param usages Usages of the working keys
+	 * @return Working keys, in the order of the usages
+	 * @throws Exception thrown by the JCE provider
+	 */
+	public byte[][] deriveWorkingKeysFromInitialKey(byte[] initialKey, byte[] ksn, AESKeyType type, AESKeyUsage... usages) throws Exception {
+		if (initialKey == null){
+			throw new IllegalArgumentException("initialKey is null");
+		}
+		validateKsn(ksn);
+		if (type == null){
+			throw new IllegalArgumentException("type is null");
+		}
+		if (usages == null || usages.length == 0){
+			throw new IllegalArgumentException("usages is empty");
+		}
+		AESKeyType derivationType = AESKeyType.of(initialKey.length);
+		if (type.getLength() > derivationType.getLength()){
+			throw new IllegalArgumentException("working key should not be stronger than the derivation key");
+		}
+		byte[] derivationData = new byte[AES.BLOCK_LENGTH];
+		byte[] key = new byte[initialKey.length];
+		try {
+			int counter = counter(ksn);
+			walk(initialKey, derivationType, ksn, counter, key);
+			byte[][] workingKeys = new byte[usages.length][];
+			for (int i = 0; i < usages.length; i++) {
+				if (usages[i] == null){
+					throw new IllegalArgumentException("usage is null");
+				}
+				workingKeys[i] = new byte[type.getLength()];
+				derivationData(derivationData, usages[i].getIndicator(), type, ksn, counter);
+				deriveKey(key, type, derivationData, workingKeys[i]);
+			}
+			return workingKeys;
+		} finally {
+			Arrays.fill(key, (byte) 0);
+		}
+	}
+	
+	/**
+	 * @return true if the intermediate derivation keys of the counter walks are retained
+	 */
+	public boolean isRetainingIntermediateKeys() {
+		return paths != null;
+	}
+	
+	/**
+	 * Overwrites the retained intermediate derivation keys of every device with zeroes and forgets them
+	 */
+	public void clearIntermediateKeys() {
+		if (paths == null) {
+			return;
+		}
+		synchronized (paths) {
+			for (Iterator<AesKeyPath> iterator = paths.values().iterator(); iterator.hasNext();) {
+				AesKeyPath path = iterator.next();
+				iterator.remove();
+				clear(path);
+			}
+		}
+	}
+	
+	/**
+	 * Walks the set counter bits from the initial key, resuming from the retained intermediate derivation keys of the device if they are retained
+	 * @param initialKey Initial key
+	 * @param type Type of the initial key
+	 * @param ksn Key Serial Number
+	 * @param counter Counter of the Key Serial Number
+	 * @param key Receives the intermediate derivation key of the counter
+	 */
+	private void walk(byte[] initialKey, AESKeyType type, byte[] ksn, int counter, byte[] key) throws Exception {
+		if (paths != null) {
+			AesKeyPath path = path(BlockUtils.getLong(ksn, 0), initialKey);
+			synchronized (path) {
+				if (!path.isCleared()) {
+					int bit = path.resume(counter, key);
+					if (bit >= 0) {
+						int remaining = (2 << bit) - 1;
+						walk(key, type, ksn, counter & ~remaining, counter & remaining, path);
+					}
+					path.complete(counter);
+					return;
+				}
+			}
+		}
+		System.arraycopy(initialKey, 0, key, 0, key.length);
+		walk(key, type, ksn, 0, counter, null);
+	}
+	
+	/**
+	 * Walks counter bits from a key
+	 * @param key Key reached after the walked bits, receives the key reached after the bits to walk
+	 * @param type Type of the key
+	 * @param ksn Key Serial Number
+	 * @param walked Counter bits already walked
+	 * @param bits Counter bits to walk
+	 * @param path Path recording the keys reached, null if they are not retained
+	 */
+	private static void walk(byte[] key, AESKeyType type, byte[] ksn, int walked, int bits, AesKeyPath path) throws Exception {
+		byte[] derivationData = new byte[AES.BLOCK_LENGTH];
+		byte[] next = new byte[key.length];
+		int depth = Integer.bitCount(walked);
+		try {
+			for (; bits != 0; bits ^= Integer.highestOneBit(bits)) {
+				walked |= Integer.highestOneBit(bits);
+				derivationData(derivationData, AESKeyUsage.KEY_DERIVATION, type, ksn, walked);
+				deriveKey(key, type, derivationData, next);
+				System.arraycopy(next, 0, key, 0, key.length);
+				if (path != null) {
+					path.record(++depth, key);
+				}
+			}
+		} finally {
+			Arrays.fill(next, (byte) 0);
+		}
+	}
+	
+	/**
+	 * Looks up the path of an initial key ID, replacing it with a new path if it does not start at the initial key, and evicting the least recently used path once the maximum number of devices is reached
+	 */
+	private AesKeyPath path(long initialKeyId, byte[] initialKey) {
+		synchronized (paths) {
+			AesKeyPath path = paths.get(initialKeyId);
+			if (path != null) {
+				synchronized (path) {
+					if (path.startsWith(initialKey)) {
+						return path;
+					}
+				}
+				clear(path);
+			}
+			path = new AesKeyPath(initialKey);
+			paths.put(initialKeyId, path);
+			if (paths.size() > maximumDevices) {
+				Iterator<AesKeyPath> eldest = paths.values().iterator();
+				AesKeyPath evicted = eldest.next();
+				eldest.remove();
+				clear(evicted);
+			}
+			return path;
+		}
+	}
+	
+	private static void clear(AesKeyPath path) {
+		synchronized (path) {
+			path.clear();
+		}
+	}
+	
+	private byte[] process(byte[] bdk, byte[] ksn, byte[] data, AESKeyUsage usage, AESKeyType type, int mode, byte[] iv) throws Exception {
+		if (data == null || data.length == 0 || data.length % AES.BLOCK_LENGTH != 0){
+			throw new IllegalArgumentException("data length should be a positive multiple of 16");
+		}
+		byte[] key = deriveWorkingKey(bdk, ksn, usage, type);
+		AES aes = AES.get();
+		try {
+			return aes.process(key, data, mode, iv);
+		} finally {
+			Arrays.fill(key, (byte) 0);
+			aes.clear();
+		}
+	}
+	
+	/**
+	 * Derives a key with the counter mode KDF of NIST SP 800-108, AES being the pseudorandom function
+	 * @param derivationKey Derivation key
+	 * @param type Type of the derived key
+	 * @param derivationData Derivation data, its block counter is set for each block
+	 * @param key Receives the derived key
+	 */
+	private static void deriveKey(byte[] derivationKey, AESKeyType type, byte[] derivationData, byte[] key) throws Exception {
+		AES aes = AES.get();
+		byte[] block = new byte[AES.BLOCK_LENGTH];
+		try {
+			for (int offset = 0, i = 1; offset < type.getLength(); offset += AES.BLOCK_LENGTH, i++) {
+				derivationData[1] = (byte) i;
+				aes.encryptBlock(derivationKey, derivationData, 0, block, 0);
+				System.arraycopy(block, 0, key, offset, Math.min(AES.BLOCK_LENGTH, type.getLength() - offset));
+			}
+		} finally {
+			Arrays.fill(block, (byte) 0);
+			aes.clear();
+		}
+	}
+	
+	/**
+	 * Fills the derivation data: version, block counter, key usage, algorithm, key length in bits, then the initial key ID for the initial key, or the derivation ID and the counter for other keys
+	 */
+	private static void derivationData(byte[] data, int usage, AESKeyType type, byte[] ksn, int counter) {
+		int bits = type.getLength() * 8;
+		data[0] = 0x01;
+		data[1] = 0x01;
+		data[2] = (byte) (usage >>> 8);
+		data[3] = (byte) usage;
+		data[4] = (byte) (type.getAlgorithm() >>> 8);
+		data[5] = (byte) type.getAlgorithm();
+		data[6] = (byte) (bits >>> 8);
+		data[7] = (byte) bits;
+		if (usage == AESKeyUsage.INITIAL_KEY) {
+			System.arraycopy(ksn, 0, data, 8, INITIAL_KEY_ID_LENGTH);
+		} else {
+			System.arraycopy(ksn, 4, data, 8, 4);
+			data[12] = (byte) (counter >>> 24);
+			data[13] = (byte) (counter >>> 16);
+			data[14] = (byte) (counter >>> 8);
+			data[15] = (byte) counter;
+		}
+	}
+	
+	/**
+	 * Computes the AES-CMAC of a message (NIST SP 800-38B)
+	 */
+	private static byte[] cmac(byte[] key, byte[] message) throws Exception {
+		AES aes = AES.get();
+		byte[] subkey = new byte[AES.BLOCK_LENGTH];
+		try {
+			return cmac(aes, key, message, subkey);
+		} finally {
+			Arrays.fill(subkey, (byte) 0);
+			aes.clear();
+		}
+	}
+	
+	private static byte[] cmac(AES aes, byte[] key, byte[] message, byte[] subkey) throws Exception {
+		aes.encryptBlock(key, subkey, 0, subkey, 0);
+		shift(subkey);
+		boolean complete = message.length > 0 && message.length % AES.BLOCK_LENGTH == 0;
+		if (!complete) {
+			shift(subkey);
+		}
+		int blocks = Math.max(1, (message.length + AES.BLOCK_LENGTH - 1) / AES.BLOCK_LENGTH);
+		byte[] mac = new byte[AES.BLOCK_LENGTH];
+		for (int i = 0; i < blocks - 1; i++) {
+			for (int j = 0; j < AES.BLOCK_LENGTH; j++) {
+				mac[j] ^= message[i * AES.BLOCK_LENGTH + j];
+			}
+			aes.encryptBlock(key, mac, 0, mac, 0);
+		}
+		int offset = (blocks - 1) * AES.BLOCK_LENGTH;
+		for (int j = 0; j < AES.BLOCK_LENGTH; j++) {
+			int b;
+			if (offset + j < message.length) {
+				b = message[offset + j];
+			} else {
+				b = offset + j == message.length ? 0x80 : 0;
+			}
+			mac[j] ^= b ^ subkey[j];
+		}
+		aes.encryptBlock(key, mac, 0, mac, 0);
+		return mac;
+	}
+	
+	/**
+	 * Doubles a CMAC subkey in GF(2^128)
+	 */
+	private static void shift(byte[] subkey) {
+		int carry = (subkey[0] & 0x80) != 0 ? 0x87 : 0;
+		for (int i = 0; i < AES.BLOCK_LENGTH - 1; i++) {
+			subkey[i] = (byte) (subkey[i] << 1 | (subkey[i + 1] & 0xFF) >>> 7);
+		}
+		subkey[AES.BLOCK_LENGTH - 1] = (byte) (subkey[AES.BLOCK_LENGTH - 1] << 1 ^ carry);
+	}
+	
+	private static void validateKsn(byte[] ksn) {
+		if (ksn == null || ksn.length != KSN_LENGTH){
+			throw new IllegalArgumentException("ksn should be 12 bytes long");
+		}
+		if (Integer.bitCount(counter(ksn)) > 16){
+			throw new IllegalArgumentException("ksn counter should have at most 16 bits set");
+		}
+	}
+	
+	private static int counter(byte[] ksn) {
+		return (ksn[8] & 0xFF) << 24 | (ksn[9] & 0xFF) << 16 | (ksn[10] & 0xFF) << 8 | ksn[11] & 0xFF;
+	}
+}
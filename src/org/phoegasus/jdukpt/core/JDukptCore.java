@@ -2,6 +2,10 @@ package org.phoegasus.jdukpt.core;
 
 import java.math.BigInteger;
 
+import org.phoegasus.jdukpt.metrics.DukptMetrics;
+import org.phoegasus.jdukpt.metrics.NoOpMetrics;
+import org.phoegasus.jdukpt.utils.BlockUtils;
+
 /**
  * Core class containing DUKPT operations.
  * @author Phoegasus
@@ -10,14 +14,52 @@ import java.math.BigInteger;
  */
 class JDukptCore {
 	
-	private Crypto crypto;
+	private final Crypto crypto;
+	
+	/**
+	 * Crypto implementation provided by the client, before any metering
+	 */
+	private final Crypto source;
+	
+	final IpekCache ipekCache;
+	
+	/**
+	 * Precomputed IPEKs consulted before deriving an IPEK, can be null
+	 */
+	final IpekIndex ipekIndex;
+	
+	final DukptMetrics metrics;
+	
+	/**
+	 * true unless the metrics are <code>NoOpMetrics</code>, in which case nothing is measured
+	 */
+	final boolean instrumented;
+	
+	private volatile JDukptPrimitiveCore primitive;
 	
 	JDukptCore() {
-		this.crypto = new DefaultCrypto();
+		this(new DefaultCrypto());
 	}
 	
 	JDukptCore(Crypto crypto) {
-		this.crypto = crypto;
+		this(crypto, null);
+	}
+	
+	JDukptCore(Crypto crypto, IpekCache ipekCache) {
+		this(crypto, ipekCache, NoOpMetrics.INSTANCE);
+	}
+	
+	JDukptCore(Crypto crypto, IpekCache ipekCache, DukptMetrics metrics) {
+		this(crypto, ipekCache, metrics, null);
+	}
+	
+	JDukptCore(Crypto crypto, IpekCache ipekCache, DukptMetrics metrics, IpekIndex ipekIndex) {
+		this.source = crypto;
+		this.ipekCache = ipekCache;
+		this.ipekIndex = ipekIndex;
+		this.metrics = metrics;
+		this.instrumented = metrics != NoOpMetrics.INSTANCE;
+		this.crypto = instrumented ? new MeteredCrypto(crypto, metrics) : crypto;
 	}
 	
 	/**
@@ -28,6 +70,16 @@ class JDukptCore {
 	 * @throws Exception thrown by the Crypto implementation
 	 */
 	BigInteger createIpek(BigInteger ksn, BigInteger bdk) throws Exception {
+		if (instrumented) {
+			long start = System.nanoTime();
+			BigInteger ipek = ipek(ksn, bdk);
+			metrics.ipekDerived(System.nanoTime() - start);
+			return ipek;
+		}
+		return ipek(ksn, bdk);
+	}
+	
+	private BigInteger ipek(BigInteger ksn, BigInteger bdk) throws Exception {
 		return crypto.encryptTDES(bdk, ksn.and(Mask.KsnMask.getValue()).shiftRight(16)).shiftLeft(64)
 				.or(crypto.encryptTDES(bdk.xor(Mask.KeyMask.getValue()), ksn.and(Mask.KsnMask.getValue()).shiftRight(16)));
 	}
@@ -40,13 +92,17 @@ class JDukptCore {
 	 * @throws Exception thrown by the Crypto implementation
 	 */
 	BigInteger deriveKey(BigInteger ipek, BigInteger ksn) throws Exception {
-		BigInteger ksnReg = ksn.and(Mask.Ls16Mask.getValue()).and(Mask.Reg8Mask.getValue());
+		long start = instrumented ? System.nanoTime() : 0;
+		long ksnLo = ksn.longValue();
+		long ksnReg = ksnLo & Mask.REG8_MASK;
+		int counter = (int) ksnLo & Mask.REG3_MASK;
 		BigInteger curKey = ipek;
-		for (BigInteger shiftReg = Mask.ShiftRegMask.getValue(); shiftReg.compareTo(BigInteger.ZERO) > 0; shiftReg = shiftReg.shiftRight(1)) {
-			if(shiftReg.and(ksn).and(Mask.Reg3Mask.getValue()).compareTo(BigInteger.ZERO) > 0) {
-				ksnReg = ksnReg.or(shiftReg);
-				curKey = generateKey(curKey, ksnReg);
-			}
+		for (int bits = counter; bits != 0; bits ^= Integer.highestOneBit(bits)) {
+			ksnReg |= Integer.highestOneBit(bits);
+			curKey = generateKey(curKey, BlockUtils.toBigInteger(ksnReg));
+		}
+		if (instrumented) {
+			metrics.keyDerived(Integer.bitCount(counter), System.nanoTime() - start);
 		}
 		return curKey;
 	}
@@ -85,8 +141,71 @@ class JDukptCore {
 	 */
 	BigInteger createSessionKey(BigInteger bdk, BigInteger ksn, DUKPTVariant variant) throws Exception {
 		BigInteger ksnBigInt = ksn;
-        BigInteger ipek = createIpek(ksnBigInt, bdk);
-        return variant == DUKPTVariant.PIN ? createSessionKeyPEK(ipek, ksn) : createSessionKeyDEK(ipek, ksn);
+        BigInteger ipek = ipekCache != null ? cachedIpek(ksnBigInt, bdk) : loadIpek(ksnBigInt, bdk);
+        if (variant == DUKPTVariant.PIN) {
+        	return createSessionKeyPEK(ipek, ksn);
+        } else if (variant == DUKPTVariant.Data) {
+        	return createSessionKeyDEK(ipek, ksn);
+        }
+        return deriveKey(ipek, ksn).xor(variant == DUKPTVariant.MACRequest ? Mask.MacRequestMask.getValue() : Mask.MacResponseMask.getValue());
+	}
+
+	/**
+	 * Get the Initial PIN Encryption Key from the IPEK cache, creating and caching it if it is not cached
+	 * @param ksn Key Serial Number
+	 * @param bdk Base Derivation Key
+	 * @return Initial PIN Encryption Key
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	private BigInteger cachedIpek(BigInteger ksn, BigInteger bdk) throws Exception {
+		long bdkHi = bdk.shiftRight(64).longValue();
+		long bdkLo = bdk.longValue();
+		long ksnHi = ksn.shiftRight(16).longValue();
+		long[] ipek = new long[2];
+		if(ipekCache.get(bdkHi, bdkLo, ksnHi, ipek)) {
+			if (instrumented) {
+				metrics.cacheHit();
+			}
+			return BlockUtils.toBigInteger(ipek);
+		}
+		if (instrumented) {
+			metrics.cacheMiss();
+		}
+		BigInteger value = loadIpek(ksn, bdk);
+		ipek[0] = value.shiftRight(64).longValue();
+		ipek[1] = value.longValue();
+		ipekCache.put(bdkHi, bdkLo, ksnHi, ipek);
+		return value;
+	}
+
+	/**
+	 * Get the Initial PIN Encryption Key from the IPEK index, creating it if it is not in the index
+	 * @param ksn Key Serial Number
+	 * @param bdk Base Derivation Key
+	 * @return Initial PIN Encryption Key
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	private BigInteger loadIpek(BigInteger ksn, BigInteger bdk) throws Exception {
+		if (ipekIndex != null) {
+			long[] ipek = new long[2];
+			if (ipekIndex.get(bdk.shiftRight(64).longValue(), bdk.longValue(), ksn.shiftRight(16).longValue(), ipek)) {
+				return BlockUtils.toBigInteger(ipek);
+			}
+		}
+		return createIpek(ksn, bdk);
+	}
+
+	/**
+	 * Get the primitive core sharing the Crypto implementation, IPEK cache, IPEK index and metrics of this core, used by batch operations
+	 * @return Primitive core
+	 */
+	JDukptPrimitiveCore primitive() {
+		JDukptPrimitiveCore value = primitive;
+		if(value == null) {
+			value = new JDukptPrimitiveCore(source, ipekCache, metrics, ipekIndex);
+			primitive = value;
+		}
+		return value;
 	}
 
 	/**
@@ -157,4 +276,45 @@ class JDukptCore {
         return crypto.decryptTDES(createSessionKey(bdk, ksn, variant), data);
 	}
 
+	/**
+	 * Encrypt blocks in place, the blocks being given to the Crypto implementation as one value
+	 * @param bdkHi Leftmost 8 bytes of the Base Derivation Key
+	 * @param bdkLo Rightmost 8 bytes of the Base Derivation Key
+	 * @param ksnHi Leftmost 8 bytes of the Key Serial Number
+	 * @param ksnLo Rightmost 2 bytes of the Key Serial Number
+	 * @param blocks Blocks to encrypt, receive the encrypted blocks right aligned
+	 * @param variant DUKPT variant
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	void encrypt(long bdkHi, long bdkLo, long ksnHi, short ksnLo, long[] blocks, DUKPTVariant variant) throws Exception {
+		copy(encrypt(BlockUtils.toBigInteger(bdkHi, bdkLo), ksn(ksnHi, ksnLo), BlockUtils.toBigInteger(blocks), variant), blocks);
+	}
+
+	/**
+	 * Decrypt blocks in place, the blocks being given to the Crypto implementation as one value
+	 * @param bdkHi Leftmost 8 bytes of the Base Derivation Key
+	 * @param bdkLo Rightmost 8 bytes of the Base Derivation Key
+	 * @param ksnHi Leftmost 8 bytes of the Key Serial Number
+	 * @param ksnLo Rightmost 2 bytes of the Key Serial Number
+	 * @param blocks Blocks to decrypt, receive the decrypted blocks right aligned
+	 * @param variant DUKPT variant
+	 * @throws Exception thrown by the Crypto implementation
+	 */
+	void decrypt(long bdkHi, long bdkLo, long ksnHi, short ksnLo, long[] blocks, DUKPTVariant variant) throws Exception {
+		copy(decrypt(BlockUtils.toBigInteger(bdkHi, bdkLo), ksn(ksnHi, ksnLo), BlockUtils.toBigInteger(blocks), variant), blocks);
+	}
+
+	private static BigInteger ksn(long ksnHi, short ksnLo) {
+		return BlockUtils.toBigInteger(ksnHi).shiftLeft(16).or(BigInteger.valueOf(ksnLo & 0xFFFF));
+	}
+
+	/**
+	 * Writes a value into blocks, right aligned and left padded with zero blocks
+	 */
+	private static void copy(BigInteger value, long[] blocks) {
+		for (int i = 0; i < blocks.length; i++) {
+			blocks[blocks.length - 1 - i] = value.shiftRight(i * 64).longValue();
+		}
+	}
+
 }
@@ -0,0 +1,892 @@
+package org.phoegasus.jdukpt.core;
+
+import static org.phoegasus.jdukpt.utils.BlockUtils.getLong;
+import static org.phoegasus.jdukpt.utils.BlockUtils.putLong;
+import static org.phoegasus.jdukpt.utils.BlockUtils.toBigInteger;
+import static org.phoegasus.jdukpt.utils.BlockUtils.toBlocks;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.phoegasus.jdukpt.metrics.DukptMetrics;
+import org.phoegasus.jdukpt.metrics.NoOpMetrics;
+
+/**
+ * Core class containing DUKPT operations on primitive values.
+ * </br>128-bit keys are held as two <code>long</code> halves (<i>hi</i> being the leftmost 8 bytes), 80-bit KSNs as a <code>long</code> holding the leftmost 8 bytes and a <code>short</code> holding the last 2 bytes.
+ * </br>Key derivation methods write their result into a caller supplied <code>long[2]</code> so that the IPEK &rarr; future key &rarr; session key chain does not allocate.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+class JDukptPrimitiveCore extends JDukptCore {
+
+	private final BlockCipher cipher;
+
+	JDukptPrimitiveCore() {
+		this(new DefaultBlockCipher());
+	}
+
+	JDukptPrimitiveCore(Crypto crypto) {
+		this(crypto, null);
+	}
+
+	JDukptPrimitiveCore(Crypto crypto, IpekCache ipekCache) {
+		this(crypto, ipekCache, NoOpMetrics.INSTANCE);
+	}
+
+	JDukptPrimitiveCore(Crypto crypto, IpekCache ipekCache, DukptMetrics metrics) {
+		this(crypto, ipekCache, metrics, null);
+	}
+
+	JDukptPrimitiveCore(Crypto crypto, IpekCache ipekCache, DukptMetrics metrics, IpekIndex ipekIndex) {
+		super(crypto, ipekCache, metrics, ipekIndex);
+		this.cipher = metered(CryptoBlockCipher.of(crypto));
+	}
+
+	JDukptPrimitiveCore(BlockCipher cipher) {
+		this(cipher, null);
+	}
+
+	JDukptPrimitiveCore(BlockCipher cipher, IpekCache ipekCache) {
+		this(cipher, ipekCache, NoOpMetrics.INSTANCE);
+	}
+
+	JDukptPrimitiveCore(BlockCipher cipher, IpekCache ipekCache, DukptMetrics metrics) {
+		this(cipher, ipekCache, metrics, null);
+	}
+
+	JDukptPrimitiveCore(BlockCipher cipher, IpekCache ipekCache, DukptMetrics metrics, IpekIndex ipekIndex) {
+		super(new BlockCipherCrypto(cipher), ipekCache, metrics, ipekIndex);
+		this.cipher = metered(cipher);
+	}
+
+	private BlockCipher metered(BlockCipher cipher) {
+		return instrumented ? new MeteredBlockCipher(cipher, metrics) : cipher;
+	}
+
+	/**
+	 * Create Initial PIN Encryption Key
+	 * @param bdkHi Leftmost 8 bytes of the Base Derivation Key
+	 * @param bdkLo Rightmost 8 bytes of the Base Derivation Key
+	 * @param ksnHi Leftmost 8 bytes of the Key Serial Number
+	 * @param ipek Receives the Initial PIN Encryption Key
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	void createIpek(long bdkHi, long bdkLo, long ksnHi, long[] ipek) throws Exception {
+		long start = instrumented ? System.nanoTime() : 0;
+		long data = ksnHi & Mask.KSN_HI_MASK;
+		long hi = cipher.encryptTDES(bdkHi, bdkLo, data);
+		long lo = cipher.encryptTDES(bdkHi ^ Mask.KEY_MASK_HI, bdkLo ^ Mask.KEY_MASK_LO, data);
+		ipek[0] = hi;
+		ipek[1] = lo;
+		if(instrumented) {
+			metrics.ipekDerived(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Derive Key from IPEK and KSN
+	 * @param key Initial PIN Encryption Key, receives the derived key
+	 * @param ksnHi Leftmost 8 bytes of the Key Serial Number
+	 * @param ksnLo Rightmost 2 bytes of the Key Serial Number
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	void deriveKey(long[] key, long ksnHi, short ksnLo) throws Exception {
+		long start = instrumented ? System.nanoTime() : 0;
+		long ksn = ksnHi << 16 | ksnLo & 0xFFFF;
+		int counter = (int) ksn & Mask.REG3_MASK;
+		long ksnReg = ksn & Mask.REG8_MASK;
+		for (int bits = counter; bits != 0; bits ^= Integer.highestOneBit(bits)) {
+			ksnReg |= Integer.highestOneBit(bits);
+			generateKey(key, ksnReg);
+		}
+		if(instrumented) {
+			metrics.keyDerived(Integer.bitCount(counter), System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Create Session Key with PEK Mask
+	 * @param key Initial PIN Encryption Key, receives the session key
+	 * @param ksnHi Leftmost 8 bytes of the Key Serial Number
+	 * @param ksnLo Rightmost 2 bytes of the Key Serial Number
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	void createSessionKeyPEK(long[] key, long ksnHi, short ksnLo) throws Exception {
+		deriveKey(key, ksnHi, ksnLo);
+		pinVariant(key);
+	}
+
+	/**
+	 * Create Session Key with DEK Mask
+	 * @param key Initial PIN Encryption Key, receives the session key
+	 * @param ksnHi Leftmost 8 bytes of the Key Serial Number
+	 * @param ksnLo Rightmost 2 bytes of the Key Serial Number
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	void createSessionKeyDEK(long[] key, long ksnHi, short ksnLo) throws Exception {
+		deriveKey(key, ksnHi, ksnLo);
+		dataVariant(key);
+	}
+
+	/**
+	 * Create Session Key
+	 * @param bdkHi Leftmost 8 bytes of the Base Derivation Key
+	 * @param bdkLo Rightmost 8 bytes of the Base Derivation Key
+	 * @param ksnHi Leftmost 8 bytes of the Key Serial Number
+	 * @param ksnLo Rightmost 2 bytes of the Key Serial Number
+	 * @param variant DUKPT variant used to determine session key creation method
+	 * @param key Receives the session key
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	void createSessionKey(long bdkHi, long bdkLo, long ksnHi, short ksnLo, DUKPTVariant variant, long[] key) throws Exception {
+		createFutureKey(bdkHi, bdkLo, ksnHi, ksnLo, key);
+		variant(key, variant);
+	}
+
+	/**
+	 * Create the session keys of several variants from a single future key derivation
+	 * @param bdkHi Leftmost 8 bytes of the Base Derivation Key
+	 * @param bdkLo Rightmost 8 bytes of the Base Derivation Key
+	 * @param ksnHi Leftmost 8 bytes of the Key Serial Number
+	 * @param ksnLo Rightmost 2 bytes of the Key Serial Number
+	 * @param variants DUKPT variants
+	 * @return Session keys
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	SessionKeys createSessionKeys(long bdkHi, long bdkLo, long ksnHi, short ksnLo, DUKPTVariant[] variants) throws Exception {
+		long[] future = new long[2];
+		long[] key = new long[2];
+		SessionKeys sessionKeys = new SessionKeys();
+		try {
+			createFutureKey(bdkHi, bdkLo, ksnHi, ksnLo, future);
+			for(DUKPTVariant variant : variants) {
+				key[0] = future[0];
+				key[1] = future[1];
+				variant(key, variant);
+				sessionKeys.set(variant, key);
+			}
+		} finally {
+			future[0] = 0;
+			future[1] = 0;
+			key[0] = 0;
+			key[1] = 0;
+		}
+		return sessionKeys;
+	}
+
+	/**
+	 * Create the future key of a KSN, from which the session keys of every variant are obtained
+	 * @param bdkHi Leftmost 8 bytes of the Base Derivation Key
+	 * @param bdkLo Rightmost 8 bytes of the Base Derivation Key
+	 * @param ksnHi Leftmost 8 bytes of the Key Serial Number
+	 * @param ksnLo Rightmost 2 bytes of the Key Serial Number
+	 * @param key Receives the future key
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	void createFutureKey(long bdkHi, long bdkLo, long ksnHi, short ksnLo, long[] key) throws Exception {
+		if(ipekCache != null && ipekCache.isRetainingFutureKeys()) {
+			cachedFutureKey(bdkHi, bdkLo, ksnHi, ksnLo, key);
+		} else {
+			cachedIpek(bdkHi, bdkLo, ksnHi, key);
+			deriveKey(key, ksnHi, ksnLo);
+		}
+	}
+
+	/**
+	 * Get the Initial PIN Encryption Key from the IPEK cache, creating and caching it if it is not cached
+	 * @param bdkHi Leftmost 8 bytes of the Base Derivation Key
+	 * @param bdkLo Rightmost 8 bytes of the Base Derivation Key
+	 * @param ksnHi Leftmost 8 bytes of the Key Serial Number
+	 * @param ipek Receives the Initial PIN Encryption Key
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	void cachedIpek(long bdkHi, long bdkLo, long ksnHi, long[] ipek) throws Exception {
+		if(ipekCache == null) {
+			loadIpek(bdkHi, bdkLo, ksnHi, ipek);
+		} else if(ipekCache.get(bdkHi, bdkLo, ksnHi, ipek)) {
+			if(instrumented) {
+				metrics.cacheHit();
+			}
+		} else {
+			if(instrumented) {
+				metrics.cacheMiss();
+			}
+			loadIpek(bdkHi, bdkLo, ksnHi, ipek);
+			ipekCache.put(bdkHi, bdkLo, ksnHi, ipek);
+		}
+	}
+
+	/**
+	 * Get the Initial PIN Encryption Key from the IPEK index, creating it if it is not in the index
+	 * @param bdkHi Leftmost 8 bytes of the Base Derivation Key
+	 * @param bdkLo Rightmost 8 bytes of the Base Derivation Key
+	 * @param ksnHi Leftmost 8 bytes of the Key Serial Number
+	 * @param ipek Receives the Initial PIN Encryption Key
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	void loadIpek(long bdkHi, long bdkLo, long ksnHi, long[] ipek) throws Exception {
+		if(ipekIndex == null || !ipekIndex.get(bdkHi, bdkLo, ksnHi, ipek)) {
+			createIpek(bdkHi, bdkLo, ksnHi, ipek);
+		}
+	}
+
+	/**
+	 * Derive Key from the future key path of the device cached in the IPEK cache, creating and caching the IPEK if the device is not cached
+	 * @param bdkHi Leftmost 8 bytes of the Base Derivation Key
+	 * @param bdkLo Rightmost 8 bytes of the Base Derivation Key
+	 * @param ksnHi Leftmost 8 bytes of the Key Serial Number
+	 * @param ksnLo Rightmost 2 bytes of the Key Serial Number
+	 * @param key Receives the derived key
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	void cachedFutureKey(long bdkHi, long bdkLo, long ksnHi, short ksnLo, long[] key) throws Exception {
+		FutureKeyPath path = ipekCache.getPath(bdkHi, bdkLo, ksnHi);
+		if(instrumented) {
+			if(path == null) {
+				metrics.cacheMiss();
+			} else {
+				metrics.cacheHit();
+			}
+		}
+		if(path == null) {
+			loadIpek(bdkHi, bdkLo, ksnHi, key);
+			path = ipekCache.putPath(bdkHi, bdkLo, ksnHi, key);
+		}
+		synchronized(path) {
+			if(!path.isCleared()) {
+				deriveKey(path, key, ksnHi, ksnLo);
+				return;
+			}
+		}
+		loadIpek(bdkHi, bdkLo, ksnHi, key);
+		deriveKey(key, ksnHi, ksnLo);
+	}
+
+	/**
+	 * Derive Key resuming from the deepest key of the future key path shared with the KSN, and record the keys walked in the path
+	 * @param path Future key path of the device
+	 * @param key Receives the derived key
+	 * @param ksnHi Leftmost 8 bytes of the Key Serial Number
+	 * @param ksnLo Rightmost 2 bytes of the Key Serial Number
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	private void deriveKey(FutureKeyPath path, long[] key, long ksnHi, short ksnLo) throws Exception {
+		long ksn = ksnHi << 16 | ksnLo & 0xFFFF;
+		int counter = (int) ksn & Mask.REG3_MASK;
+		long start = instrumented ? System.nanoTime() : 0;
+		int bit = path.resume(counter, key);
+		int walked = 0;
+		if(bit >= 0) {
+			int depth = Integer.bitCount(counter >>> bit + 1);
+			long ksnReg = ksn & Mask.REG8_MASK | counter & -1 << bit + 1;
+			for (int bits = counter & (2 << bit) - 1; bits != 0; bits ^= Integer.highestOneBit(bits)) {
+				ksnReg |= Integer.highestOneBit(bits);
+				generateKey(key, ksnReg);
+				path.record(++depth, key);
+				walked++;
+			}
+		}
+		path.complete(counter);
+		if(instrumented) {
+			metrics.keyDerived(walked, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Turn a future key into the session key of a variant
+	 * @param key Future key, receives the session key
+	 * @param variant DUKPT variant
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	void variant(long[] key, DUKPTVariant variant) throws Exception {
+		if(variant == DUKPTVariant.PIN) {
+			pinVariant(key);
+		} else if(variant == DUKPTVariant.Data) {
+			dataVariant(key);
+		} else if(variant == DUKPTVariant.MACRequest) {
+			key[0] ^= Mask.MAC_REQUEST_MASK_HI;
+			key[1] ^= Mask.MAC_REQUEST_MASK_LO;
+		} else {
+			key[0] ^= Mask.MAC_RESPONSE_MASK_HI;
+			key[1] ^= Mask.MAC_RESPONSE_MASK_LO;
+		}
+	}
+
+	private void pinVariant(long[] key) {
+		key[0] ^= Mask.PEK_MASK_HI;
+		key[1] ^= Mask.PEK_MASK_LO;
+	}
+
+	private void dataVariant(long[] key) throws Exception {
+		long keyHi = key[0] ^ Mask.DEK_MASK_HI;
+		long keyLo = key[1] ^ Mask.DEK_MASK_LO;
+		key[0] = cipher.encryptTDES(keyHi, keyLo, keyHi);
+		key[1] = cipher.encryptTDES(keyHi, keyLo, keyLo);
+	}
+
+	/**
+	 * Generate Key
+	 * @param key Encryption Key, receives the generated key
+	 * @param ksn Rightmost 8 bytes of the Key Serial Number register
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	void generateKey(long[] key, long ksn) throws Exception {
+		long keyHi = key[0];
+		long keyLo = key[1];
+		key[0] = encryptRegister(keyHi ^ Mask.KEY_MASK_HI, keyLo ^ Mask.KEY_MASK_LO, ksn);
+		key[1] = encryptRegister(keyHi, keyLo, ksn);
+	}
+
+	/**
+	 * Encrypt Register
+	 * @param keyHi Leftmost 8 bytes of the Encryption Key
+	 * @param keyLo Rightmost 8 bytes of the Encryption Key
+	 * @param reg8 Register which to encrypt
+	 * @return Encrypted register value
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	long encryptRegister(long keyHi, long keyLo, long reg8) throws Exception {
+		return keyLo ^ cipher.encryptDES(keyHi, keyLo ^ reg8);
+	}
+
+	/**
+	 * Decrypt a batch of records
+	 * </br>Records are processed in KSN order: the IPEK of each device is obtained once, each session key is derived once, and consecutive counters of a device resume their walk from the keys they share.
+	 * @param bdkHi Leftmost 8 bytes of the Base Derivation Key
+	 * @param bdkLo Rightmost 8 bytes of the Base Derivation Key
+	 * @param records Records to decrypt
+	 * @param variant DUKPT variant
+	 * @return Statistics of the batch
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	BatchStatistics decrypt(long bdkHi, long bdkLo, BatchRecord[] records, DUKPTVariant variant) throws Exception {
+		Batch batch = new Batch(records);
+		return decrypt(bdkHi, bdkLo, batch, 0, records.length, variant);
+	}
+
+	/**
+	 * Decrypt a batch of records with tasks run by an executor
+	 * </br>The records, in KSN order, are split into ranges holding whole devices, each range being decrypted by one task. Every record is written to its own output buffer, so results keep the input order whatever the order in which the tasks run.
+	 * </br>If the executor rejects a task, the tasks already submitted are withdrawn, those already running being waited for, so that no output buffer is written once the failure is thrown.
+	 * @param bdkHi Leftmost 8 bytes of the Base Derivation Key
+	 * @param bdkLo Rightmost 8 bytes of the Base Derivation Key
+	 * @param records Records to decrypt
+	 * @param variant DUKPT variant
+	 * @param executor Executor running the tasks
+	 * @param parallelism Number of threads expected to run the tasks
+	 * @return Statistics of the batch
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	BatchStatistics decrypt(final long bdkHi, final long bdkLo, BatchRecord[] records, final DUKPTVariant variant, Executor executor, int parallelism) throws Exception {
+		final Batch batch = new Batch(records);
+		int count = records.length;
+		int tasks = Math.min(count, parallelism * 4);
+		List<FutureTask<BatchStatistics>> futures = new ArrayList<FutureTask<BatchStatistics>>(tasks);
+		List<RangeTask> ranges = new ArrayList<RangeTask>(tasks);
+		int from = 0;
+		for(int task = 1; task <= tasks && from < count; task++) {
+			int to = Math.max(from + 1, (int) ((long) count * task / tasks));
+			while(to < count && batch.sameDevice(to - 1, to)) {
+				to++;
+			}
+			RangeTask range = new RangeTask(bdkHi, bdkLo, batch, from, to, variant);
+			FutureTask<BatchStatistics> future = new FutureTask<BatchStatistics>(range);
+			ranges.add(range);
+			futures.add(future);
+			try {
+				executor.execute(future);
+			} catch (RuntimeException | Error e) {
+				for(int i = 0; i < futures.size(); i++) {
+					futures.get(i).cancel(false);
+					ranges.get(i).withdraw();
+				}
+				throw e;
+			}
+			from = to;
+		}
+		BatchStatistics statistics = new BatchStatistics();
+		Exception failure = null;
+		for(FutureTask<BatchStatistics> future : futures) {
+			try {
+				statistics.add(future.get());
+			} catch (ExecutionException e) {
+				if(e.getCause() instanceof Error) {
+					throw (Error) e.getCause();
+				}
+				if(failure == null) {
+					failure = (Exception) e.getCause();
+				}
+			}
+		}
+		if(failure != null) {
+			throw failure;
+		}
+		return statistics;
+	}
+
+	/**
+	 * Decrypt a range of a batch
+	 * @param bdkHi Leftmost 8 bytes of the Base Derivation Key
+	 * @param bdkLo Rightmost 8 bytes of the Base Derivation Key
+	 * @param batch Batch in KSN order
+	 * @param from First position of the range in KSN order, inclusive
+	 * @param to Last position of the range in KSN order, exclusive
+	 * @param variant DUKPT variant
+	 * @return Statistics of the range
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	private BatchStatistics decrypt(long bdkHi, long bdkLo, Batch batch, int from, int to, DUKPTVariant variant) throws Exception {
+		BatchStatistics statistics = new BatchStatistics();
+		long[] key = new long[2];
+		FutureKeyPath path = null;
+		try {
+			int i = from;
+			while(i < to) {
+				int record = batch.order[i];
+				long ksnHi = batch.ksnHis[record];
+				short ksnLo = batch.ksnLos[record];
+				if(path == null || !batch.sameDevice(i - 1, i)) {
+					if(path != null) {
+						path.clear();
+					}
+					cachedIpek(bdkHi, bdkLo, ksnHi, key);
+					path = new FutureKeyPath(key[0], key[1]);
+					statistics.devices++;
+				}
+				deriveKey(path, key, ksnHi, ksnLo);
+				variant(key, variant);
+				statistics.sessionKeys++;
+				do {
+					statistics.blocks += decrypt(key, batch.records[batch.order[i]]);
+					statistics.records++;
+					i++;
+				} while(i < to && batch.sameKsn(i - 1, i));
+			}
+		} finally {
+			key[0] = 0;
+			key[1] = 0;
+			if(path != null) {
+				path.clear();
+			}
+		}
+		return statistics;
+	}
+
+	/**
+	 * Decrypt a record with TDES CBC and a zero IV
+	 * @param key Session key
+	 * @param record Record to decrypt
+	 * @return Number of blocks decrypted
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	private int decrypt(long[] key, BatchRecord record) throws Exception {
+		byte[] input = record.getInput();
+		byte[] output = record.getOutput();
+		int inputOffset = record.getInputOffset();
+		int outputOffset = record.getOutputOffset();
+		int blocks = record.getLength() / 8;
+		long chain = 0;
+		for(int i = 0; i < blocks; i++) {
+			long block = getLong(input, inputOffset + i * 8);
+			putLong(cipher.decryptTDES(key[0], key[1], block) ^ chain, output, outputOffset + i * 8);
+			chain = block;
+		}
+		return blocks;
+	}
+
+	/**
+	 * Encrypt blocks in place with TDES CBC and a zero IV
+	 * @param bdkHi Leftmost 8 bytes of the Base Derivation Key
+	 * @param bdkLo Rightmost 8 bytes of the Base Derivation Key
+	 * @param ksnHi Leftmost 8 bytes of the Key Serial Number
+	 * @param ksnLo Rightmost 2 bytes of the Key Serial Number
+	 * @param blocks Blocks to encrypt, receive the encrypted blocks
+	 * @param variant DUKPT variant
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	@Override
+	void encrypt(long bdkHi, long bdkLo, long ksnHi, short ksnLo, long[] blocks, DUKPTVariant variant) throws Exception {
+		long[] key = new long[2];
+		createSessionKey(bdkHi, bdkLo, ksnHi, ksnLo, variant, key);
+		long chain = 0;
+		for(int i = 0; i < blocks.length; i++) {
+			chain = cipher.encryptTDES(key[0], key[1], blocks[i] ^ chain);
+			blocks[i] = chain;
+		}
+		key[0] = 0;
+		key[1] = 0;
+	}
+
+	/**
+	 * Decrypt blocks in place with TDES CBC and a zero IV
+	 * @param bdkHi Leftmost 8 bytes of the Base Derivation Key
+	 * @param bdkLo Rightmost 8 bytes of the Base Derivation Key
+	 * @param ksnHi Leftmost 8 bytes of the Key Serial Number
+	 * @param ksnLo Rightmost 2 bytes of the Key Serial Number
+	 * @param blocks Blocks to decrypt, receive the decrypted blocks
+	 * @param variant DUKPT variant
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	@Override
+	void decrypt(long bdkHi, long bdkLo, long ksnHi, short ksnLo, long[] blocks, DUKPTVariant variant) throws Exception {
+		long[] key = new long[2];
+		createSessionKey(bdkHi, bdkLo, ksnHi, ksnLo, variant, key);
+		long chain = 0;
+		for(int i = 0; i < blocks.length; i++) {
+			long block = blocks[i];
+			blocks[i] = cipher.decryptTDES(key[0], key[1], block) ^ chain;
+			chain = block;
+		}
+		key[0] = 0;
+		key[1] = 0;
+	}
+
+	/**
+	 * Create a payload cipher using the Data variant session key
+	 * @param bdkHi Leftmost 8 bytes of the Base Derivation Key
+	 * @param bdkLo Rightmost 8 bytes of the Base Derivation Key
+	 * @param ksnHi Leftmost 8 bytes of the Key Serial Number
+	 * @param ksnLo Rightmost 2 bytes of the Key Serial Number
+	 * @param encrypt true to encrypt, false to decrypt
+	 * @param mode Block cipher mode
+	 * @param padding Padding
+	 * @param iv Initialization vector, ignored in ECB mode
+	 * @return Payload cipher
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	DataCipher createDataCipher(long bdkHi, long bdkLo, long ksnHi, short ksnLo, boolean encrypt, CipherMode mode, Padding padding, long iv) throws Exception {
+		long[] key = new long[2];
+		createSessionKey(bdkHi, bdkLo, ksnHi, ksnLo, DUKPTVariant.Data, key);
+		DataCipher dataCipher = new DataCipher(cipher, key, encrypt, mode, padding, iv);
+		key[0] = 0;
+		key[1] = 0;
+		return dataCipher;
+	}
+
+	/**
+	 * Create a retail MAC using a MAC variant session key
+	 * @param bdkHi Leftmost 8 bytes of the Base Derivation Key
+	 * @param bdkLo Rightmost 8 bytes of the Base Derivation Key
+	 * @param ksnHi Leftmost 8 bytes of the Key Serial Number
+	 * @param ksnLo Rightmost 2 bytes of the Key Serial Number
+	 * @param variant <code>DUKPTVariant.MACRequest</code> or <code>DUKPTVariant.MACResponse</code>
+	 * @return Retail MAC
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	RetailMAC createMAC(long bdkHi, long bdkLo, long ksnHi, short ksnLo, DUKPTVariant variant) throws Exception {
+		long[] key = new long[2];
+		createSessionKey(bdkHi, bdkLo, ksnHi, ksnLo, variant, key);
+		RetailMAC mac = new RetailMAC(cipher, key);
+		key[0] = 0;
+		key[1] = 0;
+		return mac;
+	}
+
+	/**
+	 * Decrypt PIN blocks and verify the request MAC of the message carrying them, deriving the future key once for both session keys
+	 * @param bdkHi Leftmost 8 bytes of the Base Derivation Key
+	 * @param bdkLo Rightmost 8 bytes of the Base Derivation Key
+	 * @param ksnHi Leftmost 8 bytes of the Key Serial Number
+	 * @param ksnLo Rightmost 2 bytes of the Key Serial Number
+	 * @param blocks Encrypted PIN blocks, receive the decrypted blocks if the MAC is valid, zeroes otherwise
+	 * @param message Buffer holding the message
+	 * @param offset Offset of the message
+	 * @param length Length of the message
+	 * @param mac MAC to verify, from 4 to 8 bytes long
+	 * @return true if the MAC is valid
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	boolean decryptPINVerifyMAC(long bdkHi, long bdkLo, long ksnHi, short ksnLo, long[] blocks, byte[] message, int offset, int length, byte[] mac) throws Exception {
+		long[] key = new long[2];
+		long futureHi = 0;
+		long futureLo = 0;
+		try {
+			createFutureKey(bdkHi, bdkLo, ksnHi, ksnLo, key);
+			futureHi = key[0];
+			futureLo = key[1];
+			variant(key, DUKPTVariant.MACRequest);
+			RetailMAC retailMAC = new RetailMAC(cipher, key);
+			boolean valid;
+			try {
+				retailMAC.update(message, offset, length);
+				valid = retailMAC.verify(mac);
+			} finally {
+				retailMAC.destroy();
+			}
+			if(!valid) {
+				Arrays.fill(blocks, 0);
+				return false;
+			}
+			key[0] = futureHi;
+			key[1] = futureLo;
+			variant(key, DUKPTVariant.PIN);
+			long chain = 0;
+			for(int i = 0; i < blocks.length; i++) {
+				long block = blocks[i];
+				blocks[i] = cipher.decryptTDES(key[0], key[1], block) ^ chain;
+				chain = block;
+			}
+			return true;
+		} finally {
+			key[0] = 0;
+			key[1] = 0;
+			futureHi = 0;
+			futureLo = 0;
+		}
+	}
+
+	/**
+	 * Translate a PIN block from the PIN session key of a KSN to a zone PIN key, the clear PIN block being checked and converted to the destination format
+	 * @param bdkHi Leftmost 8 bytes of the Base Derivation Key
+	 * @param bdkLo Rightmost 8 bytes of the Base Derivation Key
+	 * @param ksnHi Leftmost 8 bytes of the Key Serial Number
+	 * @param ksnLo Rightmost 2 bytes of the Key Serial Number
+	 * @param pinBlock PIN block encrypted under the PIN session key
+	 * @param format Format of the PIN block
+	 * @param panField PAN field of the PIN block formats combined with the PAN
+	 * @param zoneKeyHi Leftmost 8 bytes of the zone PIN key
+	 * @param zoneKeyLo Rightmost 8 bytes of the zone PIN key
+	 * @param zoneFormat Format of the translated PIN block
+	 * @return PIN block encrypted under the zone PIN key
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	long translatePIN(long bdkHi, long bdkLo, long ksnHi, short ksnLo, long pinBlock, PinBlockFormat format, long panField,
+			long zoneKeyHi, long zoneKeyLo, PinBlockFormat zoneFormat) throws Exception {
+		long[] key = new long[2];
+		long pin;
+		try {
+			createSessionKey(bdkHi, bdkLo, ksnHi, ksnLo, DUKPTVariant.PIN, key);
+			pin = PinBlock.decode(cipher.decryptTDES(key[0], key[1], pinBlock), format, panField);
+		} finally {
+			key[0] = 0;
+			key[1] = 0;
+		}
+		return cipher.encryptTDES(zoneKeyHi, zoneKeyLo, PinBlock.encode(pin, zoneFormat, panField));
+	}
+
+	/**
+	 * @return BlockCipher implementation used by this core
+	 */
+	BlockCipher cipher() {
+		return cipher;
+	}
+
+	@Override
+	JDukptPrimitiveCore primitive() {
+		return this;
+	}
+
+	//----------------------------------------------------------------------//
+
+	@Override
+	BigInteger createIpek(BigInteger ksn, BigInteger bdk) throws Exception {
+		long[] ipek = new long[2];
+		createIpek(bdk.shiftRight(64).longValue(), bdk.longValue(), ksn.shiftRight(16).longValue(), ipek);
+		return toBigInteger(ipek);
+	}
+
+	@Override
+	BigInteger createSessionKey(BigInteger bdk, BigInteger ksn, DUKPTVariant variant) throws Exception {
+		long[] key = new long[2];
+		createSessionKey(bdk.shiftRight(64).longValue(), bdk.longValue(), ksn.shiftRight(16).longValue(), ksn.shortValue(), variant, key);
+		return toBigInteger(key);
+	}
+
+	@Override
+	BigInteger encrypt(BigInteger bdk, BigInteger ksn, BigInteger data, DUKPTVariant variant) throws Exception {
+		if (bdk == null){
+			throw new IllegalArgumentException("bdk is null");
+		}
+		if (ksn == null){
+			throw new IllegalArgumentException("ksn is null");
+		}
+		if (data == null){
+			throw new IllegalArgumentException("data is null");
+		}
+
+		long[] blocks = toBlocks(data);
+		encrypt(bdk.shiftRight(64).longValue(), bdk.longValue(), ksn.shiftRight(16).longValue(), ksn.shortValue(), blocks, variant);
+		return toBigInteger(blocks);
+	}
+
+	@Override
+	BigInteger decrypt(BigInteger bdk, BigInteger ksn, BigInteger data, DUKPTVariant variant) throws Exception {
+		if (bdk == null){
+			throw new IllegalArgumentException("bdk is null");
+		}
+		if (ksn == null){
+			throw new IllegalArgumentException("ksn is null");
+		}
+		if (data == null){
+			throw new IllegalArgumentException("data is null");
+		}
+
+		long[] blocks = toBlocks(data);
+		decrypt(bdk.shiftRight(64).longValue(), bdk.longValue(), ksn.shiftRight(16).longValue(), ksn.shortValue(), blocks, variant);
+		return toBigInteger(blocks);
+	}
+
+	//----------------------------------------------------------------------//
+
+	/**
+	 * Records of a batch with their parsed KSNs, and the order of the records by KSN
+	 */
+	/**
+	 * Task decrypting a range of a batch, which can be withdrawn until it starts
+	 */
+	private final class RangeTask implements Callable<BatchStatistics> {
+
+		private static final int PENDING = 0;
+
+		private static final int RUNNING = 1;
+
+		private static final int WITHDRAWN = 2;
+
+		private final AtomicInteger state = new AtomicInteger(PENDING);
+
+		private final CountDownLatch finished = new CountDownLatch(1);
+
+		private final long bdkHi;
+
+		private final long bdkLo;
+
+		private final Batch batch;
+
+		private final int from;
+
+		private final int to;
+
+		private final DUKPTVariant variant;
+
+		RangeTask(long bdkHi, long bdkLo, Batch batch, int from, int to, DUKPTVariant variant) {
+			this.bdkHi = bdkHi;
+			this.bdkLo = bdkLo;
+			this.batch = batch;
+			this.from = from;
+			this.to = to;
+			this.variant = variant;
+		}
+
+		@Override
+		public BatchStatistics call() throws Exception {
+			if(!state.compareAndSet(PENDING, RUNNING)) {
+				return new BatchStatistics();
+			}
+			try {
+				return decrypt(bdkHi, bdkLo, batch, from, to, variant);
+			} finally {
+				finished.countDown();
+			}
+		}
+
+		/**
+		 * Prevents the task from starting, or waits for the end of the task if it is already running
+		 */
+		void withdraw() {
+			if(state.compareAndSet(PENDING, WITHDRAWN)) {
+				return;
+			}
+			boolean interrupted = false;
+			while(true) {
+				try {
+					finished.await();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if(interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private static final class Batch {
+
+		private final BatchRecord[] records;
+
+		private final long[] ksnHis;
+
+		private final short[] ksnLos;
+
+		/**
+		 * Record indices sorted by KSN, the counter bits being the least significant bits of the ordering
+		 */
+		private final int[] order;
+
+		Batch(BatchRecord[] records) {
+			int count = records.length;
+			this.records = records;
+			this.ksnHis = new long[count];
+			this.ksnLos = new short[count];
+			this.order = new int[count];
+			for(int i = 0; i < count; i++) {
+				byte[] ksn = records[i].getKsn();
+				ksnHis[i] = getLong(ksn, 0);
+				ksnLos[i] = (short) ((ksn[8] & 0xFF) << 8 | ksn[9] & 0xFF);
+				order[i] = i;
+			}
+			sort();
+		}
+
+		/**
+		 * @return true if the records at two positions of the order belong to the same device
+		 */
+		boolean sameDevice(int a, int b) {
+			return ((ksnHis[order[a]] ^ ksnHis[order[b]]) & Mask.KSN_HI_MASK) == 0;
+		}
+
+		/**
+		 * @return true if the records at two positions of the order have the same KSN
+		 */
+		boolean sameKsn(int a, int b) {
+			return compare(order[a], order[b]) == 0;
+		}
+
+		/**
+		 * Heap sort of the record indices
+		 */
+		private void sort() {
+			int count = order.length;
+			for(int i = count / 2 - 1; i >= 0; i--) {
+				siftDown(i, count);
+			}
+			for(int end = count - 1; end > 0; end--) {
+				int top = order[0];
+				order[0] = order[end];
+				order[end] = top;
+				siftDown(0, end);
+			}
+		}
+
+		private void siftDown(int parent, int end) {
+			int value = order[parent];
+			for(int child = parent * 2 + 1; child < end; child = parent * 2 + 1) {
+				if(child + 1 < end && compare(order[child + 1], order[child]) > 0) {
+					child++;
+				}
+				if(compare(order[child], value) <= 0) {
+					break;
+				}
+				order[parent] = order[child];
+				parent = child;
+			}
+			order[parent] = value;
+		}
+
+		private int compare(int a, int b) {
+			int result = Long.compareUnsigned(ksnHis[a], ksnHis[b]);
+			return result != 0 ? result : Integer.compare(ksnLos[a] & 0xFFFF, ksnLos[b] & 0xFFFF);
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package org.phoegasus.jdukpt.core;
+
+/**
+ * Opaque reference to a key held by an <code>OffHeapKeyStore</code>.
+ * </br>A handle becomes invalid once its key is destroyed or its store cleared, even if the slot of the key is reused by another key.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public final class KeyHandle {
+	
+	final OffHeapKeyStore store;
+	
+	final int slot;
+	
+	final int generation;
+	
+	KeyHandle(OffHeapKeyStore store, int slot, int generation) {
+		this.store = store;
+		this.slot = slot;
+		this.generation = generation;
+	}
+	
+	/**
+	 * @return true if the key is still held by its store
+	 */
+	public boolean isValid() {
+		return store.isValid(this);
+	}
+	
+	@Override
+	public String toString() {
+		return "KeyHandle [slot=" + slot + ", generation=" + generation + "]";
+	}
+}
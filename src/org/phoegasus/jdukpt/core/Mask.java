@@ -4,31 +4,78 @@ import java.math.BigInteger;
 
 /**
  * Enumeration containing the different masks used in DUKPT.
+ * </br>Each mask is also available as primitive <code>long</code> constants, <i>HI</i> holding bits 64 to 127 and <i>LO</i> bits 0 to 63, so that primitive code can use them as compile time constants.
  * @author Phoegasus
  * @since 1.0.0
  * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
  */
 enum Mask {
 	
-	Reg3Mask("1FFFFF"),
-    ShiftRegMask("100000"),
-    Reg8Mask("FFFFFFFFFFE00000"),
-    Ls16Mask("FFFFFFFFFFFFFFFF"),
-    Ms16Mask("FFFFFFFFFFFFFFFF0000000000000000"),
-    KeyMask("C0C0C0C000000000C0C0C0C000000000"),
-    PekMask("FF00000000000000FF"),
-    KsnMask("FFFFFFFFFFFFFFE00000"),
-    DekMask("0000000000FF00000000000000FF0000");
+	Reg3Mask(0, Mask.REG3_MASK),
+    ShiftRegMask(0, Mask.SHIFT_REG_MASK),
+    Reg8Mask(0, Mask.REG8_MASK),
+    Ls16Mask(0, Mask.LS16_MASK),
+    Ms16Mask(Mask.MS16_MASK_HI, 0),
+    KeyMask(Mask.KEY_MASK_HI, Mask.KEY_MASK_LO),
+    PekMask(Mask.PEK_MASK_HI, Mask.PEK_MASK_LO),
+    KsnMask(Mask.KSN_MASK_HI, Mask.KSN_MASK_LO),
+    DekMask(Mask.DEK_MASK_HI, Mask.DEK_MASK_LO),
+    MacRequestMask(Mask.MAC_REQUEST_MASK_HI, Mask.MAC_REQUEST_MASK_LO),
+    MacResponseMask(Mask.MAC_RESPONSE_MASK_HI, Mask.MAC_RESPONSE_MASK_LO);
+	
+	static final int REG3_MASK = 0x1FFFFF;
+	static final int SHIFT_REG_MASK = 0x100000;
+	static final long REG8_MASK = 0xFFFFFFFFFFE00000L;
+	static final long LS16_MASK = 0xFFFFFFFFFFFFFFFFL;
+	static final long MS16_MASK_HI = 0xFFFFFFFFFFFFFFFFL;
+	static final long KEY_MASK_HI = 0xC0C0C0C000000000L;
+	static final long KEY_MASK_LO = 0xC0C0C0C000000000L;
+	static final long PEK_MASK_HI = 0x00000000000000FFL;
+	static final long PEK_MASK_LO = 0x00000000000000FFL;
+	static final long KSN_MASK_HI = 0x000000000000FFFFL;
+	static final long KSN_MASK_LO = 0xFFFFFFFFFFE00000L;
+	static final long DEK_MASK_HI = 0x0000000000FF0000L;
+	static final long DEK_MASK_LO = 0x0000000000FF0000L;
+	static final long MAC_REQUEST_MASK_HI = 0x000000000000FF00L;
+	static final long MAC_REQUEST_MASK_LO = 0x000000000000FF00L;
+	static final long MAC_RESPONSE_MASK_HI = 0x00000000FF000000L;
+	static final long MAC_RESPONSE_MASK_LO = 0x00000000FF000000L;
+	/**
+	 * KsnMask applied to the leftmost 8 bytes of an 80-bit KSN
+	 */
+	static final long KSN_HI_MASK = KSN_MASK_HI << 48 | KSN_MASK_LO >>> 16;
 	
 	//----------------------------------------------------------------------//
 	
-	private BigInteger value;
+	private final long hi;
+	
+	private final long lo;
+	
+	private final BigInteger value;
 	
 	BigInteger getValue() {
 		return value;
 	}
 	
-	Mask(String hexStringValue) {
-		this.value = new BigInteger(hexStringValue, 16);
+	/**
+	 * @return Bits 64 to 127 of the mask
+	 */
+	long getHi() {
+		return hi;
+	}
+	
+	/**
+	 * @return Bits 0 to 63 of the mask
+	 */
+	long getLo() {
+		return lo;
+	}
+	
+	Mask(long hi, long lo) {
+		this.hi = hi;
+		this.lo = lo;
+		this.value = new BigInteger(1, new byte[] {
+				(byte) (hi >>> 56), (byte) (hi >>> 48), (byte) (hi >>> 40), (byte) (hi >>> 32), (byte) (hi >>> 24), (byte) (hi >>> 16), (byte) (hi >>> 8), (byte) hi,
+				(byte) (lo >>> 56), (byte) (lo >>> 48), (byte) (lo >>> 40), (byte) (lo >>> 32), (byte) (lo >>> 24), (byte) (lo >>> 16), (byte) (lo >>> 8), (byte) lo});
 	}
 }
\ No newline at end of file
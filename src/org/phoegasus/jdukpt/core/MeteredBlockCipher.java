@@ -0,0 +1,73 @@
+package org.phoegasus.jdukpt.core;
+
+import org.phoegasus.jdukpt.metrics.DukptMetrics;
+
+/**
+ * Reports the duration and the failures of each operation of a client <code>BlockCipher</code> implementation to the configured <code>DukptMetrics</code>.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+final class MeteredBlockCipher implements BlockCipher {
+	
+	private final BlockCipher cipher;
+	
+	private final DukptMetrics metrics;
+	
+	MeteredBlockCipher(BlockCipher cipher, DukptMetrics metrics) {
+		this.cipher = cipher;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public long encryptDES(long key, long data) throws Exception {
+		long start = System.nanoTime();
+		try {
+			long result = cipher.encryptDES(key, data);
+			metrics.cipherInvoked(System.nanoTime() - start);
+			return result;
+		} catch (Exception e) {
+			metrics.error(e);
+			throw e;
+		}
+	}
+
+	@Override
+	public long decryptDES(long key, long data) throws Exception {
+		long start = System.nanoTime();
+		try {
+			long result = cipher.decryptDES(key, data);
+			metrics.cipherInvoked(System.nanoTime() - start);
+			return result;
+		} catch (Exception e) {
+			metrics.error(e);
+			throw e;
+		}
+	}
+
+	@Override
+	public long encryptTDES(long keyHi, long keyLo, long data) throws Exception {
+		long start = System.nanoTime();
+		try {
+			long result = cipher.encryptTDES(keyHi, keyLo, data);
+			metrics.cipherInvoked(System.nanoTime() - start);
+			return result;
+		} catch (Exception e) {
+			metrics.error(e);
+			throw e;
+		}
+	}
+
+	@Override
+	public long decryptTDES(long keyHi, long keyLo, long data) throws Exception {
+		long start = System.nanoTime();
+		try {
+			long result = cipher.decryptTDES(keyHi, keyLo, data);
+			metrics.cipherInvoked(System.nanoTime() - start);
+			return result;
+		} catch (Exception e) {
+			metrics.error(e);
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package org.phoegasus.jdukpt.core;
+
+import java.math.BigInteger;
+
+import org.phoegasus.jdukpt.metrics.DukptMetrics;
+
+/**
+ * Reports the duration and the failures of each operation of a client <code>Crypto</code> implementation to the configured <code>DukptMetrics</code>.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+final class MeteredCrypto implements Crypto {
+	
+	private final Crypto crypto;
+	
+	private final DukptMetrics metrics;
+	
+	MeteredCrypto(Crypto crypto, DukptMetrics metrics) {
+		this.crypto = crypto;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public BigInteger encryptDES(BigInteger key, BigInteger data) throws Exception {
+		long start = System.nanoTime();
+		try {
+			BigInteger result = crypto.encryptDES(key, data);
+			metrics.cipherInvoked(System.nanoTime() - start);
+			return result;
+		} catch (Exception e) {
+			metrics.error(e);
+			throw e;
+		}
+	}
+
+	@Override
+	public BigInteger decryptDES(BigInteger key, BigInteger data) throws Exception {
+		long start = System.nanoTime();
+		try {
+			BigInteger result = crypto.decryptDES(key, data);
+			metrics.cipherInvoked(System.nanoTime() - start);
+			return result;
+		} catch (Exception e) {
+			metrics.error(e);
+			throw e;
+		}
+	}
+
+	@Override
+	public BigInteger encryptTDES(BigInteger key, BigInteger data) throws Exception {
+		long start = System.nanoTime();
+		try {
+			BigInteger result = crypto.encryptTDES(key, data);
+			metrics.cipherInvoked(System.nanoTime() - start);
+			return result;
+		} catch (Exception e) {
+			metrics.error(e);
+			throw e;
+		}
+	}
+
+	@Override
+	public BigInteger decryptTDES(BigInteger key, BigInteger data) throws Exception {
+		long start = System.nanoTime();
+		try {
+			BigInteger result = crypto.decryptTDES(key, data);
+			metrics.cipherInvoked(System.nanoTime() - start);
+			return result;
+		} catch (Exception e) {
+			metrics.error(e);
+			throw e;
+		}
+	}
+}
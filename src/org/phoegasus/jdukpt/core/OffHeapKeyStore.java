@@ -0,0 +1,146 @@
+package org.phoegasus.jdukpt.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed capacity store of 16 byte keys held outside of the Java heap, in a direct <code>ByteBuffer</code>, and referenced by opaque <code>KeyHandle</code> objects.
+ * </br>Keys are copied into the store once, then read by the key derivation paths of the Primitive engine as primitive values without being copied into BigInteger or String objects, whatever the engine of the <code>JDukpt</code> instance, a client <code>Crypto</code> implementation still receiving the keys it is given as BigInteger objects. Only the Base Derivation Keys are held off heap: the IPEKs derived from them and kept by an <code>IpekCache</code> or an <code>IpekIndex</code> stay on the Java heap. Destroying a key overwrites it with zeroes and frees its slot.
+ * </br>An instance can be shared by several threads, all methods are synchronized.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public class OffHeapKeyStore {
+	
+	private static final int KEY_LENGTH = 16;
+	
+	/**
+	 * Largest capacity whose keys fit in a single direct buffer
+	 */
+	public static final int MAXIMUM_CAPACITY = Integer.MAX_VALUE / KEY_LENGTH;
+	
+	private final ByteBuffer keys;
+	
+	/**
+	 * Generation of each slot, odd while the slot holds a key
+	 */
+	private final int[] generations;
+	
+	/**
+	 * Stack of the free slots
+	 */
+	private final int[] free;
+	
+	private int freeCount;
+	
+	/**
+	 * @param capacity Maximum number of keys held, at most <code>MAXIMUM_CAPACITY</code>
+	 */
+	public OffHeapKeyStore(int capacity) {
+		if(capacity <= 0 || capacity > MAXIMUM_CAPACITY) {
+			throw new IllegalArgumentException("capacity should be between 1 and " + MAXIMUM_CAPACITY);
+		}
+		this.keys = ByteBuffer.allocateDirect(capacity * KEY_LENGTH);
+		this.generations = new int[capacity];
+		this.free = new int[capacity];
+		for(int i = 0; i < capacity; i++) {
+			free[i] = capacity - 1 - i;
+		}
+		this.freeCount = capacity;
+	}
+	
+	/**
+	 * Copies a key into the store, the caller can then overwrite its own copy
+	 * @param key 16 bytes long key
+	 * @return Handle of the key
+	 */
+	public KeyHandle put(byte[] key) {
+		if(key == null || key.length != KEY_LENGTH) {
+			throw new IllegalArgumentException("key should be 16 bytes long");
+		}
+		int slot;
+		int generation;
+		synchronized(this) {
+			slot = allocate();
+			for(int i = 0; i < KEY_LENGTH; i++) {
+				keys.put(slot * KEY_LENGTH + i, key[i]);
+			}
+			generation = generations[slot];
+		}
+		return new KeyHandle(this, slot, generation);
+	}
+	
+	/**
+	 * Reads a key
+	 * @param handle Handle of the key
+	 * @param key Receives the key, leftmost 8 bytes first
+	 */
+	synchronized void get(KeyHandle handle, long[] key) {
+		check(handle);
+		key[0] = keys.getLong(handle.slot * KEY_LENGTH);
+		key[1] = keys.getLong(handle.slot * KEY_LENGTH + 8);
+	}
+	
+	/**
+	 * Overwrites a key with zeroes and frees its slot, the handle becomes invalid
+	 * @param handle Handle of the key
+	 */
+	public synchronized void destroy(KeyHandle handle) {
+		check(handle);
+		release(handle.slot);
+	}
+	
+	/**
+	 * Overwrites every key with zeroes and frees every slot, all handles become invalid
+	 */
+	public synchronized void clear() {
+		for(int slot = 0; slot < generations.length; slot++) {
+			if((generations[slot] & 1) != 0) {
+				release(slot);
+			}
+		}
+	}
+	
+	/**
+	 * @return Number of keys held
+	 */
+	public synchronized int size() {
+		return generations.length - freeCount;
+	}
+	
+	/**
+	 * @return Maximum number of keys held
+	 */
+	public int capacity() {
+		return generations.length;
+	}
+	
+	synchronized boolean isValid(KeyHandle handle) {
+		return handle.store == this && generations[handle.slot] == handle.generation;
+	}
+	
+	private int allocate() {
+		if(freeCount == 0) {
+			throw new IllegalStateException("key store is full");
+		}
+		int slot = free[--freeCount];
+		generations[slot]++;
+		return slot;
+	}
+	
+	private void release(int slot) {
+		keys.putLong(slot * KEY_LENGTH, 0);
+		keys.putLong(slot * KEY_LENGTH + 8, 0);
+		generations[slot]++;
+		free[freeCount++] = slot;
+	}
+	
+	private void check(KeyHandle handle) {
+		if(handle == null) {
+			throw new IllegalArgumentException("handle is null");
+		}
+		if(!isValid(handle)) {
+			throw new IllegalStateException("key of the handle was destroyed");
+		}
+	}
+}
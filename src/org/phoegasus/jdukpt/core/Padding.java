@@ -0,0 +1,26 @@
+package org.phoegasus.jdukpt.core;
+
+/**
+ * Enumeration containing the paddings available to <code>DataCipher</code>.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public enum Padding {
+	/**
+	 * No padding, the data length should be a multiple of 8
+	 */
+	None,
+	/**
+	 * Zero bytes appended up to a multiple of 8, kept on decryption
+	 */
+	Zero,
+	/**
+	 * PKCS#5, 1 to 8 bytes all holding the padding length, removed on decryption
+	 */
+	PKCS5,
+	/**
+	 * ISO/IEC 9797-1 method 2, a 0x80 byte followed by zero bytes up to a multiple of 8, removed on decryption
+	 */
+	ISO9797Method2
+}
@@ -0,0 +1,115 @@
+package org.phoegasus.jdukpt.core;
+
+import java.security.SecureRandom;
+
+/**
+ * Encoding and decoding of clear ISO 9564-1 PIN blocks held in <code>long</code> values.
+ * </br>A decoded PIN is held as a <code>long</code> whose leftmost digits are the PIN length and the PIN digits, every other digit being zero, so that it can be encoded in any format without going through a String.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+final class PinBlock {
+	
+	private static final SecureRandom RANDOM = new SecureRandom();
+	
+	private PinBlock() {
+	}
+	
+	/**
+	 * Computes the PAN field of formats 0 and 3, the 12 rightmost digits of the PAN excluding the check digit
+	 * @param pan PAN as ASCII digits
+	 * @param offset Offset of the first digit
+	 * @param length Number of digits, from 8 to 19
+	 * @return PAN field
+	 */
+	static long panField(byte[] pan, int offset, int length) {
+		if (length < 8 || length > 19){
+			throw new IllegalArgumentException("pan should be between 8 and 19 digits long");
+		}
+		long field = 0;
+		for (int i = offset; i < offset + length; i++) {
+			int digit = pan[i] - '0';
+			if (digit < 0 || digit > 9){
+				throw new IllegalArgumentException("pan should only contain digits");
+			}
+			field = field << 4 | digit;
+		}
+		return field >>> 4 & 0x0000FFFFFFFFFFFFL;
+	}
+	
+	/**
+	 * Decodes and checks a clear PIN block
+	 * </br>The same exception is thrown whatever the check that failed, so that callers cannot be used to learn about the content of PIN blocks.
+	 * @param block Clear PIN block
+	 * @param format Format of the PIN block
+	 * @param panField PAN field, ignored in format 1
+	 * @return Decoded PIN
+	 */
+	static long decode(long block, PinBlockFormat format, long panField) {
+		long field = format == PinBlockFormat.ISO1 ? block : block ^ panField;
+		int length = (int) (field >>> 56) & 0x0F;
+		boolean valid = (int) (field >>> 60) == control(format) & length >= 4 & length <= 12;
+		long pin = field & pinMask(length);
+		for (int i = 0; i < length; i++) {
+			valid &= (pin >>> 52 - i * 4 & 0x0F) <= 9;
+		}
+		long fill = field & ~pinMask(length);
+		if (format == PinBlockFormat.ISO0) {
+			valid &= fill == ~pinMask(length);
+		} else if (format == PinBlockFormat.ISO3) {
+			valid &= fillIsAToF(fill, length);
+		}
+		if (!valid){
+			throw new IllegalArgumentException("invalid PIN block");
+		}
+		return pin & 0x0FFFFFFFFFFFFFFFL;
+	}
+	
+	/**
+	 * Encodes a PIN in a clear PIN block
+	 * @param pin Decoded PIN
+	 * @param format Format of the PIN block
+	 * @param panField PAN field, ignored in format 1
+	 * @return Clear PIN block
+	 */
+	static long encode(long pin, PinBlockFormat format, long panField) {
+		int length = (int) (pin >>> 56) & 0x0F;
+		long fill = ~pinMask(length);
+		if (format == PinBlockFormat.ISO1) {
+			fill &= RANDOM.nextLong();
+		} else if (format == PinBlockFormat.ISO3) {
+			long digits = 0;
+			for (int i = 0; i < 16; i++) {
+				digits = digits << 4 | 10 + RANDOM.nextInt(6);
+			}
+			fill &= digits;
+		}
+		long field = (long) control(format) << 60 | pin | fill;
+		return format == PinBlockFormat.ISO1 ? field : field ^ panField;
+	}
+	
+	private static int control(PinBlockFormat format) {
+		if (format == PinBlockFormat.ISO0) {
+			return 0;
+		} else if (format == PinBlockFormat.ISO1) {
+			return 1;
+		}
+		return 3;
+	}
+	
+	/**
+	 * @return Mask of the control, length and PIN digits of a PIN of the given length
+	 */
+	private static long pinMask(int length) {
+		return -1L << 56 - length * 4;
+	}
+	
+	private static boolean fillIsAToF(long fill, int length) {
+		boolean valid = true;
+		for (int i = 2 + length; i < 16; i++) {
+			valid &= (fill >>> 60 - i * 4 & 0x0F) >= 10;
+		}
+		return valid;
+	}
+}
@@ -0,0 +1,22 @@
+package org.phoegasus.jdukpt.core;
+
+/**
+ * Enumeration containing the ISO 9564-1 PIN block formats handled by PIN translation.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public enum PinBlockFormat {
+	/**
+	 * ISO 9564-1 format 0 (ANSI X9.8), the PIN padded with F digits, combined with the 12 rightmost digits of the PAN excluding the check digit
+	 */
+	ISO0,
+	/**
+	 * ISO 9564-1 format 1, the PIN padded with random digits, not combined with the PAN
+	 */
+	ISO1,
+	/**
+	 * ISO 9564-1 format 3, the PIN padded with random digits from A to F, combined with the 12 rightmost digits of the PAN excluding the check digit
+	 */
+	ISO3
+}
@@ -0,0 +1,186 @@
+package org.phoegasus.jdukpt.core;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import org.phoegasus.jdukpt.utils.BlockUtils;
+
+/**
+ * Computes the ANSI X9.19 retail MAC (ISO/IEC 9797-1 MAC algorithm 3 with padding method 1) of a message with a MAC variant session key.
+ * </br>Every block is chained with single DES under the leftmost half of the key, the last output is then decrypted with the rightmost half and encrypted again with the leftmost half. A message whose length is not a multiple of 8 is padded with zeroes.
+ * </br>The session key is derived once when the object is created by <code>JDukpt</code>. The message is provided in chunks with <code>update</code>, so that large messages such as ISO 8583 messages do not need to be held in a single array. <code>doFinal</code> and <code>verify</code> complete the MAC, after which the object can process another message with the same key.
+ * </br>Instances are not thread-safe, <code>destroy</code> overwrites the session key with zeroes.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public class RetailMAC {
+	
+	private static final int CHUNK_SIZE = 4096;
+	
+	private final BlockCipher cipher;
+	
+	private long keyHi;
+	
+	private long keyLo;
+	
+	private long chain;
+	
+	private final byte[] partial = new byte[8];
+	
+	private int partialLength;
+	
+	private boolean empty = true;
+	
+	private boolean destroyed;
+	
+	RetailMAC(BlockCipher cipher, long[] key) {
+		this.cipher = cipher;
+		this.keyHi = key[0];
+		this.keyLo = key[1];
+	}
+	
+	/**
+	 * Processes a chunk of the message
+	 * @param input Buffer holding the chunk
+	 * @param offset Offset of the chunk
+	 * @param length Length of the chunk
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	public void update(byte[] input, int offset, int length) throws Exception {
+		checkState();
+		if (input == null){
+			throw new IllegalArgumentException("input is null");
+		}
+		if (offset < 0 || length < 0 || offset + length > input.length){
+			throw new IllegalArgumentException("offset and length should be within the input");
+		}
+		if (length > 0) {
+			empty = false;
+		}
+		int end = offset + length;
+		if (partialLength > 0) {
+			int count = Math.min(8 - partialLength, length);
+			System.arraycopy(input, offset, partial, partialLength, count);
+			partialLength += count;
+			offset += count;
+			if (partialLength < 8) {
+				return;
+			}
+			process(BlockUtils.getLong(partial, 0));
+			partialLength = 0;
+		}
+		for (; offset + 8 <= end; offset += 8) {
+			process(BlockUtils.getLong(input, offset));
+		}
+		System.arraycopy(input, offset, partial, 0, end - offset);
+		partialLength = end - offset;
+	}
+	
+	/**
+	 * Processes a chunk of the message
+	 * @param input Chunk of the message
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	public void update(byte[] input) throws Exception {
+		if (input == null){
+			throw new IllegalArgumentException("input is null");
+		}
+		update(input, 0, input.length);
+	}
+	
+	/**
+	 * Processes a chunk of the message
+	 * @param input Chunk of the message, read up to its limit
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	public void update(ByteBuffer input) throws Exception {
+		if (input.hasArray()) {
+			update(input.array(), input.arrayOffset() + input.position(), input.remaining());
+			input.position(input.limit());
+			return;
+		}
+		byte[] chunk = new byte[Math.min(CHUNK_SIZE, input.remaining())];
+		while (input.hasRemaining()) {
+			int length = Math.min(chunk.length, input.remaining());
+			input.get(chunk, 0, length);
+			update(chunk, 0, length);
+		}
+		Arrays.fill(chunk, (byte) 0);
+	}
+	
+	/**
+	 * Processes the rest of a message read from a stream in chunks, the stream is not closed
+	 * @param in Stream providing the message
+	 * @throws Exception thrown by the stream or the BlockCipher implementation
+	 */
+	public void update(InputStream in) throws Exception {
+		byte[] chunk = new byte[CHUNK_SIZE];
+		try {
+			for (int length = in.read(chunk); length >= 0; length = in.read(chunk)) {
+				update(chunk, 0, length);
+			}
+		} finally {
+			Arrays.fill(chunk, (byte) 0);
+		}
+	}
+	
+	/**
+	 * Completes the MAC of the message
+	 * @return 8 bytes long MAC
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	public byte[] doFinal() throws Exception {
+		checkState();
+		if (partialLength > 0 || empty) {
+			Arrays.fill(partial, partialLength, 8, (byte) 0);
+			process(BlockUtils.getLong(partial, 0));
+		}
+		long mac = cipher.encryptDES(keyHi, cipher.decryptDES(keyLo, chain));
+		reset();
+		return BlockUtils.toBytes(mac);
+	}
+	
+	/**
+	 * Completes the MAC of the message and compares it with a received MAC, in constant time
+	 * @param mac Received MAC, from 4 to 8 bytes long, compared with the leftmost bytes of the computed MAC
+	 * @return true if the MAC is valid
+	 * @throws Exception thrown by the BlockCipher implementation
+	 */
+	public boolean verify(byte[] mac) throws Exception {
+		if (mac == null || mac.length < 4 || mac.length > 8){
+			throw new IllegalArgumentException("mac should be between 4 and 8 bytes long");
+		}
+		byte[] computed = doFinal();
+		return MessageDigest.isEqual(Arrays.copyOf(computed, mac.length), mac);
+	}
+	
+	/**
+	 * Overwrites the session key and the buffered data with zeroes, the object can no longer be used
+	 */
+	public void destroy() {
+		keyHi = 0;
+		keyLo = 0;
+		reset();
+		destroyed = true;
+	}
+	
+	private void process(long block) throws Exception {
+		chain = cipher.encryptDES(keyHi, chain ^ block);
+	}
+	
+	private void reset() {
+		chain = 0;
+		Arrays.fill(partial, (byte) 0);
+		partialLength = 0;
+		empty = true;
+	}
+	
+	private void checkState() {
+		if (destroyed){
+			throw new IllegalStateException("RetailMAC is destroyed");
+		}
+	}
+}
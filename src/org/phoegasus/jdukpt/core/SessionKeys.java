@@ -0,0 +1,79 @@
+package org.phoegasus.jdukpt.core;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.phoegasus.jdukpt.utils.BlockUtils;
+
+/**
+ * Session keys of several DUKPT variants for the same KSN, derived from a single counter walk by <code>JDukpt.deriveSessionKeys</code>.
+ * </br>Instances are not thread-safe, <code>destroy</code> overwrites the keys with zeroes.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public class SessionKeys {
+	
+	private static final DUKPTVariant[] VARIANTS = DUKPTVariant.values();
+	
+	/**
+	 * Keys indexed by variant ordinal, each key held as two halves
+	 */
+	private final long[] keys = new long[VARIANTS.length * 2];
+	
+	private final boolean[] derived = new boolean[VARIANTS.length];
+	
+	SessionKeys() {
+	}
+	
+	/**
+	 * Records the session key of a variant
+	 * @param variant DUKPT variant
+	 * @param key Session key
+	 */
+	void set(DUKPTVariant variant, long[] key) {
+		keys[variant.ordinal() * 2] = key[0];
+		keys[variant.ordinal() * 2 + 1] = key[1];
+		derived[variant.ordinal()] = true;
+	}
+	
+	/**
+	 * @param variant DUKPT variant
+	 * @return true if the session key of the variant was derived
+	 */
+	public boolean contains(DUKPTVariant variant) {
+		return variant != null && derived[variant.ordinal()];
+	}
+	
+	/**
+	 * @param variant DUKPT variant
+	 * @return 16 bytes long session key of the variant
+	 */
+	public byte[] getKey(DUKPTVariant variant) {
+		check(variant);
+		return BlockUtils.toBytes(keys[variant.ordinal() * 2], keys[variant.ordinal() * 2 + 1]);
+	}
+	
+	/**
+	 * @param variant DUKPT variant
+	 * @return Session key of the variant
+	 */
+	public BigInteger getKeyValue(DUKPTVariant variant) {
+		check(variant);
+		return BlockUtils.toBigInteger(keys[variant.ordinal() * 2], keys[variant.ordinal() * 2 + 1]);
+	}
+	
+	/**
+	 * Overwrites every session key with zeroes
+	 */
+	public void destroy() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(derived, false);
+	}
+	
+	private void check(DUKPTVariant variant) {
+		if (!contains(variant)){
+			throw new IllegalArgumentException("session key of variant " + variant + " was not derived");
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package org.phoegasus.jdukpt.core;
+
+/**
+ * Implementation of the <code>BlockCipher</code> interface using the in-library table driven DES instead of the JCE.
+ * </br>Key schedules are kept per thread and only computed again when the key changes. TripleDES encryption and decryption keep their own schedules, so that an operation decrypting under a session key and encrypting under a long lived key, such as PIN translation, does not compute the schedules of the latter again.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public class TableBlockCipher implements BlockCipher {
+	
+	private static final ThreadLocal<DESKeySchedule[]> SCHEDULES = new ThreadLocal<DESKeySchedule[]>() {
+		@Override
+		protected DESKeySchedule[] initialValue() {
+			return new DESKeySchedule[] {new DESKeySchedule(), new DESKeySchedule(), new DESKeySchedule(), new DESKeySchedule(), new DESKeySchedule()};
+		}
+	};
+
+	@Override
+	public long encryptDES(long key, long data) {
+		DESKeySchedule schedule = SCHEDULES.get()[0];
+		schedule.setKey(key);
+		return schedule.encrypt(data);
+	}
+
+	@Override
+	public long decryptDES(long key, long data) {
+		DESKeySchedule schedule = SCHEDULES.get()[0];
+		schedule.setKey(key);
+		return schedule.decrypt(data);
+	}
+
+	@Override
+	public long encryptTDES(long keyHi, long keyLo, long data) {
+		DESKeySchedule[] schedules = SCHEDULES.get();
+		schedules[1].setKey(keyHi);
+		schedules[2].setKey(keyLo);
+		return DESKeySchedule.encrypt(schedules[1], schedules[2], data);
+	}
+
+	@Override
+	public long decryptTDES(long keyHi, long keyLo, long data) {
+		DESKeySchedule[] schedules = SCHEDULES.get();
+		schedules[3].setKey(keyHi);
+		schedules[4].setKey(keyLo);
+		return DESKeySchedule.decrypt(schedules[3], schedules[4], data);
+	}
+	
+}
@@ -0,0 +1,302 @@
+package org.phoegasus.jdukpt.core;
+
+/**
+ * Table driven DES and TripleDES implementation working on <code>long</code> blocks.
+ * </br>The S-boxes are combined with the P permutation and the key permutations are applied one group of bits at a time, all tables being computed once from the FIPS 46-3 definitions when the class is loaded. The initial and final permutations are computed with swaps of bit groups.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+final class TableDES {
+
+	/**
+	 * Number of subkey words in a key schedule, 2 for each of the 16 rounds
+	 */
+	static final int SCHEDULE_LENGTH = 32;
+
+	private static final int[] P = {
+			16,  7, 20, 21, 29, 12, 28, 17,  1, 15, 23, 26,  5, 18, 31, 10,
+			 2,  8, 24, 14, 32, 27,  3,  9, 19, 13, 30,  6, 22, 11,  4, 25};
+
+	private static final int[] PC1 = {
+			57, 49, 41, 33, 25, 17,  9,  1, 58, 50, 42, 34, 26, 18,
+			10,  2, 59, 51, 43, 35, 27, 19, 11,  3, 60, 52, 44, 36,
+			63, 55, 47, 39, 31, 23, 15,  7, 62, 54, 46, 38, 30, 22,
+			14,  6, 61, 53, 45, 37, 29, 21, 13,  5, 28, 20, 12,  4};
+
+	private static final int[] PC2 = {
+			14, 17, 11, 24,  1,  5,  3, 28, 15,  6, 21, 10,
+			23, 19, 12,  4, 26,  8, 16,  7, 27, 20, 13,  2,
+			41, 52, 31, 37, 47, 55, 30, 40, 51, 45, 33, 48,
+			44, 49, 39, 56, 34, 53, 46, 42, 50, 36, 29, 32};
+
+	/**
+	 * Cumulated left rotations of the key halves before each round
+	 */
+	private static final int[] ROTATIONS = {1, 2, 4, 6, 8, 10, 12, 14, 15, 17, 19, 21, 23, 25, 27, 28};
+
+	private static final int[][] S = {
+			{14,  4, 13,  1,  2, 15, 11,  8,  3, 10,  6, 12,  5,  9,  0,  7,
+			  0, 15,  7,  4, 14,  2, 13,  1, 10,  6, 12, 11,  9,  5,  3,  8,
+			  4,  1, 14,  8, 13,  6,  2, 11, 15, 12,  9,  7,  3, 10,  5,  0,
+			 15, 12,  8,  2,  4,  9,  1,  7,  5, 11,  3, 14, 10,  0,  6, 13},
+			{15,  1,  8, 14,  6, 11,  3,  4,  9,  7,  2, 13, 12,  0,  5, 10,
+			  3, 13,  4,  7, 15,  2,  8, 14, 12,  0,  1, 10,  6,  9, 11,  5,
+			  0, 14,  7, 11, 10,  4, 13,  1,  5,  8, 12,  6,  9,  3,  2, 15,
+			 13,  8, 10,  1,  3, 15,  4,  2, 11,  6,  7, 12,  0,  5, 14,  9},
+			{10,  0,  9, 14,  6,  3, 15,  5,  1, 13, 12,  7, 11,  4,  2,  8,
+			 13,  7,  0,  9,  3,  4,  6, 10,  2,  8,  5, 14, 12, 11, 15,  1,
+			 13,  6,  4,  9,  8, 15,  3,  0, 11,  1,  2, 12,  5, 10, 14,  7,
+			  1, 10, 13,  0,  6,  9,  8,  7,  4, 15, 14,  3, 11,  5,  2, 12},
+			{ 7, 13, 14,  3,  0,  6,  9, 10,  1,  2,  8,  5, 11, 12,  4, 15,
+			 13,  8, 11,  5,  6, 15,  0,  3,  4,  7,  2, 12,  1, 10, 14,  9,
+			 10,  6,  9,  0, 12, 11,  7, 13, 15,  1,  3, 14,  5,  2,  8,  4,
+			  3, 15,  0,  6, 10,  1, 13,  8,  9,  4,  5, 11, 12,  7,  2, 14},
+			{ 2, 12,  4,  1,  7, 10, 11,  6,  8,  5,  3, 15, 13,  0, 14,  9,
+			 14, 11,  2, 12,  4,  7, 13,  1,  5,  0, 15, 10,  3,  9,  8,  6,
+			  4,  2,  1, 11, 10, 13,  7,  8, 15,  9, 12,  5,  6,  3,  0, 14,
+			 11,  8, 12,  7,  1, 14,  2, 13,  6, 15,  0,  9, 10,  4,  5,  3},
+			{12,  1, 10, 15,  9,  2,  6,  8,  0, 13,  3,  4, 14,  7,  5, 11,
+			 10, 15,  4,  2,  7, 12,  9,  5,  6,  1, 13, 14,  0, 11,  3,  8,
+			  9, 14, 15,  5,  2,  8, 12,  3,  7,  0,  4, 10,  1, 13, 11,  6,
+			  4,  3,  2, 12,  9,  5, 15, 10, 11, 14,  1,  7,  6,  0,  8, 13},
+			{ 4, 11,  2, 14, 15,  0,  8, 13,  3, 12,  9,  7,  5, 10,  6,  1,
+			 13,  0, 11,  7,  4,  9,  1, 10, 14,  3,  5, 12,  2, 15,  8,  6,
+			  1,  4, 11, 13, 12,  3,  7, 14, 10, 15,  6,  8,  0,  5,  9,  2,
+			  6, 11, 13,  8,  1,  4, 10,  7,  9,  5,  0, 15, 14,  2,  3, 12},
+			{13,  2,  8,  4,  6, 15, 11,  1, 10,  9,  3, 14,  5,  0, 12,  7,
+			  1, 15, 13,  8, 10,  3,  7,  4, 12,  5,  6, 11,  0, 14,  9,  2,
+			  7, 11,  4,  1,  9, 12, 14,  2,  0,  6, 10, 13, 15,  3,  5,  8,
+			  2,  1, 14,  7,  4, 10,  8, 13, 15, 12,  9,  0,  3,  5,  6, 11}};
+
+	private static final int[] SP1 = new int[64], SP2 = new int[64], SP3 = new int[64], SP4 = new int[64],
+			SP5 = new int[64], SP6 = new int[64], SP7 = new int[64], SP8 = new int[64];
+
+	private static final long[] PC1_TABLE = new long[8 * 256];
+
+	private static final long[] PC2_TABLE = new long[8 * 128];
+
+	static {
+		int[][] sp = {SP1, SP2, SP3, SP4, SP5, SP6, SP7, SP8};
+		for(int box = 0; box < 8; box++) {
+			for(int v = 0; v < 64; v++) {
+				int s = S[box][(v & 0x20) | (v & 0x01) << 4 | (v & 0x1E) >>> 1];
+				int out = s << (28 - 4 * box);
+				sp[box][v] = Integer.rotateLeft((int) permute(out & 0xFFFFFFFFL, 32, P), 1);
+			}
+		}
+		fillTables(PC1_TABLE, 64, PC1, 8);
+		fillTables(PC2_TABLE, 56, PC2, 7);
+		for(int v = 0; v < PC2_TABLE.length; v++) {
+			PC2_TABLE[v] = pack(PC2_TABLE[v]);
+		}
+	}
+
+	private TableDES() {
+	}
+
+	/**
+	 * Computes the key schedule of a single length key
+	 * @param key Key, parity bits are ignored
+	 * @param schedule Receives the <code>SCHEDULE_LENGTH</code> subkey words
+	 */
+	static void schedule(long key, int[] schedule) {
+		long cd = PC1_TABLE[(int) (key >>> 56)] | PC1_TABLE[256 | (int) (key >>> 48) & 0xFF]
+				| PC1_TABLE[512 | (int) (key >>> 40) & 0xFF] | PC1_TABLE[768 | (int) (key >>> 32) & 0xFF]
+				| PC1_TABLE[1024 | (int) (key >>> 24) & 0xFF] | PC1_TABLE[1280 | (int) (key >>> 16) & 0xFF]
+				| PC1_TABLE[1536 | (int) (key >>> 8) & 0xFF] | PC1_TABLE[1792 | (int) key & 0xFF];
+		int c0 = (int) (cd >>> 28);
+		int d0 = (int) cd & 0x0FFFFFFF;
+		for(int round = 0; round < 16; round++) {
+			int rotation = ROTATIONS[round];
+			int c = (c0 << rotation | c0 >>> (28 - rotation)) & 0x0FFFFFFF;
+			int d = (d0 << rotation | d0 >>> (28 - rotation)) & 0x0FFFFFFF;
+			long subkey = PC2_TABLE[c >>> 21] | PC2_TABLE[128 | c >>> 14 & 0x7F]
+					| PC2_TABLE[256 | c >>> 7 & 0x7F] | PC2_TABLE[384 | c & 0x7F]
+					| PC2_TABLE[512 | d >>> 21] | PC2_TABLE[640 | d >>> 14 & 0x7F]
+					| PC2_TABLE[768 | d >>> 7 & 0x7F] | PC2_TABLE[896 | d & 0x7F];
+			schedule[round * 2] = (int) (subkey >>> 32);
+			schedule[round * 2 + 1] = (int) subkey;
+		}
+	}
+
+	/**
+	 * DES encryption of a single block
+	 * @param schedule Key schedule
+	 * @param block Block to encrypt
+	 * @return Encrypted block
+	 */
+	static long encrypt(int[] schedule, long block) {
+		return finalPermutation(rounds(schedule, initialPermutation(block), false));
+	}
+
+	/**
+	 * DES decryption of a single block
+	 * @param schedule Key schedule
+	 * @param block Block to decrypt
+	 * @return Decrypted block
+	 */
+	static long decrypt(int[] schedule, long block) {
+		return finalPermutation(rounds(schedule, initialPermutation(block), true));
+	}
+
+	/**
+	 * TripleDES (EDE) encryption of a single block, the final and initial permutations between the DES stages cancel out and are skipped
+	 * @param k1 Key schedule of the first stage
+	 * @param k2 Key schedule of the second stage
+	 * @param k3 Key schedule of the third stage, <i>k1</i> for double length keys
+	 * @param block Block to encrypt
+	 * @return Encrypted block
+	 */
+	static long encrypt(int[] k1, int[] k2, int[] k3, long block) {
+		long state = rounds(k1, initialPermutation(block), false);
+		state = rounds(k2, swap(state), true);
+		state = rounds(k3, swap(state), false);
+		return finalPermutation(state);
+	}
+
+	/**
+	 * TripleDES (EDE) decryption of a single block
+	 * @param k1 Key schedule of the first stage
+	 * @param k2 Key schedule of the second stage
+	 * @param k3 Key schedule of the third stage, <i>k1</i> for double length keys
+	 * @param block Block to decrypt
+	 * @return Decrypted block
+	 */
+	static long decrypt(int[] k1, int[] k2, int[] k3, long block) {
+		long state = rounds(k3, initialPermutation(block), true);
+		state = rounds(k2, swap(state), false);
+		state = rounds(k1, swap(state), true);
+		return finalPermutation(state);
+	}
+
+	/**
+	 * Runs the 16 Feistel rounds
+	 * </br>Both halves are kept rotated left by one bit so that the 6 bit S-box inputs of the expansion permutation can be read from two words, the SP tables are rotated accordingly.
+	 * @param k Key schedule
+	 * @param state Permuted block, left half in the high 32 bits
+	 * @param reverse Use the subkeys in reverse order (decryption)
+	 * @return State after the 16th round, not swapped
+	 */
+	private static long rounds(int[] k, long state, boolean reverse) {
+		int l = (int) (state >>> 32);
+		int r = (int) state;
+		int o = reverse ? 30 : 0;
+		int step = reverse ? -2 : 2;
+		for(int round = 0; round < 16; round++, o += step) {
+			int work = Integer.rotateRight(r, 4) ^ k[o];
+			int f = SP1[work >>> 24 & 0x3F] | SP3[work >>> 16 & 0x3F] | SP5[work >>> 8 & 0x3F] | SP7[work & 0x3F];
+			work = r ^ k[o + 1];
+			f |= SP2[work >>> 24 & 0x3F] | SP4[work >>> 16 & 0x3F] | SP6[work >>> 8 & 0x3F] | SP8[work & 0x3F];
+			int t = l ^ f;
+			l = r;
+			r = t;
+		}
+		return (long) l << 32 | r & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Initial permutation, computed with swaps of bit groups
+	 * @param block Block
+	 * @return Permuted block with both halves rotated left by one bit
+	 */
+	private static long initialPermutation(long block) {
+		int l = (int) (block >>> 32);
+		int r = (int) block;
+		int work = (l >>> 4 ^ r) & 0x0F0F0F0F;
+		r ^= work;
+		l ^= work << 4;
+		work = (l >>> 16 ^ r) & 0x0000FFFF;
+		r ^= work;
+		l ^= work << 16;
+		work = (r >>> 2 ^ l) & 0x33333333;
+		l ^= work;
+		r ^= work << 2;
+		work = (r >>> 8 ^ l) & 0x00FF00FF;
+		l ^= work;
+		r ^= work << 8;
+		r = Integer.rotateLeft(r, 1);
+		work = (l ^ r) & 0xAAAAAAAA;
+		l ^= work;
+		r ^= work;
+		l = Integer.rotateLeft(l, 1);
+		return (long) l << 32 | r & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Swaps the halves and applies the final permutation
+	 * @param state State after the 16th round, both halves rotated left by one bit
+	 * @return Output block
+	 */
+	private static long finalPermutation(long state) {
+		int l = (int) (state >>> 32);
+		int r = (int) state;
+		r = Integer.rotateRight(r, 1);
+		int work = (l ^ r) & 0xAAAAAAAA;
+		l ^= work;
+		r ^= work;
+		l = Integer.rotateRight(l, 1);
+		work = (l >>> 8 ^ r) & 0x00FF00FF;
+		r ^= work;
+		l ^= work << 8;
+		work = (l >>> 2 ^ r) & 0x33333333;
+		r ^= work;
+		l ^= work << 2;
+		work = (r >>> 16 ^ l) & 0x0000FFFF;
+		l ^= work;
+		r ^= work << 16;
+		work = (r >>> 4 ^ l) & 0x0F0F0F0F;
+		l ^= work;
+		r ^= work << 4;
+		return (long) r << 32 | l & 0xFFFFFFFFL;
+	}
+
+	private static long swap(long state) {
+		return state << 32 | state >>> 32;
+	}
+
+	/**
+	 * Rearranges a 48 bit subkey into the two words used by <code>rounds</code>, the first word holding the inputs of S-boxes 1, 3, 5 and 7 and the second one those of S-boxes 2, 4, 6 and 8, one per byte
+	 * @param subkey 48 bit subkey
+	 * @return Both words, the first one in the high 32 bits
+	 */
+	private static long pack(long subkey) {
+		long packed = 0;
+		for(int chunk = 0; chunk < 8; chunk++) {
+			long bits = subkey >>> (42 - 6 * chunk) & 0x3F;
+			packed |= bits << ((chunk & 1) == 0 ? 56 - 4 * chunk : 24 - 4 * (chunk - 1));
+		}
+		return packed;
+	}
+
+	/**
+	 * Fills one lookup table per group of input bits with the contribution of that group to the permuted output, the tables being stored one after the other
+	 * @param tables Tables to fill
+	 * @param inputBits Number of input bits
+	 * @param permutation Permutation, 1-indexed from the most significant input bit
+	 * @param bits Number of bits per group
+	 */
+	private static void fillTables(long[] tables, int inputBits, int[] permutation, int bits) {
+		for(int group = 0; group < inputBits / bits; group++) {
+			int shift = inputBits - bits * (group + 1);
+			for(int v = 0; v < 1 << bits; v++) {
+				tables[group << bits | v] = permute((long) v << shift, inputBits, permutation);
+			}
+		}
+	}
+
+	/**
+	 * Permutes bits
+	 * @param value Input value
+	 * @param inputBits Number of input bits
+	 * @param permutation Output bit <i>i</i> is input bit <i>permutation[i]</i>, both 1-indexed from the most significant bit
+	 * @return Permuted value
+	 */
+	private static long permute(long value, int inputBits, int[] permutation) {
+		long result = 0;
+		for(int i = 0; i < permutation.length; i++) {
+			result = result << 1 | value >>> (inputBits - permutation[i]) & 1;
+		}
+		return result;
+	}
+}
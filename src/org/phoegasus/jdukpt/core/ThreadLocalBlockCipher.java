@@ -0,0 +1,47 @@
+package org.phoegasus.jdukpt.core;
+
+import java.util.function.Supplier;
+
+/**
+ * Gives each thread its own instance of a client <code>BlockCipher</code> implementation, created by a factory, so that implementations holding state can be used by a shared <code>JDukpt</code>.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+final class ThreadLocalBlockCipher implements BlockCipher {
+	
+	private final ThreadLocal<BlockCipher> instances;
+	
+	ThreadLocalBlockCipher(final Supplier<? extends BlockCipher> factory) {
+		this.instances = new ThreadLocal<BlockCipher>() {
+			@Override
+			protected BlockCipher initialValue() {
+				BlockCipher cipher = factory.get();
+				if(cipher == null) {
+					throw new IllegalStateException("BlockCipher factory returned null");
+				}
+				return cipher;
+			}
+		};
+	}
+
+	@Override
+	public long encryptDES(long key, long data) throws Exception {
+		return instances.get().encryptDES(key, data);
+	}
+
+	@Override
+	public long decryptDES(long key, long data) throws Exception {
+		return instances.get().decryptDES(key, data);
+	}
+
+	@Override
+	public long encryptTDES(long keyHi, long keyLo, long data) throws Exception {
+		return instances.get().encryptTDES(keyHi, keyLo, data);
+	}
+
+	@Override
+	public long decryptTDES(long keyHi, long keyLo, long data) throws Exception {
+		return instances.get().decryptTDES(keyHi, keyLo, data);
+	}
+}
@@ -0,0 +1,48 @@
+package org.phoegasus.jdukpt.core;
+
+import java.math.BigInteger;
+import java.util.function.Supplier;
+
+/**
+ * Gives each thread its own instance of a client <code>Crypto</code> implementation, created by a factory, so that implementations holding state can be used by a shared <code>JDukpt</code>.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+final class ThreadLocalCrypto implements Crypto {
+	
+	private final ThreadLocal<Crypto> instances;
+	
+	ThreadLocalCrypto(final Supplier<? extends Crypto> factory) {
+		this.instances = new ThreadLocal<Crypto>() {
+			@Override
+			protected Crypto initialValue() {
+				Crypto crypto = factory.get();
+				if(crypto == null) {
+					throw new IllegalStateException("Crypto factory returned null");
+				}
+				return crypto;
+			}
+		};
+	}
+
+	@Override
+	public BigInteger encryptDES(BigInteger key, BigInteger data) throws Exception {
+		return instances.get().encryptDES(key, data);
+	}
+
+	@Override
+	public BigInteger decryptDES(BigInteger key, BigInteger data) throws Exception {
+		return instances.get().decryptDES(key, data);
+	}
+
+	@Override
+	public BigInteger encryptTDES(BigInteger key, BigInteger data) throws Exception {
+		return instances.get().encryptTDES(key, data);
+	}
+
+	@Override
+	public BigInteger decryptTDES(BigInteger key, BigInteger data) throws Exception {
+		return instances.get().decryptTDES(key, data);
+	}
+}
@@ -0,0 +1,47 @@
+package org.phoegasus.jdukpt.metrics;
+
+/**
+ * Service provider interface receiving the measurements of the DUKPT operations of a <code>JDukpt</code>, configured with <code>JDukpt.builder().metrics(...)</code>.
+ * </br>Methods are called on the calling threads of <code>JDukpt</code>, possibly at the same time, and should return quickly. Durations are in nanoseconds, measured with <code>System.nanoTime</code>.
+ * </br>When no implementation is configured, <code>NoOpMetrics</code> is used and the operations do not measure anything.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public interface DukptMetrics {
+	
+	/**
+	 * Called after an IPEK was derived from the BDK
+	 * @param nanos Duration of the derivation
+	 */
+	public void ipekDerived(long nanos);
+	
+	/**
+	 * Called after the key of a KSN was derived by walking its counter
+	 * @param depth Number of counter bits walked, each costing one key generation
+	 * @param nanos Duration of the walk
+	 */
+	public void keyDerived(int depth, long nanos);
+	
+	/**
+	 * Called after each DES or TripleDES operation on a block
+	 * @param nanos Duration of the operation
+	 */
+	public void cipherInvoked(long nanos);
+	
+	/**
+	 * Called when the IPEK or the future keys of a device were found in the <code>IpekCache</code>
+	 */
+	public void cacheHit();
+	
+	/**
+	 * Called when the IPEK or the future keys of a device were not found in the <code>IpekCache</code>
+	 */
+	public void cacheMiss();
+	
+	/**
+	 * Called when a DES or TripleDES operation failed
+	 * @param error Error thrown by the Crypto or BlockCipher implementation
+	 */
+	public void error(Throwable error);
+}
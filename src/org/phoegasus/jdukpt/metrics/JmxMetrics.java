@@ -0,0 +1,179 @@
+package org.phoegasus.jdukpt.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * <code>DukptMetrics</code> implementation accumulating the measurements in counters exposed as a standard MBean, with the JMX support of the JDK only.
+ * </br>Counters are <code>LongAdder</code> objects, so that threads reporting at the same time do not contend.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public class JmxMetrics implements DukptMetrics, JmxMetricsMBean {
+	
+	/**
+	 * Default object name of the MBean
+	 */
+	public static final String DEFAULT_NAME = "org.phoegasus.jdukpt:type=DukptMetrics";
+	
+	private final LongAdder ipekDerivations = new LongAdder();
+	
+	private final LongAdder ipekDerivationNanos = new LongAdder();
+	
+	private final LongAdder keyDerivations = new LongAdder();
+	
+	private final LongAdder keyGenerations = new LongAdder();
+	
+	private final LongAdder keyDerivationNanos = new LongAdder();
+	
+	private final LongAdder cipherInvocations = new LongAdder();
+	
+	private final LongAdder cipherNanos = new LongAdder();
+	
+	private final LongAdder cacheHits = new LongAdder();
+	
+	private final LongAdder cacheMisses = new LongAdder();
+	
+	private final LongAdder errors = new LongAdder();
+	
+	private ObjectName registeredName;
+	
+	/**
+	 * Registers the MBean in the platform MBean server under <code>DEFAULT_NAME</code>
+	 * @throws JMException thrown by the MBean server, for example if the name is already registered
+	 */
+	public void register() throws JMException {
+		register(DEFAULT_NAME);
+	}
+	
+	/**
+	 * Registers the MBean in the platform MBean server
+	 * @param name Object name of the MBean
+	 * @throws JMException thrown by the MBean server, for example if the name is already registered
+	 */
+	public synchronized void register(String name) throws JMException {
+		if (registeredName != null){
+			throw new IllegalStateException("MBean is already registered as " + registeredName);
+		}
+		ObjectName objectName = new ObjectName(name);
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		registeredName = objectName;
+	}
+	
+	/**
+	 * Unregisters the MBean from the platform MBean server, if it is registered
+	 * @throws JMException thrown by the MBean server
+	 */
+	public synchronized void unregister() throws JMException {
+		if (registeredName != null) {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(registeredName)) {
+				server.unregisterMBean(registeredName);
+			}
+			registeredName = null;
+		}
+	}
+
+	@Override
+	public void ipekDerived(long nanos) {
+		ipekDerivations.increment();
+		ipekDerivationNanos.add(nanos);
+	}
+
+	@Override
+	public void keyDerived(int depth, long nanos) {
+		keyDerivations.increment();
+		keyGenerations.add(depth);
+		keyDerivationNanos.add(nanos);
+	}
+
+	@Override
+	public void cipherInvoked(long nanos) {
+		cipherInvocations.increment();
+		cipherNanos.add(nanos);
+	}
+
+	@Override
+	public void cacheHit() {
+		cacheHits.increment();
+	}
+
+	@Override
+	public void cacheMiss() {
+		cacheMisses.increment();
+	}
+
+	@Override
+	public void error(Throwable error) {
+		errors.increment();
+	}
+
+	@Override
+	public long getIpekDerivations() {
+		return ipekDerivations.sum();
+	}
+
+	@Override
+	public long getIpekDerivationNanos() {
+		return ipekDerivationNanos.sum();
+	}
+
+	@Override
+	public long getKeyDerivations() {
+		return keyDerivations.sum();
+	}
+
+	@Override
+	public long getKeyGenerations() {
+		return keyGenerations.sum();
+	}
+
+	@Override
+	public long getKeyDerivationNanos() {
+		return keyDerivationNanos.sum();
+	}
+
+	@Override
+	public long getCipherInvocations() {
+		return cipherInvocations.sum();
+	}
+
+	@Override
+	public long getCipherNanos() {
+		return cipherNanos.sum();
+	}
+
+	@Override
+	public long getCacheHits() {
+		return cacheHits.sum();
+	}
+
+	@Override
+	public long getCacheMisses() {
+		return cacheMisses.sum();
+	}
+
+	@Override
+	public long getErrors() {
+		return errors.sum();
+	}
+
+	@Override
+	public void reset() {
+		ipekDerivations.reset();
+		ipekDerivationNanos.reset();
+		keyDerivations.reset();
+		keyGenerations.reset();
+		keyDerivationNanos.reset();
+		cipherInvocations.reset();
+		cipherNanos.reset();
+		cacheHits.reset();
+		cacheMisses.reset();
+		errors.reset();
+	}
+}
@@ -0,0 +1,65 @@
+package org.phoegasus.jdukpt.metrics;
+
+/**
+ * Management interface of <code>JmxMetrics</code>.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public interface JmxMetricsMBean {
+	
+	/**
+	 * @return Number of IPEKs derived from the BDK
+	 */
+	public long getIpekDerivations();
+	
+	/**
+	 * @return Total duration of the IPEK derivations, in nanoseconds
+	 */
+	public long getIpekDerivationNanos();
+	
+	/**
+	 * @return Number of KSN keys derived by walking the counter
+	 */
+	public long getKeyDerivations();
+	
+	/**
+	 * @return Total number of counter bits walked, each costing one key generation
+	 */
+	public long getKeyGenerations();
+	
+	/**
+	 * @return Total duration of the counter walks, in nanoseconds
+	 */
+	public long getKeyDerivationNanos();
+	
+	/**
+	 * @return Number of DES and TripleDES operations
+	 */
+	public long getCipherInvocations();
+	
+	/**
+	 * @return Total duration of the DES and TripleDES operations, in nanoseconds
+	 */
+	public long getCipherNanos();
+	
+	/**
+	 * @return Number of <code>IpekCache</code> lookups which found the device
+	 */
+	public long getCacheHits();
+	
+	/**
+	 * @return Number of <code>IpekCache</code> lookups which did not find the device
+	 */
+	public long getCacheMisses();
+	
+	/**
+	 * @return Number of failed DES and TripleDES operations
+	 */
+	public long getErrors();
+	
+	/**
+	 * Sets every counter back to zero
+	 */
+	public void reset();
+}
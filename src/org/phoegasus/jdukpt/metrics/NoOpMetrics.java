@@ -0,0 +1,40 @@
+package org.phoegasus.jdukpt.metrics;
+
+/**
+ * <code>DukptMetrics</code> implementation ignoring every measurement, used when no metrics are configured.
+ * </br><code>JDukpt</code> recognizes this instance and skips the measurements altogether.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public final class NoOpMetrics implements DukptMetrics {
+	
+	public static final NoOpMetrics INSTANCE = new NoOpMetrics();
+	
+	private NoOpMetrics() {
+	}
+
+	@Override
+	public void ipekDerived(long nanos) {
+	}
+
+	@Override
+	public void keyDerived(int depth, long nanos) {
+	}
+
+	@Override
+	public void cipherInvoked(long nanos) {
+	}
+
+	@Override
+	public void cacheHit() {
+	}
+
+	@Override
+	public void cacheMiss() {
+	}
+
+	@Override
+	public void error(Throwable error) {
+	}
+}
@@ -0,0 +1,81 @@
+package org.phoegasus.jdukpt.server;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary protocol of <code>DukptServer</code>.
+ * </br>Every frame starts with its length, a 4 bytes big-endian integer counting the bytes that follow it.
+ * </br>A request frame holds the operation (1 byte), the KSN (10 bytes) and the payload, whose length should be a positive multiple of 8.
+ * </br>A response frame holds the status (1 byte) and, if the status is <code>OK</code>, the result of the operation.
+ * </br>A client can send any number of requests without waiting for their responses, responses are sent in the order of the requests of the connection.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public final class DukptProtocol {
+	
+	/**
+	 * Decrypt the payload using PIN variant
+	 */
+	public static final byte DECRYPT_PIN = 1;
+	
+	/**
+	 * Decrypt the payload using DATA variant
+	 */
+	public static final byte DECRYPT_DATA = 2;
+	
+	/**
+	 * The response holds the result of the operation
+	 */
+	public static final byte OK = 0;
+	
+	/**
+	 * Unknown operation, or payload length which is not a positive multiple of 8
+	 */
+	public static final byte BAD_REQUEST = 1;
+	
+	/**
+	 * No BDK is registered for the key set of the KSN
+	 */
+	public static final byte UNKNOWN_KEY_SET = 2;
+	
+	/**
+	 * The operation failed
+	 */
+	public static final byte ERROR = 3;
+	
+	/**
+	 * Length of the frame length field
+	 */
+	public static final int LENGTH_FIELD = 4;
+	
+	/**
+	 * Length of the operation and KSN fields of a request
+	 */
+	public static final int REQUEST_HEADER = 11;
+	
+	/**
+	 * Length of the status field of a response
+	 */
+	public static final int RESPONSE_HEADER = 1;
+	
+	private DukptProtocol() {
+	}
+	
+	/**
+	 * Writes a request frame
+	 * @param buffer Receives the frame
+	 * @param operation Operation
+	 * @param ksn Key Serial Number, 10 bytes long
+	 * @param payload Payload
+	 */
+	public static void putRequest(ByteBuffer buffer, byte operation, byte[] ksn, byte[] payload) {
+		if (ksn == null || ksn.length != 10){
+			throw new IllegalArgumentException("ksn should be 10 bytes long");
+		}
+		buffer.putInt(REQUEST_HEADER + payload.length);
+		buffer.put(operation);
+		buffer.put(ksn);
+		buffer.put(payload);
+	}
+}
@@ -0,0 +1,627 @@
+package org.phoegasus.jdukpt.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.phoegasus.jdukpt.core.BatchRecord;
+import org.phoegasus.jdukpt.core.BdkRegistry;
+import org.phoegasus.jdukpt.core.JDukpt;
+
+/**
+ * Decryption server speaking the <code>DukptProtocol</code>, for services which cannot embed the library.
+ * </br>A single selector thread accepts connections, reads request frames and writes response frames without blocking. Clients may pipeline any number of requests on a connection, reading stops while a connection has more requests in flight than the configured limit.
+ * </br>Decryption is done by a single worker thread. While it works on a batch, the requests read by the selector thread are queued, and handed over as the next batch once it is done. Each batch is decrypted with <code>JDukpt.decryptPIN(BatchRecord[])</code> and <code>JDukpt.decryptData(BatchRecord[])</code>, so the devices of a batch are derived once and its blocks are deciphered together. The batch size therefore grows with the load, with no added latency when the server is idle.
+ * </br>The <code>JDukpt</code> object should be configured with a <code>BdkRegistry</code>, the BDK of a request being looked up from the key set of its KSN. Requests of an unregistered key set are answered with <code>UNKNOWN_KEY_SET</code> without affecting the other requests of their batch.
+ * </br><b>Security: the server is an unauthenticated decryption service.</b> It does not authenticate its clients and does not encrypt its connections, it returns clear PIN blocks and clear data to any peer which can connect to its port. It listens on the loopback interface unless an address is given, and should only be exposed beyond the host behind a TLS terminating proxy or a network restricted to its clients.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public class DukptServer implements Closeable {
+
+	/**
+	 * Default maximum payload length of a request
+	 */
+	public static final int DEFAULT_MAX_PAYLOAD_LENGTH = 64 * 1024;
+
+	/**
+	 * Default maximum number of requests in flight on a connection
+	 */
+	public static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+
+	/**
+	 * Default maximum number of requests of a batch
+	 */
+	public static final int DEFAULT_MAX_BATCH_SIZE = 4096;
+
+	private static final int MAX_GATHER = 64;
+
+	private static final Logger LOGGER = Logger.getLogger(DukptServer.class.getName());
+
+	private final JDukpt jdukpt;
+
+	private final BdkRegistry bdkRegistry;
+
+	private final int maxPayloadLength;
+
+	private final int maxInFlight;
+
+	private final int maxBatchSize;
+
+	private final Selector selector;
+
+	private final ServerSocketChannel serverChannel;
+
+	private final ExecutorService worker;
+
+	private final Thread selectorThread;
+
+	/**
+	 * Requests read and not yet handed to the worker, only used by the selector thread
+	 */
+	private final ArrayList<Request> pending = new ArrayList<Request>();
+
+	/**
+	 * Connections with responses to write
+	 */
+	private final ConcurrentLinkedQueue<Connection> writable = new ConcurrentLinkedQueue<Connection>();
+
+	private final List<Connection> connections = new ArrayList<Connection>();
+
+	private final AtomicBoolean busy = new AtomicBoolean();
+
+	private final AtomicLong requestCount = new AtomicLong();
+
+	private final AtomicLong batchCount = new AtomicLong();
+
+	private volatile boolean closed;
+
+	/**
+	 * Binds a server to the loopback interface with the default limits
+	 * @param jdukpt Decrypts the requests, configured with a <code>BdkRegistry</code>
+	 * @param port Port to listen on, 0 to pick a free port
+	 * @throws IOException if the port cannot be bound
+	 */
+	public DukptServer(JDukpt jdukpt, int port) throws IOException {
+		this(jdukpt, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+	}
+
+	/**
+	 * Binds a server with the default limits
+	 * </br>Clients are not authenticated, an address other than a loopback address exposes the decryption service to every host which can reach it.
+	 * @param jdukpt Decrypts the requests, configured with a <code>BdkRegistry</code>
+	 * @param address Address to listen on, port 0 to pick a free port
+	 * @throws IOException if the address cannot be bound
+	 */
+	public DukptServer(JDukpt jdukpt, InetSocketAddress address) throws IOException {
+		this(jdukpt, address, DEFAULT_MAX_PAYLOAD_LENGTH, DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_BATCH_SIZE);
+	}
+
+	/**
+	 * Binds a server
+	 * </br>Clients are not authenticated, an address other than a loopback address exposes the decryption service to every host which can reach it.
+	 * @param jdukpt Decrypts the requests, configured with a <code>BdkRegistry</code>
+	 * @param address Address to listen on, port 0 to pick a free port
+	 * @param maxPayloadLength Maximum payload length of a request, a connection sending a longer request is closed
+	 * @param maxInFlight Number of requests in flight on a connection above which its requests are no longer read
+	 * @param maxBatchSize Maximum number of requests of a batch
+	 * @throws IOException if the address cannot be bound
+	 */
+	public DukptServer(JDukpt jdukpt, InetSocketAddress address, int maxPayloadLength, int maxInFlight, int maxBatchSize) throws IOException {
+		if (jdukpt == null){
+			throw new IllegalArgumentException("jdukpt is null");
+		}
+		if (jdukpt.getBdkRegistry() == null){
+			throw new IllegalArgumentException("jdukpt should be configured with a BdkRegistry");
+		}
+		if (address == null){
+			throw new IllegalArgumentException("address is null");
+		}
+		if (maxPayloadLength < 8){
+			throw new IllegalArgumentException("maxPayloadLength should be at least 8");
+		}
+		if (maxInFlight <= 0){
+			throw new IllegalArgumentException("maxInFlight should be positive");
+		}
+		if (maxBatchSize <= 0){
+			throw new IllegalArgumentException("maxBatchSize should be positive");
+		}
+		this.jdukpt = jdukpt;
+		this.bdkRegistry = jdukpt.getBdkRegistry();
+		this.maxPayloadLength = maxPayloadLength;
+		this.maxInFlight = maxInFlight;
+		this.maxBatchSize = maxBatchSize;
+		this.selector = Selector.open();
+		this.serverChannel = ServerSocketChannel.open();
+		try {
+			serverChannel.bind(address);
+			serverChannel.configureBlocking(false);
+			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException e) {
+			serverChannel.close();
+			selector.close();
+			throw e;
+		}
+		this.worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "dukpt-server-worker");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.selectorThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				select();
+			}
+		}, "dukpt-server-selector");
+		this.selectorThread.setDaemon(true);
+	}
+
+	/**
+	 * Starts accepting connections
+	 */
+	public void start() {
+		selectorThread.start();
+	}
+
+	/**
+	 * @return Address the server listens on
+	 * @throws IOException if the server is closed
+	 */
+	public InetSocketAddress getAddress() throws IOException {
+		return (InetSocketAddress) serverChannel.getLocalAddress();
+	}
+
+	/**
+	 * @return Number of requests decrypted or rejected
+	 */
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * @return Number of batches handed to the worker, the average batch size being <code>getRequestCount() / getBatchCount()</code>
+	 */
+	public long getBatchCount() {
+		return batchCount.get();
+	}
+
+	/**
+	 * Stops the server and closes every connection, responses not yet written are dropped
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		selector.wakeup();
+		if (selectorThread.isAlive()) {
+			try {
+				selectorThread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		} else {
+			release();
+		}
+		worker.shutdown();
+		try {
+			worker.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	//----------------------------------------------------------------------//
+
+	private void select() {
+		try {
+			while (!closed) {
+				selector.select();
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						try {
+							accept();
+						} catch (IOException e) {
+							LOGGER.log(Level.WARNING, "failed to accept a connection", e);
+						} catch (RuntimeException e) {
+							LOGGER.log(Level.SEVERE, "failed to accept a connection", e);
+						}
+						continue;
+					}
+					Connection connection = (Connection) key.attachment();
+					try {
+						if (key.isReadable()) {
+							read(connection);
+						}
+						if (key.isValid() && key.isWritable()) {
+							write(connection);
+						}
+					} catch (IOException e) {
+						close(connection);
+					} catch (RuntimeException e) {
+						LOGGER.log(Level.SEVERE, "failed to serve a connection, closing it", e);
+						close(connection);
+					}
+				}
+				Connection connection;
+				while ((connection = writable.poll()) != null) {
+					connection.scheduled.set(false);
+					try {
+						write(connection);
+					} catch (IOException e) {
+						close(connection);
+					}
+				}
+				dispatch();
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, "selector failed, stopping the server", e);
+			closed = true;
+		} catch (RuntimeException e) {
+			LOGGER.log(Level.SEVERE, "selector failed, stopping the server", e);
+			closed = true;
+		} finally {
+			release();
+		}
+	}
+
+	private void release() {
+		for (Connection connection : new ArrayList<Connection>(connections)) {
+			close(connection);
+		}
+		try {
+			serverChannel.close();
+		} catch (IOException e) {
+			// closing
+		}
+		try {
+			selector.close();
+		} catch (IOException e) {
+			// closing
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null) {
+			return;
+		}
+		channel.configureBlocking(false);
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		Connection connection = new Connection(channel, ByteBuffer.allocate(DukptProtocol.LENGTH_FIELD + DukptProtocol.REQUEST_HEADER + maxPayloadLength));
+		connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+		connections.add(connection);
+	}
+
+	private void close(Connection connection) {
+		if (!connection.open) {
+			return;
+		}
+		connection.open = false;
+		connections.remove(connection);
+		connection.key.cancel();
+		try {
+			connection.channel.close();
+		} catch (IOException e) {
+			// closing
+		}
+	}
+
+	/**
+	 * Reads the available frames of a connection and queues them as requests
+	 */
+	private void read(Connection connection) throws IOException {
+		ByteBuffer in = connection.in;
+		if (connection.channel.read(in) < 0) {
+			close(connection);
+			return;
+		}
+		in.flip();
+		while (in.remaining() >= DukptProtocol.LENGTH_FIELD) {
+			int length = in.getInt(in.position());
+			if (length < DukptProtocol.REQUEST_HEADER || length > DukptProtocol.REQUEST_HEADER + maxPayloadLength) {
+				close(connection);
+				return;
+			}
+			if (in.remaining() < DukptProtocol.LENGTH_FIELD + length) {
+				break;
+			}
+			in.position(in.position() + DukptProtocol.LENGTH_FIELD);
+			byte operation = in.get();
+			byte[] ksn = new byte[10];
+			in.get(ksn);
+			int payloadLength = length - DukptProtocol.REQUEST_HEADER;
+			byte[] response = new byte[DukptProtocol.LENGTH_FIELD + DukptProtocol.RESPONSE_HEADER + payloadLength];
+			in.get(response, DukptProtocol.LENGTH_FIELD + DukptProtocol.RESPONSE_HEADER, payloadLength);
+			pending.add(new Request(connection, operation, ksn, response, payloadLength));
+			connection.inFlight++;
+		}
+		in.compact();
+		if (connection.inFlight >= maxInFlight) {
+			connection.key.interestOps(connection.key.interestOps() & ~SelectionKey.OP_READ);
+		}
+	}
+
+	/**
+	 * Writes the queued responses of a connection, gathering several responses per write
+	 */
+	private void write(Connection connection) throws IOException {
+		if (!connection.open) {
+			return;
+		}
+		ArrayDeque<ByteBuffer> writing = connection.writing;
+		ByteBuffer response;
+		while ((response = connection.out.poll()) != null) {
+			writing.add(response);
+		}
+		ByteBuffer[] gather = connection.gather;
+		while (!writing.isEmpty()) {
+			int count = 0;
+			for (ByteBuffer buffer : writing) {
+				gather[count++] = buffer;
+				if (count == gather.length) {
+					break;
+				}
+			}
+			connection.channel.write(gather, 0, count);
+			while (!writing.isEmpty() && !writing.peek().hasRemaining()) {
+				writing.poll();
+				connection.inFlight--;
+			}
+			if (gather[count - 1].hasRemaining()) {
+				break;
+			}
+		}
+		Arrays.fill(gather, null);
+		int interestOps = connection.key.interestOps();
+		if (writing.isEmpty()) {
+			interestOps &= ~SelectionKey.OP_WRITE;
+		} else {
+			interestOps |= SelectionKey.OP_WRITE;
+		}
+		if (connection.inFlight < maxInFlight) {
+			interestOps |= SelectionKey.OP_READ;
+		}
+		connection.key.interestOps(interestOps);
+	}
+
+	/**
+	 * Hands the queued requests to the worker as one batch, unless it is working on the previous batch
+	 */
+	private void dispatch() {
+		if (pending.isEmpty() || !busy.compareAndSet(false, true)) {
+			return;
+		}
+		int size = Math.min(pending.size(), maxBatchSize);
+		List<Request> view = pending.subList(0, size);
+		final Request[] batch = view.toArray(new Request[size]);
+		view.clear();
+		batchCount.incrementAndGet();
+		worker.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					process(batch);
+				} finally {
+					busy.set(false);
+					selector.wakeup();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Decrypts a batch and queues its responses, in the order of the requests
+	 */
+	private void process(Request[] batch) {
+		int pinCount = 0;
+		int dataCount = 0;
+		for (Request request : batch) {
+			if (request.length == 0 || request.length % 8 != 0 || (request.operation != DukptProtocol.DECRYPT_PIN && request.operation != DukptProtocol.DECRYPT_DATA)) {
+				request.status = DukptProtocol.BAD_REQUEST;
+			} else if (!bdkRegistry.contains(request.ksn)) {
+				request.status = DukptProtocol.UNKNOWN_KEY_SET;
+			} else if (request.operation == DukptProtocol.DECRYPT_PIN) {
+				pinCount++;
+			} else {
+				dataCount++;
+			}
+		}
+		decrypt(batch, DukptProtocol.DECRYPT_PIN, pinCount);
+		decrypt(batch, DukptProtocol.DECRYPT_DATA, dataCount);
+		requestCount.addAndGet(batch.length);
+		Connection last = null;
+		for (Request request : batch) {
+			Connection connection = request.connection;
+			if (!connection.open) {
+				continue;
+			}
+			connection.out.add(request.response());
+			if (connection != last && connection.scheduled.compareAndSet(false, true)) {
+				writable.add(connection);
+			}
+			last = connection;
+		}
+	}
+
+	/**
+	 * Decrypts the well formed requests of an operation, whose key sets are registered, as one batch
+	 * </br>If a key set is removed from the registry meanwhile, the requests of the key sets which are no longer registered are rejected and the others decrypted again as one batch, until no key set is missing.
+	 */
+	private void decrypt(Request[] batch, byte operation, int count) {
+		if (count == 0) {
+			return;
+		}
+		Request[] requests = new Request[count];
+		int index = 0;
+		for (Request request : batch) {
+			if (request.operation == operation && request.status == DukptProtocol.OK) {
+				requests[index++] = request;
+			}
+		}
+		while (!decrypt(requests, operation)) {
+			index = 0;
+			for (Request request : requests) {
+				if (bdkRegistry.contains(request.ksn)) {
+					requests[index++] = request;
+				} else {
+					request.status = DukptProtocol.UNKNOWN_KEY_SET;
+				}
+			}
+			if (index == 0) {
+				return;
+			}
+			requests = Arrays.copyOf(requests, index);
+		}
+	}
+
+	/**
+	 * Decrypts requests in place as one batch, failing every request if the batch fails
+	 * </br>The key sets of every request are looked up before anything is decrypted, so the requests are left untouched if one is not registered. Any other rejection of the batch fails its requests with <code>BAD_REQUEST</code>.
+	 * @return false if a key set is not registered
+	 */
+	private boolean decrypt(Request[] requests, byte operation) {
+		BatchRecord[] records = new BatchRecord[requests.length];
+		for (int i = 0; i < requests.length; i++) {
+			records[i] = requests[i].record();
+		}
+		try {
+			if (operation == DukptProtocol.DECRYPT_PIN) {
+				jdukpt.decryptPIN(records);
+			} else {
+				jdukpt.decryptData(records);
+			}
+		} catch (IllegalArgumentException e) {
+			for (Request request : requests) {
+				if (!bdkRegistry.contains(request.ksn)) {
+					return false;
+				}
+			}
+			LOGGER.log(Level.WARNING, "rejected a batch", e);
+			for (Request request : requests) {
+				request.status = DukptProtocol.BAD_REQUEST;
+			}
+		} catch (Exception e) {
+			LOGGER.log(Level.WARNING, "failed to decrypt a batch", e);
+			for (Request request : requests) {
+				request.status = DukptProtocol.ERROR;
+			}
+		}
+		return true;
+	}
+
+	//----------------------------------------------------------------------//
+
+	private static final class Connection {
+
+		private final SocketChannel channel;
+
+		private final ByteBuffer in;
+
+		/**
+		 * Responses queued by the worker
+		 */
+		private final ConcurrentLinkedQueue<ByteBuffer> out = new ConcurrentLinkedQueue<ByteBuffer>();
+
+		/**
+		 * Responses being written, only used by the selector thread
+		 */
+		private final ArrayDeque<ByteBuffer> writing = new ArrayDeque<ByteBuffer>();
+
+		private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+
+		private SelectionKey key;
+
+		/**
+		 * Requests read and not yet fully answered, only used by the selector thread
+		 */
+		private int inFlight;
+
+		private volatile boolean open = true;
+
+		Connection(SocketChannel channel, ByteBuffer in) {
+			this.channel = channel;
+			this.in = in;
+		}
+	}
+
+	private static final class Request {
+
+		private final Connection connection;
+
+		private final byte operation;
+
+		private final byte[] ksn;
+
+		/**
+		 * Response frame, holding the payload which is decrypted in place
+		 */
+		private final byte[] frame;
+
+		private final int length;
+
+		private byte status = DukptProtocol.OK;
+
+		Request(Connection connection, byte operation, byte[] ksn, byte[] frame, int length) {
+			this.connection = connection;
+			this.operation = operation;
+			this.ksn = ksn;
+			this.frame = frame;
+			this.length = length;
+		}
+
+		BatchRecord record() {
+			int offset = DukptProtocol.LENGTH_FIELD + DukptProtocol.RESPONSE_HEADER;
+			return new BatchRecord(ksn, frame, offset, length, frame, offset);
+		}
+
+		ByteBuffer response() {
+			ByteBuffer buffer = ByteBuffer.wrap(frame);
+			if (status == DukptProtocol.OK) {
+				buffer.putInt(DukptProtocol.RESPONSE_HEADER + length);
+				buffer.put(status);
+				buffer.position(0);
+			} else {
+				Arrays.fill(frame, (byte) 0);
+				buffer.putInt(DukptProtocol.RESPONSE_HEADER);
+				buffer.put(status);
+				buffer.flip();
+			}
+			return buffer;
+		}
+	}
+}
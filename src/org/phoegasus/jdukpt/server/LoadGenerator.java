@@ -0,0 +1,303 @@
+package org.phoegasus.jdukpt.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.phoegasus.jdukpt.core.BdkRegistry;
+import org.phoegasus.jdukpt.core.DUKPTEngine;
+import org.phoegasus.jdukpt.core.IpekCache;
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.core.TableBlockCipher;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+/**
+ * Load generator for <code>DukptServer</code>, measuring the service end to end.
+ * </br>Each connection runs on its own thread and keeps a fixed number of requests in flight, sending a new request for every response it reads. The latency of a request is the time between the write of its frame and the read of its response.
+ * </br>Run from the command line, it starts a server on the loopback interface and reports the requests per second and the latency percentiles:
+ * </br><code>java org.phoegasus.jdukpt.server.LoadGenerator [connections] [pipeline depth] [seconds] [devices]</code>
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public class LoadGenerator {
+
+	/**
+	 * Time in milliseconds after which a connection waiting for a response fails
+	 */
+	private static final int READ_TIMEOUT = 30000;
+
+	private final InetSocketAddress address;
+
+	private final int connections;
+
+	private final int pipeline;
+
+	/**
+	 * @param address Address of the server
+	 * @param connections Number of connections
+	 * @param pipeline Number of requests in flight on each connection
+	 */
+	public LoadGenerator(InetSocketAddress address, int connections, int pipeline) {
+		if (address == null){
+			throw new IllegalArgumentException("address is null");
+		}
+		if (connections <= 0){
+			throw new IllegalArgumentException("connections should be positive");
+		}
+		if (pipeline <= 0){
+			throw new IllegalArgumentException("pipeline should be positive");
+		}
+		this.address = address;
+		this.connections = connections;
+		this.pipeline = pipeline;
+	}
+
+	/**
+	 * Sends requests for a given time, cycling through the KSNs and payloads
+	 * @param operation <code>DukptProtocol.DECRYPT_PIN</code> or <code>DukptProtocol.DECRYPT_DATA</code>
+	 * @param ksns KSN of each request
+	 * @param payloads Payload of each request
+	 * @param durationMillis Time during which new requests are sent
+	 * @return Report of the run
+	 * @throws Exception if a connection fails, or if the server does not respond within 30 seconds
+	 */
+	public Report run(final byte operation, final byte[][] ksns, final byte[][] payloads, long durationMillis) throws Exception {
+		if (ksns == null || payloads == null || ksns.length == 0 || ksns.length != payloads.length){
+			throw new IllegalArgumentException("ksns and payloads should hold the same positive number of requests");
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(connections);
+		try {
+			final long start = System.nanoTime();
+			final long deadline = start + durationMillis * 1000000L;
+			List<Future<Client>> futures = new ArrayList<Future<Client>>();
+			for (int i = 0; i < connections; i++) {
+				final int first = (int) ((long) ksns.length * i / connections);
+				futures.add(executor.submit(new Callable<Client>() {
+					@Override
+					public Client call() throws Exception {
+						Client client = new Client(first);
+						client.run(operation, ksns, payloads, deadline);
+						return client;
+					}
+				}));
+			}
+			Client[] clients = new Client[connections];
+			int total = 0;
+			long errors = 0;
+			for (int i = 0; i < connections; i++) {
+				clients[i] = futures.get(i).get();
+				total += clients[i].count;
+				errors += clients[i].errors;
+			}
+			long elapsed = System.nanoTime() - start;
+			long[] merged = new long[total];
+			int offset = 0;
+			for (Client client : clients) {
+				System.arraycopy(client.latencies, 0, merged, offset, client.count);
+				offset += client.count;
+			}
+			Arrays.sort(merged);
+			return new Report(merged, errors, elapsed);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int connections = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		int pipeline = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		int devices = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+		byte[] bdk = HexUtils.hexToBytes("0123456789ABCDEFFEDCBA9876543210");
+		BdkRegistry registry = new BdkRegistry();
+		registry.put(HexUtils.hexToBytes("FFFF987654"), bdk);
+		JDukpt jdukpt = JDukpt.builder().cipher(new TableBlockCipher()).engine(DUKPTEngine.Primitive).ipekCache(new IpekCache(devices * 2, 0, true)).bdkRegistry(registry).build();
+		int requests = devices * 16;
+		byte[][] ksns = new byte[requests][];
+		byte[][] payloads = new byte[requests][];
+		byte[] pinBlock = HexUtils.hexToBytes("041226CBA987EDCB");
+		for (int i = 0; i < requests; i++) {
+			long device = i % devices;
+			long counter = i / devices + 1;
+			ksns[i] = HexUtils.hexToBytes("FFFF987654" + String.format("%010X", device << 21 | counter));
+			payloads[i] = jdukpt.encryptPIN(ksns[i], pinBlock);
+		}
+		DukptServer server = new DukptServer(jdukpt, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		try {
+			server.start();
+			LoadGenerator generator = new LoadGenerator(server.getAddress(), connections, pipeline);
+			System.out.printf("%d connections, %d requests in flight per connection, %d devices%n", connections, pipeline, devices);
+			generator.run(DukptProtocol.DECRYPT_PIN, ksns, payloads, Math.min(seconds, 2) * 1000L);
+			long requestCount = server.getRequestCount();
+			long batchCount = server.getBatchCount();
+			Report report = generator.run(DukptProtocol.DECRYPT_PIN, ksns, payloads, seconds * 1000L);
+			System.out.println(report);
+			System.out.printf("average batch size %.1f%n", (double) (server.getRequestCount() - requestCount) / Math.max(1, server.getBatchCount() - batchCount));
+		} finally {
+			server.close();
+		}
+	}
+
+	//----------------------------------------------------------------------//
+
+	/**
+	 * Latencies and throughput of a run
+	 */
+	public static final class Report {
+
+		private final long[] latencies;
+
+		private final long errors;
+
+		private final long elapsedNanos;
+
+		Report(long[] latencies, long errors, long elapsedNanos) {
+			this.latencies = latencies;
+			this.errors = errors;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		/**
+		 * @return Number of responses read
+		 */
+		public long getRequests() {
+			return latencies.length;
+		}
+
+		/**
+		 * @return Number of responses with a status other than <code>DukptProtocol.OK</code>
+		 */
+		public long getErrors() {
+			return errors;
+		}
+
+		/**
+		 * @return Responses read per second
+		 */
+		public double getRequestsPerSecond() {
+			return latencies.length * 1e9 / elapsedNanos;
+		}
+
+		/**
+		 * @param percentile Percentile, from 0 to 100
+		 * @return Latency in nanoseconds below which the given percentage of the requests completed
+		 */
+		public long getLatencyNanos(double percentile) {
+			if (percentile < 0 || percentile > 100){
+				throw new IllegalArgumentException("percentile should be between 0 and 100");
+			}
+			if (latencies.length == 0) {
+				return 0;
+			}
+			int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+			return latencies[Math.max(0, index)];
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%,d requests, %,d errors, %,.0f requests/s%nlatency p50 %,.1f us  p90 %,.1f us  p99 %,.1f us  p99.9 %,.1f us  max %,.1f us",
+					getRequests(), errors, getRequestsPerSecond(), getLatencyNanos(50) / 1e3, getLatencyNanos(90) / 1e3,
+					getLatencyNanos(99) / 1e3, getLatencyNanos(99.9) / 1e3, getLatencyNanos(100) / 1e3);
+		}
+	}
+
+	/**
+	 * Connection keeping <code>pipeline</code> requests in flight until the deadline
+	 */
+	private final class Client {
+
+		private long[] latencies = new long[1024];
+
+		private int count;
+
+		private long errors;
+
+		private int next;
+
+		Client(int first) {
+			this.next = first;
+		}
+
+		void run(byte operation, byte[][] ksns, byte[][] payloads, long deadline) throws IOException {
+			int maxPayload = 0;
+			for (byte[] payload : payloads) {
+				maxPayload = Math.max(maxPayload, payload.length);
+			}
+			int maxFrame = DukptProtocol.LENGTH_FIELD + DukptProtocol.REQUEST_HEADER + maxPayload;
+			ByteBuffer out = ByteBuffer.allocate(maxFrame * pipeline);
+			ByteBuffer in = ByteBuffer.allocate(Math.max(maxFrame * pipeline, 64 * 1024));
+			long[] sent = new long[pipeline];
+			int head = 0;
+			int inFlight = 0;
+			Socket socket = new Socket();
+			try {
+				socket.setTcpNoDelay(true);
+				socket.setSoTimeout(READ_TIMEOUT);
+				socket.connect(address, READ_TIMEOUT);
+				InputStream input = socket.getInputStream();
+				OutputStream output = socket.getOutputStream();
+				long now = System.nanoTime();
+				while (inFlight < pipeline) {
+					DukptProtocol.putRequest(out, operation, ksns[next], payloads[next]);
+					next = (next + 1) % ksns.length;
+					sent[(head + inFlight) % pipeline] = now;
+					inFlight++;
+				}
+				flush(output, out);
+				while (inFlight > 0) {
+					int read = input.read(in.array(), in.position(), in.remaining());
+					if (read < 0) {
+						throw new IOException("connection closed by the server");
+					}
+					in.position(in.position() + read);
+					in.flip();
+					now = System.nanoTime();
+					while (in.remaining() >= DukptProtocol.LENGTH_FIELD && in.remaining() >= DukptProtocol.LENGTH_FIELD + in.getInt(in.position())) {
+						int length = in.getInt();
+						if (in.get() != DukptProtocol.OK) {
+							errors++;
+						}
+						in.position(in.position() + length - DukptProtocol.RESPONSE_HEADER);
+						record(now - sent[head]);
+						head = (head + 1) % pipeline;
+						inFlight--;
+						if (now < deadline) {
+							DukptProtocol.putRequest(out, operation, ksns[next], payloads[next]);
+							next = (next + 1) % ksns.length;
+							sent[(head + inFlight) % pipeline] = now;
+							inFlight++;
+						}
+					}
+					in.compact();
+					flush(output, out);
+				}
+			} finally {
+				socket.close();
+			}
+		}
+
+		private void record(long latency) {
+			if (count == latencies.length) {
+				latencies = Arrays.copyOf(latencies, count * 2);
+			}
+			latencies[count++] = latency;
+		}
+
+		private void flush(OutputStream output, ByteBuffer out) throws IOException {
+			output.write(out.array(), 0, out.position());
+			out.clear();
+		}
+	}
+}
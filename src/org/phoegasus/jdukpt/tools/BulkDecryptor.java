@@ -0,0 +1,464 @@
+package org.phoegasus.jdukpt.tools;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.phoegasus.jdukpt.core.BatchRecord;
+import org.phoegasus.jdukpt.core.DUKPTEngine;
+import org.phoegasus.jdukpt.core.DUKPTVariant;
+import org.phoegasus.jdukpt.core.IpekCache;
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.core.TableBlockCipher;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+/**
+ * Decrypts the records of a transaction extract, one record per line, into a file of the same layout where the encrypted data of each record is replaced by the clear data.
+ * </br>The input is memory-mapped and split into chunks on line boundaries, the chunks being decrypted in parallel. The records of a chunk are decoded in place and decrypted as one batch, so a session key is derived once for all the records of a chunk sharing a KSN, and the IPEK of a device is kept in the <code>IpekCache</code> of the <code>JDukpt</code> object across chunks. Each chunk is then written to the output at its own position, no String being created along the way.
+ * </br>Run from the command line:
+ * </br>The BDK is read as 32 hexadecimal characters from a file, from the standard input if the file is <code>-</code>, or from an environment variable, so that it does not appear in the arguments of the process or in the shell history. The buffers holding clear data are overwritten with zeroes once each chunk is written.
+ * </br><code>java org.phoegasus.jdukpt.tools.BulkDecryptor (--bdk-file FILE | --bdk-env VARIABLE) (--csv KSN_COLUMN DATA_COLUMN [--delimiter C] | --fixed KSN_OFFSET DATA_OFFSET [DATA_LENGTH]) [--pin] [--header] [--threads N] [--chunk-mb N] INPUT OUTPUT</code>
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public class BulkDecryptor {
+
+	/**
+	 * Default nominal size of a chunk
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+	/**
+	 * Maximum length of a line, line terminator included
+	 */
+	public static final int MAX_RECORD_LENGTH = 64 * 1024;
+
+	/**
+	 * Maximum nominal size of a chunk, the buffer of a chunk holding a chunk and a line
+	 */
+	public static final int MAX_CHUNK_SIZE = Integer.MAX_VALUE - MAX_RECORD_LENGTH;
+
+	private final JDukpt jdukpt;
+
+	private final byte[] bdk;
+
+	private final DUKPTVariant variant;
+
+	private final RecordLayout layout;
+
+	private final int threads;
+
+	private final int chunkSize;
+
+	private final AtomicLong recordCount = new AtomicLong();
+
+	private final AtomicLong byteCount = new AtomicLong();
+
+	private final ThreadLocal<Chunk> chunks = new ThreadLocal<Chunk>();
+
+	/**
+	 * @param jdukpt Decrypts the records
+	 * @param bdk Base Derivation Key, 16 bytes long
+	 * @param variant DUKPT variant of the encrypted data
+	 * @param layout Location of the KSN and of the encrypted data in a line
+	 * @param threads Number of chunks decrypted in parallel
+	 * @param chunkSize Nominal size of a chunk, chunks being extended to the end of their last line, at most <code>MAX_CHUNK_SIZE</code>
+	 */
+	public BulkDecryptor(JDukpt jdukpt, byte[] bdk, DUKPTVariant variant, RecordLayout layout, int threads, int chunkSize) {
+		if (jdukpt == null){
+			throw new IllegalArgumentException("jdukpt is null");
+		}
+		if (bdk == null || bdk.length != 16){
+			throw new IllegalArgumentException("bdk should be 16 bytes long");
+		}
+		if (variant == null){
+			throw new IllegalArgumentException("variant is null");
+		}
+		if (layout == null){
+			throw new IllegalArgumentException("layout is null");
+		}
+		if (threads <= 0){
+			throw new IllegalArgumentException("threads should be positive");
+		}
+		if (chunkSize < MAX_RECORD_LENGTH || chunkSize > MAX_CHUNK_SIZE){
+			throw new IllegalArgumentException("chunkSize should be between " + MAX_RECORD_LENGTH + " and " + MAX_CHUNK_SIZE);
+		}
+		this.jdukpt = jdukpt;
+		this.bdk = bdk.clone();
+		this.variant = variant;
+		this.layout = layout;
+		this.threads = threads;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Decrypts a file
+	 * @param input Extract to decrypt
+	 * @param output Receives the decrypted extract, created or replaced
+	 * @param header Copy the first line unchanged
+	 * @return Number of records decrypted
+	 * @throws Exception if a file cannot be read or written, or thrown by the Crypto implementation. A line which does not match the layout is rejected with an <code>IllegalArgumentException</code> giving its position.
+	 */
+	public long decrypt(Path input, Path output, final boolean header) throws Exception {
+		if (Files.exists(output) && Files.isSameFile(input, output)){
+			throw new IllegalArgumentException("input and output should be different files");
+		}
+		long before = recordCount.get();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try (final FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+				final FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			final long size = in.size();
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (long start = 0; start < size; start += chunkSize) {
+				final long from = start;
+				final long to = Math.min(size, start + chunkSize);
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						decrypt(in, out, size, from, to, header);
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					executor.shutdownNow();
+					if (e.getCause() instanceof Error) {
+						throw (Error) e.getCause();
+					}
+					throw (Exception) e.getCause();
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return recordCount.get() - before;
+	}
+
+	/**
+	 * @return Number of records decrypted so far
+	 */
+	public long getRecordCount() {
+		return recordCount.get();
+	}
+
+	/**
+	 * @return Number of input bytes processed so far
+	 */
+	public long getByteCount() {
+		return byteCount.get();
+	}
+
+	/**
+	 * Decrypts the lines starting in a range of the input
+	 */
+	private void decrypt(FileChannel in, FileChannel out, long size, long from, long to, boolean header) throws Exception {
+		long mapStart = Math.max(0, from - 1);
+		MappedByteBuffer map = in.map(FileChannel.MapMode.READ_ONLY, mapStart, Math.min(size, to + MAX_RECORD_LENGTH) - mapStart);
+		int start = 0;
+		if (from > 0) {
+			start = nextLine(map, 0);
+			if (start < 0 || mapStart + start >= to) {
+				return;
+			}
+		}
+		int end = map.limit();
+		if (to < size) {
+			end = nextLine(map, (int) (to - 1 - mapStart));
+			if (end < 0) {
+				throw new IllegalArgumentException("line longer than " + MAX_RECORD_LENGTH + " bytes after position " + to);
+			}
+		}
+		int length = end - start;
+		Chunk chunk = chunks.get();
+		if (chunk == null || chunk.buffer.length < length) {
+			chunk = new Chunk(Math.max(length, chunkSize + MAX_RECORD_LENGTH));
+			chunks.set(chunk);
+		}
+		map.position(start);
+		map.get(chunk.buffer, 0, length);
+		long position = mapStart + start;
+		int records;
+		try {
+			records = decrypt(chunk, length, position, header && position == 0);
+			ByteBuffer buffer = ByteBuffer.wrap(chunk.buffer, 0, length);
+			while (buffer.hasRemaining()) {
+				out.write(buffer, position + buffer.position());
+			}
+		} finally {
+			Arrays.fill(chunk.buffer, 0, length, (byte) 0);
+		}
+		recordCount.addAndGet(records);
+		byteCount.addAndGet(length);
+	}
+
+	/**
+	 * Decrypts the lines of a chunk in place
+	 * @return Number of records decrypted
+	 */
+	private int decrypt(Chunk chunk, int length, long position, boolean header) throws Exception {
+		byte[] buffer = chunk.buffer;
+		int[] fields = new int[3];
+		int count = 0;
+		int dataLength = 0;
+		int lineStart = 0;
+		while (lineStart < length) {
+			int lineEnd = lineStart;
+			while (lineEnd < length && buffer[lineEnd] != '\n') {
+				lineEnd++;
+			}
+			int next = lineEnd + 1;
+			if (lineEnd > lineStart && buffer[lineEnd - 1] == '\r') {
+				lineEnd--;
+			}
+			if (header) {
+				header = false;
+			} else if (lineEnd > lineStart) {
+				if (!layout.locate(buffer, lineStart, lineEnd, fields)) {
+					throw new IllegalArgumentException("invalid record at position " + (position + lineStart));
+				}
+				chunk.ensureCapacity(count + 1);
+				try {
+					byte[] ksn = new byte[10];
+					HexUtils.decode(buffer, fields[RecordLayout.KSN], RecordLayout.KSN_LENGTH, ksn, 0);
+					int bytes = HexUtils.decode(buffer, fields[RecordLayout.DATA], fields[RecordLayout.DATA_LENGTH], chunk.data, dataLength);
+					chunk.records[count] = new BatchRecord(ksn, chunk.data, dataLength, bytes, chunk.data, dataLength);
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException("invalid record at position " + (position + lineStart) + ", " + e.getMessage());
+				}
+				chunk.fields[count] = fields[RecordLayout.DATA];
+				dataLength += fields[RecordLayout.DATA_LENGTH] / 2;
+				count++;
+			}
+			lineStart = next;
+		}
+		if (count == 0) {
+			return 0;
+		}
+		BatchRecord[] records = count == chunk.records.length ? chunk.records : Arrays.copyOf(chunk.records, count);
+		try {
+			if (variant == DUKPTVariant.PIN) {
+				jdukpt.decryptPIN(bdk, records);
+			} else {
+				jdukpt.decryptData(bdk, records);
+			}
+			for (int i = 0; i < count; i++) {
+				BatchRecord record = chunk.records[i];
+				HexUtils.encode(chunk.data, record.getOutputOffset(), record.getLength(), buffer, chunk.fields[i], true);
+			}
+		} finally {
+			Arrays.fill(chunk.data, 0, dataLength, (byte) 0);
+			Arrays.fill(chunk.records, 0, count, null);
+		}
+		return count;
+	}
+
+	/**
+	 * @return Offset following the first line terminator found from an offset, -1 if there is none
+	 */
+	private static int nextLine(MappedByteBuffer map, int offset) {
+		for (int i = offset; i < map.limit(); i++) {
+			if (map.get(i) == '\n') {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+
+	public static void main(String[] args) throws Exception {
+		byte[] bdk = null;
+		String bdkFile = null;
+		String bdkVariable = null;
+		RecordLayout layout = null;
+		char delimiter = ',';
+		int[] columns = null;
+		DUKPTVariant variant = DUKPTVariant.Data;
+		boolean header = false;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int chunkSize = DEFAULT_CHUNK_SIZE;
+		List<String> files = new ArrayList<String>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String arg = args[i];
+				if (arg.equals("--bdk-file")) {
+					bdkFile = args[++i];
+				} else if (arg.equals("--bdk-env")) {
+					bdkVariable = args[++i];
+				} else if (arg.equals("--csv")) {
+					columns = new int[] {Integer.parseInt(args[++i]), Integer.parseInt(args[++i])};
+				} else if (arg.equals("--delimiter")) {
+					delimiter = args[++i].charAt(0);
+				} else if (arg.equals("--fixed")) {
+					int ksnOffset = Integer.parseInt(args[++i]);
+					int dataOffset = Integer.parseInt(args[++i]);
+					int dataLength = i + 1 < args.length && args[i + 1].matches("\\d+") ? Integer.parseInt(args[++i]) : -1;
+					layout = RecordLayout.fixedWidth(ksnOffset, dataOffset, dataLength);
+				} else if (arg.equals("--pin")) {
+					variant = DUKPTVariant.PIN;
+				} else if (arg.equals("--header")) {
+					header = true;
+				} else if (arg.equals("--threads")) {
+					threads = Integer.parseInt(args[++i]);
+				} else if (arg.equals("--chunk-mb")) {
+					int megabytes = Integer.parseInt(args[++i]);
+					if (megabytes <= 0 || megabytes > MAX_CHUNK_SIZE / (1024 * 1024)) {
+						throw new IllegalArgumentException("--chunk-mb should be between 1 and " + MAX_CHUNK_SIZE / (1024 * 1024));
+					}
+					chunkSize = megabytes * 1024 * 1024;
+				} else if (arg.startsWith("--")) {
+					throw new IllegalArgumentException("unknown option " + arg);
+				} else {
+					files.add(arg);
+				}
+			}
+			if (columns != null) {
+				layout = RecordLayout.delimited(delimiter, columns[0], columns[1]);
+			}
+			if ((bdkFile == null) == (bdkVariable == null) || layout == null || files.size() != 2) {
+				throw new IllegalArgumentException("a BDK file or variable, a layout, an input and an output are required");
+			}
+			bdk = readBdk(bdkFile, bdkVariable);
+		} catch (RuntimeException | IOException e) {
+			System.err.println(e.getMessage());
+			System.err.println("usage: BulkDecryptor (--bdk-file FILE | --bdk-env VARIABLE) (--csv KSN_COLUMN DATA_COLUMN [--delimiter C] | --fixed KSN_OFFSET DATA_OFFSET [DATA_LENGTH]) [--pin] [--header] [--threads N] [--chunk-mb N] INPUT OUTPUT");
+			System.exit(2);
+			return;
+		}
+		JDukpt jdukpt = JDukpt.builder().cipherFactory(TableBlockCipher::new).engine(DUKPTEngine.Primitive).ipekCache(new IpekCache(1000000, 0, false, threads)).build();
+		final BulkDecryptor decryptor = new BulkDecryptor(jdukpt, bdk, variant, layout, threads, chunkSize);
+		Arrays.fill(bdk, (byte) 0);
+		final long start = System.nanoTime();
+		Timer timer = new Timer(true);
+		timer.scheduleAtFixedRate(new TimerTask() {
+			@Override
+			public void run() {
+				System.err.println(progress(decryptor, start));
+			}
+		}, 1000, 1000);
+		try {
+			decryptor.decrypt(Paths.get(files.get(0)), Paths.get(files.get(1)), header);
+		} finally {
+			timer.cancel();
+		}
+		System.out.println(progress(decryptor, start));
+	}
+
+	/**
+	 * Reads the BDK, written as 32 hexadecimal characters surrounded by optional whitespace
+	 * @param file File holding the BDK, - for the standard input, null to read the environment variable
+	 * @param variable Environment variable holding the BDK
+	 * @return BDK
+	 */
+	private static byte[] readBdk(String file, String variable) throws IOException {
+		byte[] hex;
+		if (file == null) {
+			String value = System.getenv(variable);
+			if (value == null) {
+				throw new IllegalArgumentException("environment variable " + variable + " is not set");
+			}
+			hex = value.getBytes(StandardCharsets.US_ASCII);
+		} else if (file.equals("-")) {
+			hex = read(System.in);
+		} else {
+			hex = Files.readAllBytes(Paths.get(file));
+		}
+		try {
+			int start = 0;
+			int end = hex.length;
+			while (start < end && hex[start] <= ' ') {
+				start++;
+			}
+			while (end > start && hex[end - 1] <= ' ') {
+				end--;
+			}
+			if (end - start != 32) {
+				throw new IllegalArgumentException("bdk should be 32 hexadecimal characters");
+			}
+			byte[] bdk = new byte[16];
+			HexUtils.decode(hex, start, 32, bdk, 0);
+			return bdk;
+		} finally {
+			Arrays.fill(hex, (byte) 0);
+		}
+	}
+
+	/**
+	 * Reads a short input to its end
+	 */
+	private static byte[] read(InputStream in) throws IOException {
+		byte[] buffer = new byte[256];
+		int length = 0;
+		int read;
+		while ((read = in.read(buffer, length, buffer.length - length)) > 0) {
+			length += read;
+		}
+		if (read == 0) {
+			Arrays.fill(buffer, (byte) 0);
+			throw new IllegalArgumentException("bdk input is longer than " + buffer.length + " bytes");
+		}
+		byte[] result = Arrays.copyOf(buffer, length);
+		Arrays.fill(buffer, (byte) 0);
+		return result;
+	}
+
+	private static String progress(BulkDecryptor decryptor, long start) {
+		double seconds = (System.nanoTime() - start) / 1e9;
+		return String.format("%,d records  %,.1f MB  %.1f s  %,.0f records/s  %,.1f MB/s", decryptor.getRecordCount(), decryptor.getByteCount() / 1e6,
+				seconds, decryptor.getRecordCount() / seconds, decryptor.getByteCount() / 1e6 / seconds);
+	}
+
+	//----------------------------------------------------------------------//
+
+	/**
+	 * Buffers of a thread, reused from chunk to chunk
+	 */
+	private static final class Chunk {
+
+		private final byte[] buffer;
+
+		/**
+		 * Decoded data of the records, decrypted in place, at most half the length of the buffer
+		 */
+		private final byte[] data;
+
+		private BatchRecord[] records = new BatchRecord[1024];
+
+		/**
+		 * Offset of the data of each record in the buffer
+		 */
+		private int[] fields = new int[1024];
+
+		Chunk(int length) {
+			this.buffer = new byte[length];
+			this.data = new byte[length / 2];
+		}
+
+		void ensureCapacity(int records) {
+			if (records > this.records.length) {
+				this.records = Arrays.copyOf(this.records, this.records.length * 2);
+				this.fields = Arrays.copyOf(this.fields, this.fields.length * 2);
+			}
+		}
+	}
+}
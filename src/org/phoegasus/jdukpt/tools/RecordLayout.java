@@ -0,0 +1,120 @@
+package org.phoegasus.jdukpt.tools;
+
+/**
+ * Location of the KSN and of the encrypted data in the lines of a transaction extract.
+ * </br>The KSN is written as 20 hexadecimal characters and the data as a multiple of 16 hexadecimal characters. Lines are located in place, as ASCII bytes, without creating a String.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public abstract class RecordLayout {
+
+	/**
+	 * Number of hexadecimal characters of a KSN
+	 */
+	static final int KSN_LENGTH = 20;
+
+	/**
+	 * Index of the KSN offset in the fields located by <code>locate</code>
+	 */
+	static final int KSN = 0;
+
+	/**
+	 * Index of the data offset in the fields located by <code>locate</code>
+	 */
+	static final int DATA = 1;
+
+	/**
+	 * Index of the data length in the fields located by <code>locate</code>
+	 */
+	static final int DATA_LENGTH = 2;
+
+	RecordLayout() {
+	}
+
+	/**
+	 * Fixed width records
+	 * @param ksnOffset Offset of the KSN in the line
+	 * @param dataOffset Offset of the data in the line
+	 * @param dataLength Number of characters of the data, or -1 if the data runs to the end of the line
+	 * @return Layout
+	 */
+	public static RecordLayout fixedWidth(final int ksnOffset, final int dataOffset, final int dataLength) {
+		if (ksnOffset < 0 || dataOffset < 0){
+			throw new IllegalArgumentException("offsets should not be negative");
+		}
+		if (dataLength != -1 && (dataLength <= 0 || dataLength % 16 != 0)){
+			throw new IllegalArgumentException("dataLength should be a positive multiple of 16, or -1");
+		}
+		return new RecordLayout() {
+			@Override
+			boolean locate(byte[] line, int start, int end, int[] fields) {
+				int length = dataLength == -1 ? end - start - dataOffset : dataLength;
+				if (start + ksnOffset + KSN_LENGTH > end || length <= 0 || start + dataOffset + length > end) {
+					return false;
+				}
+				fields[KSN] = start + ksnOffset;
+				fields[DATA] = start + dataOffset;
+				fields[DATA_LENGTH] = length;
+				return length % 16 == 0;
+			}
+		};
+	}
+
+	/**
+	 * Delimited records, such as CSV
+	 * </br>Fields are not quoted, the KSN and the data fields hold hexadecimal characters only.
+	 * @param delimiter Field delimiter
+	 * @param ksnColumn Index of the KSN field, starting at 0
+	 * @param dataColumn Index of the data field, starting at 0
+	 * @return Layout
+	 */
+	public static RecordLayout delimited(final char delimiter, final int ksnColumn, final int dataColumn) {
+		if (delimiter > 0x7F){
+			throw new IllegalArgumentException("delimiter should be an ASCII character");
+		}
+		if (ksnColumn < 0 || dataColumn < 0 || ksnColumn == dataColumn){
+			throw new IllegalArgumentException("columns should be distinct and not negative");
+		}
+		return new RecordLayout() {
+			@Override
+			boolean locate(byte[] line, int start, int end, int[] fields) {
+				int column = 0;
+				int fieldStart = start;
+				int found = 0;
+				for (int i = start; i <= end && found < 2; i++) {
+					if (i < end && line[i] != delimiter) {
+						continue;
+					}
+					if (column == ksnColumn) {
+						if (i - fieldStart != KSN_LENGTH) {
+							return false;
+						}
+						fields[KSN] = fieldStart;
+						found++;
+					} else if (column == dataColumn) {
+						if (i == fieldStart || (i - fieldStart) % 16 != 0) {
+							return false;
+						}
+						fields[DATA] = fieldStart;
+						fields[DATA_LENGTH] = i - fieldStart;
+						found++;
+					}
+					column++;
+					fieldStart = i + 1;
+				}
+				return found == 2;
+			}
+		};
+	}
+
+	/**
+	 * Locates the fields of a line
+	 * @param line Buffer holding the line
+	 * @param start Offset of the first character of the line
+	 * @param end Offset following the last character of the line, line terminator excluded
+	 * @param fields Receives the offset of the KSN, the offset of the data and the length of the data
+	 * @return false if the line does not match the layout
+	 */
+	abstract boolean locate(byte[] line, int start, int end, int[] fields);
+}
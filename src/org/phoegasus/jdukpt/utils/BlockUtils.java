@@ -0,0 +1,104 @@
+package org.phoegasus.jdukpt.utils;
+
+import java.math.BigInteger;
+
+/**
+ * 8 byte block utilities.
+ * </br>Blocks are big-endian, the leftmost byte of the block being the most significant byte of the <code>long</code>.
+ * @author Phoegasus
+ * @since 1.2.0
+ * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
+ */
+public class BlockUtils {
+	
+	/**
+	 * Reads a block from a byte array
+	 * @param bytes Source byte array
+	 * @param offset Offset of the block in the byte array
+	 * @return Block
+	 */
+	public static long getLong(byte[] bytes, int offset) {
+		long value = 0;
+		for(int i = 0; i < 8; i++) {
+			value = value << 8 | bytes[offset + i] & 0xFF;
+		}
+		return value;
+	}
+	
+	/**
+	 * Reads up to 8 bytes from a byte array into a right aligned block
+	 * @param bytes Source byte array
+	 * @param offset Offset of the first byte in the byte array
+	 * @param length Number of bytes to read, from 0 to 8
+	 * @return Block
+	 */
+	public static long getLong(byte[] bytes, int offset, int length) {
+		long value = 0;
+		for(int i = 0; i < length; i++) {
+			value = value << 8 | bytes[offset + i] & 0xFF;
+		}
+		return value;
+	}
+	
+	/**
+	 * Writes a block to a byte array
+	 * @param value Block
+	 * @param bytes Destination byte array
+	 * @param offset Offset of the block in the byte array
+	 */
+	public static void putLong(long value, byte[] bytes, int offset) {
+		for(int i = 7; i >= 0; i--) {
+			bytes[offset + i] = (byte) value;
+			value >>>= 8;
+		}
+	}
+	
+	/**
+	 * Converts blocks to a byte array
+	 * @param blocks Blocks to convert, leftmost first
+	 * @return Byte array
+	 */
+	public static byte[] toBytes(long... blocks) {
+		byte[] bytes = new byte[blocks.length * 8];
+		for(int i = 0; i < blocks.length; i++) {
+			putLong(blocks[i], bytes, i * 8);
+		}
+		return bytes;
+	}
+	
+	/**
+	 * Converts blocks to a positive BigInteger
+	 * @param blocks Blocks to convert, leftmost first
+	 * @return BigInteger
+	 */
+	public static BigInteger toBigInteger(long... blocks) {
+		return new BigInteger(1, toBytes(blocks));
+	}
+	
+	/**
+	 * Splits a positive BigInteger into blocks, the value is left padded with zeroes to a multiple of 8 bytes
+	 * @param value Value to split
+	 * @return Blocks, leftmost first
+	 */
+	public static long[] toBlocks(BigInteger value) {
+		int count = Math.max(1, (value.bitLength() + 63) / 64);
+		long[] blocks = new long[count];
+		for(int i = 0; i < count; i++) {
+			blocks[count - 1 - i] = value.shiftRight(i * 64).longValue();
+		}
+		return blocks;
+	}
+	
+	/**
+	 * Converts a positive BigInteger to a byte array, the value is left padded with zeroes to a multiple of 8 bytes
+	 * @param value Value to convert
+	 * @return Byte array
+	 */
+	public static byte[] toBlockBytes(BigInteger value) {
+		byte[] bytes = new byte[Math.max(1, (value.bitLength() + 63) / 64) * 8];
+		byte[] source = value.toByteArray();
+		int length = Math.min(source.length, bytes.length);
+		System.arraycopy(source, source.length - length, bytes, bytes.length - length, length);
+		return bytes;
+	}
+}
@@ -1,15 +1,41 @@
 package org.phoegasus.jdukpt.utils;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 /**
  * Hex utilities.
+ * </br>Encoding and decoding go through lookup tables, and can write into caller supplied <code>char[]</code>, <code>byte[]</code> and <code>ByteBuffer</code> targets. Hexadecimal text can be read from a <code>CharSequence</code> or from ASCII bytes without creating a String.
+ * </br>Decoding accepts upper and lower case digits, and rejects odd length input and non hexadecimal characters with an <code>IllegalArgumentException</code>.
  * @author Phoegasus
  * @since 1.0.0
  * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
  */
 public class HexUtils {
-	
+
 	private static final char[] HEX_ARRAY = "0123456789ABCDEF".toCharArray();
-	
+
+	private static final char[] LOWER_HEX_ARRAY = "0123456789abcdef".toCharArray();
+
+	/**
+	 * Value of each ASCII character, -1 for non hexadecimal characters
+	 */
+	private static final byte[] DIGITS = new byte[128];
+
+	static {
+		for (int i = 0; i < DIGITS.length; i++) {
+			DIGITS[i] = -1;
+		}
+		for (int i = 0; i < 16; i++) {
+			DIGITS[HEX_ARRAY[i]] = (byte) i;
+			DIGITS[LOWER_HEX_ARRAY[i]] = (byte) i;
+		}
+	}
+
+	private static final long ONES = 0x0101010101010101L;
+
+	private static final long HIGH_BITS = 0x8080808080808080L;
+
 	/**
 	 * Converts a byte array to a hex String
 	 * @param bytes Byte array to convert
@@ -18,14 +44,10 @@ public class HexUtils {
 	 */
     public static String bytesToHex(byte[] bytes) {
         char[] hexChars = new char[bytes.length * 2];
-        for (int j = 0; j < bytes.length; j++) {
-            int v = bytes[j] & 0xFF;
-            hexChars[j * 2] = HEX_ARRAY[v >>> 4];
-            hexChars[j * 2 + 1] = HEX_ARRAY[v & 0x0F];
-        }
+        encode(bytes, 0, bytes.length, hexChars, 0, true);
         return new String(hexChars);
     }
-    
+
     /**
      * Converts a hex String to a byte array
 	 * @param s String to convert
@@ -33,12 +55,237 @@ public class HexUtils {
 	 * @see <a href="https://stackoverflow.com/a/140861">https://stackoverflow.com/a/140861</a>
 	 */
     public static byte[] hexToBytes(String s) {
-        int len = s.length();
-        byte[] data = new byte[len / 2];
-        for (int i = 0; i < len; i += 2) {
-            data[i / 2] = (byte) ((Character.digit(s.charAt(i), 16) << 4)
-                    + Character.digit(s.charAt(i+1), 16));
-        }
+        byte[] data = new byte[decodedLength(s.length())];
+        decode(s, 0, s.length(), data, 0);
         return data;
     }
+
+	/**
+	 * Encodes bytes as hexadecimal characters
+	 * @param src Bytes to encode
+	 * @param srcOffset Offset of the first byte to encode
+	 * @param length Number of bytes to encode
+	 * @param dst Receives the characters
+	 * @param dstOffset Offset of the first character
+	 * @param upperCase Use upper case digits
+	 * @return Number of characters written
+	 */
+	public static int encode(byte[] src, int srcOffset, int length, char[] dst, int dstOffset, boolean upperCase) {
+		char[] alphabet = upperCase ? HEX_ARRAY : LOWER_HEX_ARRAY;
+		for (int i = 0; i < length; i++) {
+			int v = src[srcOffset + i] & 0xFF;
+			dst[dstOffset + i * 2] = alphabet[v >>> 4];
+			dst[dstOffset + i * 2 + 1] = alphabet[v & 0x0F];
+		}
+		return length * 2;
+	}
+
+	/**
+	 * Encodes bytes as hexadecimal ASCII characters
+	 * @param src Bytes to encode
+	 * @param srcOffset Offset of the first byte to encode
+	 * @param length Number of bytes to encode
+	 * @param dst Receives the ASCII characters
+	 * @param dstOffset Offset of the first character
+	 * @param upperCase Use upper case digits
+	 * @return Number of characters written
+	 */
+	public static int encode(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset, boolean upperCase) {
+		char[] alphabet = upperCase ? HEX_ARRAY : LOWER_HEX_ARRAY;
+		for (int i = 0; i < length; i++) {
+			int v = src[srcOffset + i] & 0xFF;
+			dst[dstOffset + i * 2] = (byte) alphabet[v >>> 4];
+			dst[dstOffset + i * 2 + 1] = (byte) alphabet[v & 0x0F];
+		}
+		return length * 2;
+	}
+
+	/**
+	 * Encodes the remaining bytes of a buffer as hexadecimal ASCII characters
+	 * @param src Bytes to encode, read up to its limit
+	 * @param dst Receives the ASCII characters
+	 * @param upperCase Use upper case digits
+	 */
+	public static void encode(ByteBuffer src, ByteBuffer dst, boolean upperCase) {
+		char[] alphabet = upperCase ? HEX_ARRAY : LOWER_HEX_ARRAY;
+		while (src.hasRemaining()) {
+			int v = src.get() & 0xFF;
+			dst.put((byte) alphabet[v >>> 4]);
+			dst.put((byte) alphabet[v & 0x0F]);
+		}
+	}
+
+	/**
+	 * Encodes an 8 byte block as 16 hexadecimal characters
+	 * @param block Block to encode
+	 * @param dst Receives the characters
+	 * @param dstOffset Offset of the first character
+	 * @param upperCase Use upper case digits
+	 */
+	public static void encode(long block, char[] dst, int dstOffset, boolean upperCase) {
+		encode(block, 16, dst, dstOffset, upperCase);
+	}
+
+	/**
+	 * Encodes a value as a fixed number of hexadecimal characters, for example 16 digits for a block, 4 digits for the rightmost 2 bytes of a KSN.
+	 * </br>Digits beyond the 16 digits of the value are written as zeroes, digits of the value beyond the width are not written.
+	 * @param value Value to encode, right aligned
+	 * @param digits Number of characters written
+	 * @param dst Receives the characters
+	 * @param dstOffset Offset of the first character
+	 * @param upperCase Use upper case digits
+	 */
+	public static void encode(long value, int digits, char[] dst, int dstOffset, boolean upperCase) {
+		char[] alphabet = upperCase ? HEX_ARRAY : LOWER_HEX_ARRAY;
+		for (int i = dstOffset + digits - 1; i >= dstOffset; i--) {
+			dst[i] = alphabet[(int) value & 0x0F];
+			value >>>= 4;
+		}
+	}
+
+	/**
+	 * Encodes a key or any value held in several blocks as a fixed number of hexadecimal characters, for example 32 digits for a 16 byte key.
+	 * </br>Digits beyond the blocks are written as zeroes.
+	 * @param blocks Blocks of the value, leftmost first
+	 * @param digits Number of characters written
+	 * @param dst Receives the characters
+	 * @param dstOffset Offset of the first character
+	 * @param upperCase Use upper case digits
+	 */
+	public static void encode(long[] blocks, int digits, char[] dst, int dstOffset, boolean upperCase) {
+		int end = dstOffset + digits;
+		for (int i = blocks.length - 1; i >= 0 && end > dstOffset; i--) {
+			int start = Math.max(dstOffset, end - 16);
+			encode(blocks[i], end - start, dst, start, upperCase);
+			end = start;
+		}
+		Arrays.fill(dst, dstOffset, end, '0');
+	}
+
+	/**
+	 * Decodes hexadecimal characters
+	 * @param src Characters to decode
+	 * @param srcOffset Offset of the first character to decode
+	 * @param length Number of characters to decode, should be even
+	 * @param dst Receives the bytes
+	 * @param dstOffset Offset of the first byte
+	 * @return Number of bytes written
+	 */
+	public static int decode(CharSequence src, int srcOffset, int length, byte[] dst, int dstOffset) {
+		int bytes = decodedLength(length);
+		for (int i = 0; i < bytes; i++) {
+			int index = srcOffset + i * 2;
+			dst[dstOffset + i] = (byte) (digit(src.charAt(index), index) << 4 | digit(src.charAt(index + 1), index + 1));
+		}
+		return bytes;
+	}
+
+	/**
+	 * Decodes hexadecimal ASCII characters
+	 * @param src ASCII characters to decode
+	 * @param srcOffset Offset of the first character to decode
+	 * @param length Number of characters to decode, should be even
+	 * @param dst Receives the bytes
+	 * @param dstOffset Offset of the first byte
+	 * @return Number of bytes written
+	 */
+	public static int decode(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset) {
+		int bytes = decodedLength(length);
+		int i = 0;
+		for (; i + 8 <= bytes; i += 8) {
+			BlockUtils.putLong(decodeLong(src, srcOffset + i * 2), dst, dstOffset + i);
+		}
+		for (; i < bytes; i++) {
+			int index = srcOffset + i * 2;
+			dst[dstOffset + i] = (byte) (digit(src[index] & 0xFF, index) << 4 | digit(src[index + 1] & 0xFF, index + 1));
+		}
+		return bytes;
+	}
+
+	/**
+	 * Decodes the remaining hexadecimal ASCII characters of a buffer
+	 * @param src ASCII characters to decode, read up to its limit, the number of remaining characters should be even
+	 * @param dst Receives the bytes
+	 */
+	public static void decode(ByteBuffer src, ByteBuffer dst) {
+		decodedLength(src.remaining());
+		while (src.hasRemaining()) {
+			int index = src.position();
+			int hi = digit(src.get() & 0xFF, index);
+			dst.put((byte) (hi << 4 | digit(src.get() & 0xFF, index + 1)));
+		}
+	}
+
+	/**
+	 * Decodes up to 16 hexadecimal characters into a right aligned <code>long</code>
+	 * @param src Characters to decode
+	 * @param srcOffset Offset of the first character to decode
+	 * @param length Number of characters to decode, from 0 to 16
+	 * @return Decoded value
+	 */
+	public static long decodeLong(CharSequence src, int srcOffset, int length) {
+		if (length < 0 || length > 16){
+			throw new IllegalArgumentException("length should be between 0 and 16");
+		}
+		long value = 0;
+		for (int i = srcOffset; i < srcOffset + length; i++) {
+			value = value << 4 | digit(src.charAt(i), i);
+		}
+		return value;
+	}
+
+	/**
+	 * Decodes 16 hexadecimal ASCII characters into a <code>long</code>, processing 8 characters at a time
+	 * @param src ASCII characters to decode
+	 * @param srcOffset Offset of the first character to decode
+	 * @return Decoded value
+	 */
+	public static long decodeLong(byte[] src, int srcOffset) {
+		return (long) decodeInt(BlockUtils.getLong(src, srcOffset), src, srcOffset) << 32
+				| decodeInt(BlockUtils.getLong(src, srcOffset + 8), src, srcOffset + 8) & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Decodes 8 hexadecimal ASCII characters held in a <code>long</code> (SIMD within a register)
+	 * @param chars ASCII characters, the first one being the most significant byte
+	 * @param src Source of the characters, to report an invalid character
+	 * @param srcOffset Offset of the characters in the source
+	 * @return Decoded value
+	 */
+	private static int decodeInt(long chars, byte[] src, int srcOffset) {
+		long lower = chars | 0x2020202020202020L;
+		long digits = greaterOrEqual(chars, '0') & ~greaterOrEqual(chars, '9' + 1);
+		long letters = greaterOrEqual(lower, 'a') & ~greaterOrEqual(lower, 'f' + 1);
+		if (((digits | letters) & ~chars & HIGH_BITS) != HIGH_BITS) {
+			for (int i = 0; i < 8; i++) {
+				digit(src[srcOffset + i] & 0xFF, srcOffset + i);
+			}
+		}
+		long value = (chars & 0x0F0F0F0F0F0F0F0FL) + (chars >>> 6 & ONES) * 9;
+		value = (value | value >>> 4) & 0x00FF00FF00FF00FFL;
+		value = (value | value >>> 8) & 0x0000FFFF0000FFFFL;
+		return (int) (value | value >>> 16);
+	}
+
+	/**
+	 * @return High bit of each byte set if the byte, below 0x80, is greater than or equal to the character
+	 */
+	private static long greaterOrEqual(long chars, int c) {
+		return (chars | HIGH_BITS) - ONES * c & HIGH_BITS;
+	}
+
+	private static int digit(int c, int index) {
+		int digit = c < 128 ? DIGITS[c] : -1;
+		if (digit < 0){
+			throw new IllegalArgumentException("invalid hexadecimal character at index " + index);
+		}
+		return digit;
+	}
+
+	private static int decodedLength(int length) {
+		if ((length & 1) != 0){
+			throw new IllegalArgumentException("hexadecimal length should be even");
+		}
+		return length / 2;
+	}
 }
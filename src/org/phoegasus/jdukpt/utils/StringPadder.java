@@ -1,7 +1,10 @@
 package org.phoegasus.jdukpt.utils;
 
+import java.util.Arrays;
+
 /**
  * String padding utility.
+ * </br>Padding writes each character once, either into a new String or at a fixed width into a caller supplied <code>char[]</code>.
  * @author Phoegasus
  * @since 1.0.0
  * @see <a href="https://github.com/phoegasus/JDukpt">https://github.com/phoegasus/JDukpt</a>
@@ -40,6 +43,32 @@ public class StringPadder {
 	}
 
 
+	/**
+	 * Writes the source to a character array at a fixed width, padded to the left using the padding character specified.
+	 * @param source Source characters, at most <i>width</i> characters long
+	 * @param paddingCharacter Padding character
+	 * @param dst Receives the padded characters
+	 * @param dstOffset Offset of the first character
+	 * @param width Number of characters written
+	 * @return Number of characters written
+	 */
+	public static int lPad(CharSequence source, char paddingCharacter, char[] dst, int dstOffset, int width) {
+		return pad(source, paddingCharacter, dst, dstOffset, width, false);
+	}
+
+	/**
+	 * Writes the source to a character array at a fixed width, padded to the right using the padding character specified.
+	 * @param source Source characters, at most <i>width</i> characters long
+	 * @param paddingCharacter Padding character
+	 * @param dst Receives the padded characters
+	 * @param dstOffset Offset of the first character
+	 * @param width Number of characters written
+	 * @return Number of characters written
+	 */
+	public static int rPad(CharSequence source, char paddingCharacter, char[] dst, int dstOffset, int width) {
+		return pad(source, paddingCharacter, dst, dstOffset, width, true);
+	}
+
 	/**
 	 * Pads the source string using the padding character specified up to the desired length, the direction depends on the <i>right</i> boolean.
 	 * @param source Source string
@@ -49,10 +78,38 @@ public class StringPadder {
 	 * @return Padded string
 	 */
 	private static String pad(String source, char paddingCharacter, int desiredLength, boolean right) {
-		StringBuilder sb = new StringBuilder(source);
-		while(sb.length() < desiredLength) {
-			sb.insert(right ? source.length() : 0, paddingCharacter);
+		if(source.length() >= desiredLength) {
+			return source;
+		}
+		char[] padded = new char[desiredLength];
+		pad(source, paddingCharacter, padded, 0, desiredLength, right);
+		return new String(padded);
+	}
+
+	/**
+	 * Writes the source at a fixed width padded using the padding character specified, the direction depends on the <i>right</i> boolean.
+	 * @param source Source characters
+	 * @param paddingCharacter Padding character
+	 * @param dst Receives the padded characters
+	 * @param dstOffset Offset of the first character
+	 * @param width Number of characters written
+	 * @param right Pad to the right
+	 * @return Number of characters written
+	 */
+	private static int pad(CharSequence source, char paddingCharacter, char[] dst, int dstOffset, int width, boolean right) {
+		int length = source.length();
+		if(length > width) {
+			throw new IllegalArgumentException("source is longer than " + width + " characters");
+		}
+		int start = right ? dstOffset : dstOffset + width - length;
+		for(int i = 0; i < length; i++) {
+			dst[start + i] = source.charAt(i);
+		}
+		if(right) {
+			Arrays.fill(dst, dstOffset + length, dstOffset + width, paddingCharacter);
+		} else {
+			Arrays.fill(dst, dstOffset, start, paddingCharacter);
 		}
-		return sb.toString();
+		return width;
 	}
 }
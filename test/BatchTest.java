@@ -0,0 +1,155 @@
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+import org.phoegasus.jdukpt.core.BatchRecord;
+import org.phoegasus.jdukpt.core.BatchStatistics;
+import org.phoegasus.jdukpt.core.DUKPTEngine;
+import org.phoegasus.jdukpt.core.DefaultCrypto;
+import org.phoegasus.jdukpt.core.IpekCache;
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.core.TableBlockCipher;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+public class BatchTest {
+
+	private final String BDK = "A1A1A1A1A1A1A1A1B2B2B2B2B2B2B2B2";
+	private final String KSN = "FFFF9876543210E00002";
+	private final String CLEAR_DATA = "041226CBA987EDCB";
+	private final String PIN_VARIANT_ENCRYPTED_DATA = "51B0229A9278CECC";
+	private final String DATA_VARIANT_ENCRYPTED_DATA = "D667CEE04B7A0EB4";
+	
+	@Test
+	public void testVectors() throws Exception {
+		JDukpt jdukpt = new JDukpt(new TableBlockCipher());
+		byte[] output = new byte[8];
+		jdukpt.decryptPIN(HexUtils.hexToBytes(BDK), new BatchRecord[] {new BatchRecord(HexUtils.hexToBytes(KSN), HexUtils.hexToBytes(PIN_VARIANT_ENCRYPTED_DATA), output)});
+		assertEquals(CLEAR_DATA, HexUtils.bytesToHex(output).toUpperCase());
+		jdukpt.decryptData(HexUtils.hexToBytes(BDK), new BatchRecord[] {new BatchRecord(HexUtils.hexToBytes(KSN), HexUtils.hexToBytes(DATA_VARIANT_ENCRYPTED_DATA), output)});
+		assertEquals(CLEAR_DATA, HexUtils.bytesToHex(output).toUpperCase());
+	}
+	
+	@Test
+	public void testStatisticsAndOrder() throws Exception {
+		Random random = new Random(7);
+		JDukpt jdukpt = new JDukpt(new TableBlockCipher());
+		String[] ksns = {"FFFF9876543210E00003", "FFFF9876543211E00001", "FFFF9876543210E00002", "FFFF9876543210E00003", "FFFF9876543210E10000"};
+		List<BatchRecord> records = new ArrayList<BatchRecord>();
+		byte[][] clear = new byte[ksns.length][];
+		byte[] buffer = new byte[ksns.length * 24];
+		for(int i = 0; i < ksns.length; i++) {
+			clear[i] = new byte[24];
+			random.nextBytes(clear[i]);
+			byte[] encrypted = jdukpt.encryptData(HexUtils.hexToBytes(BDK), HexUtils.hexToBytes(ksns[i]), clear[i]);
+			System.arraycopy(encrypted, encrypted.length - 24, buffer, i * 24, 24);
+			records.add(new BatchRecord(HexUtils.hexToBytes(ksns[i]), buffer, i * 24, 24, buffer, i * 24));
+		}
+		BatchStatistics statistics = jdukpt.decryptData(HexUtils.hexToBytes(BDK), records);
+		for(int i = 0; i < ksns.length; i++) {
+			byte[] decrypted = new byte[24];
+			System.arraycopy(buffer, i * 24, decrypted, 0, 24);
+			assertArrayEquals(clear[i], decrypted);
+		}
+		assertEquals(5, statistics.getRecords());
+		assertEquals(2, statistics.getDevices());
+		assertEquals(4, statistics.getSessionKeys());
+		assertEquals(15, statistics.getBlocks());
+	}
+	
+	@Test
+	public void testBigIntegerEngineWithCache() throws Exception {
+		IpekCache cache = new IpekCache(16, 0);
+		JDukpt jdukpt = new JDukpt(new DefaultCrypto(), DUKPTEngine.BigInteger, cache);
+		byte[] output = new byte[8];
+		jdukpt.decryptData(HexUtils.hexToBytes(BDK), new BatchRecord[] {
+				new BatchRecord(HexUtils.hexToBytes(KSN), HexUtils.hexToBytes(DATA_VARIANT_ENCRYPTED_DATA), output),
+				new BatchRecord(HexUtils.hexToBytes(KSN), HexUtils.hexToBytes(DATA_VARIANT_ENCRYPTED_DATA), output)});
+		assertEquals(CLEAR_DATA, HexUtils.bytesToHex(output).toUpperCase());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(jdukpt.decryptData(BDK, KSN, DATA_VARIANT_ENCRYPTED_DATA).toUpperCase(), CLEAR_DATA);
+		assertEquals(1, cache.getHitCount());
+	}
+	
+	@Test
+	public void testParallel() throws Exception {
+		Random random = new Random(11);
+		JDukpt jdukpt = new JDukpt(new TableBlockCipher());
+		byte[] bdk = HexUtils.hexToBytes(BDK);
+		BatchRecord[] records = new BatchRecord[200];
+		byte[][] clear = new byte[records.length][16];
+		for(int i = 0; i < records.length; i++) {
+			byte[] ksn = HexUtils.hexToBytes(KSN);
+			ksn[5] = (byte) random.nextInt(10);
+			ksn[9] = (byte) (1 + random.nextInt(30));
+			random.nextBytes(clear[i]);
+			byte[] encrypted = new byte[16];
+			records[i] = new BatchRecord(ksn, clear[i].clone(), encrypted);
+		}
+		BatchStatistics expected = jdukpt.decryptData(bdk, records);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			byte[][] sequential = new byte[records.length][];
+			for(int i = 0; i < records.length; i++) {
+				sequential[i] = records[i].getOutput().clone();
+			}
+			for(BatchStatistics statistics : new BatchStatistics[] {jdukpt.decryptData(bdk, records, executor), jdukpt.decryptData(bdk, records, new ForkJoinPool(3))}) {
+				for(int i = 0; i < records.length; i++) {
+					assertArrayEquals(sequential[i], records[i].getOutput());
+				}
+				assertEquals(expected.getRecords(), statistics.getRecords());
+				assertEquals(expected.getSessionKeys(), statistics.getSessionKeys());
+				assertEquals(expected.getDevices(), statistics.getDevices());
+				assertEquals(expected.getBlocks(), statistics.getBlocks());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testRejectedTask() throws Exception {
+		JDukpt jdukpt = new JDukpt(new TableBlockCipher());
+		BatchRecord[] records = new BatchRecord[20];
+		for(int i = 0; i < records.length; i++) {
+			byte[] ksn = HexUtils.hexToBytes(KSN);
+			ksn[5] = (byte) i;
+			records[i] = new BatchRecord(ksn, HexUtils.hexToBytes(DATA_VARIANT_ENCRYPTED_DATA), new byte[8]);
+		}
+		final List<Runnable> accepted = new ArrayList<Runnable>();
+		Executor executor = new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				if(!accepted.isEmpty()) {
+					throw new RejectedExecutionException();
+				}
+				accepted.add(command);
+			}
+		};
+		try {
+			jdukpt.decryptData(HexUtils.hexToBytes(BDK), records, executor);
+			fail();
+		} catch (RejectedExecutionException e) {
+		}
+		accepted.get(0).run();
+		for(BatchRecord record : records) {
+			assertArrayEquals(new byte[8], record.getOutput());
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testPartialBlock() {
+		new BatchRecord(HexUtils.hexToBytes(KSN), new byte[12], new byte[12]);
+	}
+}
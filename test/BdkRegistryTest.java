@@ -0,0 +1,95 @@
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.phoegasus.jdukpt.core.BatchRecord;
+import org.phoegasus.jdukpt.core.BdkRegistry;
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.core.TableBlockCipher;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+public class BdkRegistryTest {
+
+	private final byte[] bdk1 = HexUtils.hexToBytes("0123456789ABCDEFFEDCBA9876543210");
+	private final byte[] bdk2 = HexUtils.hexToBytes("A1A1A1A1A1A1A1A1B2B2B2B2B2B2B2B2");
+	private final byte[] ksn1 = HexUtils.hexToBytes("FFFF9876543210E00001");
+	private final byte[] ksn2 = HexUtils.hexToBytes("FFFF9876553210E00002");
+	private final byte[] data = HexUtils.hexToBytes("041226CBA987EDCB");
+	
+	@Test
+	public void testLookupByKeySet() throws Exception {
+		BdkRegistry registry = new BdkRegistry();
+		registry.put(HexUtils.hexToBytes("FFFF987654"), bdk1);
+		registry.put(ksn2, bdk2);
+		for (int i = 0; i < 500; i++) {
+			registry.put(HexUtils.hexToBytes(String.format("00%08X", i)), bdk2);
+		}
+		assertEquals(502, registry.size());
+		JDukpt jdukpt = JDukpt.builder().cipher(new TableBlockCipher()).bdkRegistry(registry).build();
+		JDukpt reference = new JDukpt();
+		assertArrayEquals(reference.encryptPIN(bdk1, ksn1, data), jdukpt.encryptPIN(ksn1, data));
+		assertArrayEquals(reference.encryptData(bdk2, ksn2, data), jdukpt.encryptData(ksn2, data));
+		assertArrayEquals(data, jdukpt.decryptPIN(ksn1, reference.encryptPIN(bdk1, ksn1, data)));
+		assertArrayEquals(data, jdukpt.decryptData(ksn2, reference.encryptData(bdk2, ksn2, data)));
+		
+		assertTrue(registry.remove(ksn2));
+		assertFalse(registry.remove(ksn2));
+		assertFalse(registry.contains(ksn2));
+		try {
+			jdukpt.decryptPIN(ksn2, data);
+			fail("a KSN of an unregistered key set should be rejected");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+	
+	@Test
+	public void testBatchOfSeveralKeySets() throws Exception {
+		BdkRegistry registry = new BdkRegistry();
+		registry.put(ksn1, bdk1);
+		registry.put(ksn2, bdk2);
+		JDukpt jdukpt = JDukpt.builder().cipher(new TableBlockCipher()).bdkRegistry(registry).build();
+		JDukpt reference = new JDukpt();
+		byte[][] ksns = {ksn2, ksn1, ksn2, ksn1, ksn1, ksn2};
+		BatchRecord[] records = new BatchRecord[ksns.length];
+		byte[][] outputs = new byte[ksns.length][8];
+		for (int i = 0; i < ksns.length; i++) {
+			records[i] = new BatchRecord(ksns[i], reference.encryptPIN(ksns[i] == ksn1 ? bdk1 : bdk2, ksns[i], data), outputs[i]);
+		}
+		jdukpt.decryptPIN(records);
+		for (byte[] output : outputs) {
+			assertArrayEquals(data, output);
+		}
+		
+		records[3] = new BatchRecord(HexUtils.hexToBytes("FFFF9876563210E00001"), data, new byte[8]);
+		outputs[0] = new byte[8];
+		records[0] = new BatchRecord(ksn2, reference.encryptPIN(bdk2, ksn2, data), outputs[0]);
+		try {
+			jdukpt.decryptPIN(records);
+			fail("a record of an unregistered key set should reject the batch");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().endsWith("record 3"));
+		}
+		assertArrayEquals(new byte[8], outputs[0]);
+	}
+	
+	@Test
+	public void testReplaceAll() throws Exception {
+		BdkRegistry registry = new BdkRegistry(4);
+		registry.put(ksn1, bdk1);
+		registry.replaceAll(new byte[][] {HexUtils.hexToBytes("FFFF9876")}, new byte[][] {bdk2});
+		assertEquals(1, registry.size());
+		JDukpt jdukpt = JDukpt.builder().bdkRegistry(registry).build();
+		assertArrayEquals(new JDukpt().encryptPIN(bdk2, ksn1, data), jdukpt.encryptPIN(ksn1, data));
+		assertTrue(registry.contains(ksn2));
+		try {
+			new JDukpt().decryptPIN(ksn1, data);
+			fail("operations taking only a KSN should require a registry");
+		} catch (IllegalStateException e) {
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Test;
+import org.phoegasus.jdukpt.core.DUKPTVariant;
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.tools.BulkDecryptor;
+import org.phoegasus.jdukpt.tools.RecordLayout;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+public class BulkDecryptorTest {
+
+	private final String bdk = "0123456789ABCDEFFEDCBA9876543210";
+	private final String data = "4012345678909D987012345678909D98";
+	private final String pinBlock = "041226CBA987EDCB";
+
+	@Test
+	public void testDelimitedRecordsAcrossChunks() throws Exception {
+		JDukpt jdukpt = new JDukpt();
+		StringBuilder input = new StringBuilder("id;ksn;data\r\n");
+		StringBuilder expected = new StringBuilder("id;ksn;data\r\n");
+		for (int i = 0; i < 3000; i++) {
+			String ksn = String.format("FFFF98765432%02X%06X", i % 7, i % 100 + 1);
+			input.append(i).append(';').append(ksn).append(';').append(jdukpt.encryptData(bdk, ksn, data)).append("\r\n");
+			expected.append(i).append(';').append(ksn).append(';').append(data).append("\r\n");
+		}
+		List<String> lines = run(RecordLayout.delimited(';', 1, 2), DUKPTVariant.Data, input.toString(), true);
+		assertEquals(expected.toString(), String.join("\r\n", lines) + "\r\n");
+	}
+
+	@Test
+	public void testFixedWidthRecords() throws Exception {
+		JDukpt jdukpt = new JDukpt();
+		StringBuilder input = new StringBuilder();
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			String ksn = String.format("FFFF9876543210%06X", i % 50 + 1);
+			input.append(String.format("%08d", i)).append(ksn).append(jdukpt.encryptPIN(bdk, ksn, pinBlock)).append('\n');
+			expected.append(String.format("%08d", i)).append(ksn).append(pinBlock).append('\n');
+		}
+		List<String> lines = run(RecordLayout.fixedWidth(8, 28, 16), DUKPTVariant.PIN, input.toString(), false);
+		assertEquals(expected.toString(), String.join("\n", lines) + "\n");
+		try {
+			run(RecordLayout.fixedWidth(8, 28, 16), DUKPTVariant.PIN, input + "00000000FFFF9876543210E00001ZZ\n", false);
+			fail("a record which does not match the layout should be rejected");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	private List<String> run(RecordLayout layout, DUKPTVariant variant, String input, boolean header) throws Exception {
+		Path in = Files.createTempFile("extract", ".txt");
+		Path out = Files.createTempFile("extract", ".out");
+		try {
+			Files.write(in, input.getBytes(StandardCharsets.US_ASCII));
+			BulkDecryptor decryptor = new BulkDecryptor(new JDukpt(), HexUtils.hexToBytes(bdk), variant, layout, 4, BulkDecryptor.MAX_RECORD_LENGTH);
+			decryptor.decrypt(in, out, header);
+			return Files.readAllLines(out, StandardCharsets.US_ASCII);
+		} finally {
+			Files.delete(in);
+			Files.delete(out);
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+import org.phoegasus.jdukpt.core.Crypto;
+import org.phoegasus.jdukpt.core.DUKPTEngine;
+import org.phoegasus.jdukpt.core.DefaultCrypto;
+import org.phoegasus.jdukpt.core.IpekCache;
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.core.TableBlockCipher;
+import org.phoegasus.jdukpt.utils.BlockUtils;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+public class ConcurrencyTest {
+
+	private static final int THREADS = 8;
+	private static final int DEVICES = 64;
+	private static final int OPERATIONS = 2000;
+	
+	private final byte[] bdk = HexUtils.hexToBytes("A1A1A1A1A1A1A1A1B2B2B2B2B2B2B2B2");
+	private final byte[] data = HexUtils.hexToBytes("041226CBA987EDCB");
+	
+	@Test
+	public void testSharedStripedCache() throws Exception {
+		IpekCache cache = new IpekCache(DEVICES, 0, true, THREADS);
+		stress(JDukpt.builder().cipher(new TableBlockCipher()).ipekCache(cache).build());
+		assertEquals(THREADS * OPERATIONS * 2, cache.getHitCount() + cache.getMissCount());
+	}
+	
+	@Test
+	public void testStatefulCryptoFactory() throws Exception {
+		stress(JDukpt.builder().cryptoFactory(new Supplier<Crypto>() {
+			@Override
+			public Crypto get() {
+				return new StatefulCrypto();
+			}
+		}).engine(DUKPTEngine.Primitive).build());
+	}
+	
+	/**
+	 * Runs PIN and Data operations on random devices and counters from several threads at once, and compares every result with a single threaded reference
+	 */
+	private void stress(final JDukpt jdukpt) throws Exception {
+		final JDukpt reference = new JDukpt(new TableBlockCipher());
+		final byte[][] ksns = new byte[DEVICES * 16][];
+		final byte[][] expected = new byte[ksns.length * 2][];
+		for (int i = 0; i < ksns.length; i++) {
+			ksns[i] = HexUtils.hexToBytes("FFFF9876543210E00000");
+			ksns[i][5] = (byte) (i / 16);
+			BlockUtils.putLong(BlockUtils.getLong(ksns[i], 2) | 1 + (i % 16) * 37, ksns[i], 2);
+			expected[i * 2] = reference.encryptPIN(bdk, ksns[i], data);
+			expected[i * 2 + 1] = reference.encryptData(bdk, ksns[i], data);
+		}
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (int t = 0; t < THREADS; t++) {
+				final int seed = t;
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						start.await();
+						for (int i = 0; i < OPERATIONS; i++) {
+							int k = (int) ((seed * 7919L + i * 104729L) % ksns.length);
+							assertArrayEquals(expected[k * 2], jdukpt.encryptPIN(bdk, ksns[k], data));
+							assertArrayEquals(data, jdukpt.decryptData(bdk, ksns[k], expected[k * 2 + 1]));
+						}
+						return null;
+					}
+				}));
+			}
+			start.countDown();
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	/**
+	 * Crypto implementation keeping the last key in a field between calls, which gives wrong results when shared by threads
+	 */
+	private static final class StatefulCrypto implements Crypto {
+		
+		private final DefaultCrypto crypto = new DefaultCrypto();
+		
+		private BigInteger key;
+		
+		@Override
+		public BigInteger encryptDES(BigInteger key, BigInteger data) throws Exception {
+			this.key = key;
+			Thread.yield();
+			return crypto.encryptDES(this.key, data);
+		}
+		
+		@Override
+		public BigInteger decryptDES(BigInteger key, BigInteger data) throws Exception {
+			this.key = key;
+			Thread.yield();
+			return crypto.decryptDES(this.key, data);
+		}
+		
+		@Override
+		public BigInteger encryptTDES(BigInteger key, BigInteger data) throws Exception {
+			this.key = key;
+			Thread.yield();
+			return crypto.encryptTDES(this.key, data);
+		}
+		
+		@Override
+		public BigInteger decryptTDES(BigInteger key, BigInteger data) throws Exception {
+			this.key = key;
+			Thread.yield();
+			return crypto.decryptTDES(this.key, data);
+		}
+	}
+}
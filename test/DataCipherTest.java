@@ -0,0 +1,105 @@
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import org.phoegasus.jdukpt.core.CipherMode;
+import org.phoegasus.jdukpt.core.DataCipher;
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.core.Padding;
+import org.phoegasus.jdukpt.core.TableBlockCipher;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+public class DataCipherTest {
+
+	private final byte[] BDK = HexUtils.hexToBytes("A1A1A1A1A1A1A1A1B2B2B2B2B2B2B2B2");
+	private final byte[] KSN = HexUtils.hexToBytes("FFFF9876543210E00002");
+	private final String CLEAR_DATA = "041226CBA987EDCB";
+	private final String DATA_VARIANT_ENCRYPTED_DATA = "D667CEE04B7A0EB4";
+	
+	@Test
+	public void testVector() throws Exception {
+		JDukpt jdukpt = new JDukpt();
+		ByteBuffer out = ByteBuffer.allocate(8);
+		jdukpt.encryptData(BDK, KSN, ByteBuffer.wrap(HexUtils.hexToBytes(CLEAR_DATA)), out, CipherMode.CBC, Padding.None, null);
+		assertEquals(DATA_VARIANT_ENCRYPTED_DATA, HexUtils.bytesToHex(out.array()).toUpperCase());
+		out.clear();
+		jdukpt.decryptData(BDK, KSN, ByteBuffer.wrap(HexUtils.hexToBytes(DATA_VARIANT_ENCRYPTED_DATA)), out, CipherMode.ECB, Padding.None, null);
+		assertEquals(CLEAR_DATA, HexUtils.bytesToHex(out.array()).toUpperCase());
+	}
+	
+	@Test
+	public void testMatchesLegacyCBC() throws Exception {
+		JDukpt jdukpt = new JDukpt();
+		byte[] data = new byte[40];
+		new Random(3).nextBytes(data);
+		data[0] = 0x55;
+		assertArrayEquals(jdukpt.encryptData(BDK, KSN, data), jdukpt.createDataEncryptor(BDK, KSN, CipherMode.CBC, Padding.None, null).doFinal(data));
+	}
+	
+	@Test
+	public void testLeadingZeroes() throws Exception {
+		JDukpt jdukpt = new JDukpt(new TableBlockCipher());
+		byte[] data = new byte[16];
+		data[15] = 1;
+		byte[] encrypted = jdukpt.createDataEncryptor(BDK, KSN, CipherMode.CBC, Padding.None, null).doFinal(data);
+		assertArrayEquals(data, jdukpt.createDataDecryptor(BDK, KSN, CipherMode.CBC, Padding.None, null).doFinal(encrypted));
+	}
+	
+	@Test
+	public void testRoundTrips() throws Exception {
+		Random random = new Random(5);
+		JDukpt jdukpt = new JDukpt(new TableBlockCipher());
+		byte[] iv = HexUtils.hexToBytes("0102030405060708");
+		for(CipherMode mode : CipherMode.values()) {
+			for(Padding padding : Padding.values()) {
+				for(int length : new int[] {0, 1, 7, 8, 9, 64, 1000, 5000}) {
+					if(length % 8 != 0 && padding == Padding.None || length == 0 && padding == Padding.Zero) {
+						continue;
+					}
+					byte[] data = new byte[length];
+					random.nextBytes(data);
+					byte[] blockIv = mode == CipherMode.CBC ? iv : null;
+					DataCipher encryptor = jdukpt.createDataEncryptor(BDK, KSN, mode, padding, blockIv);
+					byte[] encrypted = encryptor.doFinal(data);
+					assertArrayEquals(encrypted, chunked(encryptor, data, random));
+					ByteArrayOutputStream stream = new ByteArrayOutputStream();
+					assertEquals(encrypted.length, jdukpt.encryptData(BDK, KSN, new ByteArrayInputStream(data), stream, mode, padding, blockIv));
+					assertArrayEquals(encrypted, stream.toByteArray());
+					
+					DataCipher decryptor = jdukpt.createDataDecryptor(BDK, KSN, mode, padding, blockIv);
+					byte[] expected = padding == Padding.Zero ? Arrays.copyOf(data, encrypted.length) : data;
+					assertArrayEquals(expected, decryptor.doFinal(encrypted));
+					assertArrayEquals(expected, chunked(decryptor, encrypted, random));
+				}
+			}
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidPadding() throws Exception {
+		JDukpt jdukpt = new JDukpt(new TableBlockCipher());
+		jdukpt.createDataDecryptor(BDK, KSN, CipherMode.CBC, Padding.PKCS5, null).doFinal(HexUtils.hexToBytes(DATA_VARIANT_ENCRYPTED_DATA));
+	}
+	
+	private static byte[] chunked(DataCipher cipher, byte[] data, Random random) throws Exception {
+		ByteBuffer out = ByteBuffer.allocate(data.length + 16);
+		ByteBuffer in = ByteBuffer.wrap(data);
+		while(in.remaining() > 16) {
+			int length = random.nextInt(16);
+			ByteBuffer chunk = in.duplicate();
+			chunk.limit(chunk.position() + length);
+			cipher.update(chunk, out);
+			in.position(in.position() + length);
+		}
+		cipher.doFinal(in, out);
+		return Arrays.copyOf(out.array(), out.position());
+	}
+}
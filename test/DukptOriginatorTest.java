@@ -0,0 +1,87 @@
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.phoegasus.jdukpt.core.DUKPTVariant;
+import org.phoegasus.jdukpt.core.DukptOriginator;
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.core.TableBlockCipher;
+import org.phoegasus.jdukpt.utils.BlockUtils;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+public class DukptOriginatorTest {
+
+	private final String BDK = "0123456789ABCDEFFEDCBA9876543210";
+	private final String KSN = "FFFF9876543210E00000";
+	private final String IPEK = "6AC292FAA1315B4D858AB3A3D7D5933A";
+	private final String PIN_KEY = "042666B49184CF5C68DE9628D0397B36";
+	private final String CLEAR_DATA = "041226CBA987EDCB";
+	
+	private final JDukpt jdukpt = new JDukpt();
+	
+	@Test
+	public void testHostDecryptsOriginatorPINBlocks() throws Exception {
+		assertEquals(new BigInteger(IPEK, 16), jdukpt.generateIpek(new BigInteger(BDK, 16), new BigInteger(KSN, 16)));
+		DukptOriginator originator = new DukptOriginator(HexUtils.hexToBytes(IPEK), HexUtils.hexToBytes(KSN));
+		assertArrayEquals(HexUtils.hexToBytes(PIN_KEY), originator.nextSessionKeys(DUKPTVariant.PIN).getKey(DUKPTVariant.PIN));
+		for (int i = 0; i < 64; i++) {
+			byte[] ksn = originator.getKsn();
+			byte[] encrypted = originator.encryptPIN(HexUtils.hexToBytes(CLEAR_DATA));
+			assertArrayEquals(HexUtils.hexToBytes(CLEAR_DATA), jdukpt.decryptPIN(HexUtils.hexToBytes(BDK), ksn, encrypted));
+		}
+		byte[] ksn = originator.getKsn();
+		byte[] encrypted = originator.encryptData(HexUtils.hexToBytes(CLEAR_DATA + CLEAR_DATA));
+		assertArrayEquals(HexUtils.hexToBytes(CLEAR_DATA + CLEAR_DATA), jdukpt.decryptData(HexUtils.hexToBytes(BDK), ksn, encrypted));
+	}
+	
+	@Test
+	public void testCounterSkipsAndExhaustion() throws Exception {
+		DukptOriginator originator = new DukptOriginator(HexUtils.hexToBytes(IPEK), HexUtils.hexToBytes(KSN), new TableBlockCipher());
+		int transactions = 0;
+		int previous = 0;
+		while (!originator.isExhausted()) {
+			int counter = originator.getCounter();
+			assertTrue(counter > previous && Integer.bitCount(counter) <= 10);
+			if ((transactions & 0xFFFF) == 0 || counter == 0x1FF800) {
+				byte[] ksn = originator.getKsn();
+				assertEquals(counter, (int) BlockUtils.getLong(ksn, 2) & 0x1FFFFF);
+				byte[] encrypted = originator.encryptPIN(HexUtils.hexToBytes(CLEAR_DATA));
+				assertArrayEquals(HexUtils.hexToBytes(CLEAR_DATA), jdukpt.decryptPIN(HexUtils.hexToBytes(BDK), ksn, encrypted));
+			} else {
+				originator.nextSessionKeys(DUKPTVariant.PIN);
+			}
+			previous = counter;
+			transactions++;
+		}
+		assertEquals(1048575, transactions);
+		assertEquals(0x1FF800, previous);
+		assertArrayEquals(HexUtils.hexToBytes(KSN.substring(0, 14) + "FFFFFF"), Arrays.copyOfRange(originator.toBytes(), 1, 11));
+		try {
+			originator.getKsn();
+			fail("an exhausted originator should not give a KSN");
+		} catch (IllegalStateException e) {
+		}
+	}
+	
+	@Test
+	public void testSerialization() throws Exception {
+		DukptOriginator originator = new DukptOriginator(HexUtils.hexToBytes(IPEK), HexUtils.hexToBytes(KSN));
+		for (int i = 0; i < 37; i++) {
+			originator.nextSessionKeys(DUKPTVariant.PIN);
+		}
+		byte[] state = originator.toBytes();
+		DukptOriginator restored = DukptOriginator.fromBytes(state);
+		assertArrayEquals(state, restored.toBytes());
+		for (int i = 0; i < 37; i++) {
+			assertArrayEquals(originator.getKsn(), restored.getKsn());
+			assertArrayEquals(originator.encryptPIN(HexUtils.hexToBytes(CLEAR_DATA)), restored.encryptPIN(HexUtils.hexToBytes(CLEAR_DATA)));
+		}
+	}
+}
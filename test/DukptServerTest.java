@@ -0,0 +1,102 @@
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import org.phoegasus.jdukpt.core.BdkRegistry;
+import org.phoegasus.jdukpt.core.DUKPTEngine;
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.core.TableBlockCipher;
+import org.phoegasus.jdukpt.server.DukptProtocol;
+import org.phoegasus.jdukpt.server.DukptServer;
+import org.phoegasus.jdukpt.server.LoadGenerator;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+public class DukptServerTest {
+
+	private final byte[] bdk = HexUtils.hexToBytes("0123456789ABCDEFFEDCBA9876543210");
+	private final byte[] ksn1 = HexUtils.hexToBytes("FFFF9876543210E00001");
+	private final byte[] ksn2 = HexUtils.hexToBytes("FFFF9876543210E00012");
+	private final byte[] unknownKsn = HexUtils.hexToBytes("FFFF9876553210E00001");
+	private final byte[] data = HexUtils.hexToBytes("041226CBA987EDCB");
+
+	private static final int READ_TIMEOUT = 10000;
+
+	@Test(timeout = 30000)
+	public void testPipelinedRequests() throws Exception {
+		JDukpt jdukpt = createJDukpt();
+		byte[] message = HexUtils.hexToBytes("4012345678909D987012345678909D98");
+		try (DukptServer server = new DukptServer(jdukpt, 0)) {
+			server.start();
+			assertTrue(server.getAddress().getAddress().isLoopbackAddress());
+			try (Socket socket = connect(server)) {
+				DataInputStream in = new DataInputStream(socket.getInputStream());
+				ByteBuffer out = ByteBuffer.allocate(1024);
+				DukptProtocol.putRequest(out, DukptProtocol.DECRYPT_PIN, ksn1, jdukpt.encryptPIN(ksn1, data));
+				DukptProtocol.putRequest(out, DukptProtocol.DECRYPT_PIN, unknownKsn, data);
+				DukptProtocol.putRequest(out, DukptProtocol.DECRYPT_DATA, ksn2, jdukpt.encryptData(ksn2, message));
+				DukptProtocol.putRequest(out, DukptProtocol.DECRYPT_DATA, ksn2, new byte[5]);
+				DukptProtocol.putRequest(out, (byte) 9, ksn1, data);
+				DukptProtocol.putRequest(out, DukptProtocol.DECRYPT_PIN, ksn2, jdukpt.encryptPIN(ksn2, data));
+				socket.getOutputStream().write(out.array(), 0, out.position());
+				assertResponse(in, DukptProtocol.OK, data);
+				assertResponse(in, DukptProtocol.UNKNOWN_KEY_SET, new byte[0]);
+				assertResponse(in, DukptProtocol.OK, message);
+				assertResponse(in, DukptProtocol.BAD_REQUEST, new byte[0]);
+				assertResponse(in, DukptProtocol.BAD_REQUEST, new byte[0]);
+				assertResponse(in, DukptProtocol.OK, data);
+			}
+			assertEquals(6, server.getRequestCount());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWithoutBdkRegistry() throws Exception {
+		new DukptServer(JDukpt.builder().build(), 0).close();
+	}
+
+	@Test(timeout = 60000)
+	public void testLoadGenerator() throws Exception {
+		JDukpt jdukpt = createJDukpt();
+		byte[][] ksns = {ksn1, ksn2};
+		byte[][] payloads = {jdukpt.encryptPIN(ksn1, data), jdukpt.encryptPIN(ksn2, data)};
+		try (DukptServer server = new DukptServer(jdukpt, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+			server.start();
+			LoadGenerator.Report report = new LoadGenerator(server.getAddress(), 2, 16).run(DukptProtocol.DECRYPT_PIN, ksns, payloads, 200);
+			assertTrue(report.getRequests() >= 32);
+			assertEquals(0, report.getErrors());
+			assertEquals(report.getRequests(), server.getRequestCount());
+			assertTrue(report.getLatencyNanos(50) <= report.getLatencyNanos(99));
+		}
+	}
+
+	private JDukpt createJDukpt() {
+		BdkRegistry registry = new BdkRegistry();
+		registry.put(HexUtils.hexToBytes("FFFF987654"), bdk);
+		return JDukpt.builder().cipher(new TableBlockCipher()).engine(DUKPTEngine.Primitive).bdkRegistry(registry).build();
+	}
+
+	private Socket connect(DukptServer server) throws Exception {
+		Socket socket = new Socket();
+		socket.setSoTimeout(READ_TIMEOUT);
+		socket.connect(server.getAddress(), READ_TIMEOUT);
+		return socket;
+	}
+
+	private void assertResponse(DataInputStream in, byte status, byte[] payload) throws Exception {
+		byte[] frame = new byte[in.readInt()];
+		in.readFully(frame);
+		assertEquals(status, frame[0]);
+		byte[] actual = new byte[frame.length - DukptProtocol.RESPONSE_HEADER];
+		System.arraycopy(frame, DukptProtocol.RESPONSE_HEADER, actual, 0, actual.length);
+		assertArrayEquals(payload, actual);
+	}
+}
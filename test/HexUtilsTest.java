@@ -0,0 +1,113 @@
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+public class HexUtilsTest {
+
+	@Test
+	public void testRoundTrips() {
+		Random random = new Random(9);
+		for(int length = 0; length < 40; length++) {
+			byte[] bytes = new byte[length];
+			random.nextBytes(bytes);
+			String hex = HexUtils.bytesToHex(bytes);
+			assertEquals(hex.length(), length * 2);
+			assertArrayEquals(bytes, HexUtils.hexToBytes(hex));
+			assertArrayEquals(bytes, HexUtils.hexToBytes(hex.toLowerCase()));
+			
+			char[] chars = new char[length * 2 + 1];
+			assertEquals(length * 2, HexUtils.encode(bytes, 0, length, chars, 1, false));
+			assertEquals(hex.toLowerCase(), new String(chars, 1, length * 2));
+			
+			byte[] ascii = new byte[length * 2];
+			HexUtils.encode(bytes, 0, length, ascii, 0, true);
+			assertEquals(hex, new String(ascii, StandardCharsets.US_ASCII));
+			byte[] decoded = new byte[length];
+			assertEquals(length, HexUtils.decode(hex.toLowerCase().getBytes(StandardCharsets.US_ASCII), 0, length * 2, decoded, 0));
+			assertArrayEquals(bytes, decoded);
+			
+			ByteBuffer buffer = ByteBuffer.allocateDirect(length * 2);
+			HexUtils.encode(ByteBuffer.wrap(bytes), buffer, true);
+			buffer.flip();
+			ByteBuffer out = ByteBuffer.allocate(length);
+			HexUtils.decode(buffer, out);
+			assertArrayEquals(bytes, out.array());
+		}
+	}
+	
+	@Test
+	public void testLongs() {
+		Random random = new Random(10);
+		char[] chars = new char[16];
+		for(int i = 0; i < 1000; i++) {
+			long value = random.nextLong();
+			HexUtils.encode(value, chars, 0, i % 2 == 0);
+			String hex = new String(chars);
+			assertEquals(value, HexUtils.decodeLong(hex, 0, 16));
+			assertEquals(value, HexUtils.decodeLong(hex.getBytes(StandardCharsets.US_ASCII), 0));
+			assertEquals(value >>> 20, HexUtils.decodeLong(hex, 0, 11));
+		}
+	}
+	
+	@Test
+	public void testFixedWidth() {
+		char[] ksn = new char[20];
+		HexUtils.encode(0xFFFF9876543210E0L, ksn, 0, true);
+		HexUtils.encode(0x0002, 4, ksn, 16, true);
+		assertEquals("FFFF9876543210E00002", new String(ksn));
+		char[] key = new char[32];
+		HexUtils.encode(new long[] {0x0000A1A1A1A1A1A1L, 0xB2B2B2B2B2B2B2B2L}, 32, key, 0, true);
+		assertEquals("0000A1A1A1A1A1A1B2B2B2B2B2B2B2B2", new String(key));
+		char[] wide = new char[36];
+		HexUtils.encode(new long[] {0xA1A1A1A1A1A1A1A1L, 0xB2B2B2B2B2B2B2B2L}, 36, wide, 0, false);
+		assertEquals("0000a1a1a1a1a1a1a1a1b2b2b2b2b2b2b2b2", new String(wide));
+		char[] narrow = new char[6];
+		HexUtils.encode(0x123456789L, 6, narrow, 0, false);
+		assertEquals("456789", new String(narrow));
+	}
+	
+	@Test
+	public void testRejection() {
+		for(char c : new char[] {'/', ':', '@', 'G', '`', 'g', ' ', '-', (char) 0xC6, (char) 0xE6, (char) 0x130}) {
+			for(int index = 0; index < 16; index++) {
+				char[] chars = "0123456789abcdef".toCharArray();
+				chars[index] = c;
+				String hex = new String(chars);
+				assertRejected(hex, index);
+				if(c < 0x100) {
+					byte[] ascii = hex.getBytes(StandardCharsets.ISO_8859_1);
+					try {
+						HexUtils.decodeLong(ascii, 0);
+						fail();
+					} catch (IllegalArgumentException e) {
+						assertEquals("invalid hexadecimal character at index " + index, e.getMessage());
+					}
+				}
+			}
+		}
+		try {
+			HexUtils.hexToBytes("ABC");
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals("hexadecimal length should be even", e.getMessage());
+		}
+	}
+	
+	private static void assertRejected(String hex, int index) {
+		try {
+			HexUtils.hexToBytes(hex);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals("invalid hexadecimal character at index " + index, e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.phoegasus.jdukpt.core.DUKPTEngine;
+import org.phoegasus.jdukpt.core.DefaultCrypto;
+import org.phoegasus.jdukpt.core.IpekCache;
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.core.TableBlockCipher;
+
+public class IpekCacheTest {
+
+	private final String BDK = "A1A1A1A1A1A1A1A1B2B2B2B2B2B2B2B2";
+	private final String KSN = "FFFF9876543210E00002";
+	private final String CLEAR_DATA = "041226CBA987EDCB";
+	private final String PIN_VARIANT_ENCRYPTED_DATA = "51B0229A9278CECC";
+	private final String DATA_VARIANT_ENCRYPTED_DATA = "D667CEE04B7A0EB4";
+	
+	@Test
+	public void testHitsOnSameDevice() throws Exception {
+		IpekCache cache = new IpekCache(16, 0);
+		JDukpt jdukpt = new JDukpt(new TableBlockCipher(), cache);
+		assertEquals(jdukpt.encryptPIN(BDK, KSN, CLEAR_DATA).toUpperCase(), PIN_VARIANT_ENCRYPTED_DATA);
+		assertEquals(jdukpt.decryptPIN(BDK, KSN, PIN_VARIANT_ENCRYPTED_DATA).toUpperCase(), CLEAR_DATA);
+		assertEquals(jdukpt.decryptData(BDK, "FFFF9876543210E00003", jdukpt.encryptData(BDK, "FFFF9876543210E00003", CLEAR_DATA)).toUpperCase(), CLEAR_DATA);
+		assertEquals(1, cache.getMissCount());
+		assertEquals(3, cache.getHitCount());
+		assertEquals(1, cache.size());
+	}
+	
+	@Test
+	public void testBigIntegerEngine() throws Exception {
+		IpekCache cache = new IpekCache(16, 0);
+		JDukpt jdukpt = new JDukpt(new DefaultCrypto(), DUKPTEngine.BigInteger, cache);
+		assertEquals(jdukpt.encryptData(BDK, KSN, CLEAR_DATA).toUpperCase(), DATA_VARIANT_ENCRYPTED_DATA);
+		assertEquals(jdukpt.decryptData(BDK, KSN, DATA_VARIANT_ENCRYPTED_DATA).toUpperCase(), CLEAR_DATA);
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+	}
+	
+	@Test
+	public void testSizeEviction() throws Exception {
+		IpekCache cache = new IpekCache(2, 0);
+		JDukpt jdukpt = new JDukpt(new TableBlockCipher(), cache);
+		jdukpt.encryptPIN(BDK, "FFFF9876543210E00002", CLEAR_DATA);
+		jdukpt.encryptPIN(BDK, "FFFF9876543211E00002", CLEAR_DATA);
+		jdukpt.encryptPIN(BDK, "FFFF9876543212E00002", CLEAR_DATA);
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		assertEquals(jdukpt.encryptPIN(BDK, KSN, CLEAR_DATA).toUpperCase(), PIN_VARIANT_ENCRYPTED_DATA);
+		assertEquals(4, cache.getMissCount());
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+	
+	@Test
+	public void testTimeEviction() throws Exception {
+		IpekCache cache = new IpekCache(16, 1);
+		JDukpt jdukpt = new JDukpt(new TableBlockCipher(), cache);
+		jdukpt.encryptPIN(BDK, KSN, CLEAR_DATA);
+		Thread.sleep(5);
+		assertEquals(jdukpt.encryptPIN(BDK, KSN, CLEAR_DATA).toUpperCase(), PIN_VARIANT_ENCRYPTED_DATA);
+		assertEquals(2, cache.getMissCount());
+		assertEquals(1, cache.getEvictionCount());
+	}
+	
+	@Test
+	public void testFutureKeyPath() throws Exception {
+		JDukpt reference = new JDukpt(new TableBlockCipher());
+		IpekCache cache = new IpekCache(16, 0, true);
+		JDukpt jdukpt = new JDukpt(new TableBlockCipher(), cache);
+		String[] counters = {"E0001", "E0002", "E0003", "E0010", "E000F", "E0011", "FFFFF", "F0000", "F000F", "E000F", "E000F", "F5555", "E0000"};
+		for(String counter : counters) {
+			String ksn = KSN.substring(0, 20 - counter.length()) + counter;
+			assertEquals(reference.encryptPIN(BDK, ksn, CLEAR_DATA), jdukpt.encryptPIN(BDK, ksn, CLEAR_DATA));
+			assertEquals(reference.decryptData(BDK, ksn, CLEAR_DATA), jdukpt.decryptData(BDK, ksn, CLEAR_DATA));
+		}
+		assertEquals(1, cache.getMissCount());
+	}
+}
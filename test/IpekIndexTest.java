@@ -0,0 +1,131 @@
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.phoegasus.jdukpt.core.IpekIndex;
+import org.phoegasus.jdukpt.core.IpekIndexWriter;
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.core.TableBlockCipher;
+import org.phoegasus.jdukpt.metrics.JmxMetrics;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+public class IpekIndexTest {
+
+	private final byte[] bdk = HexUtils.hexToBytes("0123456789ABCDEFFEDCBA9876543210");
+	private final byte[] kek = HexUtils.hexToBytes("C1D0F8FB4958670DBA40AB1F3752EF0D");
+	private final String IPEK = "6AC292FAA1315B4D858AB3A3D7D5933A";
+	
+	@Test
+	public void testLookups() throws Exception {
+		Path file = Files.createTempFile("ipek", ".idx");
+		try {
+			assertEquals(1000, new IpekIndexWriter().write(file, bdk, devices(), null));
+			IpekIndex index = IpekIndex.open(file);
+			assertEquals(1000, index.size());
+			assertEquals(IPEK, HexUtils.bytesToHex(index.getIpek(bdk, HexUtils.hexToBytes("FFFF9876543210E00007"))));
+			JDukpt reference = new JDukpt();
+			for (byte[] ksn : devices()) {
+				assertEquals(reference.generateIpek(new BigInteger(1, bdk), new BigInteger(1, ksn)), new BigInteger(1, index.getIpek(bdk, ksn)));
+			}
+			assertNull(index.getIpek(bdk, HexUtils.hexToBytes("FFFF9876543211E00000")));
+			assertNull(index.getIpek(kek, HexUtils.hexToBytes("FFFF9876543210E00000")));
+			assertNull(index.getIpek(kek, HexUtils.hexToBytes("FFFF9876543210E00007")));
+			assertEquals(IPEK, HexUtils.bytesToHex(index.getIpek(bdk, HexUtils.hexToBytes("FFFF9876543210E00007"))));
+		} finally {
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void testEncryptedIndexAvoidsDerivation() throws Exception {
+		Path file = Files.createTempFile("ipek", ".idx");
+		try {
+			new IpekIndexWriter().write(file, bdk, devices(), kek);
+			try {
+				IpekIndex.open(file);
+				fail("an encrypted index should require its KEK");
+			} catch (IllegalArgumentException e) {
+			}
+			try {
+				IpekIndex.open(file, bdk);
+				fail("another KEK should be rejected");
+			} catch (IllegalArgumentException e) {
+			}
+			IpekIndex index = IpekIndex.open(file, kek);
+			assertTrue(index.isEncrypted());
+			assertEquals(IPEK, HexUtils.bytesToHex(index.getIpek(bdk, HexUtils.hexToBytes("FFFF9876543210E00000"))));
+			
+			JmxMetrics metrics = new JmxMetrics();
+			JDukpt jdukpt = JDukpt.builder().cipher(new TableBlockCipher()).ipekIndex(index).metrics(metrics).build();
+			JDukpt reference = new JDukpt();
+			byte[] data = HexUtils.hexToBytes("041226CBA987EDCB");
+			for (byte[] ksn : devices()) {
+				assertArrayEquals(reference.encryptPIN(bdk, ksn, data), jdukpt.encryptPIN(bdk, ksn, data));
+			}
+			assertEquals(0, metrics.getIpekDerivations());
+			jdukpt.encryptPIN(bdk, HexUtils.hexToBytes("FFFF9876543211E00001"), data);
+			assertEquals(1, metrics.getIpekDerivations());
+		} finally {
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void testClose() throws Exception {
+		Path file = Files.createTempFile("ipek", ".idx");
+		try {
+			new IpekIndexWriter().write(file, bdk, devices(), kek);
+			IpekIndex index = IpekIndex.open(file, kek);
+			assertEquals(IPEK, HexUtils.bytesToHex(index.getIpek(bdk, HexUtils.hexToBytes("FFFF9876543210E00000"))));
+			assertNull(index.getIpek(kek, HexUtils.hexToBytes("FFFF9876543210E00000")));
+			index.close();
+			try {
+				index.getIpek(bdk, HexUtils.hexToBytes("FFFF9876543210E00000"));
+				fail("a closed index should not be looked up");
+			} catch (IllegalStateException e) {
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void testFailedWriteRemovesTemporaryFile() throws Exception {
+		Path directory = Files.createTempDirectory("ipek");
+		Path file = directory.resolve("index");
+		Path child = Files.createFile(Files.createDirectory(file).resolve("child"));
+		try {
+			new IpekIndexWriter().write(file, bdk, devices(), null);
+			fail("a non empty directory should not be replaced");
+		} catch (IOException e) {
+		} finally {
+			assertFalse(Files.exists(directory.resolve("index.tmp")));
+			Files.delete(child);
+			Files.delete(file);
+			Files.delete(directory);
+		}
+	}
+	
+	private static List<byte[]> devices() {
+		List<byte[]> ksns = new ArrayList<byte[]>();
+		for (int i = 0; i < 1000; i++) {
+			ksns.add(HexUtils.hexToBytes(String.format("FFFF%08X%08X", 0x98765432 + i * 7919, 0x10E00001 + i)));
+		}
+		ksns.add(HexUtils.hexToBytes("FFFF9876543210E00003"));
+		ksns.add(HexUtils.hexToBytes("FFFF9876543210E00005"));
+		return ksns;
+	}
+}
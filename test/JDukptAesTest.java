@@ -0,0 +1,105 @@
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.phoegasus.jdukpt.core.AESKeyType;
+import org.phoegasus.jdukpt.core.AESKeyUsage;
+import org.phoegasus.jdukpt.core.JDukptAes;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+public class JDukptAesTest {
+
+	private final String BDK = "FEDCBA9876543210F1F1F1F1F1F1F1F1";
+	private final String INITIAL_KEY_ID = "1234567890123456";
+	private final String INITIAL_KEY = "1273671EA26AC29AFA4D1084127652A1";
+	private final String KSN = "123456789012345600000001";
+	private final String PIN_KEY = "AF8CB133A78F8DC2D1359F18527593FB";
+	private final String PIN_BLOCK = "441234AAAAAAAAAA2CB0A1CF2F3D6C83";
+	
+	private final JDukptAes jdukpt = new JDukptAes();
+	
+	@Test
+	public void testInitialKey() throws Exception {
+		assertArrayEquals(jdukpt.deriveInitialKey(HexUtils.hexToBytes(BDK), HexUtils.hexToBytes(INITIAL_KEY_ID)), HexUtils.hexToBytes(INITIAL_KEY));
+	}
+	
+	@Test
+	public void testWorkingKey() throws Exception {
+		byte[] ksn = HexUtils.hexToBytes(KSN);
+		assertArrayEquals(jdukpt.deriveWorkingKey(HexUtils.hexToBytes(BDK), ksn, AESKeyUsage.PIN, AESKeyType.AES128), HexUtils.hexToBytes(PIN_KEY));
+		assertArrayEquals(jdukpt.deriveWorkingKeyFromInitialKey(HexUtils.hexToBytes(INITIAL_KEY), ksn, AESKeyUsage.PIN, AESKeyType.AES128), HexUtils.hexToBytes(PIN_KEY));
+		byte[][] keys = jdukpt.deriveWorkingKeys(HexUtils.hexToBytes(BDK), HexUtils.hexToBytes("123456789012345600A10007"), AESKeyType.AES128, AESKeyUsage.PIN, AESKeyUsage.MAC);
+		assertArrayEquals(keys[0], jdukpt.deriveWorkingKey(HexUtils.hexToBytes(BDK), HexUtils.hexToBytes("123456789012345600A10007"), AESKeyUsage.PIN, AESKeyType.AES128));
+		assertArrayEquals(keys[1], jdukpt.deriveWorkingKey(HexUtils.hexToBytes(BDK), HexUtils.hexToBytes("123456789012345600A10007"), AESKeyUsage.MAC, AESKeyType.AES128));
+	}
+	
+	@Test
+	public void testRoundTrips() throws Exception {
+		byte[] bdk = HexUtils.hexToBytes(BDK + BDK);
+		byte[] ksn = HexUtils.hexToBytes("1234567890123456FFFF0000");
+		byte[] pinBlock = HexUtils.hexToBytes(PIN_BLOCK);
+		for (AESKeyType type : AESKeyType.values()) {
+			assertArrayEquals(jdukpt.decryptPIN(bdk, ksn, jdukpt.encryptPIN(bdk, ksn, pinBlock, type), type), pinBlock);
+			assertArrayEquals(jdukpt.decryptData(bdk, ksn, jdukpt.encryptData(bdk, ksn, HexUtils.hexToBytes(PIN_BLOCK + PIN_BLOCK), type), type), HexUtils.hexToBytes(PIN_BLOCK + PIN_BLOCK));
+		}
+	}
+	
+	@Test
+	public void testMAC() throws Exception {
+		byte[] bdk = HexUtils.hexToBytes(BDK);
+		byte[] ksn = HexUtils.hexToBytes(KSN);
+		byte[] message = "4761739001010010".getBytes("US-ASCII");
+		byte[] mac = jdukpt.generateMAC(bdk, ksn, message, AESKeyType.AES128);
+		assertTrue(jdukpt.verifyMAC(bdk, ksn, message, mac, AESKeyType.AES128));
+		assertTrue(jdukpt.verifyMAC(bdk, ksn, message, Arrays.copyOf(mac, 8), AESKeyType.AES128));
+		message[0] ^= 1;
+		assertFalse(jdukpt.verifyMAC(bdk, ksn, message, mac, AESKeyType.AES128));
+	}
+	
+	@Test
+	public void testRetainedIntermediateKeys() throws Exception {
+		JDukptAes retaining = new JDukptAes(2);
+		byte[] bdk = HexUtils.hexToBytes(BDK);
+		int[] counters = {1, 2, 3, 0x00A10007, 0x00A10008, 0x00A10008, 0x00A20000, 7};
+		for (String initialKeyId : new String[] {INITIAL_KEY_ID, "1234567890123457", "1234567890123458", INITIAL_KEY_ID}) {
+			for (int counter : counters) {
+				byte[] ksn = HexUtils.hexToBytes(initialKeyId + String.format("%08X", counter));
+				assertArrayEquals(jdukpt.deriveWorkingKey(bdk, ksn, AESKeyUsage.PIN, AESKeyType.AES128), retaining.deriveWorkingKey(bdk, ksn, AESKeyUsage.PIN, AESKeyType.AES128));
+			}
+		}
+		byte[] ksn = HexUtils.hexToBytes(KSN);
+		assertArrayEquals(HexUtils.hexToBytes(PIN_KEY), retaining.deriveWorkingKey(bdk, ksn, AESKeyUsage.PIN, AESKeyType.AES128));
+		byte[] otherBdk = HexUtils.hexToBytes(BDK + BDK);
+		assertArrayEquals(jdukpt.deriveWorkingKey(otherBdk, ksn, AESKeyUsage.PIN, AESKeyType.AES128), retaining.deriveWorkingKey(otherBdk, ksn, AESKeyUsage.PIN, AESKeyType.AES128));
+		retaining.clearIntermediateKeys();
+		assertArrayEquals(HexUtils.hexToBytes(PIN_KEY), retaining.deriveWorkingKey(bdk, ksn, AESKeyUsage.PIN, AESKeyType.AES128));
+		assertTrue(retaining.isRetainingIntermediateKeys());
+		assertFalse(jdukpt.isRetainingIntermediateKeys());
+	}
+	
+	@Test
+	public void testCMACVectors() throws Exception {
+		// RFC 4493, section 4
+		byte[] key = HexUtils.hexToBytes("2B7E151628AED2A6ABF7158809CF4F3C");
+		String message = "6BC1BEE22E409F96E93D7E117393172AAE2D8A571E03AC9C9EB76FAC45AF8E5130C81C46A35CE411E5FBC1191A0A52EFF69F2445DF4F9B17AD2B417BE66C3710";
+		assertArrayEquals(HexUtils.hexToBytes("BB1D6929E95937287FA37D129B756746"), jdukpt.generateMAC(key, new byte[0]));
+		assertArrayEquals(HexUtils.hexToBytes("070A16B46B4D4144F79BDD9DD04A287C"), jdukpt.generateMAC(key, HexUtils.hexToBytes(message.substring(0, 32))));
+		assertArrayEquals(HexUtils.hexToBytes("DFA66747DE9AE63030CA32611497C827"), jdukpt.generateMAC(key, HexUtils.hexToBytes(message.substring(0, 80))));
+		assertArrayEquals(HexUtils.hexToBytes("51F0BEBF7E3B9D92FC49741779363CFE"), jdukpt.generateMAC(key, HexUtils.hexToBytes(message)));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testCounterWithTooManyBits() throws Exception {
+		jdukpt.decryptPIN(HexUtils.hexToBytes(BDK), HexUtils.hexToBytes("1234567890123456FFFF0001"), HexUtils.hexToBytes(PIN_BLOCK), AESKeyType.AES128);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testWorkingKeyStrongerThanBdk() throws Exception {
+		jdukpt.deriveWorkingKey(HexUtils.hexToBytes(BDK), HexUtils.hexToBytes(KSN), AESKeyUsage.PIN, AESKeyType.AES256);
+	}
+}
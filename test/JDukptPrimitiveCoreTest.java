@@ -0,0 +1,115 @@
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.phoegasus.jdukpt.core.DefaultBlockCipher;
+import org.phoegasus.jdukpt.core.DefaultCrypto;
+import org.phoegasus.jdukpt.core.DUKPTEngine;
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+public class JDukptPrimitiveCoreTest {
+	
+	private JDukpt jdukpt = new JDukpt(DUKPTEngine.Primitive);
+	
+	private JDukpt reference = new JDukpt(DUKPTEngine.BigInteger);
+
+	private final String BDK = "A1A1A1A1A1A1A1A1B2B2B2B2B2B2B2B2";
+	private final String KSN = "FFFF9876543210E00002";
+	private final String IPEK = "A96C9F83F9F06DEE02AD998E80E93A04";
+	private final String PIN_ENCRYPTION_KEY = "9CF81D08CAE5D532243C18102DAA811B";
+	private final String DATA_ENCRYPTION_KEY = "6960DF245AACBCF03469F75F2EC0CB86";
+	private final String CLEAR_DATA = "041226CBA987EDCB";
+	private final String PIN_VARIANT_ENCRYPTED_DATA = "51B0229A9278CECC";
+	private final String DATA_VARIANT_ENCRYPTED_DATA = "D667CEE04B7A0EB4";
+	
+	@Test
+	public void testPinEncryption() throws Exception {
+		assertEquals(jdukpt.encryptPIN(BDK, KSN, CLEAR_DATA).toUpperCase(), PIN_VARIANT_ENCRYPTED_DATA);
+	}
+	
+	@Test
+	public void testPinDecryption() throws Exception {
+		assertArrayEquals(jdukpt.decryptPIN(HexUtils.hexToBytes(BDK), HexUtils.hexToBytes(KSN), HexUtils.hexToBytes(PIN_VARIANT_ENCRYPTED_DATA)), HexUtils.hexToBytes(CLEAR_DATA));
+	}
+	
+	@Test
+	public void testDataEncryption() throws Exception {
+		assertEquals(jdukpt.encryptData(new BigInteger(BDK, 16), new BigInteger(KSN, 16), new BigInteger(CLEAR_DATA, 16)), new BigInteger(DATA_VARIANT_ENCRYPTED_DATA, 16));
+	}
+	
+	@Test
+	public void testDataDecryption() throws Exception {
+		assertEquals(jdukpt.decryptData(BDK, KSN, DATA_VARIANT_ENCRYPTED_DATA).toUpperCase(), CLEAR_DATA);
+	}
+	
+	@Test
+	public void testGenerateIpek() throws Exception {
+		assertEquals(jdukpt.generateIpek(new BigInteger(BDK, 16), new BigInteger(KSN, 16)), new BigInteger(IPEK, 16));
+	}
+	
+	@Test
+	public void testDerivePINEncryptionKey() throws Exception {
+		assertEquals(jdukpt.derivePINEncryptionKey(new BigInteger(BDK, 16), new BigInteger(KSN, 16)), new BigInteger(PIN_ENCRYPTION_KEY, 16));
+	}
+	
+	@Test
+	public void testDeriveDataEncryptionKey() throws Exception {
+		assertEquals(jdukpt.deriveDataEncryptionKey(new BigInteger(BDK, 16), new BigInteger(KSN, 16)), new BigInteger(DATA_ENCRYPTION_KEY, 16));
+	}
+	
+	@Test
+	public void testMatchesBigIntegerEngine() throws Exception {
+		String[] counters = {"00000", "00001", "0000F", "1FFFF", "1F800", "FFC00", "AAAAA", "155555"};
+		BigInteger bdk = new BigInteger(BDK, 16);
+		for(String counter : counters) {
+			String ksn = KSN.substring(0, 20 - counter.length()) + counter;
+			BigInteger ksnValue = new BigInteger(ksn, 16);
+			String data = CLEAR_DATA + PIN_VARIANT_ENCRYPTED_DATA;
+			BigInteger dataValue = new BigInteger(data, 16);
+			assertEquals(reference.encryptPIN(bdk, ksnValue, dataValue), new BigInteger(jdukpt.encryptPIN(BDK, ksn, data), 16));
+			assertEquals(reference.decryptPIN(bdk, ksnValue, dataValue), new BigInteger(jdukpt.decryptPIN(BDK, ksn, data), 16));
+			assertEquals(reference.encryptData(bdk, ksnValue, dataValue), new BigInteger(jdukpt.encryptData(BDK, ksn, data), 16));
+			assertEquals(reference.decryptData(bdk, ksnValue, dataValue), new BigInteger(jdukpt.decryptData(BDK, ksn, data), 16));
+			assertEquals(reference.encryptPIN(BDK, ksn, data), jdukpt.encryptPIN(BDK, ksn, data));
+			assertEquals(reference.decryptData(BDK, ksn, data), jdukpt.decryptData(BDK, ksn, data));
+		}
+	}
+	
+	@Test
+	public void testBigIntegerEngineUsesCrypto() throws Exception {
+		final List<BigInteger> values = new ArrayList<BigInteger>();
+		JDukpt custom = new JDukpt(new DefaultCrypto() {
+			@Override
+			public BigInteger decryptTDES(BigInteger key, BigInteger data) throws Exception {
+				values.add(data);
+				return super.decryptTDES(key, data);
+			}
+		}, DUKPTEngine.BigInteger);
+		String data = DATA_VARIANT_ENCRYPTED_DATA + DATA_VARIANT_ENCRYPTED_DATA;
+		assertEquals(jdukpt.decryptData(BDK, KSN, data), custom.decryptData(BDK, KSN, data));
+		assertEquals(1, values.size());
+		assertEquals(new BigInteger(data, 16), values.get(0));
+	}
+	
+	@Test
+	public void testCryptoAdapter() throws Exception {
+		JDukpt custom = new JDukpt(new DefaultCrypto() {}, DUKPTEngine.Primitive);
+		assertEquals(custom.encryptPIN(BDK, KSN, CLEAR_DATA).toUpperCase(), PIN_VARIANT_ENCRYPTED_DATA);
+		assertEquals(custom.decryptData(BDK, KSN, DATA_VARIANT_ENCRYPTED_DATA).toUpperCase(), CLEAR_DATA);
+	}
+	
+	@Test
+	public void testBlockCipherAdapter() throws Exception {
+		JDukpt custom = new JDukpt(new DefaultBlockCipher(), DUKPTEngine.BigInteger);
+		assertEquals(custom.encryptPIN(BDK, KSN, CLEAR_DATA).toUpperCase(), PIN_VARIANT_ENCRYPTED_DATA);
+		assertEquals(custom.decryptData(BDK, KSN, DATA_VARIANT_ENCRYPTED_DATA).toUpperCase(), CLEAR_DATA);
+		assertEquals(custom.generateIpek(new BigInteger(BDK, 16), new BigInteger(KSN, 16)), new BigInteger(IPEK, 16));
+	}
+}
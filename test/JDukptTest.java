@@ -96,4 +96,14 @@ public class JDukptTest {
 	public void testDeriveDataEncryptionKey() throws Exception {
 		assertEquals(jdukpt.deriveDataEncryptionKey(new BigInteger(BDK, 16), new BigInteger(KSN, 16)), new BigInteger(DATA_ENCRYPTION_KEY, 16));
 	}
+	
+	@Test
+	public void testLeadingZeroBlock() throws Exception {
+		String data = "0000000000000000" + CLEAR_DATA;
+		String encrypted = jdukpt.encryptData(BDK, KSN, data);
+		assertEquals(32, encrypted.length());
+		assertEquals(data, jdukpt.decryptData(BDK, KSN, encrypted).toUpperCase());
+		byte[] bytes = HexUtils.hexToBytes(data);
+		assertArrayEquals(bytes, jdukpt.decryptData(HexUtils.hexToBytes(BDK), HexUtils.hexToBytes(KSN), jdukpt.encryptData(HexUtils.hexToBytes(BDK), HexUtils.hexToBytes(KSN), bytes)));
+	}
 }
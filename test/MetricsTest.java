@@ -0,0 +1,91 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import org.phoegasus.jdukpt.core.BlockCipher;
+import org.phoegasus.jdukpt.core.DUKPTEngine;
+import org.phoegasus.jdukpt.core.IpekCache;
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.core.TableBlockCipher;
+import org.phoegasus.jdukpt.metrics.JmxMetrics;
+
+public class MetricsTest {
+
+	private final String BDK = "A1A1A1A1A1A1A1A1B2B2B2B2B2B2B2B2";
+	private final String KSN = "FFFF9876543210E00002";
+	private final String CLEAR_DATA = "041226CBA987EDCB";
+	private final String PIN_VARIANT_ENCRYPTED_DATA = "51B0229A9278CECC";
+	
+	@Test
+	public void testCountersAndMBean() throws Exception {
+		JmxMetrics metrics = new JmxMetrics();
+		String name = "org.phoegasus.jdukpt:type=DukptMetrics,name=MetricsTest";
+		metrics.register(name);
+		try {
+			JDukpt jdukpt = JDukpt.builder().cipher(new TableBlockCipher()).ipekCache(new IpekCache(16, 0)).metrics(metrics).build();
+			assertEquals(jdukpt.encryptPIN(BDK, KSN, CLEAR_DATA).toUpperCase(), PIN_VARIANT_ENCRYPTED_DATA);
+			assertEquals(jdukpt.decryptPIN(BDK, KSN, PIN_VARIANT_ENCRYPTED_DATA).toUpperCase(), CLEAR_DATA);
+			assertEquals(1, metrics.getIpekDerivations());
+			assertEquals(1, metrics.getCacheMisses());
+			assertEquals(1, metrics.getCacheHits());
+			assertEquals(2, metrics.getKeyDerivations());
+			assertEquals(2, metrics.getKeyGenerations());
+			// 2 TDES for the IPEK, then 2 DES per key generation and 1 TDES per PIN block
+			assertEquals(8, metrics.getCipherInvocations());
+			assertEquals(0, metrics.getErrors());
+			
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName(name);
+			assertEquals(8L, server.getAttribute(objectName, "CipherInvocations"));
+			assertEquals(1L, server.getAttribute(objectName, "CacheHits"));
+			server.invoke(objectName, "reset", null, null);
+			assertEquals(0, metrics.getCipherInvocations());
+		} finally {
+			metrics.unregister();
+		}
+		assertEquals(false, ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(name)));
+	}
+	
+	@Test
+	public void testCipherErrors() throws Exception {
+		JmxMetrics metrics = new JmxMetrics();
+		JDukpt jdukpt = JDukpt.builder().cipher(new FailingBlockCipher()).engine(DUKPTEngine.BigInteger).metrics(metrics).build();
+		try {
+			jdukpt.encryptPIN(BDK, KSN, CLEAR_DATA);
+			fail("the cipher failure should be thrown");
+		} catch (IllegalStateException e) {
+			assertEquals(1, metrics.getErrors());
+			assertEquals(0, metrics.getIpekDerivations());
+		}
+	}
+	
+	private static class FailingBlockCipher implements BlockCipher {
+
+		@Override
+		public long encryptDES(long key, long data) throws Exception {
+			throw new IllegalStateException("encryptDES");
+		}
+
+		@Override
+		public long decryptDES(long key, long data) throws Exception {
+			throw new IllegalStateException("decryptDES");
+		}
+
+		@Override
+		public long encryptTDES(long keyHi, long keyLo, long data) throws Exception {
+			throw new IllegalStateException("encryptTDES");
+		}
+
+		@Override
+		public long decryptTDES(long keyHi, long keyLo, long data) throws Exception {
+			throw new IllegalStateException("decryptTDES");
+		}
+	}
+}
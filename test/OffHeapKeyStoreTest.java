@@ -0,0 +1,73 @@
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.core.KeyHandle;
+import org.phoegasus.jdukpt.core.OffHeapKeyStore;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+public class OffHeapKeyStoreTest {
+
+	private final String BDK = "A1A1A1A1A1A1A1A1B2B2B2B2B2B2B2B2";
+	private final String KSN = "FFFF9876543210E00002";
+	private final String CLEAR_DATA = "041226CBA987EDCB";
+	private final String PIN_VARIANT_ENCRYPTED_DATA = "51B0229A9278CECC";
+	private final String DATA_VARIANT_ENCRYPTED_DATA = "D667CEE04B7A0EB4";
+	
+	private final JDukpt jdukpt = new JDukpt();
+	
+	@Test
+	public void testVariantsWithHandle() throws Exception {
+		OffHeapKeyStore store = new OffHeapKeyStore(4);
+		KeyHandle bdk = store.put(HexUtils.hexToBytes(BDK));
+		byte[] ksn = HexUtils.hexToBytes(KSN);
+		assertArrayEquals(jdukpt.encryptPIN(bdk, ksn, HexUtils.hexToBytes(CLEAR_DATA)), HexUtils.hexToBytes(PIN_VARIANT_ENCRYPTED_DATA));
+		assertArrayEquals(jdukpt.decryptPIN(bdk, ksn, HexUtils.hexToBytes(PIN_VARIANT_ENCRYPTED_DATA)), HexUtils.hexToBytes(CLEAR_DATA));
+		assertArrayEquals(jdukpt.encryptData(bdk, ksn, HexUtils.hexToBytes(CLEAR_DATA)), HexUtils.hexToBytes(DATA_VARIANT_ENCRYPTED_DATA));
+		assertArrayEquals(jdukpt.decryptData(bdk, ksn, HexUtils.hexToBytes(DATA_VARIANT_ENCRYPTED_DATA)), HexUtils.hexToBytes(CLEAR_DATA));
+		assertTrue(bdk.isValid());
+		assertEquals(1, store.size());
+	}
+	
+	@Test
+	public void testDestroyedHandle() throws Exception {
+		OffHeapKeyStore store = new OffHeapKeyStore(1);
+		KeyHandle bdk = store.put(HexUtils.hexToBytes(BDK));
+		store.destroy(bdk);
+		assertFalse(bdk.isValid());
+		KeyHandle other = store.put(HexUtils.hexToBytes(BDK));
+		assertTrue(other.isValid());
+		assertFalse(bdk.isValid());
+		try {
+			jdukpt.decryptPIN(bdk, HexUtils.hexToBytes(KSN), HexUtils.hexToBytes(PIN_VARIANT_ENCRYPTED_DATA));
+			fail();
+		} catch (IllegalStateException e) {
+		}
+	}
+	
+	@Test
+	public void testCapacity() {
+		OffHeapKeyStore store = new OffHeapKeyStore(1);
+		KeyHandle bdk = store.put(HexUtils.hexToBytes(BDK));
+		try {
+			store.put(HexUtils.hexToBytes(BDK));
+			fail();
+		} catch (IllegalStateException e) {
+		}
+		store.clear();
+		assertFalse(bdk.isValid());
+		assertEquals(0, store.size());
+		assertEquals(1, store.capacity());
+		try {
+			new OffHeapKeyStore(OffHeapKeyStore.MAXIMUM_CAPACITY + 1);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.core.PinBlockFormat;
+import org.phoegasus.jdukpt.core.TableBlockCipher;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+public class PinTranslationTest {
+
+	private final byte[] bdk = HexUtils.hexToBytes("0123456789ABCDEFFEDCBA9876543210");
+	private final byte[] ksn = HexUtils.hexToBytes("FFFF9876543210E00001");
+	private final byte[] zoneKey = HexUtils.hexToBytes("C1D0F8FB4958670DBA40AB1F3752EF0D");
+	private final byte[] pan = "4111111111111111".getBytes();
+	// PIN 1234, ISO format 0 with the PAN field 0000111111111111
+	private final String ISO0_PIN_BLOCK = "041225EEEEEEEEEE";
+	
+	@Test
+	public void testFormat0() throws Exception {
+		for (JDukpt jdukpt : new JDukpt[] {new JDukpt(), new JDukpt(new TableBlockCipher())}) {
+			byte[] encrypted = jdukpt.encryptPIN(bdk, ksn, HexUtils.hexToBytes(ISO0_PIN_BLOCK));
+			byte[] translated = jdukpt.translatePIN(bdk, ksn, encrypted, PinBlockFormat.ISO0, pan, zoneKey, PinBlockFormat.ISO0);
+			assertEquals(ISO0_PIN_BLOCK, HexUtils.bytesToHex(decryptZone(translated)));
+		}
+	}
+	
+	@Test
+	public void testFormatConversions() throws Exception {
+		JDukpt jdukpt = new JDukpt();
+		byte[] buffer = new byte[24];
+		System.arraycopy(jdukpt.encryptPIN(bdk, ksn, HexUtils.hexToBytes(ISO0_PIN_BLOCK)), 0, buffer, 8, 8);
+		byte[] panBuffer = ("xx" + new String(pan)).getBytes();
+		jdukpt.translatePIN(bdk, ksn, buffer, 8, PinBlockFormat.ISO0, panBuffer, 2, pan.length, zoneKey, PinBlockFormat.ISO3, buffer, 8);
+		String iso3 = HexUtils.bytesToHex(xorPan(decryptZone(Arrays.copyOfRange(buffer, 8, 16))));
+		assertEquals("341234", iso3.substring(0, 6));
+		assertTrue(iso3.substring(6).matches("[A-F]{10}"));
+		
+		byte[] zoneToDukpt = jdukpt.encryptPIN(bdk, ksn, decryptZone(Arrays.copyOfRange(buffer, 8, 16)));
+		String iso1 = HexUtils.bytesToHex(decryptZone(jdukpt.translatePIN(bdk, ksn, zoneToDukpt, PinBlockFormat.ISO3, pan, zoneKey, PinBlockFormat.ISO1)));
+		assertEquals("141234", iso1.substring(0, 6));
+		
+		byte[] back = jdukpt.translatePIN(bdk, ksn, jdukpt.encryptPIN(bdk, ksn, HexUtils.hexToBytes(iso1)), PinBlockFormat.ISO1, pan, zoneKey, PinBlockFormat.ISO0);
+		assertArrayEquals(HexUtils.hexToBytes(ISO0_PIN_BLOCK), decryptZone(back));
+	}
+	
+	@Test
+	public void testInvalidPinBlocks() throws Exception {
+		JDukpt jdukpt = new JDukpt();
+		byte[] encrypted = jdukpt.encryptPIN(bdk, ksn, HexUtils.hexToBytes(ISO0_PIN_BLOCK));
+		// the check digit is not part of the PAN field
+		byte[] translated = jdukpt.translatePIN(bdk, ksn, encrypted, PinBlockFormat.ISO0, "4111111111111112".getBytes(), zoneKey, PinBlockFormat.ISO0);
+		assertEquals(ISO0_PIN_BLOCK, HexUtils.bytesToHex(decryptZone(translated)));
+		try {
+			jdukpt.translatePIN(bdk, ksn, encrypted, PinBlockFormat.ISO0, "4222222222222222".getBytes(), zoneKey, PinBlockFormat.ISO0);
+			fail("a PIN block checked against another PAN should be rejected");
+		} catch (IllegalArgumentException e) {
+			assertEquals("invalid PIN block", e.getMessage());
+		}
+		for (PinBlockFormat format : new PinBlockFormat[] {PinBlockFormat.ISO1, PinBlockFormat.ISO3}) {
+			try {
+				jdukpt.translatePIN(bdk, ksn, encrypted, format, pan, zoneKey, PinBlockFormat.ISO0);
+				fail("a PIN block of another format should be rejected");
+			} catch (IllegalArgumentException e) {
+				assertEquals("invalid PIN block", e.getMessage());
+			}
+		}
+	}
+	
+	private byte[] decryptZone(byte[] block) throws Exception {
+		byte[] key = new byte[24];
+		System.arraycopy(zoneKey, 0, key, 0, 16);
+		System.arraycopy(zoneKey, 0, key, 16, 8);
+		Cipher cipher = Cipher.getInstance("DESede/ECB/NoPadding");
+		cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "DESede"));
+		return cipher.doFinal(block);
+	}
+	
+	private byte[] xorPan(byte[] block) {
+		byte[] panField = HexUtils.hexToBytes("0000111111111111");
+		for (int i = 0; i < 8; i++) {
+			block[i] ^= panField[i];
+		}
+		return block;
+	}
+}
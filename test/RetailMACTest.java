@@ -0,0 +1,79 @@
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.core.RetailMAC;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+public class RetailMACTest {
+
+	private final String BDK = "0123456789ABCDEFFEDCBA9876543210";
+	private final String KSN = "FFFF9876543210E00001";
+	private final String MAC_REQUEST_KEY = "042666B4918430A368DE9628D03984C9";
+	
+	private final JDukpt jdukpt = new JDukpt();
+	
+	private final byte[] message = "0200B238000000000000000000000000001000000".getBytes();
+	
+	@Test
+	public void testRequestMAC() throws Exception {
+		byte[] mac = jdukpt.generateRequestMAC(HexUtils.hexToBytes(BDK), HexUtils.hexToBytes(KSN), message);
+		assertArrayEquals(retailMAC(HexUtils.hexToBytes(MAC_REQUEST_KEY), message), mac);
+		assertTrue(jdukpt.verifyRequestMAC(HexUtils.hexToBytes(BDK), HexUtils.hexToBytes(KSN), message, mac));
+		assertTrue(jdukpt.verifyRequestMAC(HexUtils.hexToBytes(BDK), HexUtils.hexToBytes(KSN), message, Arrays.copyOf(mac, 4)));
+		assertFalse(jdukpt.verifyResponseMAC(HexUtils.hexToBytes(BDK), HexUtils.hexToBytes(KSN), message, mac));
+	}
+	
+	@Test
+	public void testStreaming() throws Exception {
+		byte[] expected = jdukpt.generateResponseMAC(HexUtils.hexToBytes(BDK), HexUtils.hexToBytes(KSN), message);
+		RetailMAC mac = jdukpt.createResponseMAC(HexUtils.hexToBytes(BDK), HexUtils.hexToBytes(KSN));
+		mac.update(message, 0, 3);
+		mac.update(message, 3, 0);
+		mac.update(message, 3, 11);
+		mac.update(message, 14, message.length - 14);
+		assertArrayEquals(expected, mac.doFinal());
+		mac.update(new ByteArrayInputStream(message));
+		assertTrue(mac.verify(expected));
+		mac.destroy();
+	}
+	
+	@Test
+	public void testDecryptPINVerifyMAC() throws Exception {
+		byte[] bdk = HexUtils.hexToBytes(BDK);
+		byte[] ksn = HexUtils.hexToBytes(KSN);
+		byte[] pinBlock = HexUtils.hexToBytes("041226CBA987EDCB");
+		byte[] encrypted = jdukpt.encryptPIN(bdk, ksn, pinBlock);
+		byte[] mac = jdukpt.generateRequestMAC(bdk, ksn, message);
+		assertArrayEquals(pinBlock, jdukpt.decryptPINVerifyMAC(bdk, ksn, encrypted, message, mac));
+		message[0] ^= 1;
+		assertNull(jdukpt.decryptPINVerifyMAC(bdk, ksn, encrypted, message, mac));
+	}
+	
+	/**
+	 * Reference ANSI X9.19 MAC computed with the JCE DES cipher
+	 */
+	private static byte[] retailMAC(byte[] key, byte[] message) throws Exception {
+		byte[] padded = Arrays.copyOf(message, (message.length + 7) / 8 * 8);
+		Cipher des = Cipher.getInstance("DES/CBC/NoPadding");
+		des.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, 0, 8, "DES"), new IvParameterSpec(new byte[8]));
+		byte[] chain = Arrays.copyOfRange(des.doFinal(padded), padded.length - 8, padded.length);
+		Cipher ecb = Cipher.getInstance("DES/ECB/NoPadding");
+		ecb.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, 8, 8, "DES"));
+		chain = ecb.doFinal(chain);
+		ecb.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, 0, 8, "DES"));
+		return ecb.doFinal(chain);
+	}
+}
@@ -0,0 +1,59 @@
+package test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+import org.phoegasus.jdukpt.core.DUKPTVariant;
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.core.SessionKeys;
+import org.phoegasus.jdukpt.utils.HexUtils;
+
+public class SessionKeysTest {
+
+	private final String BDK = "0123456789ABCDEFFEDCBA9876543210";
+	private final String KSN = "FFFF9876543210E00001";
+	private final String PIN_KEY = "042666B49184CF5C68DE9628D0397B36";
+	private final String MAC_REQUEST_KEY = "042666B4918430A368DE9628D03984C9";
+	private final String DATA = "041226CBA987EDCB041226CBA987EDCB";
+	
+	private final JDukpt jdukpt = new JDukpt();
+	
+	@Test
+	public void testVariants() throws Exception {
+		byte[] bdk = HexUtils.hexToBytes(BDK);
+		byte[] ksn = HexUtils.hexToBytes(KSN);
+		SessionKeys keys = jdukpt.deriveSessionKeys(bdk, ksn, DUKPTVariant.PIN, DUKPTVariant.Data, DUKPTVariant.MACRequest);
+		assertArrayEquals(HexUtils.hexToBytes(PIN_KEY), keys.getKey(DUKPTVariant.PIN));
+		assertArrayEquals(HexUtils.hexToBytes(MAC_REQUEST_KEY), keys.getKey(DUKPTVariant.MACRequest));
+		assertArrayEquals(jdukpt.encryptData(bdk, ksn, HexUtils.hexToBytes(DATA)), encryptTDES(keys.getKey(DUKPTVariant.Data), HexUtils.hexToBytes(DATA)));
+		assertFalse(keys.contains(DUKPTVariant.MACResponse));
+		SessionKeys values = jdukpt.deriveSessionKeys(new BigInteger(BDK, 16), new BigInteger(KSN, 16), DUKPTVariant.PIN);
+		assertEquals(new BigInteger(PIN_KEY, 16), values.getKeyValue(DUKPTVariant.PIN));
+	}
+	
+	@Test
+	public void testDestroy() throws Exception {
+		SessionKeys keys = jdukpt.deriveSessionKeys(HexUtils.hexToBytes(BDK), HexUtils.hexToBytes(KSN), DUKPTVariant.PIN);
+		assertTrue(keys.contains(DUKPTVariant.PIN));
+		keys.destroy();
+		assertFalse(keys.contains(DUKPTVariant.PIN));
+	}
+	
+	private static byte[] encryptTDES(byte[] key, byte[] data) throws Exception {
+		byte[] expanded = Arrays.copyOf(key, 24);
+		System.arraycopy(key, 0, expanded, 16, 8);
+		Cipher cipher = Cipher.getInstance("DESede/CBC/NoPadding");
+		cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(expanded, "DESede"), new IvParameterSpec(new byte[8]));
+		return cipher.doFinal(data);
+	}
+}
@@ -0,0 +1,35 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.phoegasus.jdukpt.utils.StringPadder;
+
+public class StringPadderTest {
+
+	@Test
+	public void testStrings() {
+		assertEquals("0000000000000abc", StringPadder.zeroLeftPadToMultipleOf16("abc"));
+		assertEquals("0123456789abcdef", StringPadder.zeroLeftPadToMultipleOf16("0123456789abcdef"));
+		assertEquals("**abc", StringPadder.lPad("abc", '*', 5));
+		assertEquals("abc**", StringPadder.rPad("abc", '*', 5));
+		assertEquals("abcdef", StringPadder.rPad("abcdef", '*', 5));
+		assertEquals(1000000, StringPadder.lPad("", '0', 1000000).length());
+	}
+	
+	@Test
+	public void testFixedWidth() {
+		char[] chars = "xxxxxxxxxx".toCharArray();
+		assertEquals(6, StringPadder.lPad("ab", '0', chars, 2, 6));
+		assertEquals("xx0000abxx", new String(chars));
+		StringPadder.rPad("ab", ' ', chars, 0, 4);
+		assertEquals("ab  00abxx", new String(chars));
+		StringPadder.lPad("abcd", '0', chars, 6, 4);
+		assertEquals("ab  00abcd", new String(chars));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testSourceLongerThanWidth() {
+		StringPadder.lPad("abcde", '0', new char[8], 0, 4);
+	}
+}
@@ -0,0 +1,68 @@
+package test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+import org.phoegasus.jdukpt.core.DUKPTEngine;
+import org.phoegasus.jdukpt.core.JDukpt;
+import org.phoegasus.jdukpt.core.TableBlockCipher;
+
+public class TableDESTest {
+	
+	private static final int ITERATIONS = 2000;
+	
+	private TableBlockCipher cipher = new TableBlockCipher();
+	
+	private Random random = new Random(0x5EED);
+	
+	@Test
+	public void testDESMatchesJCE() throws Exception {
+		for(int i = 0; i < ITERATIONS; i++) {
+			long key = random.nextLong();
+			long data = random.nextLong();
+			long encrypted = jce("DES", Cipher.ENCRYPT_MODE, data, key);
+			assertEquals(encrypted, cipher.encryptDES(key, data));
+			assertEquals(data, cipher.decryptDES(key, encrypted));
+		}
+	}
+	
+	@Test
+	public void testTDESMatchesJCE() throws Exception {
+		for(int i = 0; i < ITERATIONS; i++) {
+			long keyHi = random.nextLong();
+			long keyLo = random.nextLong();
+			long data = random.nextLong();
+			long encrypted = jce("DESede", Cipher.ENCRYPT_MODE, data, keyHi, keyLo, keyHi);
+			assertEquals(encrypted, cipher.encryptTDES(keyHi, keyLo, data));
+			assertEquals(data, cipher.decryptTDES(keyHi, keyLo, encrypted));
+		}
+	}
+	
+	@Test
+	public void testKnownAnswer() throws Exception {
+		assertEquals(0x85E813540F0AB405L, cipher.encryptDES(0x133457799BBCDFF1L, 0x0123456789ABCDEFL));
+	}
+	
+	@Test
+	public void testDukpt() throws Exception {
+		JDukpt jdukpt = new JDukpt(cipher, DUKPTEngine.Primitive);
+		assertEquals(jdukpt.encryptPIN("A1A1A1A1A1A1A1A1B2B2B2B2B2B2B2B2", "FFFF9876543210E00002", "041226CBA987EDCB").toUpperCase(), "51B0229A9278CECC");
+		assertEquals(jdukpt.decryptData("A1A1A1A1A1A1A1A1B2B2B2B2B2B2B2B2", "FFFF9876543210E00002", "D667CEE04B7A0EB4").toUpperCase(), "041226CBA987EDCB");
+	}
+	
+	private static long jce(String algorithm, int mode, long data, long... key) throws Exception {
+		ByteBuffer keyBytes = ByteBuffer.allocate(key.length * 8);
+		for(long k : key) {
+			keyBytes.putLong(k);
+		}
+		Cipher jce = Cipher.getInstance(algorithm + "/ECB/NoPadding");
+		jce.init(mode, new SecretKeySpec(keyBytes.array(), algorithm));
+		return ByteBuffer.wrap(jce.doFinal(ByteBuffer.allocate(8).putLong(data).array())).getLong();
+	}
+}